@@ -22,6 +22,13 @@ public interface IIntentRuleAdminService {
      */
     ApiResponse<Map<String, Object>> refreshRules();
 
+    /**
+     * 获取规则版本与跨节点同步状态（用于健康检查）
+     *
+     * @return 本节点版本、最新版本与滞后量
+     */
+    ApiResponse<Map<String, Object>> getRuleVersion();
+
     /**
      * 获取所有规则列表
      *
@@ -4,7 +4,11 @@ import cn.cug.sxy.ai.api.dto.QueryRequestDTO;
 import cn.cug.sxy.ai.api.vo.DocumentDetailVO;
 import cn.cug.sxy.ai.api.vo.ResponseVO;
 import cn.cug.sxy.ai.api.response.ApiResponse;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
 
 /**
  * @version 1.0
@@ -32,4 +36,40 @@ public interface IRagService {
      */
     ApiResponse<ResponseVO> queryDocument(QueryRequestDTO requestDTO);
 
+    /**
+     * 流式查询文档（SSE）
+     *
+     * @param requestDTO 查询请求DTO
+     * @return 来源、回答片段与统计事件流
+     */
+    Flux<ServerSentEvent<Object>> queryDocumentStream(QueryRequestDTO requestDTO);
+
+    /**
+     * 获取系统负载与降级等级
+     *
+     * @return 当前降级等级、负载采样与各等级处理的查询数
+     */
+    ApiResponse<Map<String, Object>> getLoadStatus();
+
+    /**
+     * 获取自适应路由学习状态
+     *
+     * @return 决策/探索计数与各任务类型下各路由臂的延迟、Token与质量统计
+     */
+    ApiResponse<Map<String, Object>> getAdaptiveRoutingStatus();
+
+    /**
+     * 获取模型调用网关状态
+     *
+     * @return 熔断器状态与各用途的调用量、错误、超时、Token用量、在途数与延迟分位数
+     */
+    ApiResponse<Map<String, Object>> getLlmGatewayStatus();
+
+    /**
+     * 获取回答缓存状态
+     *
+     * @return 生成结果缓存与语义回答缓存的查找、命中、写入、失效等统计
+     */
+    ApiResponse<Map<String, Object>> getCacheStatus();
+
 }
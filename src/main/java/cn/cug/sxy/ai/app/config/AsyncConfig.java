@@ -1,5 +1,6 @@
 package cn.cug.sxy.ai.app.config;
 
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGatewayProperties;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -71,4 +72,78 @@ public class AsyncConfig {
         return executor;
     }
 
+    @Bean(name = "queryRewriteExecutor")
+    public Executor queryRewriteExecutor(
+            @Value("${rag.async.rewrite.core-pool-size:8}") int corePoolSize,
+            @Value("${rag.async.rewrite.max-pool-size:32}") int maxPoolSize,
+            @Value("${rag.async.rewrite.queue-capacity:200}") int queueCapacity,
+            @Value("${rag.async.rewrite.keep-alive-seconds:60}") int keepAliveSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(keepAliveSeconds);
+        executor.setThreadNamePrefix("query-rewrite-");
+        // 队列满时由调用线程执行，保证重写与分支检索不被丢弃
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "intentDetectionExecutor")
+    public Executor intentDetectionExecutor(
+            @Value("${rag.async.intent.core-pool-size:8}") int corePoolSize,
+            @Value("${rag.async.intent.max-pool-size:32}") int maxPoolSize,
+            @Value("${rag.async.intent.queue-capacity:100}") int queueCapacity,
+            @Value("${rag.async.intent.keep-alive-seconds:60}") int keepAliveSeconds) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(keepAliveSeconds);
+        executor.setThreadNamePrefix("intent-detect-");
+        // 队列满时拒绝，由意图检测服务在轮到该检测器时改为同步执行
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "textSegmentationExecutor")
+    public Executor textSegmentationExecutor(
+            @Value("${rag.async.segmentation.pool-size:0}") int poolSize,
+            @Value("${rag.async.segmentation.queue-capacity:200}") int queueCapacity) {
+        // 分词为纯CPU任务，线程数默认取CPU核数
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("hanlp-segment-");
+        // 队列满时由调用线程执行，调用方本就在等待全部分片的结果
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "llmCallExecutor")
+    public Executor llmCallExecutor(ChatGatewayProperties properties) {
+        // 每个调用任务（含对冲）都持有一个用途许可，且许可在任务结束时才归还，线程数不会超过许可总数
+        int poolSize = properties.totalMaxConcurrent();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize);
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setDaemon(true);
+        executor.setThreadNamePrefix("llm-gateway-");
+        // 队列满时拒绝（默认 AbortPolicy），由模型网关转为配额已满的快速失败；关闭时中断进行中的模型调用
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
 }
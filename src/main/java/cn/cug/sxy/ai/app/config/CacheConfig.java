@@ -12,12 +12,21 @@ import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import cn.cug.sxy.ai.infrastructure.cache.CacheNamespaces;
+import cn.cug.sxy.ai.infrastructure.cache.CompactCacheValueRedisSerializer;
 import cn.cug.sxy.ai.infrastructure.cache.FloatArrayRedisSerializer;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCacheManager;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCacheProperties;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
@@ -37,6 +46,11 @@ import java.util.Map;
  * 3. 更好的扩展性，支持集群
  * 4. 持久化能力，重启不丢失
  * 
+ * 启用两级缓存（rag.cache.two-tier.enabled）时，Redis 缓存前置一层有界的进程内缓存，
+ * 热点键不再每次走网络与反序列化，跨节点一致性由 Redis 发布/订阅失效广播保证。
+ * 
+ * Redis 缓存键带命名空间代数（见 {@link CacheNamespaces}），整体失效只需换代，不再使用 KEYS 扫描删除。
+ * 
  * @author jerryhotton
  */
 @Configuration
@@ -55,20 +69,54 @@ public class CacheConfig {
      */
     @Bean
     @Primary
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, TwoTierCacheProperties twoTierProperties,
+                                     CacheNamespaces cacheNamespaces) {
         if ("redis".equalsIgnoreCase(cacheType) && redisConnectionFactory != null) {
-            return redisCacheManager(redisConnectionFactory);
+            if (!twoTierProperties.isEnabled()) {
+                return redisCacheManager(redisConnectionFactory, twoTierProperties, cacheNamespaces, true);
+            }
+            // L2 不做事务感知，由外层两级缓存统一在事务提交后写入
+            TwoTierCacheManager manager = new TwoTierCacheManager(
+                    redisCacheManager(redisConnectionFactory, twoTierProperties, cacheNamespaces, false),
+                    twoTierProperties, new StringRedisTemplate(redisConnectionFactory));
+            manager.setTransactionAware(true);
+            // 换代后 L1 中的旧值不再有效
+            cacheNamespaces.addInvalidationListener(manager::invalidateLocal);
+            return manager;
+        } else if (twoTierProperties.isEnabled()) {
+            // 仅进程内缓存，但有容量与TTL限制
+            return new TwoTierCacheManager(null, twoTierProperties, null);
         } else {
             // 降级为内存缓存（开发环境或Redis不可用时）
             return memoryCacheManager();
         }
     }
 
+    /**
+     * 订阅两级缓存的跨节点失效广播与缓存换代通知。
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                           CacheManager cacheManager,
+                                                                           TwoTierCacheProperties twoTierProperties,
+                                                                           CacheNamespaces cacheNamespaces) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(cacheNamespaces, new ChannelTopic(cacheNamespaces.getChannel()));
+        if (cacheManager instanceof TwoTierCacheManager twoTierCacheManager) {
+            container.addMessageListener(twoTierCacheManager, new ChannelTopic(twoTierProperties.getChannel()));
+        }
+        return container;
+    }
+
     /**
      * Redis分布式缓存管理器。
      * 推荐用于生产环境。
      */
-    private CacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory) {
+    private CacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory,
+                                           TwoTierCacheProperties twoTierProperties,
+                                           CacheNamespaces cacheNamespaces,
+                                           boolean transactionAware) {
         // 配置Jackson序列化器（支持复杂对象）
         // 创建并配置ObjectMapper
         ObjectMapper objectMapper = createObjectMapper();
@@ -78,7 +126,9 @@ public class CacheConfig {
         GenericJackson2JsonRedisSerializer serializer = createJacksonSerializer(objectMapper);
 
         // 默认缓存配置
+        // 键前缀带命名空间代数：{key-prefix}{cacheName}:v{generation}::
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .computePrefixWith(cacheNamespaces.cacheKeyPrefix())
                 .entryTtl(Duration.ofSeconds(defaultTtl))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
@@ -90,23 +140,44 @@ public class CacheConfig {
         // embeddings缓存：向量嵌入，使用专门的float[]序列化器
         // 因为float[]数组使用Jackson序列化会有类型信息问题，使用字节数组序列化更可靠
         RedisCacheConfiguration embeddingsConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .computePrefixWith(cacheNamespaces.cacheKeyPrefix())
                 .entryTtl(Duration.ofDays(7))
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new FloatArrayRedisSerializer()))
                 .disableCachingNullValues();
-        cacheConfigurations.put("embeddings", embeddingsConfig);
+        cacheConfigurations.put("embeddings", embeddingsConfig.entryTtl(ttlOf(twoTierProperties, "embeddings", Duration.ofDays(7))));
         
-        // intentCache缓存：意图检测结果，TTL中等（24小时），使用Jackson序列化
-        cacheConfigurations.put("intentCache", defaultConfig.entryTtl(Duration.ofHours(24)));
+        // intentCache/taskPlanCache：意图与任务规划使用紧凑二进制编码（向量按原始字节写入），其他类型回退到Jackson序列化
+        RedisCacheConfiguration compactConfig = defaultConfig
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new CompactCacheValueRedisSerializer(serializer)));
+
+        // intentCache缓存：意图检测结果，TTL中等（默认24小时）
+        cacheConfigurations.put("intentCache", compactConfig.entryTtl(ttlOf(twoTierProperties, "intentCache", Duration.ofHours(24))));
         
-        // taskPlanCache缓存：任务规划，TTL较长（24小时），使用Jackson序列化
-        cacheConfigurations.put("taskPlanCache", defaultConfig.entryTtl(Duration.ofHours(24)));
+        // taskPlanCache缓存：任务规划，TTL较长（默认24小时）
+        cacheConfigurations.put("taskPlanCache", compactConfig.entryTtl(ttlOf(twoTierProperties, "taskPlanCache", Duration.ofHours(24))));
 
-        return RedisCacheManager.builder(redisConnectionFactory)
+        // clear() 使用 SCAN 分批删除，避免 KEYS 阻塞 Redis
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory,
+                BatchStrategies.scan(1000));
+        RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(cacheWriter)
                 .cacheDefaults(defaultConfig)
-                .withInitialCacheConfigurations(cacheConfigurations)
-                .transactionAware() // 支持事务
-                .build();
+                .withInitialCacheConfigurations(cacheConfigurations);
+        if (transactionAware) {
+            builder.transactionAware(); // 支持事务
+        }
+        RedisCacheManager cacheManager = builder.build();
+        cacheManager.afterPropertiesSet();
+        return cacheManager;
+    }
+
+    /**
+     * 缓存TTL：优先使用 rag.cache.two-tier.caches.{name}.ttl，未配置时使用默认值。
+     */
+    private Duration ttlOf(TwoTierCacheProperties twoTierProperties, String cacheName, Duration fallback) {
+        TwoTierCacheProperties.CacheSpec spec = twoTierProperties.getCaches().get(cacheName);
+        return spec != null && spec.getTtl() != null ? spec.getTtl() : fallback;
     }
 
     /**
@@ -87,6 +87,16 @@ public class IntentRule {
      */
     private Double semanticThreshold;
 
+    /**
+     * 语义示例的向量（仅 SEMANTIC_EXAMPLE 规则持久化）
+     */
+    private float[] embedding;
+
+    /**
+     * 生成向量所用的嵌入模型标识，与当前模型不一致时向量视为失效
+     */
+    private String embeddingModel;
+
     /**
      * 创建时间
      */
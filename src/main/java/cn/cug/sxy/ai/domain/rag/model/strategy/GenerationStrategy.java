@@ -19,5 +19,9 @@ public class GenerationStrategy {
     private Integer maxTokens;
     private String promptTemplate;
     private boolean citationsRequired;
+    /**
+     * 上下文Token预算（打包检索上下文时使用，仍受模型上下文窗口约束）
+     */
+    private Integer contextTokenBudget;
 }
 
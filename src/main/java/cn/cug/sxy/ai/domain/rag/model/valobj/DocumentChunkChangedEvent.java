@@ -0,0 +1,30 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+import lombok.Getter;
+
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * 文档块变更事件：块被重新索引（内容或向量更新）或删除时发布，依赖块内容的缓存据此失效。
+ *
+ * @author jerryhotton
+ */
+@Getter
+public class DocumentChunkChangedEvent extends EventObject {
+
+    public enum ChangeType {
+        REINDEXED,
+        DELETED
+    }
+
+    private final List<Long> chunkIds;
+    private final ChangeType changeType;
+
+    public DocumentChunkChangedEvent(Object source, List<Long> chunkIds, ChangeType changeType) {
+        super(source);
+        this.chunkIds = chunkIds;
+        this.changeType = changeType;
+    }
+
+}
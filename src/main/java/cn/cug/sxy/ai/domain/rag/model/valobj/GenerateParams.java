@@ -38,5 +38,9 @@ public class GenerateParams {
      * 频率惩罚参数，控制生成文本的重复度
      */
     private Integer topK;
+    /**
+     * 上下文Token预算，为空时仅受模型上下文窗口约束
+     */
+    private Integer contextTokenBudget;
 
 }
@@ -0,0 +1,15 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+/**
+ * 意图规则变更记录：版本号单调递增，ruleId 为 null 表示全量刷新。
+ *
+ * @param version 版本号
+ * @param ruleId  变更的规则ID
+ * @author jerryhotton
+ */
+public record IntentRuleChange(long version, Long ruleId) {
+
+    public boolean isFullRefresh() {
+        return ruleId == null;
+    }
+}
@@ -0,0 +1,42 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import lombok.Getter;
+
+import java.util.EventObject;
+import java.util.List;
+
+/**
+ * 意图规则变更事件：规则增删改后发布，依赖规则的路由据此只更新受影响的条目。
+ * UPSERTED 携带变更后的规则（已停用的规则也会携带，由监听方移除），DELETED 只携带规则ID。
+ * remote 为 true 表示变更由其他节点发起、本节点同步而来，监听方不应再次广播或重复生成向量。
+ *
+ * @author jerryhotton
+ */
+@Getter
+public class IntentRuleChangedEvent extends EventObject {
+
+    public enum ChangeType {
+        UPSERTED,
+        DELETED
+    }
+
+    private final List<Long> ruleIds;
+    private final List<IntentRule> rules;
+    private final ChangeType changeType;
+    private final boolean remote;
+
+    public IntentRuleChangedEvent(Object source, List<Long> ruleIds, List<IntentRule> rules, ChangeType changeType) {
+        this(source, ruleIds, rules, changeType, false);
+    }
+
+    public IntentRuleChangedEvent(Object source, List<Long> ruleIds, List<IntentRule> rules, ChangeType changeType,
+                                  boolean remote) {
+        super(source);
+        this.ruleIds = ruleIds;
+        this.rules = rules;
+        this.changeType = changeType;
+        this.remote = remote;
+    }
+
+}
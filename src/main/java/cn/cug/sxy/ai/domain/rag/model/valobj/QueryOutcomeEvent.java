@@ -0,0 +1,33 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import lombok.Getter;
+
+import java.util.EventObject;
+
+/**
+ * 查询结果事件：查询结束（COMPLETED，含失败）与异步评估完成（EVALUATED）时发布，供路由学习等旁路消费。
+ * 监听方在发布线程上执行，只应读取所需字段后尽快返回。
+ *
+ * @author jerryhotton
+ */
+@Getter
+public class QueryOutcomeEvent extends EventObject {
+
+    public enum Stage {
+        COMPLETED,
+        EVALUATED
+    }
+
+    private final Long queryId;
+    private final Response response;
+    private final Stage stage;
+
+    public QueryOutcomeEvent(Object source, Long queryId, Response response, Stage stage) {
+        super(source);
+        this.queryId = queryId;
+        this.response = response;
+        this.stage = stage;
+    }
+
+}
@@ -0,0 +1,133 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 进行中的查询重写集合。
+ * <p>
+ * 各重写策略（多查询、HyDE、Step-Back）并发执行，调用方无需等待全部完成即可开始检索；
+ * 所有重写共享同一个阶段截止时间，超时未完成的重写被取消，不再占用模型调用。
+ * 仅在单次请求内传递，不挂在查询实体上。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Getter
+public class QueryRewrites {
+
+    /**
+     * 重写类型
+     */
+    public enum Kind {
+        MULTI_QUERY,
+        HYDE,
+        STEP_BACK
+    }
+
+    /**
+     * 单个重写结果
+     *
+     * @param kind  重写类型
+     * @param texts 用于检索的文本（多查询为多个改写问题，HyDE为假设答案，Step-Back为上位问题）
+     */
+    public record Rewrite(Kind kind, List<String> texts) {
+    }
+
+    private static final QueryRewrites NONE = new QueryRewrites(List.of(), 0L);
+
+    /**
+     * 并发执行中的重写（失败的重写以 null 结果完成，取消时中断进行中的模型调用）
+     */
+    private final List<CompletableFuture<Rewrite>> pending;
+
+    /**
+     * 阶段截止时间（System.nanoTime）
+     */
+    private final long deadlineNanos;
+
+    public QueryRewrites(List<CompletableFuture<Rewrite>> pending, long deadlineNanos) {
+        this.pending = pending;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static QueryRewrites none() {
+        return NONE;
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * 距阶段截止时间的剩余纳秒数（已超时返回0）。
+     */
+    public long remainingNanos() {
+        return Math.max(0L, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * 在截止时间内等待全部重写，返回已成功完成的结果。
+     */
+    public List<Rewrite> awaitCompleted() {
+        List<Rewrite> completed = new ArrayList<>();
+        for (CompletableFuture<Rewrite> future : pending) {
+            Rewrite rewrite = await(future);
+            if (rewrite != null) {
+                completed.add(rewrite);
+            }
+        }
+        cancelUnfinished();
+        return completed;
+    }
+
+    /**
+     * 取消尚未完成的重写，返回取消的数量。
+     */
+    public int cancelUnfinished() {
+        int cancelled = 0;
+        for (CompletableFuture<Rewrite> future : pending) {
+            if (!future.isDone() && future.cancel(true)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * 返回当前已完成的重写结果（不等待）。
+     */
+    public List<Rewrite> completedNow() {
+        List<Rewrite> completed = new ArrayList<>();
+        for (CompletableFuture<Rewrite> future : pending) {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                Rewrite rewrite = future.join();
+                if (rewrite != null) {
+                    completed.add(rewrite);
+                }
+            }
+        }
+        return completed;
+    }
+
+    private Rewrite await(CompletableFuture<Rewrite> future) {
+        long remaining = remainingNanos();
+        try {
+            return remaining > 0 ? future.get(remaining, TimeUnit.NANOSECONDS) : future.getNow(null);
+        } catch (TimeoutException e) {
+            log.warn("查询重写超过阶段截止时间，已忽略");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式问答事件。
+ * <p>
+ * 事件顺序：SOURCES（检索来源，先于任何回答Token发送）-> TOKEN（逐段回答）-> DONE（统计信息）；
+ * 任一阶段失败发送 ERROR 并结束。
+ *
+ * @author jerryhotton
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RagStreamEvent {
+
+    public enum Type {
+        SOURCES,
+        TOKEN,
+        DONE,
+        ERROR
+    }
+
+    /**
+     * 事件类型
+     */
+    private Type type;
+
+    /**
+     * 事件数据：SOURCES 为来源列表，TOKEN 为文本片段，DONE/ERROR 为统计或错误信息
+     */
+    private Object data;
+
+    public static RagStreamEvent sources(Long queryId, List<Map<String, Object>> sources) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("queryId", queryId);
+        data.put("sources", sources);
+        return new RagStreamEvent(Type.SOURCES, data);
+    }
+
+    public static RagStreamEvent token(String text) {
+        return new RagStreamEvent(Type.TOKEN, text != null ? text : "");
+    }
+
+    public static RagStreamEvent done(Map<String, Object> stats) {
+        return new RagStreamEvent(Type.DONE, stats);
+    }
+
+    public static RagStreamEvent error(String message) {
+        return new RagStreamEvent(Type.ERROR, Map.of("message", message != null ? message : "未知错误"));
+    }
+}
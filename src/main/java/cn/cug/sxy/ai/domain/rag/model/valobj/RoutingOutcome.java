@@ -0,0 +1,18 @@
+package cn.cug.sxy.ai.domain.rag.model.valobj;
+
+/**
+ * 历史查询的路由结果：路由目标与执行结果，用于路由学习的冷启动。
+ *
+ * @param queryId            查询ID
+ * @param routeTarget        路由目标
+ * @param status             查询最终状态
+ * @param latencyMs          处理延迟（毫秒）
+ * @param contextTokens      打包进提示词的上下文Token数，未记录时为 null
+ * @param retrievalTopScore  最高检索分，未记录时为 null
+ * @param faithfulnessScore  忠实度评分（1-10），未评估时为 null
+ * @param relevanceScore     相关性评分（1-10），未评估时为 null
+ * @author jerryhotton
+ */
+public record RoutingOutcome(Long queryId, String routeTarget, String status, Long latencyMs, Integer contextTokens,
+                             Double retrievalTopScore, Integer faithfulnessScore, Integer relevanceScore) {
+}
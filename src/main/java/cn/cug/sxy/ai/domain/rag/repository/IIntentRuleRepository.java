@@ -1,6 +1,7 @@
 package cn.cug.sxy.ai.domain.rag.repository;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChange;
 
 import java.util.List;
 import java.util.Optional;
@@ -30,6 +31,13 @@ public interface IIntentRuleRepository {
      */
     Optional<IntentRule> findById(Long id);
 
+    /**
+     * 根据ID批量查询规则（含禁用，已删除的规则不返回）
+     * @param ids 规则ID列表
+     * @return 规则列表
+     */
+    List<IntentRule> findByIds(List<Long> ids);
+
     /**
      * 根据类型查询规则
      * @param ruleType 规则类型
@@ -51,6 +59,15 @@ public interface IIntentRuleRepository {
      */
     int update(IntentRule rule);
 
+    /**
+     * 保存语义示例向量
+     * @param id 规则ID
+     * @param embedding 向量
+     * @param embeddingModel 嵌入模型标识
+     * @return 影响行数
+     */
+    int updateEmbedding(Long id, float[] embedding, String embeddingModel);
+
     /**
      * 删除规则
      * @param id 规则ID
@@ -64,4 +81,24 @@ public interface IIntentRuleRepository {
      * @return 影响行数
      */
     int batchDelete(List<Long> ids);
+
+    /**
+     * 追加规则变更版本
+     * @param ruleIds 变更的规则ID，包含 null 表示全量刷新
+     * @return 追加后的最新版本号
+     */
+    long recordChange(List<Long> ruleIds);
+
+    /**
+     * 当前最新版本号
+     * @return 版本号，无记录时为 0
+     */
+    long latestVersion();
+
+    /**
+     * 查询指定版本之后的变更
+     * @param version 起始版本（不含）
+     * @return 按版本升序的变更记录
+     */
+    List<IntentRuleChange> findChangesSince(long version);
 }
@@ -1,6 +1,7 @@
 package cn.cug.sxy.ai.domain.rag.repository;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RoutingOutcome;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -85,6 +86,21 @@ public interface IQueryRepository {
      */
     boolean updateStatus(Long id, String status, LocalDateTime completeTime, Long latencyMs, String errorMessage);
 
+    /**
+     * 更新查询状态，并记录最终的处理器类型与路由目标
+     *
+     * @param id 查询ID
+     * @param status 新状态
+     * @param completeTime 完成时间
+     * @param latencyMs 处理延迟（毫秒）
+     * @param errorMessage 错误信息（可选）
+     * @param queryType 处理器类型（为空时不更新）
+     * @param routeTarget 路由目标（为空时不更新）
+     * @return 是否更新成功
+     */
+    boolean updateStatus(Long id, String status, LocalDateTime completeTime, Long latencyMs, String errorMessage,
+                         String queryType, String routeTarget);
+
     /**
      * 根据时间范围查找查询
      *
@@ -109,4 +125,13 @@ public interface IQueryRepository {
      */
     Map<String, Long> countByStatus(LocalDateTime startTime, LocalDateTime endTime);
 
+    /**
+     * 查找指定路由目标前缀的最近路由结果
+     *
+     * @param routeTargetPrefix 路由目标前缀
+     * @param limit 限制数量
+     * @return 路由结果列表，按查询ID倒序
+     */
+    List<RoutingOutcome> findRoutingOutcomes(String routeTargetPrefix, int limit);
+
 }
@@ -23,6 +23,21 @@ public interface IResponseRepository {
      */
     Response save(Response response);
 
+    /**
+     * 预分配响应ID（取自响应表的ID序列），供落库前即需返回ID的场景使用
+     *
+     * @return 新的响应ID
+     */
+    Long nextId();
+
+    /**
+     * 插入响应；已预分配ID时按该ID插入，否则由数据库生成并回填
+     *
+     * @param response 响应对象
+     * @return 插入后的响应（包含ID）
+     */
+    Response insert(Response response);
+
     /**
      * 根据ID查找响应
      *
@@ -2,6 +2,8 @@ package cn.cug.sxy.ai.domain.rag.service;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RagStreamEvent;
+import reactor.core.publisher.Flux;
 
 import java.util.Map;
 
@@ -35,4 +37,15 @@ public interface IRagOrchestrationService {
      */
     Response processQuery(String queryText, String userId, String sessionId, QueryParams params);
 
+    /**
+     * 流式处理查询请求：先发送检索来源，再逐段发送生成的回答，最后发送统计信息
+     *
+     * @param queryText 原始查询文本
+     * @param userId 用户ID
+     * @param sessionId 会话ID
+     * @param params 高级参数
+     * @return 流式事件
+     */
+    Flux<RagStreamEvent> streamQuery(String queryText, String userId, String sessionId, QueryParams params);
+
 }
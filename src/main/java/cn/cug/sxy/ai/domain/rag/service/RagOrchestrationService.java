@@ -3,9 +3,13 @@ package cn.cug.sxy.ai.domain.rag.service;
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
+import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
 import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
 import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RagStreamEvent;
 import cn.cug.sxy.ai.domain.rag.repository.IQueryRepository;
+import cn.cug.sxy.ai.domain.rag.service.generation.SemanticAnswerCache;
 import cn.cug.sxy.ai.domain.rag.service.intent.ClarificationService;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetectionService;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetector.IntentRequest;
@@ -15,12 +19,22 @@ import cn.cug.sxy.ai.domain.rag.service.orchestration.FallbackManager;
 import cn.cug.sxy.ai.domain.rag.service.orchestration.InternalRagService;
 import cn.cug.sxy.ai.domain.rag.service.orchestration.TaskOrchestrator;
 import cn.cug.sxy.ai.domain.rag.service.query.IQueryProcessor;
+import cn.cug.sxy.ai.domain.rag.service.query.QueryLifecycleWriter;
 import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import cn.cug.sxy.ai.domain.rag.service.routing.AdaptiveQueryRouter;
+import cn.cug.sxy.ai.domain.rag.service.routing.DegradationLevel;
+import cn.cug.sxy.ai.domain.rag.service.routing.LoadBasedQueryRouter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -46,6 +60,10 @@ public class RagOrchestrationService implements IRagOrchestrationService {
     private final TaskOrchestrator taskOrchestrator;
     private final FallbackManager fallbackManager;
     private final InternalRagService internalRagService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final QueryLifecycleWriter lifecycleWriter;
+    private final LoadBasedQueryRouter loadBasedQueryRouter;
+    private final AdaptiveQueryRouter adaptiveQueryRouter;
 
     public RagOrchestrationService(
             List<IQueryProcessor> queryProcessors,
@@ -56,7 +74,11 @@ public class RagOrchestrationService implements IRagOrchestrationService {
             ClarificationService clarificationService,
             TaskOrchestrator taskOrchestrator,
             FallbackManager fallbackManager,
-            InternalRagService internalRagService) {
+            InternalRagService internalRagService,
+            SemanticAnswerCache semanticAnswerCache,
+            QueryLifecycleWriter lifecycleWriter,
+            LoadBasedQueryRouter loadBasedQueryRouter,
+            AdaptiveQueryRouter adaptiveQueryRouter) {
         this.processorMap = queryProcessors.stream()
                 .collect(Collectors.toMap(IQueryProcessor::getType, processor -> processor));
         log.info("已注册{}个查询处理器: {}", processorMap.size(),
@@ -71,6 +93,10 @@ public class RagOrchestrationService implements IRagOrchestrationService {
         this.taskOrchestrator = taskOrchestrator;
         this.fallbackManager = fallbackManager;
         this.internalRagService = internalRagService;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.lifecycleWriter = lifecycleWriter;
+        this.loadBasedQueryRouter = loadBasedQueryRouter;
+        this.adaptiveQueryRouter = adaptiveQueryRouter;
     }
 
     @Override
@@ -81,27 +107,27 @@ public class RagOrchestrationService implements IRagOrchestrationService {
     @Override
     public Response processQuery(String queryText, String userId, String sessionId, QueryParams params) {
         log.info("处理查询请求: {}, 参数: {}", queryText, params);
-        // 1. 创建查询实体
-        Query query = createQuery(queryText, userId, sessionId);
-        QueryParams safeParams = Optional.ofNullable(params).orElseGet(QueryParams::new);
-        // 2. 意图检测
-        QueryIntent intent = intentDetectionService.detect(new IntentRequest(queryText, userId, sessionId, safeParams));
-        if (intent.isRequiresClarification()) {
-            String clarification = clarificationService.buildClarification(query, intent);
-            return buildClarificationResponse(query, clarification);
+        PreparedQuery prepared = prepareQuery(queryText, userId, sessionId, params);
+        if (prepared.clarification() != null) {
+            return prepared.clarification();
+        }
+        Query query = prepared.query();
+        QueryIntent intent = prepared.intent();
+        QueryStrategy strategy = prepared.strategy();
+        if (prepared.cacheHit() != null) {
+            return completeFromCache(query, prepared.cacheHit());
         }
-        // 3. 策略映射
-        QueryStrategy strategy = strategyMapper.map(intent, safeParams);
-        // 4. 查询重构（Step-back / Multi-query / HyDE 等）
-        queryRewriteService.rewrite(query, intent, strategy);
-        query.setQueryType(strategy.getProcessorType().name());
-        query.setRouteTarget(strategy.getRetrieval().getRouter());
-        query.setMetadata(safeParams);
-        log.info("查询[{}] intent={}, processor={}", query.getId(), intent.getTaskType(), strategy.getProcessorType());
         // 5. 如果存在 TaskPlan，则走 TaskOrchestrator 多工具执行流程
         //    TaskPlan 中的任务可以调用 RAG_QUERY 工具（内部检索）或其他工具（MCP等）
-        if (intent.getTaskPlan() != null && intent.getTaskPlan().hasTasks()) {
-            Object result = taskOrchestrator.executePlan(intent.getTaskPlan(), query, strategy);
+        //    负载降级时策略中的 TaskPlan 已被清空，以策略为准
+        if (strategy.getTaskPlan() != null && strategy.getTaskPlan().hasTasks()) {
+            Object result;
+            try {
+                result = taskOrchestrator.executePlan(strategy.getTaskPlan(), query, strategy, prepared.rewrites());
+            } finally {
+                // TaskPlan 不一定调用 RAG_QUERY 工具，计划结束后取消仍未完成的重写
+                prepared.rewrites().cancelUnfinished();
+            }
             if (result instanceof Response response) {
                 return response;
             }
@@ -112,18 +138,137 @@ public class RagOrchestrationService implements IRagOrchestrationService {
         // 6. 默认单处理器流程（简单查询，无需多工具协作）
         //    使用统一的 InternalRagService 执行内部检索，与 TaskPlan 中的 RAG_QUERY 工具逻辑一致
         log.info("执行单处理器流程（内部 RAG 检索）: queryId={}", query.getId());
-        Response response = internalRagService.executeRagQuery(query, strategy);
+        Response response = internalRagService.executeRagQuery(query, strategy, prepared.rewrites());
         
-        // 7. Fallback 降级：如果结果不理想，尝试调整策略重试
+        // 7. Fallback 降级：如果结果不理想，尝试调整策略重试（重写阶段已结束，重试不再合并重写）
         QueryStrategy adjusted = fallbackManager.maybeAdjustStrategy(query, response, strategy);
         if (adjusted != strategy) {
             log.info("策略降级调整: {} -> {}", strategy.getProcessorType(), adjusted.getProcessorType());
             response = internalRagService.executeRagQuery(query, adjusted);
         }
-        
+        // 8. 写入语义回答缓存，供后续同义问题复用
+        semanticAnswerCache.store(queryText, intent.getTaskType(), params, response);
+
         return response;
     }
 
+    /**
+     * 流式处理查询。
+     * 意图检测、策略映射与检索与同步流程一致；检索来源先于回答发送，回答逐段推送。
+     * 已推送的内容无法撤回，因此流式流程不执行 Fallback 策略降级重试。
+     */
+    @Override
+    public Flux<RagStreamEvent> streamQuery(String queryText, String userId, String sessionId, QueryParams params) {
+        return Flux.defer(() -> {
+            log.info("处理流式查询请求: {}, 参数: {}", queryText, params);
+            PreparedQuery prepared = prepareQuery(queryText, userId, sessionId, params);
+            if (prepared.clarification() != null) {
+                Response clarification = prepared.clarification();
+                return Flux.just(
+                        RagStreamEvent.token(clarification.getAnswerText()),
+                        RagStreamEvent.done(Map.of("queryId", clarification.getQueryId(), "status", "CLARIFY")));
+            }
+            Query query = prepared.query();
+            QueryStrategy strategy = prepared.strategy();
+            if (prepared.cacheHit() != null) {
+                Response response = completeFromCache(query, prepared.cacheHit());
+                return Flux.just(
+                        RagStreamEvent.sources(query.getId(), prepared.cacheHit().sources()),
+                        RagStreamEvent.token(response.getAnswerText()),
+                        RagStreamEvent.done(Map.of("queryId", query.getId(), "status", response.getStatus(),
+                                "latencyMs", response.getLatencyMs(), SemanticAnswerCache.METADATA_KEY, true)));
+            }
+            TaskPlan taskPlan = strategy.getTaskPlan();
+            // 多工具 TaskPlan 需要完整执行后才有答案，按一次性结果推送
+            if (taskPlan != null && taskPlan.hasTasks()) {
+                Object result;
+                try {
+                    result = taskOrchestrator.executePlan(taskPlan, query, strategy, prepared.rewrites());
+                } finally {
+                    prepared.rewrites().cancelUnfinished();
+                }
+                if (result instanceof Response response) {
+                    return Flux.just(
+                            RagStreamEvent.token(response.getAnswerText()),
+                            RagStreamEvent.done(Map.of("queryId", query.getId(), "status", String.valueOf(response.getStatus()))));
+                }
+                log.warn("TaskPlan 执行完成但未返回 Response，降级到单处理器流式流程");
+            }
+            return cacheStreamedAnswer(internalRagService.streamRagQuery(query, strategy, prepared.rewrites()),
+                    queryText, prepared.intent(), params);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 透传流式事件并拼接回答；收到完成事件（流正常结束）后写入语义回答缓存。
+     * 出错时处理器发送 ERROR 而非 DONE，客户端断开时不会收到 DONE，两者均不写入。
+     */
+    @SuppressWarnings("unchecked")
+    private Flux<RagStreamEvent> cacheStreamedAnswer(Flux<RagStreamEvent> events, String queryText,
+                                                     QueryIntent intent, QueryParams params) {
+        StringBuilder answer = new StringBuilder();
+        List<List<Map<String, Object>>> sources = new ArrayList<>(1);
+        return events.doOnNext(event -> {
+            switch (event.getType()) {
+                case SOURCES -> {
+                    if (event.getData() instanceof Map<?, ?> data && data.get("sources") instanceof List<?> list) {
+                        sources.add((List<Map<String, Object>>) list);
+                    }
+                }
+                case TOKEN -> answer.append(event.getData());
+                case DONE -> {
+                    if (!sources.isEmpty()) {
+                        semanticAnswerCache.storeStreamed(queryText, intent.getTaskType(), params,
+                                answer.toString(), sources.get(0));
+                    }
+                }
+                default -> {
+                }
+            }
+        });
+    }
+
+    /**
+     * 查询准备：创建查询、意图检测、策略映射并启动查询重写。
+     * 需要澄清时返回澄清响应，不再继续后续流程。
+     */
+    private PreparedQuery prepareQuery(String queryText, String userId, String sessionId, QueryParams params) {
+        // 1. 创建查询实体
+        Query query = createQuery(queryText, userId, sessionId);
+        QueryParams safeParams = Optional.ofNullable(params).orElseGet(QueryParams::new);
+        // 2. 意图检测
+        QueryIntent intent = intentDetectionService.detect(new IntentRequest(queryText, userId, sessionId, safeParams));
+        if (intent.isRequiresClarification()) {
+            String clarification = clarificationService.buildClarification(query, intent);
+            return new PreparedQuery(query, intent, null, QueryRewrites.none(), buildClarificationResponse(query, clarification), null);
+        }
+        // 3. 策略映射
+        QueryStrategy strategy = strategyMapper.map(intent, safeParams);
+        // 3.1. 负载降级：按系统负载关闭评估 / 重写 / TaskPlan 并限制候选倍数
+        DegradationLevel level = loadBasedQueryRouter.degrade(strategy, safeParams);
+        // 3.2. 语义回答缓存：不需要多工具协作的查询，同义问题直接复用已完成的回答，跳过重写、检索与生成
+        if (strategy.getTaskPlan() == null || !strategy.getTaskPlan().hasTasks()) {
+            Optional<SemanticAnswerCache.Hit> hit = semanticAnswerCache.lookup(queryText, intent.getTaskType(), safeParams);
+            if (hit.isPresent()) {
+                return new PreparedQuery(query, intent, strategy, QueryRewrites.none(), null, hit.get());
+            }
+        }
+        // 3.3. 自适应路由：按历史结果为该类查询选择重写方式与候选倍数（负载降级期间不参与）
+        AdaptiveQueryRouter.Decision routed = level == DegradationLevel.NORMAL
+                ? adaptiveQueryRouter.select(query, intent, strategy, safeParams)
+                : null;
+        // 4. 查询重构（Step-back / Multi-query / HyDE 等）：并发启动，不阻塞；检索阶段先检索原始查询，再合并陆续到达的重写结果
+        //    进行中的重写只随本次请求传递，检索阶段截止时未完成的重写被取消
+        QueryRewrites rewrites = level.isRewriteEnabled()
+                ? queryRewriteService.rewriteAsync(query, intent, strategy)
+                : QueryRewrites.none();
+        query.setQueryType(strategy.getProcessorType().name());
+        query.setRouteTarget(routed != null ? routed.routeTarget() : strategy.getRetrieval().getRouter());
+        query.setMetadata(safeParams);
+        log.info("查询[{}] intent={}, processor={}, load={}", query.getId(), intent.getTaskType(), strategy.getProcessorType(), level);
+        return new PreparedQuery(query, intent, strategy, rewrites, null, null);
+    }
+
     /**
      * 创建并保存查询实体
      *
@@ -158,4 +303,36 @@ public class RagOrchestrationService implements IRagOrchestrationService {
         response.setAnswerText(clarification);
         return response;
     }
+
+    /**
+     * 以语义缓存命中的回答完成查询，响应与查询最终状态异步落库。
+     */
+    private Response completeFromCache(Query query, SemanticAnswerCache.Hit hit) {
+        LocalDateTime now = LocalDateTime.now();
+        long latencyMs = Duration.between(query.getCreateTime(), now).toMillis();
+        Response response = new Response();
+        response.setQueryId(query.getId());
+        response.setSessionId(query.getSessionId());
+        response.setStatus("COMPLETED");
+        response.setAnswerText(hit.answer());
+        response.setContextSources(hit.contextSources());
+        response.setCreateTime(query.getCreateTime());
+        response.setCompleteTime(now);
+        response.setLatencyMs(latencyMs);
+        Map<String, Object> cacheInfo = new LinkedHashMap<>();
+        cacheInfo.put("similarity", hit.similarity());
+        cacheInfo.put("sourceResponseId", hit.sourceResponseId());
+        cacheInfo.put("matchedQuery", hit.matchedQuery());
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(SemanticAnswerCache.METADATA_KEY, cacheInfo);
+        response.setMetadata(metadata);
+        query.setStatus("COMPLETED");
+        query.setLatencyMs(latencyMs);
+        lifecycleWriter.complete(query, response, null);
+        return response;
+    }
+
+    private record PreparedQuery(Query query, QueryIntent intent, QueryStrategy strategy, QueryRewrites rewrites,
+                                 Response clarification, SemanticAnswerCache.Hit cacheHit) {
+    }
 }
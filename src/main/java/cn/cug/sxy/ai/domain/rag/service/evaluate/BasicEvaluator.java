@@ -2,9 +2,10 @@ package cn.cug.sxy.ai.domain.rag.service.evaluate;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
@@ -27,11 +28,11 @@ import java.util.Map;
 @Service("basicEvaluator")
 public class BasicEvaluator implements IEvaluator {
 
-    private final ChatClient chatClient;
+    private final ChatGateway chatGateway;
     private final ObjectMapper objectMapper;
 
-    public BasicEvaluator(ChatClient chatClient, ObjectMapper objectMapper) {
-        this.chatClient = chatClient;
+    public BasicEvaluator(ChatGateway chatGateway, ObjectMapper objectMapper) {
+        this.chatGateway = chatGateway;
         this.objectMapper = objectMapper;
     }
 
@@ -94,8 +95,8 @@ public class BasicEvaluator implements IEvaluator {
             messages.add(new SystemMessage("你是一个专业的RAG系统评估专家。"));
             messages.add(new UserMessage(promptText));
             Prompt prompt = new Prompt(messages);
-            // 使用ChatClient评估
-            String evaluationResult = chatClient.prompt(prompt).call().content();
+            // 经模型网关评估（独立并发配额，不挤占回答生成）
+            String evaluationResult = chatGateway.call(LlmPurpose.EVALUATION, prompt);
             // 解析JSON结果
             @SuppressWarnings("unchecked")
             Map<String, Object> resultMap = objectMapper.readValue(evaluationResult, Map.class);
@@ -0,0 +1,265 @@
+package cn.cug.sxy.ai.domain.rag.service.evaluate;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.model.strategy.EvaluationStrategy;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryOutcomeEvent;
+import cn.cug.sxy.ai.domain.rag.repository.IResponseRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步抽样评估队列。
+ * <p>
+ * 回答评估是一次携带完整上下文的LLM调用，同步执行会使延迟与Token开销近乎翻倍。
+ * 本队列将评估移出请求路径：
+ * 1. 按意图策略（EvaluationStrategy.enabled）决定是否参与评估
+ * 2. 按采样率抽样，控制评估成本
+ * 3. 有界队列 + 后台工作线程执行评估，队列满时丢弃（评估是尽力而为的）
+ * 4. 评估完成后将分数回写到已持久化的响应，并发布评估完成事件
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class EvaluationQueue {
+
+    /**
+     * 响应元数据中记录评估状态的键
+     */
+    public static final String METADATA_KEY = "evaluation";
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_DISABLED = "DISABLED";
+    public static final String STATUS_SAMPLED_OUT = "SAMPLED_OUT";
+
+    private final IEvaluator evaluator;
+    private final IResponseRepository responseRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${rag.evaluation.async.sample-rate:0.2}")
+    private double sampleRate; // 启用评估的意图中被抽样评估的比例（0-1）
+
+    @Value("${rag.evaluation.async.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${rag.evaluation.async.workers:2}")
+    private int workers;
+
+    private BlockingQueue<EvaluationTask> queue;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong disabled = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public EvaluationQueue(IEvaluator evaluator,
+                           IResponseRepository responseRepository,
+                           ObjectMapper objectMapper,
+                           ApplicationEventPublisher eventPublisher) {
+        this.evaluator = evaluator;
+        this.responseRepository = responseRepository;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        running = true;
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            Thread worker = new Thread(this::runWorker, "rag-evaluator-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workerThreads.add(worker);
+        }
+        log.info("异步评估队列已启动，采样率: {}, 队列容量: {}, 工作线程: {}", sampleRate, queueCapacity, workerThreads.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        int pending = queue != null ? queue.size() : 0;
+        log.info("异步评估队列已停止，未执行的评估任务: {}，统计: {}", pending, getStats());
+    }
+
+    /**
+     * 按意图策略与采样率决定是否评估。
+     * 返回评估状态（写入响应元数据，便于区分"未评估"与"评估中"）；返回 QUEUED 时调用方应在响应落库后调用 {@link #enqueue}。
+     *
+     * @param policy 意图对应的评估策略
+     * @return 评估状态：QUEUED / DISABLED / SAMPLED_OUT
+     */
+    public String admit(EvaluationStrategy policy) {
+        if (policy == null || !policy.isEnabled()) {
+            disabled.incrementAndGet();
+            return STATUS_DISABLED;
+        }
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.incrementAndGet();
+            return STATUS_SAMPLED_OUT;
+        }
+        return STATUS_QUEUED;
+    }
+
+    /**
+     * 将已持久化的响应加入评估队列。
+     *
+     * @param query    查询（评估使用原始问题）
+     * @param response 已持久化的响应（必须有ID，分数按ID回写）
+     * @return 是否入队成功（队列满或响应未持久化时返回 false）
+     */
+    public boolean enqueue(Query query, Response response) {
+        if (response.getId() == null) {
+            dropped.incrementAndGet();
+            log.debug("响应未持久化，跳过评估 queryId={}", query.getId());
+            return false;
+        }
+        EvaluationTask task = new EvaluationTask(
+                Query.builder().id(query.getId()).originalText(query.getOriginalText()).build(),
+                response.getId());
+        // 在事务中提交时延迟到提交后入队，保证工作线程能读到已提交的响应
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(task);
+                }
+            });
+            return true;
+        }
+        return enqueue(task);
+    }
+
+    private boolean enqueue(EvaluationTask task) {
+        if (!queue.offer(task)) {
+            dropped.incrementAndGet();
+            log.debug("评估队列已满，丢弃评估任务 responseId={}", task.responseId());
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    public EvaluationStats getStats() {
+        return EvaluationStats.builder()
+                .sampleRate(sampleRate)
+                .pending(queue != null ? queue.size() : 0)
+                .submitted(submitted.get())
+                .disabled(disabled.get())
+                .sampledOut(sampledOut.get())
+                .dropped(dropped.get())
+                .completed(completed.get())
+                .failed(failed.get())
+                .build();
+    }
+
+    private void runWorker() {
+        while (running) {
+            EvaluationTask task;
+            try {
+                task = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task != null) {
+                evaluate(task);
+            }
+        }
+    }
+
+    /**
+     * 执行评估并回写分数：重新读取已持久化的响应，避免与请求线程共享对象。
+     */
+    private void evaluate(EvaluationTask task) {
+        try {
+            Response response = responseRepository.findById(task.responseId()).orElse(null);
+            if (response == null) {
+                log.debug("待评估响应不存在 responseId={}", task.responseId());
+                return;
+            }
+            Map<String, Object> result = evaluator.evaluate(task.query(), response);
+            response.setFaithfulnessScore(toScore(result.get("faithfulness")));
+            response.setRelevanceScore(toScore(result.get("relevance")));
+            try {
+                response.setEvaluationMetrics(objectMapper.writeValueAsString(result));
+            } catch (JsonProcessingException e) {
+                response.setEvaluationMetrics("{}");
+            }
+            if (response.getMetadata() != null) {
+                response.getMetadata().put(METADATA_KEY, result.containsKey("error") ? "FAILED" : "COMPLETED");
+            }
+            responseRepository.save(response);
+            completed.incrementAndGet();
+            if (!result.containsKey("error")) {
+                eventPublisher.publishEvent(new QueryOutcomeEvent(this, task.query().getId(), response,
+                        QueryOutcomeEvent.Stage.EVALUATED));
+            }
+            log.debug("异步评估完成 queryId={}, responseId={}, faithfulness={}, relevance={}",
+                    task.query().getId(), task.responseId(), response.getFaithfulnessScore(), response.getRelevanceScore());
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("异步评估失败 responseId={}: {}", task.responseId(), e.getMessage());
+        }
+    }
+
+    private static Integer toScore(Object value) {
+        if (value instanceof Number number) {
+            return (int) Math.round(number.doubleValue());
+        }
+        try {
+            return value != null ? (int) Math.round(Double.parseDouble(value.toString())) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private record EvaluationTask(Query query, Long responseId) {
+    }
+
+    /**
+     * 评估队列统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EvaluationStats {
+        private double sampleRate;
+        private int pending;
+        private long submitted;
+        private long disabled;
+        private long sampledOut;
+        private long dropped;
+        private long completed;
+        private long failed;
+    }
+}
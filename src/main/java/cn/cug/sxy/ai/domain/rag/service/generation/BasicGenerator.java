@@ -1,16 +1,17 @@
 package cn.cug.sxy.ai.domain.rag.service.generation;
 
 import cn.cug.sxy.ai.domain.rag.model.valobj.GenerateParams;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.DefaultChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.SystemPromptTemplate;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -28,13 +29,21 @@ import java.util.Map;
 @Service("basicGenerator")
 public class BasicGenerator implements IGenerator {
 
-    private final ChatClient chatClient;
+    /**
+     * 生成失败时返回的回答前缀（此类回答不进入生成缓存）
+     */
+    public static final String ERROR_ANSWER_PREFIX = "抱歉，生成回答时出现技术故障。";
+
+    private final ChatGateway chatGateway;
 
-    public BasicGenerator(ChatClient chatClient) {
-        this.chatClient = chatClient;
+    public BasicGenerator(ChatGateway chatGateway) {
+        this.chatGateway = chatGateway;
     }
 
-    private static final String SYSTEM_PROMPT_TEMPLATE =
+    /**
+     * 系统提示模板（上下文打包时计入Token预算）
+     */
+    static final String SYSTEM_PROMPT_TEMPLATE =
             """
                     你是一个专业的AI助手，负责基于提供的上下文信息回答用户问题。
                     
@@ -50,24 +59,33 @@ public class BasicGenerator implements IGenerator {
                     """;
 
     @Override
-    //@Cacheable(value = "generationCache", key = "{#query, #contexts.hashCode()}", unless = "#result == null")
     public String generate(String query, List<String> contexts, GenerateParams params) {
         log.info("生成查询回答, 查询长度: {}, 上下文数量: {}", query.length(), contexts.size());
         try {
-            // 合并上下文
+            // 上下文已由 ContextPacker 按Token预算打包
             String mergedContext = String.join("\n\n", contexts);
             // 准备系统提示和用户消息
             List<Message> messages = getMessages(query, mergedContext);
             // 创建提示
             Prompt prompt = new Prompt(messages, extractChatOptions(params));
             // 发送到模型生成回答
-            return chatClient.prompt(prompt).call().content();
+            return chatGateway.call(LlmPurpose.GENERATION, prompt);
         } catch (Exception e) {
             log.error("生成回答过程中发生错误", e);
-            return "抱歉，生成回答时出现技术故障。" + e.getMessage();
+            return ERROR_ANSWER_PREFIX + e.getMessage();
         }
     }
 
+    @Override
+    public Flux<String> generateStream(String query, List<String> contexts, GenerateParams params) {
+        log.info("流式生成查询回答, 查询长度: {}, 上下文数量: {}", query.length(), contexts.size());
+        return Flux.defer(() -> {
+            String mergedContext = String.join("\n\n", contexts);
+            Prompt prompt = new Prompt(getMessages(query, mergedContext), extractChatOptions(params));
+            return chatGateway.stream(LlmPurpose.GENERATION, prompt);
+        }).filter(token -> token != null && !token.isEmpty());
+    }
+
     private static List<Message> getMessages(String query, String mergedContext) {
         Map<String, Object> systemVariables = new HashMap<>();
         systemVariables.put("context", mergedContext);
@@ -0,0 +1,347 @@
+package cn.cug.sxy.ai.domain.rag.service.generation;
+
+import cn.cug.sxy.ai.domain.rag.model.valobj.GenerateParams;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.TokenCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按Token预算打包检索上下文。
+ * <p>
+ * 检索阶段会为命中块补充相邻块（邻域窗口），相邻块之间存在分块重叠，逐块拼接会把重叠文本重复放入提示词。
+ * 打包流程：
+ * 1. 按分块ID去重
+ * 2. 同一文档内按块序排列，相邻或位置重叠的块合并为一个片段，去除重叠文本（优先按字符位置，位置不可靠时按文本后缀/前缀匹配）
+ * 3. 片段分数取成员块的最高分，按分数降序贪心放入Token预算；放不下的片段跳过，剩余预算足够时截断放入
+ * <p>
+ * 预算 = min(生成策略的上下文预算, 模型上下文窗口 - 最大输出 - 系统提示 - 用户问题 - 预留)。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class ContextPacker {
+
+    private final TokenCounter tokenCounter;
+
+    /**
+     * 默认模型上下文窗口（Token）
+     */
+    @Value("${rag.generation.context-window-tokens:32768}")
+    private int contextWindowTokens;
+
+    /**
+     * 按模型覆盖的上下文窗口，如 {'gpt-3.5-turbo': 16385}
+     */
+    @Value("#{${rag.generation.model-context-windows:{:}}}")
+    private Map<String, Integer> modelContextWindows;
+
+    /**
+     * 为消息格式、角色标记等预留的Token
+     */
+    @Value("${rag.generation.prompt-reserve-tokens:256}")
+    private int promptReserveTokens;
+
+    @Value("${rag.generation.max-tokens:1024}")
+    private int defaultMaxTokens;
+
+    /**
+     * 文本匹配识别重叠时的最短重叠长度（字符），避免偶然相同的短后缀被误判为重叠
+     */
+    @Value("${rag.generation.packing.min-overlap-chars:16}")
+    private int minOverlapChars;
+
+    /**
+     * 文本匹配识别重叠时检查的最大长度（字符）
+     */
+    @Value("${rag.generation.packing.max-overlap-chars:1000}")
+    private int maxOverlapChars;
+
+    /**
+     * 片段放不下时，剩余预算不少于该值才截断放入
+     */
+    @Value("${rag.generation.packing.min-partial-tokens:64}")
+    private int minPartialTokens;
+
+    public ContextPacker(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+
+    /**
+     * 打包上下文。
+     *
+     * @param query    用户问题（计入预算）
+     * @param contexts 检索结果（content、documentId、chunkIndex、startPosition、endPosition、score）
+     * @param params   生成参数（模型、最大输出、上下文预算）
+     * @return 打包结果
+     */
+    public PackedContexts pack(String query, List<Map<String, Object>> contexts, GenerateParams params) {
+        int budget = resolveBudget(query, params);
+        PackingStats stats = new PackingStats();
+        stats.budget = budget;
+        List<Span> spans = mergeSpans(contexts, stats);
+
+        List<Span> ranked = new ArrayList<>(spans);
+        ranked.sort(Comparator.comparingDouble(Span::score).reversed());
+        List<String> texts = new ArrayList<>(ranked.size());
+        int used = 0;
+        for (Span span : ranked) {
+            int tokens = tokenCounter.count(span.text()) + 1;
+            if (used + tokens <= budget) {
+                texts.add(span.text());
+                used += tokens;
+                continue;
+            }
+            int remaining = budget - used - 1;
+            if (remaining >= minPartialTokens || (texts.isEmpty() && remaining > 0)) {
+                texts.add(tokenCounter.truncate(span.text(), remaining));
+                used = budget;
+                stats.truncatedSpans++;
+            } else {
+                stats.droppedSpans++;
+            }
+        }
+        stats.packedTokens = used;
+        if (stats.droppedSpans > 0 || stats.truncatedSpans > 0) {
+            log.info("上下文超出Token预算: 预算={}, 保留片段={}/{}, 截断={}", budget, texts.size() - stats.truncatedSpans,
+                    spans.size(), stats.truncatedSpans);
+        }
+        log.debug("上下文打包完成: {}", stats.toMap());
+        return new PackedContexts(texts, stats.toMap());
+    }
+
+    private int resolveBudget(String query, GenerateParams params) {
+        int maxOutput = params != null && params.getMaxTokens() != null ? params.getMaxTokens() : defaultMaxTokens;
+        String model = params != null ? params.getModel() : null;
+        int window = model != null && modelContextWindows != null && modelContextWindows.containsKey(model)
+                ? modelContextWindows.get(model) : contextWindowTokens;
+        int windowBudget = window - maxOutput - promptReserveTokens
+                - tokenCounter.count(BasicGenerator.SYSTEM_PROMPT_TEMPLATE) - tokenCounter.count(query);
+        Integer strategyBudget = params != null ? params.getContextTokenBudget() : null;
+        int budget = strategyBudget != null && strategyBudget > 0 ? Math.min(strategyBudget, windowBudget) : windowBudget;
+        return Math.max(0, budget);
+    }
+
+    /**
+     * 去重并合并同一文档内相邻/重叠的块；片段按首个成员在检索结果中的顺序输出。
+     */
+    private List<Span> mergeSpans(List<Map<String, Object>> contexts, PackingStats stats) {
+        Set<Object> seenIds = new HashSet<>();
+        Map<Object, List<Chunk>> byDocument = new LinkedHashMap<>();
+        int order = 0;
+        for (Map<String, Object> ctx : contexts) {
+            String content = (String) ctx.get("content");
+            if (content == null || content.isBlank()) {
+                continue;
+            }
+            stats.inputChunks++;
+            stats.inputTokens += tokenCounter.count(content) + 1;
+            Object id = ctx.get("id");
+            if (id != null && !seenIds.add(id)) {
+                stats.duplicateChunks++;
+                continue;
+            }
+            Object documentId = ctx.get("documentId");
+            Chunk chunk = new Chunk(content, intValue(ctx.get("chunkIndex")), intValue(ctx.get("startPosition")),
+                    intValue(ctx.get("endPosition")), score(ctx), order++);
+            // 缺少文档ID的块不参与合并
+            byDocument.computeIfAbsent(documentId != null ? documentId : new Object(), k -> new ArrayList<>()).add(chunk);
+        }
+
+        List<Span> spans = new ArrayList<>();
+        for (List<Chunk> chunks : byDocument.values()) {
+            chunks.sort(Comparator.comparingInt((Chunk c) -> c.chunkIndex() != null ? c.chunkIndex() : Integer.MAX_VALUE)
+                    .thenComparingInt(c -> c.start() != null ? c.start() : Integer.MAX_VALUE));
+            SpanBuilder current = null;
+            for (Chunk chunk : chunks) {
+                if (current != null && current.isAdjacent(chunk)) {
+                    current.append(chunk, stats);
+                } else {
+                    if (current != null) {
+                        spans.add(current.build());
+                    }
+                    current = new SpanBuilder(chunk);
+                }
+            }
+            if (current != null) {
+                spans.add(current.build());
+            }
+        }
+        spans.sort(Comparator.comparingInt(Span::order));
+        stats.spans = spans.size();
+        return spans;
+    }
+
+    /**
+     * a 的最长后缀同时是 b 的前缀的长度（KMP前缀函数，线性时间），不超过 maxLength。
+     */
+    public static int suffixPrefixOverlap(String a, String b, int maxLength) {
+        int limit = Math.min(maxLength, Math.min(a.length(), b.length()));
+        if (limit <= 0) {
+            return 0;
+        }
+        String pattern = b.substring(0, limit);
+        String text = a.substring(a.length() - limit);
+        int[] prefix = new int[limit];
+        for (int i = 1, k = 0; i < limit; i++) {
+            while (k > 0 && pattern.charAt(i) != pattern.charAt(k)) {
+                k = prefix[k - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(k)) {
+                k++;
+            }
+            prefix[i] = k;
+        }
+        int matched = 0;
+        for (int i = 0; i < text.length(); i++) {
+            while (matched > 0 && (matched == limit || text.charAt(i) != pattern.charAt(matched))) {
+                matched = prefix[matched - 1];
+            }
+            if (text.charAt(i) == pattern.charAt(matched)) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static Integer intValue(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        try {
+            return value != null ? Integer.parseInt(value.toString()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double score(Map<String, Object> ctx) {
+        Object s = ctx.get("score");
+        return s instanceof Number number ? number.doubleValue() : 0.0;
+    }
+
+    private record Chunk(String content, Integer chunkIndex, Integer start, Integer end, double score, int order) {
+
+        boolean hasPositions() {
+            return start != null && end != null && start >= 0 && end > start;
+        }
+    }
+
+    private record Span(String text, double score, int order) {
+    }
+
+    private final class SpanBuilder {
+
+        private final StringBuilder text;
+        private Chunk last;
+        private Integer end;
+        private double score;
+        private int order;
+
+        private SpanBuilder(Chunk first) {
+            this.text = new StringBuilder(first.content());
+            this.last = first;
+            this.end = first.hasPositions() ? first.end() : null;
+            this.score = first.score();
+            this.order = first.order();
+        }
+
+        /**
+         * 块序相邻，或字符位置与当前片段衔接/重叠
+         */
+        private boolean isAdjacent(Chunk next) {
+            if (last.chunkIndex() != null && next.chunkIndex() != null && next.chunkIndex() - last.chunkIndex() == 1) {
+                return true;
+            }
+            return end != null && next.hasPositions() && next.start() <= end;
+        }
+
+        private void append(Chunk next, PackingStats stats) {
+            String content = next.content();
+            int overlap = positionalOverlap(next);
+            if (overlap < 0) {
+                int textual = suffixPrefixOverlap(text.toString(), content, maxOverlapChars);
+                overlap = textual >= minOverlapChars ? textual : 0;
+            }
+            if (overlap >= content.length()) {
+                // 完全包含在当前片段中
+                stats.overlapCharsRemoved += content.length();
+            } else {
+                if (overlap == 0) {
+                    text.append('\n');
+                }
+                text.append(content, overlap, content.length());
+                stats.overlapCharsRemoved += overlap;
+            }
+            stats.mergedChunks++;
+            score = Math.max(score, next.score());
+            order = Math.min(order, next.order());
+            if (next.hasPositions()) {
+                end = end != null ? Math.max(end, next.end()) : next.end();
+            }
+            last = next;
+        }
+
+        /**
+         * 按字符位置计算重叠，并校验文本确实一致；无法确定时返回 -1
+         */
+        private int positionalOverlap(Chunk next) {
+            if (end == null || !next.hasPositions() || next.start() >= end) {
+                return end != null && next.hasPositions() ? 0 : -1;
+            }
+            int overlap = Math.min(end - next.start(), next.content().length());
+            String head = next.content().substring(0, overlap);
+            return text.length() >= overlap && text.indexOf(head, text.length() - overlap) == text.length() - overlap ? overlap : -1;
+        }
+
+        private Span build() {
+            return new Span(text.toString(), score, order);
+        }
+    }
+
+    private static final class PackingStats {
+        private int inputChunks;
+        private int duplicateChunks;
+        private int mergedChunks;
+        private int spans;
+        private long overlapCharsRemoved;
+        private int inputTokens;
+        private int packedTokens;
+        private int budget;
+        private int droppedSpans;
+        private int truncatedSpans;
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("inputChunks", inputChunks);
+            map.put("duplicateChunks", duplicateChunks);
+            map.put("mergedChunks", mergedChunks);
+            map.put("spans", spans);
+            map.put("overlapCharsRemoved", overlapCharsRemoved);
+            map.put("inputTokens", inputTokens);
+            map.put("packedTokens", packedTokens);
+            map.put("budget", budget);
+            map.put("droppedSpans", droppedSpans);
+            map.put("truncatedSpans", truncatedSpans);
+            return map;
+        }
+    }
+
+    /**
+     * 打包结果。
+     *
+     * @param texts 放入提示词的上下文片段（按分数降序）
+     * @param stats 打包统计（输入/输出Token、合并块数、去除的重叠字符数等）
+     */
+    public record PackedContexts(List<String> texts, Map<String, Object> stats) {
+    }
+}
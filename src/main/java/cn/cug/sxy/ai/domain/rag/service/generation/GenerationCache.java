@@ -0,0 +1,232 @@
+package cn.cug.sxy.ai.domain.rag.service.generation;
+
+import cn.cug.sxy.ai.domain.rag.model.valobj.DocumentChunkChangedEvent;
+import cn.cug.sxy.ai.domain.rag.model.valobj.GenerateParams;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生成结果精确匹配缓存。
+ * <p>
+ * 热门问题每天从相同的块生成相同的回答，命中缓存时跳过模型调用。
+ * 缓存键 = SHA-256(规范化问题, 按检索顺序排列的块ID与块内容版本, 模型, 温度, 最大输出, 上下文预算)：
+ * 块内容版本取块内容的哈希，块被重新索引后检索结果中的内容变化，旧条目自然无法命中，命中结果始终与当前索引一致。
+ * <p>
+ * 存储结构：
+ * 1. Redis 字符串键 rag:cache:generation::{fingerprint} -> 回答（带TTL）
+ * 2. Redis 集合 rag:cache:generation-chunk:{chunkId} -> 引用该块的缓存键，块重新索引或删除时据此主动删除条目
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class GenerationCache {
+
+    private static final String ENTRY_KEY_PREFIX = "rag:cache:generation::";
+    private static final String CHUNK_INDEX_KEY_PREFIX = "rag:cache:generation-chunk:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${rag.generation.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.generation.cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public GenerationCache(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 计算缓存指纹。
+     *
+     * @param query    用户问题
+     * @param contexts 检索结果（按检索顺序，需包含 id 与 content）
+     * @param params   生成参数
+     * @return 指纹；禁用缓存或检索结果缺少块ID时返回 null（不参与缓存）
+     */
+    public Fingerprint fingerprint(String query, List<Map<String, Object>> contexts, GenerateParams params) {
+        if (!enabled || query == null) {
+            return null;
+        }
+        StringBuilder material = new StringBuilder(256);
+        material.append(normalize(query)).append('\n');
+        List<Long> chunkIds = new ArrayList<>(contexts.size());
+        for (Map<String, Object> ctx : contexts) {
+            if (!(ctx.get("id") instanceof Number id)) {
+                return null;
+            }
+            String content = ctx.get("content") instanceof String text ? text : "";
+            chunkIds.add(id.longValue());
+            material.append(id.longValue()).append(':').append(sha256(content)).append(';');
+        }
+        material.append('\n')
+                .append(params.getModel()).append('|')
+                .append(params.getTemperature()).append('|')
+                .append(params.getMaxTokens()).append('|')
+                .append(params.getContextTokenBudget());
+        return new Fingerprint(ENTRY_KEY_PREFIX + sha256(material.toString()), chunkIds);
+    }
+
+    /**
+     * 查找缓存的回答。Redis 不可用时视为未命中。
+     */
+    public Optional<String> get(Fingerprint fingerprint) {
+        if (fingerprint == null) {
+            return Optional.empty();
+        }
+        lookups.incrementAndGet();
+        try {
+            Object value = redisTemplate.opsForValue().get(fingerprint.key());
+            if (value instanceof String answer) {
+                hits.incrementAndGet();
+                return Optional.of(answer);
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.debug("读取生成缓存失败: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 缓存回答，并在每个引用块的反向索引中登记缓存键。
+     */
+    public void put(Fingerprint fingerprint, String answer) {
+        if (fingerprint == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        try {
+            redisTemplate.opsForValue().set(fingerprint.key(), answer, ttl);
+            for (Long chunkId : fingerprint.chunkIds()) {
+                String indexKey = CHUNK_INDEX_KEY_PREFIX + chunkId;
+                redisTemplate.opsForSet().add(indexKey, fingerprint.key());
+                redisTemplate.expire(indexKey, ttl);
+            }
+            stores.incrementAndGet();
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.debug("写入生成缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 块被重新索引或删除时，删除引用这些块的缓存条目。
+     */
+    @EventListener
+    public void onChunkChanged(DocumentChunkChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        int removed = 0;
+        try {
+            for (Long chunkId : event.getChunkIds()) {
+                String indexKey = CHUNK_INDEX_KEY_PREFIX + chunkId;
+                Set<Object> keys = redisTemplate.opsForSet().members(indexKey);
+                if (keys != null && !keys.isEmpty()) {
+                    List<String> entryKeys = keys.stream().map(String::valueOf).toList();
+                    Long deleted = redisTemplate.delete(entryKeys);
+                    removed += deleted != null ? deleted.intValue() : 0;
+                    redisTemplate.delete(indexKey);
+                }
+            }
+        } catch (Exception e) {
+            // 条目键包含块内容版本，主动删除失败时旧条目也不会被命中，只是要等TTL过期才释放
+            errors.incrementAndGet();
+            log.warn("生成缓存失效失败，块数: {}: {}", event.getChunkIds().size(), e.getMessage());
+        }
+        if (removed > 0) {
+            invalidated.addAndGet(removed);
+            log.info("文档块{}，已失效生成缓存条目: {}，块数: {}", event.getChangeType() == DocumentChunkChangedEvent.ChangeType.DELETED
+                    ? "删除" : "重新索引", removed, event.getChunkIds().size());
+        }
+    }
+
+    public CacheStats getStats() {
+        long lookupCount = lookups.get();
+        long hitCount = hits.get();
+        return CacheStats.builder()
+                .enabled(enabled)
+                .lookups(lookupCount)
+                .hits(hitCount)
+                .hitRate(lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount)
+                .stores(stores.get())
+                .invalidated(invalidated.get())
+                .errors(errors.get())
+                .build();
+    }
+
+    /**
+     * 问题规范化：全角/半角统一（NFKC）、小写、合并空白、去除首尾标点与空白。
+     */
+    static String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .strip();
+        return normalized.replaceAll("^[\\p{Punct}\\p{IsPunctuation}\\s]+|[\\p{Punct}\\p{IsPunctuation}\\s]+$", "");
+    }
+
+    /**
+     * 内容版本摘要（SHA-256 十六进制），语义回答缓存以同一摘要校验源块版本。
+     */
+    static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 缓存指纹：条目键与引用的块ID。
+     */
+    public record Fingerprint(String key, List<Long> chunkIds) {
+    }
+
+    /**
+     * 生成缓存统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheStats {
+        private boolean enabled;
+        private long lookups;
+        private long hits;
+        private double hitRate;
+        private long stores;
+        private long invalidated;
+        private long errors;
+    }
+}
@@ -2,6 +2,8 @@ package cn.cug.sxy.ai.domain.rag.service.generation;
 
 import cn.cug.sxy.ai.domain.rag.model.valobj.GenerateParams;
 
+import reactor.core.publisher.Flux;
+
 import java.util.List;
 
 /**
@@ -23,4 +25,16 @@ public interface IGenerator {
      */
     String generate(String query, List<String> contexts, GenerateParams params);
 
+    /**
+     * 流式生成回答，按模型输出顺序逐段返回文本
+     *
+     * @param query    查询文本
+     * @param contexts 相关上下文列表
+     * @param params   生成参数
+     * @return 回答文本片段流
+     */
+    default Flux<String> generateStream(String query, List<String> contexts, GenerateParams params) {
+        return Flux.defer(() -> Flux.just(generate(query, contexts, params)));
+    }
+
 }
@@ -0,0 +1,401 @@
+package cn.cug.sxy.ai.domain.rag.service.generation;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.DocumentChunk;
+import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
+import cn.cug.sxy.ai.domain.rag.model.valobj.DocumentChunkChangedEvent;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.repository.IDocumentChunkRepository;
+import cn.cug.sxy.ai.infrastructure.cache.LshVectorIndex;
+import cn.cug.sxy.ai.infrastructure.embedding.IEmbeddingService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 语义回答缓存：改写过的同义问题直接复用已完成的回答，跳过检索与生成。
+ * <p>
+ * 1. 以问题向量在同一分区（意图任务类型 + 检索索引 + 生成模型）的LSH近似最近邻索引中查找，
+ *    相似度不低于该任务类型的阈值才视为命中；不同索引或模型的回答互不复用
+ * 2. 命中后校验回答引用的源块仍是当前版本（块存在且内容SHA-256摘要一致），任一源块变化则丢弃条目
+ * 3. 源块重新索引或删除时按反向索引主动删除条目；条目数超限时淘汰最早写入的条目，超过TTL的条目在命中时丢弃
+ * 4. 同步与流式回答都会写入：流式回答在正常结束（收到完成事件）后写入，失败或中途断开的回答不写入
+ * <p>
+ * 时效性强的任务类型（订单、天气、闲聊等）通过 exclude-task-types 排除，不参与缓存。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    /**
+     * 响应元数据中标记语义缓存命中的键
+     */
+    public static final String METADATA_KEY = "semanticCache";
+
+    private final IEmbeddingService embeddingService;
+    private final IDocumentChunkRepository documentChunkRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${rag.semantic-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.semantic-cache.default-threshold:0.95}")
+    private double defaultThreshold;
+
+    /**
+     * 按任务类型覆盖的相似度阈值，如 {'FAQ': 0.92, 'ANALYSIS': 0.97}
+     */
+    @Value("#{${rag.semantic-cache.thresholds:{:}}}")
+    private Map<String, Double> thresholds;
+
+    @Value("${rag.semantic-cache.exclude-task-types:ORDER_LOOKUP,WEATHER,CHAT,UNKNOWN}")
+    private Set<String> excludeTaskTypes;
+
+    @Value("${rag.semantic-cache.max-entries:5000}")
+    private int maxEntries;
+
+    @Value("${rag.semantic-cache.ttl-minutes:720}")
+    private long ttlMinutes;
+
+    @Value("${rag.semantic-cache.lsh.tables:8}")
+    private int lshTables;
+
+    @Value("${rag.semantic-cache.lsh.bits:12}")
+    private int lshBits;
+
+    private final Map<Partition, LshVectorIndex<CachedAnswer>> indexes = new HashMap<>();
+    // 写入顺序：超限时淘汰最早写入的条目
+    private final LinkedHashMap<Long, Partition> insertionOrder = new LinkedHashMap<>();
+    // 反向索引：源块ID -> 引用该块的条目ID
+    private final Map<Long, Set<Long>> entriesByChunk = new HashMap<>();
+    private final AtomicLong entrySequence = new AtomicLong();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleRejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final Map<TaskType, AtomicLong> lookupsByType = new ConcurrentHashMap<>();
+    private final Map<TaskType, AtomicLong> hitsByType = new ConcurrentHashMap<>();
+
+    public SemanticAnswerCache(IEmbeddingService embeddingService,
+                               IDocumentChunkRepository documentChunkRepository,
+                               ObjectMapper objectMapper) {
+        this.embeddingService = embeddingService;
+        this.documentChunkRepository = documentChunkRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 查找语义相近问题的已完成回答。
+     *
+     * @param queryText 用户问题
+     * @param taskType  意图任务类型
+     * @param params    查询参数（检索索引与生成模型参与分区）
+     * @return 命中且源块仍为当前版本的回答
+     */
+    public Optional<Hit> lookup(String queryText, TaskType taskType, QueryParams params) {
+        if (!participates(queryText, taskType)) {
+            return Optional.empty();
+        }
+        lookups.incrementAndGet();
+        lookupsByType.computeIfAbsent(taskType, k -> new AtomicLong()).incrementAndGet();
+        try {
+            LshVectorIndex<CachedAnswer> index;
+            synchronized (this) {
+                index = indexes.get(Partition.of(taskType, params));
+            }
+            if (index == null) {
+                return Optional.empty();
+            }
+            float[] vector = embeddingService.generateEmbedding(queryText);
+            Optional<LshVectorIndex.Match<CachedAnswer>> match = index.nearest(vector, thresholdOf(taskType));
+            if (match.isEmpty()) {
+                return Optional.empty();
+            }
+            CachedAnswer cached = match.get().value();
+            if (System.currentTimeMillis() - cached.createdAt() > ttlMinutes * 60_000L) {
+                expired.incrementAndGet();
+                remove(match.get().id());
+                return Optional.empty();
+            }
+            if (!sourcesCurrent(cached)) {
+                staleRejected.incrementAndGet();
+                remove(match.get().id());
+                log.info("语义缓存条目的源块已变化，丢弃条目: taskType={}, 原问题: {}", taskType, cached.queryText());
+                return Optional.empty();
+            }
+            hits.incrementAndGet();
+            hitsByType.computeIfAbsent(taskType, k -> new AtomicLong()).incrementAndGet();
+            log.info("命中语义回答缓存: taskType={}, 相似度: {}, 原问题: {}", taskType,
+                    String.format("%.4f", match.get().similarity()), cached.queryText());
+            return Optional.of(new Hit(cached.answer(), cached.contextSources(), parseSources(cached.contextSources()),
+                    cached.sourceResponseId(), cached.queryText(), match.get().similarity()));
+        } catch (Exception e) {
+            log.warn("查找语义回答缓存失败: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 缓存已完成的回答。失败、缓存命中、无源块或源块缺少块ID的回答不缓存（无法校验时效）。
+     */
+    public void store(String queryText, TaskType taskType, QueryParams params, Response response) {
+        if (response == null || !"COMPLETED".equals(response.getStatus())
+                || (response.getMetadata() != null && response.getMetadata().containsKey(METADATA_KEY))) {
+            return;
+        }
+        storeAnswer(queryText, Partition.of(taskType, params), response.getAnswerText(),
+                response.getContextSources(), parseSources(response.getContextSources()), response.getId());
+    }
+
+    /**
+     * 缓存正常结束的流式回答。调用方只在收到完成事件后调用，失败或中途断开的流不应写入。
+     *
+     * @param answer  拼接后的完整回答
+     * @param sources 流式来源事件中的来源列表
+     */
+    public void storeStreamed(String queryText, TaskType taskType, QueryParams params,
+                              String answer, List<Map<String, Object>> sources) {
+        if (sources == null) {
+            return;
+        }
+        try {
+            storeAnswer(queryText, Partition.of(taskType, params), answer,
+                    objectMapper.writeValueAsString(sources), sources, null);
+        } catch (Exception e) {
+            log.warn("写入语义回答缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private void storeAnswer(String queryText, Partition partition, String answer, String contextSources,
+                             List<Map<String, Object>> sources, Long sourceResponseId) {
+        if (!participates(queryText, partition.taskType())
+                || answer == null || answer.isBlank()
+                || answer.startsWith(BasicGenerator.ERROR_ANSWER_PREFIX)) {
+            return;
+        }
+        try {
+            Map<Long, String> chunkVersions = new LinkedHashMap<>();
+            for (Map<String, Object> source : sources) {
+                if (!(source.get("chunkId") instanceof Number chunkId)) {
+                    return;
+                }
+                String content = source.get("content") instanceof String text ? text : "";
+                chunkVersions.put(chunkId.longValue(), GenerationCache.sha256(content));
+            }
+            if (chunkVersions.isEmpty()) {
+                return;
+            }
+            float[] vector = embeddingService.generateEmbedding(queryText);
+            long entryId = entrySequence.incrementAndGet();
+            CachedAnswer cached = new CachedAnswer(queryText, answer, contextSources,
+                    sourceResponseId, chunkVersions, System.currentTimeMillis());
+            synchronized (this) {
+                LshVectorIndex<CachedAnswer> index = indexes.computeIfAbsent(partition,
+                        k -> new LshVectorIndex<>(lshTables, lshBits, k.hashCode()));
+                if (!index.put(entryId, vector, cached)) {
+                    return;
+                }
+                insertionOrder.put(entryId, partition);
+                chunkVersions.keySet().forEach(chunkId ->
+                        entriesByChunk.computeIfAbsent(chunkId, k -> new HashSet<>()).add(entryId));
+                evictOverflow();
+            }
+            stores.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("写入语义回答缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 源块重新索引或删除时删除引用这些块的条目。
+     */
+    @EventListener
+    public void onChunkChanged(DocumentChunkChangedEvent event) {
+        int removed = 0;
+        synchronized (this) {
+            for (Long chunkId : event.getChunkIds()) {
+                Set<Long> entryIds = entriesByChunk.get(chunkId);
+                if (entryIds == null) {
+                    continue;
+                }
+                for (Long entryId : new ArrayList<>(entryIds)) {
+                    if (removeInternal(entryId)) {
+                        removed++;
+                    }
+                }
+            }
+        }
+        if (removed > 0) {
+            invalidated.addAndGet(removed);
+            log.info("源块变化，已失效语义回答缓存条目: {}", removed);
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (this) {
+            size = insertionOrder.size();
+        }
+        long lookupCount = lookups.get();
+        long hitCount = hits.get();
+        Map<String, Double> hitRateByType = new LinkedHashMap<>();
+        lookupsByType.forEach((type, count) -> {
+            long typeHits = hitsByType.getOrDefault(type, new AtomicLong()).get();
+            hitRateByType.put(type.name(), count.get() == 0 ? 0.0 : (double) typeHits / count.get());
+        });
+        return CacheStats.builder()
+                .enabled(enabled)
+                .entries(size)
+                .lookups(lookupCount)
+                .hits(hitCount)
+                .hitRate(lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount)
+                .hitRateByTaskType(hitRateByType)
+                .staleRejected(staleRejected.get())
+                .staleRate(hitCount + staleRejected.get() == 0 ? 0.0
+                        : (double) staleRejected.get() / (hitCount + staleRejected.get()))
+                .expired(expired.get())
+                .invalidated(invalidated.get())
+                .evicted(evicted.get())
+                .stores(stores.get())
+                .build();
+    }
+
+    private List<Map<String, Object>> parseSources(String contextSources) {
+        try {
+            return contextSources == null ? Collections.emptyList()
+                    : objectMapper.readValue(contextSources, new TypeReference<>() {
+            });
+        } catch (Exception e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private boolean participates(String queryText, TaskType taskType) {
+        return enabled && queryText != null && !queryText.isBlank() && taskType != null
+                && !excludeTaskTypes.contains(taskType.name());
+    }
+
+    private double thresholdOf(TaskType taskType) {
+        Double threshold = thresholds != null ? thresholds.get(taskType.name()) : null;
+        return threshold != null ? threshold : defaultThreshold;
+    }
+
+    /**
+     * 校验源块仍为当前版本：块存在且内容的SHA-256摘要与缓存时一致。
+     */
+    private boolean sourcesCurrent(CachedAnswer cached) {
+        for (Map.Entry<Long, String> version : cached.chunkVersions().entrySet()) {
+            Optional<DocumentChunk> chunk = documentChunkRepository.findById(version.getKey());
+            if (chunk.isEmpty() || !version.getValue().equals(
+                    GenerationCache.sha256(chunk.get().getContent() == null ? "" : chunk.get().getContent()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void remove(long entryId) {
+        removeInternal(entryId);
+    }
+
+    private boolean removeInternal(long entryId) {
+        Partition partition = insertionOrder.remove(entryId);
+        if (partition == null) {
+            return false;
+        }
+        CachedAnswer cached = indexes.get(partition).remove(entryId);
+        if (cached != null) {
+            for (Long chunkId : cached.chunkVersions().keySet()) {
+                Set<Long> entryIds = entriesByChunk.get(chunkId);
+                if (entryIds != null) {
+                    entryIds.remove(entryId);
+                    if (entryIds.isEmpty()) {
+                        entriesByChunk.remove(chunkId);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void evictOverflow() {
+        while (insertionOrder.size() > Math.max(1, maxEntries)) {
+            removeInternal(insertionOrder.keySet().iterator().next());
+            evicted.incrementAndGet();
+        }
+    }
+
+    /**
+     * 缓存分区：任务类型、检索索引与生成模型均相同的问题才互相复用回答，未指定的索引或模型按默认值归为一类。
+     */
+    private record Partition(TaskType taskType, String indexName, String model) {
+
+        static Partition of(TaskType taskType, QueryParams params) {
+            return new Partition(taskType,
+                    params != null && params.getIndexName() != null ? params.getIndexName() : "",
+                    params != null && params.getModel() != null ? params.getModel() : "");
+        }
+    }
+
+    private record CachedAnswer(String queryText,
+                                String answer,
+                                String contextSources,
+                                Long sourceResponseId,
+                                Map<Long, String> chunkVersions,
+                                long createdAt) {
+    }
+
+    /**
+     * 命中结果：回答、来源（JSON与解析后的列表）、来源响应ID、被复用的原问题与相似度。
+     */
+    public record Hit(String answer, String contextSources, List<Map<String, Object>> sources,
+                      Long sourceResponseId, String matchedQuery, double similarity) {
+    }
+
+    /**
+     * 语义缓存统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheStats {
+        private boolean enabled;
+        private int entries;
+        private long lookups;
+        private long hits;
+        private double hitRate;
+        private Map<String, Double> hitRateByTaskType;
+        private long staleRejected;
+        private double staleRate;
+        private long expired;
+        private long invalidated;
+        private long evicted;
+        private long stores;
+    }
+}
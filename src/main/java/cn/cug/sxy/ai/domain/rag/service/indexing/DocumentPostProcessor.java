@@ -68,7 +68,7 @@ public class DocumentPostProcessor {
                 documentRepository.updateStatus(documentId, "PROCESSING", null);
             }
             // 分块
-            List<DocumentChunk> chunks = documentProcessingService.splitDocument(document);
+            List<DocumentChunk> chunks = documentProcessingService.splitDocument(document, event.getStructuredDocument());
             if (!chunks.isEmpty()) {
                 // 幂等保护：若已有该documentId的块，避免重复保存
                 List<DocumentChunk> existing = documentChunkRepository.findByDocumentId(documentId);
@@ -2,7 +2,9 @@ package cn.cug.sxy.ai.domain.rag.service.indexing;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Document;
 import cn.cug.sxy.ai.domain.rag.model.entity.DocumentChunk;
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument;
 import cn.cug.sxy.ai.domain.rag.repository.IDocumentRepository;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.TokenCounter;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
@@ -33,6 +35,8 @@ public class DocumentProcessingService {
     private final IDocumentRepository documentRepository;
     private final DocumentLoaderFactory documentLoaderFactory;
     private final TextSplitterService textSplitterService;
+    private final StructureAwareChunker structureAwareChunker;
+    private final TokenCounter tokenCounter;
     private final ApplicationEventPublisher eventPublisher;
 
     @Value("${rag.chunking.default-chunk-size:1000}")
@@ -41,16 +45,26 @@ public class DocumentProcessingService {
     @Value("${rag.chunking.default-chunk-overlap:200}")
     private int defaultChunkOverlap;
 
+    @Value("${rag.chunking.structure-aware.enabled:true}")
+    private boolean structureAwareEnabled;
+
+    @Value("${rag.tokenizer.embedding-max-tokens:8192}")
+    private int embeddingMaxTokens;
+
     /**
      * 构造函数，注入依赖
      */
     public DocumentProcessingService(IDocumentRepository documentRepository,
                                      DocumentLoaderFactory documentLoaderFactory,
                                      TextSplitterService textSplitterService,
+                                     StructureAwareChunker structureAwareChunker,
+                                     TokenCounter tokenCounter,
                                      ApplicationEventPublisher eventPublisher) {
         this.documentRepository = documentRepository;
         this.documentLoaderFactory = documentLoaderFactory;
         this.textSplitterService = textSplitterService;
+        this.structureAwareChunker = structureAwareChunker;
+        this.tokenCounter = tokenCounter;
         this.eventPublisher = eventPublisher;
     }
 
@@ -78,7 +92,7 @@ public class DocumentProcessingService {
             document.setStatus("PENDING");
             document = documentRepository.save(document);
             // 在事务提交后发布事件
-            publishDocumentCreatedEventAfterCommit(document.getId());
+            publishDocumentCreatedEventAfterCommit(document.getId(), extractStructuredDocument(loadResult));
             return document.getId();
         } finally {
             Files.deleteIfExists(tempFile);
@@ -104,7 +118,7 @@ public class DocumentProcessingService {
         document.setSource(url);
         document.setStatus("PENDING");
         document = documentRepository.save(document);
-        publishDocumentCreatedEventAfterCommit(document.getId());
+        publishDocumentCreatedEventAfterCommit(document.getId(), extractStructuredDocument(loadResult));
         return document.getId();
     }
 
@@ -138,7 +152,34 @@ public class DocumentProcessingService {
     }
 
     private void publishDocumentCreatedEventAfterCommit(Long documentId) {
-        eventPublisher.publishEvent(new DocumentProcessingService.DocumentCreatedEvent(this, documentId));
+        publishDocumentCreatedEventAfterCommit(documentId, null);
+    }
+
+    private void publishDocumentCreatedEventAfterCommit(Long documentId, StructuredDocument structuredDocument) {
+        eventPublisher.publishEvent(new DocumentProcessingService.DocumentCreatedEvent(this, documentId, structuredDocument));
+    }
+
+    private StructuredDocument extractStructuredDocument(Map<String, Object> loadResult) {
+        Object structured = loadResult.get("structuredDocument");
+        return structured instanceof StructuredDocument ? (StructuredDocument) structured : null;
+    }
+
+    /**
+     * 分割文档为文档块（供事件处理器调用）。
+     * 有结构化解析结果时优先使用结构感知分块，否则回退到文本分块。
+     */
+    List<DocumentChunk> splitDocument(Document document, StructuredDocument structuredDocument) {
+        if (structureAwareEnabled && structuredDocument != null) {
+            try {
+                List<DocumentChunk> chunks = structureAwareChunker.chunk(document, structuredDocument);
+                if (!chunks.isEmpty()) {
+                    return chunks;
+                }
+            } catch (Exception e) {
+                log.warn("结构感知分块失败，回退到文本分块: documentId={}, error={}", document.getId(), e.getMessage(), e);
+            }
+        }
+        return splitDocument(document);
     }
 
     /**
@@ -149,29 +190,32 @@ public class DocumentProcessingService {
         if (content == null || content.isEmpty()) {
             return Collections.emptyList();
         }
-        List<String> textChunks = textSplitterService.splitText(content, defaultChunkSize, defaultChunkOverlap);
-        List<DocumentChunk> documentChunks = new ArrayList<>();
+        // 分割器直接返回原文区间，偏移即真实位置，块文本只物化一次
+        List<TextSplitterService.TextSpan> spans = textSplitterService.splitSpans(content, defaultChunkSize, defaultChunkOverlap);
+        // 按嵌入模型输入上限校验，避免超长块被提供方拒绝或静默截断
+        spans = tokenCounter.enforceLimit(content, spans, embeddingMaxTokens);
+        List<DocumentChunk> documentChunks = new ArrayList<>(spans.size());
         int chunkIndex = 0;
-        int startPosition = 0;
-        for (String chunk : textChunks) {
-            int endPosition = startPosition + chunk.length();
+        int previousEnd = 0;
+        for (TextSplitterService.TextSpan span : spans) {
+            String chunk = content.substring(span.start(), span.end());
             DocumentChunk documentChunk = new DocumentChunk();
             documentChunk.setDocumentId(document.getId());
             documentChunk.setContent(chunk);
-            documentChunk.setStartPosition(startPosition);
-            documentChunk.setEndPosition(endPosition);
+            documentChunk.setStartPosition(span.start());
+            documentChunk.setEndPosition(span.end());
             documentChunk.setChunkIndex(chunkIndex);
             documentChunk.setCreateTime(LocalDateTime.now());
             documentChunk.setUpdateTime(LocalDateTime.now());
             documentChunk.setVectorized(false);
-            documentChunk.setOverlapLength(chunkIndex > 0 ? defaultChunkOverlap : 0);
+            documentChunk.setOverlapLength(chunkIndex > 0 ? Math.max(0, previousEnd - span.start()) : 0);
             double qualityScore = calculateQualityScore(chunk);
             documentChunk.setQualityScore(qualityScore);
             if (document.getMetadata() != null) {
                 documentChunk.setMetadata(document.getMetadata());
             }
             documentChunks.add(documentChunk);
-            startPosition = endPosition - defaultChunkOverlap;
+            previousEnd = span.end();
             chunkIndex++;
         }
         return documentChunks;
@@ -233,10 +277,19 @@ public class DocumentProcessingService {
     public static class DocumentCreatedEvent extends java.util.EventObject {
 
         private final Long documentId;
+        /**
+         * 加载阶段得到的结构化文档（仅驻留内存，用于结构感知分块；可为空）
+         */
+        private final transient StructuredDocument structuredDocument;
 
         public DocumentCreatedEvent(Object source, Long documentId) {
+            this(source, documentId, null);
+        }
+
+        public DocumentCreatedEvent(Object source, Long documentId, StructuredDocument structuredDocument) {
             super(source);
             this.documentId = documentId;
+            this.structuredDocument = structuredDocument;
         }
 
     }
@@ -264,7 +317,7 @@ public class DocumentProcessingService {
         document.setSource(originalFilename);
         document.setStatus("PENDING");
         document = documentRepository.save(document);
-        publishDocumentCreatedEventAfterCommit(document.getId());
+        publishDocumentCreatedEventAfterCommit(document.getId(), extractStructuredDocument(loadResult));
 
         return document;
     }
@@ -291,7 +344,7 @@ public class DocumentProcessingService {
         document.setSource(url);
         document.setStatus("PENDING");
         document = documentRepository.save(document);
-        publishDocumentCreatedEventAfterCommit(document.getId());
+        publishDocumentCreatedEventAfterCommit(document.getId(), extractStructuredDocument(loadResult));
         return document;
     }
 
@@ -0,0 +1,399 @@
+package cn.cug.sxy.ai.domain.rag.service.indexing;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Document;
+import cn.cug.sxy.ai.domain.rag.model.entity.DocumentChunk;
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument;
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument.ChunkableUnit;
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument.TableInfo;
+import cn.cug.sxy.ai.domain.rag.service.parsing.ChunkingReadyOutput;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.TokenCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结构感知分块器。
+ * <p>
+ * 基于 L2 层输出的 {@link StructuredDocument#toChunkableUnits()} 进行分块：
+ * 1. 按 Token 预算贪心打包相邻单元，遇到章节（标题）边界时优先切分；
+ * 2. 表格不与正文混排，按“共享上下文（标题+表头）+ 若干行”的行集打包；
+ * 3. 超出预算的单个单元回退到 {@link TextSplitterService} 递归切分；
+ * 4. 章节路径、页码范围、元素ID等结构信息写入 Chunk 元数据。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class StructureAwareChunker {
+
+    public static final String STRATEGY_NAME = "STRUCTURE_AWARE";
+    public static final String CHUNK_TYPE_TEXT = "TEXT";
+    public static final String CHUNK_TYPE_TABLE_ROWS = "TABLE_ROWS";
+
+    private final ChunkingReadyOutput chunkingReadyOutput;
+    private final TextSplitterService textSplitterService;
+    private final TokenCounter tokenCounter;
+
+    @Value("${rag.chunking.structure-aware.max-tokens:512}")
+    private int maxTokens;
+
+    @Value("${rag.chunking.structure-aware.min-tokens:64}")
+    private int minTokens;
+
+    @Value("${rag.chunking.structure-aware.break-heading-level:2}")
+    private int breakHeadingLevel;
+
+    @Value("${rag.chunking.default-chunk-overlap:200}")
+    private int defaultChunkOverlap;
+
+    public StructureAwareChunker(ChunkingReadyOutput chunkingReadyOutput,
+                                 TextSplitterService textSplitterService,
+                                 TokenCounter tokenCounter) {
+        this.chunkingReadyOutput = chunkingReadyOutput;
+        this.textSplitterService = textSplitterService;
+        this.tokenCounter = tokenCounter;
+    }
+
+    /**
+     * 对结构化文档进行分块
+     *
+     * @param document           已持久化的文档（提供ID、正文与元数据）
+     * @param structuredDocument L2层解析得到的结构化文档
+     * @return 文档块列表；结构化信息不可用时返回空列表，由调用方回退到文本分块
+     */
+    public List<DocumentChunk> chunk(Document document, StructuredDocument structuredDocument) {
+        if (structuredDocument == null) {
+            return Collections.emptyList();
+        }
+        ChunkingReadyOutput.ChunkingInput input = chunkingReadyOutput.prepareForChunking(structuredDocument);
+        List<ChunkableUnit> units = input.getChunkableUnits();
+        if (units == null || units.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ChunkingReadyOutput.ChunkingRecommendation recommendation = chunkingReadyOutput.recommendStrategy(input);
+        int budget = resolveTokenBudget(recommendation);
+        log.info("结构感知分块开始: documentId={}, 单元数={}, Token预算={}, 推荐策略={}, 原因={}",
+                document.getId(), units.size(), budget,
+                recommendation.getPrimaryStrategy(), recommendation.getReason());
+
+        ChunkCollector collector = new ChunkCollector(document);
+        PendingChunk pending = new PendingChunk();
+        for (ChunkableUnit unit : units) {
+            List<String> unitPath = effectiveSectionPath(unit);
+            if (isTableUnit(unit)) {
+                // 表格不与正文混排：先落盘正文，再按行集输出
+                collector.flush(pending);
+                emitTableRowSets(unit, unitPath, budget, collector);
+                continue;
+            }
+            int unitTokens = tokenCounter.count(unit.getContent());
+            if (isSectionBreak(unit) && pending.tokens >= minTokens) {
+                collector.flush(pending);
+            }
+            if (!pending.isEmpty() && pending.tokens + unitTokens > budget) {
+                collector.flush(pending);
+            }
+            if (unitTokens > budget) {
+                // 单个单元超预算：先按语义分隔符递归切分，再按Token边界校验上限，每段独立成块
+                collector.flush(pending);
+                splitOversizedUnit(unit, unitPath, unitTokens, budget, collector);
+                continue;
+            }
+            pending.append(unit, unit.getContent(), unitPath, unitTokens);
+        }
+        collector.flush(pending);
+
+        List<DocumentChunk> chunks = collector.getChunks();
+        log.info("结构感知分块完成: documentId={}, 单元数={}, 块数={}", document.getId(), units.size(), chunks.size());
+        return chunks;
+    }
+
+    /**
+     * 超预算单元的回退切分：递归分割器按字符计长，Token预算按该单元实测的字符/Token比例换算为字符数，
+     * 切分后再按Token边界校验上限；重叠长度取相邻区间的实际交叠字符数。
+     */
+    private void splitOversizedUnit(ChunkableUnit unit, List<String> unitPath, int unitTokens, int budget,
+                                    ChunkCollector collector) {
+        String content = unit.getContent();
+        int chunkChars = (int) Math.max(1, (long) budget * content.length() / unitTokens);
+        int overlapChars = Math.min(defaultChunkOverlap, chunkChars / 4);
+        List<TextSplitterService.TextSpan> spans = tokenCounter.enforceLimit(content,
+                textSplitterService.splitSpans(content, chunkChars, overlapChars), budget);
+        int previousEnd = -1;
+        for (TextSplitterService.TextSpan span : spans) {
+            String piece = content.substring(span.start(), span.end());
+            PendingChunk single = new PendingChunk();
+            single.append(unit, piece, span.start(), span.end(), unitPath, tokenCounter.count(piece));
+            single.overlapLength = previousEnd >= 0 ? Math.max(0, previousEnd - span.start()) : 0;
+            collector.flush(single);
+            previousEnd = span.end();
+        }
+    }
+
+    private int resolveTokenBudget(ChunkingReadyOutput.ChunkingRecommendation recommendation) {
+        Integer recommended = recommendation != null ? recommendation.getRecommendedChunkSize() : null;
+        if (recommended == null || recommended <= 0) {
+            return maxTokens;
+        }
+        return Math.max(minTokens, Math.min(maxTokens, recommended));
+    }
+
+    /**
+     * 标题单元所在的章节路径需包含自身，其它单元沿用解析时记录的路径
+     */
+    private List<String> effectiveSectionPath(ChunkableUnit unit) {
+        List<String> path = unit.getSectionPath() != null ? new ArrayList<>(unit.getSectionPath()) : new ArrayList<>();
+        if (unit.getHeadingLevel() != null && unit.getContent() != null) {
+            while (path.size() >= unit.getHeadingLevel()) {
+                path.remove(path.size() - 1);
+            }
+            path.add(unit.getContent().trim());
+        }
+        return path;
+    }
+
+    private boolean isSectionBreak(ChunkableUnit unit) {
+        return unit.getHeadingLevel() != null && unit.getHeadingLevel() <= breakHeadingLevel;
+    }
+
+    private boolean isTableUnit(ChunkableUnit unit) {
+        return unit.getTableInfo() != null
+                || (unit.getType() != null && unit.getType().equalsIgnoreCase("table"));
+    }
+
+    /**
+     * 表格按行集输出：每个块 = 共享上下文（标题+表头）+ 尽可能多的完整行
+     */
+    private void emitTableRowSets(ChunkableUnit unit, List<String> unitPath, int budget, ChunkCollector collector) {
+        TableInfo tableInfo = unit.getTableInfo();
+        if (tableInfo == null || tableInfo.getRows() == null || tableInfo.getRows().isEmpty()) {
+            PendingChunk whole = new PendingChunk();
+            whole.append(unit, unit.getContent(), unitPath, tokenCounter.count(unit.getContent()));
+            whole.chunkType = CHUNK_TYPE_TABLE_ROWS;
+            collector.flush(whole);
+            return;
+        }
+        String sharedContext = tableInfo.getSharedContext();
+        int contextTokens = tokenCounter.count(sharedContext);
+        List<List<String>> rows = tableInfo.getRows();
+        StringBuilder rowBuffer = new StringBuilder();
+        int rowTokens = 0;
+        int rowStart = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            String rowText = formatRow(rows.get(i));
+            int tokens = tokenCounter.count(rowText) + 1;
+            if (rowBuffer.length() > 0 && contextTokens + rowTokens + tokens > budget) {
+                emitRowSet(unit, unitPath, tableInfo, sharedContext, rowBuffer, contextTokens + rowTokens, rowStart, i - 1, collector);
+                rowBuffer.setLength(0);
+                rowTokens = 0;
+                rowStart = i;
+            }
+            rowBuffer.append('\n').append(rowText);
+            rowTokens += tokens;
+        }
+        if (rowBuffer.length() > 0) {
+            emitRowSet(unit, unitPath, tableInfo, sharedContext, rowBuffer, contextTokens + rowTokens, rowStart, rows.size() - 1, collector);
+        }
+    }
+
+    private void emitRowSet(ChunkableUnit unit, List<String> unitPath, TableInfo tableInfo, String sharedContext,
+                            StringBuilder rowBuffer, int tokens, int rowStart, int rowEnd, ChunkCollector collector) {
+        PendingChunk rowSet = new PendingChunk();
+        rowSet.append(unit, sharedContext + rowBuffer, unitPath, tokens);
+        rowSet.chunkType = CHUNK_TYPE_TABLE_ROWS;
+        rowSet.extraMetadata.put("tableTitle", tableInfo.getTitle());
+        rowSet.extraMetadata.put("tableRowStart", rowStart);
+        rowSet.extraMetadata.put("tableRowEnd", rowEnd);
+        rowSet.extraMetadata.put("tableRowCount", tableInfo.getRows().size());
+        collector.flush(rowSet);
+    }
+
+    private String formatRow(List<String> row) {
+        StringBuilder sb = new StringBuilder("|");
+        if (row != null) {
+            for (String cell : row) {
+                sb.append(' ').append(cell).append(" |");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 正在打包中的块
+     */
+    private static class PendingChunk {
+
+        private final StringBuilder content = new StringBuilder();
+        private final List<String> elementIds = new ArrayList<>();
+        private final Map<String, Object> extraMetadata = new HashMap<>();
+        private List<String> sectionPath;
+        private ChunkableUnit firstUnit;
+        private int firstSourceStart;
+        private ChunkableUnit lastUnit;
+        private int lastSourceEnd;
+        private Integer pageStart;
+        private Integer pageEnd;
+        private String chunkType = CHUNK_TYPE_TEXT;
+        private int tokens;
+        // 与前一块在原文中交叠的字符数（仅超预算单元切分出的相邻片段存在交叠）
+        private int overlapLength;
+
+        void append(ChunkableUnit unit, String text, List<String> unitPath, int unitTokens) {
+            int sourceLength = unit.getContent() != null ? unit.getContent().length() : 0;
+            append(unit, text, 0, sourceLength, unitPath, unitTokens);
+        }
+
+        /**
+         * @param sourceStart 本段在单元原文中的起始偏移
+         * @param sourceEnd   本段在单元原文中的结束偏移（表格行集等改写过的文本取整个单元）
+         */
+        void append(ChunkableUnit unit, String text, int sourceStart, int sourceEnd, List<String> unitPath, int unitTokens) {
+            if (content.length() > 0) {
+                content.append("\n\n");
+            }
+            content.append(text);
+            if (sectionPath == null) {
+                sectionPath = unitPath;
+                firstUnit = unit;
+                firstSourceStart = sourceStart;
+            }
+            lastUnit = unit;
+            lastSourceEnd = sourceEnd;
+            if (unit.getElementId() != null) {
+                elementIds.add(unit.getElementId());
+            }
+            if (unit.getPageNo() != null) {
+                pageStart = pageStart == null ? unit.getPageNo() : Math.min(pageStart, unit.getPageNo());
+                pageEnd = pageEnd == null ? unit.getPageNo() : Math.max(pageEnd, unit.getPageNo());
+            }
+            tokens += unitTokens;
+        }
+
+        boolean isEmpty() {
+            return content.length() == 0;
+        }
+
+    }
+
+    /**
+     * 块收集器：负责生成DocumentChunk并在原文中定位偏移
+     */
+    private static class ChunkCollector {
+
+        private final Document document;
+        private final String documentText;
+        private final List<DocumentChunk> chunks = new ArrayList<>();
+        // 单元在正文中的起始位置（-1 表示未找到），表格拆成多个行集时复用同一位置
+        private final Map<ChunkableUnit, Integer> unitStarts = new IdentityHashMap<>();
+        private int searchCursor = 0;
+
+        ChunkCollector(Document document) {
+            this.document = document;
+            this.documentText = document.getContent() != null ? document.getContent() : "";
+        }
+
+        void flush(PendingChunk pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            String text = pending.content.toString();
+            // 起止偏移取首个单元的起点与最后一个单元的终点：块文本由多个单元拼接或由表格改写而来，长度与原文区间不一致
+            int firstStart = locateUnit(pending.firstUnit);
+            int start = firstStart >= 0
+                    ? Math.min(documentText.length(), firstStart + pending.firstSourceStart)
+                    : Math.min(searchCursor, documentText.length());
+            int lastStart = locateUnit(pending.lastUnit);
+            int end = lastStart >= 0
+                    ? Math.min(documentText.length(), lastStart + pending.lastSourceEnd)
+                    : Math.min(documentText.length(), start + text.length());
+            end = Math.max(start, end);
+
+            Map<String, Object> metadata = new HashMap<>();
+            if (document.getMetadata() != null) {
+                metadata.putAll(document.getMetadata());
+            }
+            List<String> sectionPath = pending.sectionPath != null ? pending.sectionPath : Collections.emptyList();
+            metadata.put("chunkingStrategy", STRATEGY_NAME);
+            metadata.put("chunkType", pending.chunkType);
+            metadata.put("sectionPath", sectionPath);
+            metadata.put("sectionPathString", String.join(" > ", sectionPath));
+            metadata.put("elementIds", new ArrayList<>(pending.elementIds));
+            metadata.put("estimatedTokens", pending.tokens);
+            if (pending.pageStart != null) {
+                metadata.put("pageStart", pending.pageStart);
+                metadata.put("pageEnd", pending.pageEnd);
+            }
+            metadata.putAll(pending.extraMetadata);
+
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setDocumentId(document.getId());
+            chunk.setContent(text);
+            chunk.setStartPosition(start);
+            chunk.setEndPosition(end);
+            chunk.setChunkIndex(chunks.size());
+            chunk.setCreateTime(LocalDateTime.now());
+            chunk.setUpdateTime(LocalDateTime.now());
+            chunk.setVectorized(false);
+            chunk.setOverlapLength(pending.overlapLength);
+            chunk.setMetadata(metadata);
+            chunks.add(chunk);
+
+            pending.content.setLength(0);
+            pending.elementIds.clear();
+            pending.extraMetadata.clear();
+            pending.sectionPath = null;
+            pending.firstUnit = null;
+            pending.firstSourceStart = 0;
+            pending.lastUnit = null;
+            pending.lastSourceEnd = 0;
+            pending.pageStart = null;
+            pending.pageEnd = null;
+            pending.chunkType = CHUNK_TYPE_TEXT;
+            pending.tokens = 0;
+            pending.overlapLength = 0;
+        }
+
+        /**
+         * 在文档正文中按顺序定位单元的起始位置，每个单元只定位一次；找不到时返回 -1（尽力而为）
+         */
+        private int locateUnit(ChunkableUnit unit) {
+            if (unit == null) {
+                return -1;
+            }
+            Integer cached = unitStarts.get(unit);
+            if (cached != null) {
+                return cached;
+            }
+            int idx = locate(unit.getContent());
+            unitStarts.put(unit, idx);
+            return idx;
+        }
+
+        private int locate(String head) {
+            if (head == null || head.isEmpty() || documentText.isEmpty()) {
+                return -1;
+            }
+            String probe = head.length() > 64 ? head.substring(0, 64) : head;
+            int idx = documentText.indexOf(probe, searchCursor);
+            if (idx < 0) {
+                return -1;
+            }
+            searchCursor = idx + probe.length();
+            return idx;
+        }
+
+        List<DocumentChunk> getChunks() {
+            return chunks;
+        }
+
+    }
+
+}
@@ -1,19 +1,31 @@
 package cn.cug.sxy.ai.domain.rag.service.indexing;
 
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.TokenCounter;
 import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.Segment;
 import com.hankcs.hanlp.seg.common.Term;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * @version 1.0
  * @Date 2025/9/8 16:28
  * @Description 文本分块服务
+ * <p>
+ * 分割引擎基于 {@link CharSequence} 视图与 (start, end) 区间工作：各策略只产出原文中的
+ * {@link TextSpan}，不在递归/合并过程中复制字符串；调用方需要文本时再一次性物化。
+ * 区间即为块在原文中的真实偏移，可直接持久化到 document_chunk。
  * @Author jerryhotton
  */
 
@@ -69,6 +81,63 @@ public class TextSplitterService {
      */
     private static final Pattern PARAGRAPH_SEPARATORS = Pattern.compile("\\n\\s*\\n");
 
+    /**
+     * Token模式（非空白字符序列）
+     */
+    private static final Pattern NON_WHITESPACE = Pattern.compile("\\S+");
+
+    /**
+     * 中文分词结果在原文中定位时的最大前探距离（跳过分词器丢弃的空白等字符）
+     */
+    private static final int WORD_LOCATE_WINDOW = 256;
+
+    /**
+     * 线程私有的分词器实例（HanLP分词器内部持有可变状态，不在线程间共享）
+     */
+    private static final ThreadLocal<Segment> SEGMENTER = ThreadLocal.withInitial(HanLP::newSegment);
+
+    /**
+     * 并行分词时单个分片的目标长度（字符数），分片在段落/句子边界处切开
+     */
+    @Value("${rag.chunking.segmentation.piece-size:20000}")
+    private int segmentationPieceSize = 20000;
+
+    /**
+     * Token计数器；存在时TOKEN策略按真实Token数控制块大小
+     */
+    private final TokenCounter tokenCounter;
+
+    /**
+     * 并行分词线程池；为空时整段文本在调用线程分词
+     */
+    private final Executor segmentationExecutor;
+
+    public TextSplitterService() {
+        this(null, null);
+    }
+
+    public TextSplitterService(TokenCounter tokenCounter) {
+        this(tokenCounter, null);
+    }
+
+    @Autowired
+    public TextSplitterService(TokenCounter tokenCounter,
+                               @Qualifier("textSegmentationExecutor") Executor segmentationExecutor) {
+        this.tokenCounter = tokenCounter;
+        this.segmentationExecutor = segmentationExecutor;
+    }
+
+    /**
+     * 文本区间，[start, end) 为原文中的字符偏移
+     */
+    public record TextSpan(int start, int end) {
+
+        public int length() {
+            return end - start;
+        }
+
+    }
+
     /**
      * 将文本分割成多个文本块
      *
@@ -91,7 +160,32 @@ public class TextSplitterService {
      * @return 文本块列表
      */
     public List<String> splitText(String text, int chunkSize, int chunkOverlap, SplitStrategy strategy) {
-        if (text == null || text.isEmpty()) {
+        return materialize(text, splitSpans(text, chunkSize, chunkOverlap, strategy));
+    }
+
+    /**
+     * 将文本分割为原文区间（递归字符分割）
+     *
+     * @param text         待分割的文本
+     * @param chunkSize    块大小（字符数）
+     * @param chunkOverlap 块重叠大小（字符数）
+     * @return 区间列表，按起始位置递增
+     */
+    public List<TextSpan> splitSpans(CharSequence text, int chunkSize, int chunkOverlap) {
+        return splitSpans(text, chunkSize, chunkOverlap, SplitStrategy.RECURSIVE_CHARACTER);
+    }
+
+    /**
+     * 将文本分割为原文区间，可指定分割策略
+     *
+     * @param text         待分割的文本
+     * @param chunkSize    块大小（字符数）
+     * @param chunkOverlap 块重叠大小（字符数）
+     * @param strategy     分割策略
+     * @return 区间列表，按起始位置递增
+     */
+    public List<TextSpan> splitSpans(CharSequence text, int chunkSize, int chunkOverlap, SplitStrategy strategy) {
+        if (text == null || text.length() == 0) {
             return new ArrayList<>();
         }
         if (chunkSize <= 0) {
@@ -101,23 +195,35 @@ public class TextSplitterService {
             throw new IllegalArgumentException("Chunk overlap must be non-negative and less than chunk size");
         }
         switch (strategy) {
-            case RECURSIVE_CHARACTER:
-                return recursiveCharacterSplit(text, chunkSize, chunkOverlap, DEFAULT_SEPARATORS);
             case FIXED_LENGTH:
-                return fixedLengthSplit(text, chunkSize, chunkOverlap);
+                return fixedLengthSpans(text, chunkSize, chunkOverlap);
             case SENTENCE:
-                return sentenceSplit(text, chunkSize, chunkOverlap);
+                return mergeSpans(text, delimitedSpans(text, SENTENCE_ENDINGS), chunkSize, chunkOverlap);
             case PARAGRAPH:
-                return paragraphSplit(text, chunkSize, chunkOverlap);
+                return mergeSpans(text, delimitedSpans(text, PARAGRAPH_SEPARATORS), chunkSize, chunkOverlap);
             case TOKEN:
-                return tokenSplit(text, chunkSize, chunkOverlap);
+                return tokenCounter != null
+                        ? tokenSpans(text, chunkSize, chunkOverlap)
+                        : mergeSpans(text, matchedSpans(text, NON_WHITESPACE), chunkSize, chunkOverlap);
             case CHINESE_WORD:
-                return chineseWordSplit(text, chunkSize, chunkOverlap);
+                return mergeSpans(text, chineseWordSpans(text), chunkSize, chunkOverlap);
+            case RECURSIVE_CHARACTER:
             default:
-                return recursiveCharacterSplit(text, chunkSize, chunkOverlap, DEFAULT_SEPARATORS);
+                return recursiveCharacterSpans(text, chunkSize, chunkOverlap, DEFAULT_SEPARATORS);
         }
     }
 
+    /**
+     * 将区间物化为字符串（每个块只复制一次）
+     */
+    public List<String> materialize(CharSequence text, List<TextSpan> spans) {
+        List<String> chunks = new ArrayList<>(spans.size());
+        for (TextSpan span : spans) {
+            chunks.add(text.subSequence(span.start(), span.end()).toString());
+        }
+        return chunks;
+    }
+
     /**
      * 递归字符分割算法
      * <p>
@@ -131,95 +237,92 @@ public class TextSplitterService {
      * @return 文本块列表
      */
     public List<String> recursiveCharacterSplit(String text, int chunkSize, int chunkOverlap, List<String> separators) {
-        List<String> finalChunks = new ArrayList<>();
+        return materialize(text, recursiveCharacterSpans(text, chunkSize, chunkOverlap, separators));
+    }
+
+    /**
+     * 递归字符分割算法（区间版本）
+     */
+    public List<TextSpan> recursiveCharacterSpans(CharSequence text, int chunkSize, int chunkOverlap, List<String> separators) {
+        List<TextSpan> result = new ArrayList<>();
         // 如果文本长度小于等于块大小，直接返回整个文本
         if (text.length() <= chunkSize) {
-            finalChunks.add(text);
-            return finalChunks;
+            result.add(new TextSpan(0, text.length()));
+            return result;
         }
         // 递归分割
-        recursiveSplit(text, chunkSize, chunkOverlap, separators, 0, finalChunks);
+        recursiveSplit(text, 0, text.length(), chunkSize, chunkOverlap, separators, 0, result);
 
-        return finalChunks;
+        return result;
     }
 
     /**
-     * 递归分割辅助方法
+     * 递归分割辅助方法，只在 [from, to) 区间上移动游标，不复制文本
      *
-     * @param text           待分割的文本
+     * @param text           原文
+     * @param from           区间起点（含）
+     * @param to             区间终点（不含）
      * @param chunkSize      块大小（字符数）
      * @param chunkOverlap   块重叠大小（字符数）
      * @param separators     分隔符列表
      * @param separatorIndex 当前使用的分隔符索引
      * @param result         结果列表
      */
-    private void recursiveSplit(String text, int chunkSize, int chunkOverlap,
-                                List<String> separators, int separatorIndex, List<String> result) {
-        // 如果已经尝试了所有分隔符或文本长度小于等于块大小，直接添加整个文本
-        if (separatorIndex >= separators.size() || text.length() <= chunkSize) {
-            if (!text.trim().isEmpty()) {
-                result.add(text);
-            }
+    private void recursiveSplit(CharSequence text, int from, int to, int chunkSize, int chunkOverlap,
+                                List<String> separators, int separatorIndex, List<TextSpan> result) {
+        // 如果已经尝试了所有分隔符或文本长度小于等于块大小，直接添加整个区间
+        if (separatorIndex >= separators.size() || to - from <= chunkSize) {
+            addIfNotBlank(text, from, to, result);
             return;
         }
         String separator = separators.get(separatorIndex);
         // 如果当前分隔符为空，进入强制分割模式
         if (separator.isEmpty()) {
-            int start = 0;
-            while (start < text.length()) {
-                int end = Math.min(start + chunkSize, text.length());
-                String chunk = text.substring(start, end);
-                if (!chunk.trim().isEmpty()) {
-                    result.add(chunk);
-                }
-                start += chunkSize - chunkOverlap;
-            }
+            windowSplit(text, from, to, chunkSize, chunkOverlap, result);
             return;
         }
-        // 使用当前分隔符分割
-        List<String> segments = new ArrayList<>(Arrays.asList(text.split(Pattern.quote(separator))));
-        // 重新添加分隔符（除最后一段外）
-        for (int i = 0; i < segments.size() - 1; i++) {
-            segments.set(i, segments.get(i) + separator);
-        }
-        // 移除空段
-        segments.removeIf(String::isEmpty);
-        // 如果分割后没有任何段，尝试下一个分隔符
-        if (segments.isEmpty()) {
-            recursiveSplit(text, chunkSize, chunkOverlap, separators, separatorIndex + 1, result);
+        // 区间内不含当前分隔符，尝试下一个分隔符
+        if (indexOf(text, separator, from, to) < 0) {
+            recursiveSplit(text, from, to, chunkSize, chunkOverlap, separators, separatorIndex + 1, result);
             return;
         }
-        // 合并分割后的段，确保每个合并块不超过块大小
-        StringBuilder currentChunk = new StringBuilder();
-        for (String segment : segments) {
-            // 如果当前块加上新段会超过块大小，先保存当前块并开始新块
-            if (currentChunk.length() + segment.length() > chunkSize && !currentChunk.isEmpty()) {
-                result.add(currentChunk.toString());
-                // 计算重叠部分
-                int overlapStart = Math.max(0, currentChunk.length() - chunkOverlap);
-                if (overlapStart < currentChunk.length()) {
-                    currentChunk = new StringBuilder(currentChunk.substring(overlapStart));
-                } else {
-                    currentChunk = new StringBuilder();
+        // 按分隔符切段（分隔符附着在段尾），并合并相邻段，确保每个合并块不超过块大小
+        int chunkStart = -1;
+        int chunkEnd = -1;
+        boolean fresh = false;
+        int segStart = from;
+        while (segStart < to) {
+            int sepPos = indexOf(text, separator, segStart, to);
+            int segEnd = sepPos < 0 ? to : sepPos + separator.length();
+            // 如果当前块加上新段会超过块大小，先保存当前块，再保留末尾chunkOverlap个字符作为重叠
+            if (chunkStart >= 0 && segEnd - chunkStart > chunkSize) {
+                if (fresh) {
+                    addIfNotBlank(text, chunkStart, chunkEnd, result);
+                    fresh = false;
                 }
+                int overlapStart = Math.max(Math.max(chunkStart, chunkEnd - chunkOverlap), segEnd - chunkSize);
+                chunkStart = overlapStart < chunkEnd ? overlapStart : -1;
             }
-            // 如果单个段超过块大小，递归处理
-            if (segment.length() > chunkSize) {
-                // 先添加当前累积的块
-                if (!currentChunk.isEmpty()) {
-                    result.add(currentChunk.toString());
-                    currentChunk = new StringBuilder();
+            if (segEnd - segStart > chunkSize) {
+                // 单个段超过块大小：先保存当前累积的块，再递归处理这个大段
+                if (chunkStart >= 0 && fresh) {
+                    addIfNotBlank(text, chunkStart, chunkEnd, result);
                 }
-                // 递归处理这个大段
-                recursiveSplit(segment, chunkSize, chunkOverlap, separators, separatorIndex + 1, result);
+                chunkStart = -1;
+                fresh = false;
+                recursiveSplit(text, segStart, segEnd, chunkSize, chunkOverlap, separators, separatorIndex + 1, result);
             } else {
-                // 否则添加到当前块
-                currentChunk.append(segment);
+                if (chunkStart < 0) {
+                    chunkStart = segStart;
+                }
+                chunkEnd = segEnd;
+                fresh = true;
             }
+            segStart = segEnd;
         }
         // 添加最后一个块
-        if (!currentChunk.isEmpty()) {
-            result.add(currentChunk.toString());
+        if (chunkStart >= 0 && fresh) {
+            addIfNotBlank(text, chunkStart, chunkEnd, result);
         }
     }
 
@@ -234,15 +337,22 @@ public class TextSplitterService {
      * @return 文本块列表
      */
     public List<String> fixedLengthSplit(String text, int chunkSize, int chunkOverlap) {
-        List<String> chunks = new ArrayList<>();
+        return materialize(text, fixedLengthSpans(text, chunkSize, chunkOverlap));
+    }
+
+    private List<TextSpan> fixedLengthSpans(CharSequence text, int chunkSize, int chunkOverlap) {
+        List<TextSpan> spans = new ArrayList<>();
         int start = 0;
         while (start < text.length()) {
             int end = Math.min(start + chunkSize, text.length());
-            chunks.add(text.substring(start, end));
+            spans.add(new TextSpan(start, end));
+            if (end == text.length()) {
+                break;
+            }
             start += chunkSize - chunkOverlap;
         }
 
-        return chunks;
+        return spans;
     }
 
     /**
@@ -255,9 +365,7 @@ public class TextSplitterService {
      * @return 文本块列表
      */
     public List<String> sentenceSplit(String text, int chunkSize, int chunkOverlap) {
-        // 按句子分割，同时支持中英文标点
-        String[] sentences = SENTENCE_ENDINGS.split(text);
-        return mergeSegments(sentences, chunkSize, chunkOverlap);
+        return splitText(text, chunkSize, chunkOverlap, SplitStrategy.SENTENCE);
     }
 
     /**
@@ -271,25 +379,21 @@ public class TextSplitterService {
      * @return 文本块列表
      */
     public List<String> paragraphSplit(String text, int chunkSize, int chunkOverlap) {
-        // 按段落分割
-        String[] paragraphs = PARAGRAPH_SEPARATORS.split(text);
-        return mergeSegments(paragraphs, chunkSize, chunkOverlap);
+        return splitText(text, chunkSize, chunkOverlap, SplitStrategy.PARAGRAPH);
     }
 
     /**
      * 按Token分割算法
-     * 简单实现，将空格作为Token边界
-     * 注意：这种方法不适合中文文本，中文文本请使用chineseWordSplit
+     * 配置了Token计数器时，chunkSize/chunkOverlap按真实Token数解释，块边界落在Token边界；
+     * 否则退化为以空白为边界、按字符数控制大小（不适合中文文本）
      *
      * @param text         待分割的文本
-     * @param chunkSize    块大小（字符数）
-     * @param chunkOverlap 块重叠大小（字符数）
+     * @param chunkSize    块大小（Token数；无计数器时为字符数）
+     * @param chunkOverlap 块重叠大小（Token数；无计数器时为字符数）
      * @return 文本块列表
      */
     public List<String> tokenSplit(String text, int chunkSize, int chunkOverlap) {
-        // 简单分词，以空格为边界，适用于英文
-        String[] tokens = text.split("\\s+");
-        return mergeSegments(tokens, chunkSize, chunkOverlap);
+        return splitText(text, chunkSize, chunkOverlap, SplitStrategy.TOKEN);
     }
 
     /**
@@ -303,68 +407,269 @@ public class TextSplitterService {
      * @return 文本块列表
      */
     public List<String> chineseWordSplit(String text, int chunkSize, int chunkOverlap) {
-        List<Term> termList = HanLP.segment(text);
-        String[] words = new String[termList.size()];
-        for (int i = 0; i < termList.size(); i++) {
-            words[i] = termList.get(i).word;
+        return splitText(text, chunkSize, chunkOverlap, SplitStrategy.CHINESE_WORD);
+    }
+
+    /**
+     * 按Token窗口切分：每块不超过chunkSize个Token，相邻块重叠chunkOverlap个Token
+     */
+    private List<TextSpan> tokenSpans(CharSequence text, int chunkSize, int chunkOverlap) {
+        List<TextSpan> spans = new ArrayList<>();
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = tokenCounter.getTokenizer().fitPrefix(text, start, length, chunkSize);
+            if (end <= start) {
+                end = start + 1;
+            }
+            addTrimmed(text, start, end, spans);
+            if (end >= length) {
+                break;
+            }
+            int next = tokenCounter.getTokenizer().fitPrefix(text, start, end, chunkSize - chunkOverlap);
+            start = next > start ? next : end;
+        }
+        return spans;
+    }
+
+    /**
+     * 以分隔模式切分出的段区间（不含分隔符本身）
+     */
+    private List<TextSpan> delimitedSpans(CharSequence text, Pattern delimiter) {
+        List<TextSpan> segments = new ArrayList<>();
+        Matcher matcher = delimiter.matcher(text);
+        int prev = 0;
+        while (matcher.find()) {
+            if (matcher.start() > prev) {
+                segments.add(new TextSpan(prev, matcher.start()));
+            }
+            prev = Math.max(prev, matcher.end());
+        }
+        if (prev < text.length()) {
+            segments.add(new TextSpan(prev, text.length()));
+        }
+        return segments;
+    }
+
+    /**
+     * 匹配模式命中的段区间
+     */
+    private List<TextSpan> matchedSpans(CharSequence text, Pattern token) {
+        List<TextSpan> segments = new ArrayList<>();
+        Matcher matcher = token.matcher(text);
+        while (matcher.find()) {
+            segments.add(new TextSpan(matcher.start(), matcher.end()));
+        }
+        return segments;
+    }
+
+    /**
+     * 中文分词并映射回原文区间。
+     * 长文本先在段落/句子边界处切成分片，各分片用线程私有的分词器并行分词，
+     * 再按分片顺序拼接结果；每个词在原文中定位，偏移天然保持一致。
+     */
+    private List<TextSpan> chineseWordSpans(CharSequence text) {
+        if (segmentationExecutor == null) {
+            return segmentPiece(text, 0, text.length());
+        }
+        List<TextSpan> pieces = cutAtSafeBoundaries(text, Math.max(1024, segmentationPieceSize));
+        if (pieces.size() == 1) {
+            return segmentPiece(text, 0, text.length());
+        }
+        List<CompletableFuture<List<TextSpan>>> futures = new ArrayList<>(pieces.size());
+        for (TextSpan piece : pieces) {
+            futures.add(CompletableFuture.supplyAsync(() -> segmentPiece(text, piece.start(), piece.end()), segmentationExecutor));
+        }
+        List<TextSpan> segments = new ArrayList<>();
+        for (CompletableFuture<List<TextSpan>> future : futures) {
+            segments.addAll(future.join());
+        }
+        log.debug("并行中文分词完成: 文本长度={}, 分片数={}, 词数={}", text.length(), pieces.size(), segments.size());
+        return segments;
+    }
+
+    /**
+     * 对 [from, to) 分词，词语定位在原文坐标系中
+     */
+    private List<TextSpan> segmentPiece(CharSequence text, int from, int to) {
+        List<Term> termList = SEGMENTER.get().seg(text.subSequence(from, to).toString());
+        List<TextSpan> segments = new ArrayList<>(termList.size());
+        int cursor = from;
+        for (Term term : termList) {
+            String word = term.word;
+            if (word == null || word.isEmpty() || word.isBlank()) {
+                continue;
+            }
+            int limit = Math.min(to, cursor + word.length() + WORD_LOCATE_WINDOW);
+            int idx = indexOf(text, word, cursor, limit);
+            if (idx < 0) {
+                continue;
+            }
+            segments.add(new TextSpan(idx, idx + word.length()));
+            cursor = idx + word.length();
+        }
+        return segments;
+    }
+
+    /**
+     * 在安全边界处把文本切成约pieceSize大小的分片：
+     * 优先段落边界（空行），其次换行与句末标点，都找不到时在目标位置硬切（避开代理对）
+     */
+    private List<TextSpan> cutAtSafeBoundaries(CharSequence text, int pieceSize) {
+        List<TextSpan> pieces = new ArrayList<>();
+        int length = text.length();
+        int start = 0;
+        while (length - start > pieceSize + pieceSize / 2) {
+            int target = start + pieceSize;
+            int floor = start + pieceSize / 2;
+            int cut = -1;
+            for (int i = target; i > floor; i--) {
+                if (text.charAt(i - 1) == '\n' && text.charAt(i - 2) == '\n') {
+                    cut = i;
+                    break;
+                }
+            }
+            if (cut < 0) {
+                for (int i = target; i > floor; i--) {
+                    if (isSentenceBoundary(text.charAt(i - 1))) {
+                        cut = i;
+                        break;
+                    }
+                }
+            }
+            if (cut < 0) {
+                cut = Character.isHighSurrogate(text.charAt(target - 1)) ? target + 1 : target;
+            }
+            pieces.add(new TextSpan(start, cut));
+            start = cut;
         }
+        pieces.add(new TextSpan(start, length));
+        return pieces;
+    }
 
-        return mergeSegments(words, chunkSize, chunkOverlap);
+    private static boolean isSentenceBoundary(char c) {
+        return c == '\n' || c == '。' || c == '！' || c == '？' || c == '；' || c == '!' || c == '?';
     }
 
     /**
-     * 合并文本段，确保每个合并块不超过块大小
+     * 合并相邻段区间，确保每个合并块不超过块大小
+     * <p>
+     * 块区间从首段起点延伸到末段终点，段间原有的空白/标点保留在块内；
+     * 重叠部分取上一块末尾不超过chunkOverlap个字符的完整段。
      *
-     * @param segments     文本段数组
+     * @param text         原文
+     * @param segments     段区间（按位置递增）
      * @param chunkSize    块大小（字符数）
      * @param chunkOverlap 块重叠大小（字符数）
-     * @return 文本块列表
+     * @return 块区间列表
      */
-    private List<String> mergeSegments(String[] segments, int chunkSize, int chunkOverlap) {
-        List<String> chunks = new ArrayList<>();
-        StringBuilder currentChunk = new StringBuilder();
-        for (String segment : segments) {
-            // 如果当前块加上新段会超过块大小，先保存当前块并开始新块
-            if (currentChunk.length() + segment.length() + 1 > chunkSize && !currentChunk.isEmpty()) {
-                chunks.add(currentChunk.toString().trim());
-                // 计算重叠部分
-                // 这里简化处理，仅保留最后N个字符作为重叠部分
-                if (chunkOverlap > 0 && currentChunk.length() > chunkOverlap) {
-                    int overlapStart = Math.max(0, currentChunk.length() - chunkOverlap);
-                    currentChunk = new StringBuilder(currentChunk.substring(overlapStart));
-                } else {
-                    currentChunk = new StringBuilder();
+    private List<TextSpan> mergeSpans(CharSequence text, List<TextSpan> segments, int chunkSize, int chunkOverlap) {
+        List<TextSpan> chunks = new ArrayList<>();
+        int first = -1;
+        int lastEmitted = -1;
+        for (int i = 0; i < segments.size(); i++) {
+            TextSpan segment = segments.get(i);
+            // 如果单个段超过块大小，先保存当前累积的块，再按窗口截断这个大段
+            if (segment.length() > chunkSize) {
+                if (first >= 0 && i - 1 > lastEmitted) {
+                    addTrimmed(text, segments.get(first).start(), segments.get(i - 1).end(), chunks);
                 }
+                windowSplit(text, segment.start(), segment.end(), chunkSize, chunkOverlap, chunks);
+                first = -1;
+                lastEmitted = i;
+                continue;
             }
-            // 添加分隔符，除非是第一段
-            if (!currentChunk.isEmpty()) {
-                currentChunk.append(" ");
-            }
-            // 如果单个段超过块大小，截断处理
-            if (segment.length() > chunkSize) {
-                // 先添加当前累积的块
-                if (!currentChunk.isEmpty()) {
-                    chunks.add(currentChunk.toString().trim());
-                    currentChunk = new StringBuilder();
+            // 如果当前块加上新段会超过块大小，先保存当前块并回溯出重叠段
+            if (first >= 0 && segment.end() - segments.get(first).start() > chunkSize) {
+                if (i - 1 > lastEmitted) {
+                    addTrimmed(text, segments.get(first).start(), segments.get(i - 1).end(), chunks);
+                    lastEmitted = i - 1;
                 }
-                // 截断处理这个大段
-                int segStart = 0;
-                while (segStart < segment.length()) {
-                    int segEnd = Math.min(segStart + chunkSize, segment.length());
-                    chunks.add(segment.substring(segStart, segEnd).trim());
-                    segStart += chunkSize - chunkOverlap;
+                int previousEnd = segments.get(i - 1).end();
+                int j = i;
+                while (j - 1 >= first
+                        && previousEnd - segments.get(j - 1).start() <= chunkOverlap
+                        && segment.end() - segments.get(j - 1).start() <= chunkSize) {
+                    j--;
                 }
-            } else {
-                // 否则添加到当前块
-                currentChunk.append(segment);
+                first = j < i ? j : -1;
+            }
+            if (first < 0) {
+                first = i;
             }
         }
         // 添加最后一个块
-        if (!currentChunk.isEmpty()) {
-            chunks.add(currentChunk.toString().trim());
+        if (first >= 0 && segments.size() - 1 > lastEmitted) {
+            addTrimmed(text, segments.get(first).start(), segments.get(segments.size() - 1).end(), chunks);
         }
 
         return chunks;
     }
 
+    /**
+     * 按固定窗口切分 [from, to)，跳过空白窗口
+     */
+    private void windowSplit(CharSequence text, int from, int to, int chunkSize, int chunkOverlap, List<TextSpan> result) {
+        int start = from;
+        while (start < to) {
+            int end = Math.min(start + chunkSize, to);
+            addIfNotBlank(text, start, end, result);
+            if (end == to) {
+                break;
+            }
+            start += chunkSize - chunkOverlap;
+        }
+    }
+
+    private void addIfNotBlank(CharSequence text, int from, int to, List<TextSpan> result) {
+        if (!isBlank(text, from, to)) {
+            result.add(new TextSpan(from, to));
+        }
+    }
+
+    /**
+     * 去除首尾空白后添加区间
+     */
+    private void addTrimmed(CharSequence text, int from, int to, List<TextSpan> result) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        if (from < to) {
+            result.add(new TextSpan(from, to));
+        }
+    }
+
+    private static boolean isBlank(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在 [from, to) 内查找子串，查找范围严格受限于区间，避免递归时重复扫描整篇文本
+     */
+    private static int indexOf(CharSequence text, String target, int from, int to) {
+        int n = target.length();
+        char first = target.charAt(0);
+        for (int i = from; i + n <= to; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            int k = 1;
+            while (k < n && text.charAt(i + k) == target.charAt(k)) {
+                k++;
+            }
+            if (k == n) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
 }
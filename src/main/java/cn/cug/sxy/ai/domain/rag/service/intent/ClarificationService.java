@@ -2,9 +2,10 @@ package cn.cug.sxy.ai.domain.rag.service.intent;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
@@ -21,7 +22,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ClarificationService {
 
-    private final ChatClient chatClient;
+    private final ChatGateway chatGateway;
 
     private static final String SYSTEM_PROMPT = """
             你是一个礼貌且专业的AI助手，需要针对用户模糊的问题给出澄清式提问。
@@ -39,7 +40,7 @@ public class ClarificationService {
                     new SystemMessage(SYSTEM_PROMPT),
                     new UserMessage(instructions)
             );
-            return chatClient.prompt(new Prompt(messages)).call().content();
+            return chatGateway.call(LlmPurpose.CLARIFICATION, new Prompt(messages));
         } catch (Exception e) {
             log.warn("澄清问题生成失败: {}", e.getMessage());
             return "为了更好地帮助您，请提供更多细节或明确您的需求。";
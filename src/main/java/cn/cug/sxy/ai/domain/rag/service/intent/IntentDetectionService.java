@@ -10,9 +10,11 @@ import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetector.IntentRequest;
 import cn.cug.sxy.ai.domain.rag.service.intent.tracking.RoutingDecision;
 import cn.cug.sxy.ai.domain.rag.service.intent.tracking.RoutingDecisionPublisher;
 import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import cn.cug.sxy.ai.domain.rag.service.routing.SystemLoadMonitor;
+import cn.cug.sxy.ai.infrastructure.cache.CacheLoadCoordinator;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -20,6 +22,14 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 负责 orchestrate 多层意图识别。
@@ -33,6 +43,10 @@ public class IntentDetectionService {
     
     private final RoutingDecisionPublisher routingDecisionPublisher;
 
+    private final CacheLoadCoordinator cacheLoadCoordinator;
+
+    private final SystemLoadMonitor loadMonitor;
+
     @Value("${rag.intent.confidence-threshold:0.65}")
     private double confidenceThreshold;
     
@@ -42,12 +56,26 @@ public class IntentDetectionService {
     @Value("${rag.intent.enable-tracking:true}")
     private boolean enableTracking;
 
+    @Value("${rag.intent.parallel.enabled:false}")
+    private boolean parallel; // 并行检测模式：语义/LLM检测器与规则检测同时启动
+
+    @Value("${rag.intent.parallel.default-budget-ms:2000}")
+    private long defaultBudgetMs;
+
+    private final Executor detectionExecutor;
+
     public IntentDetectionService(List<IntentDetector> detectors,
-                                 RoutingDecisionPublisher routingDecisionPublisher) {
+                                 RoutingDecisionPublisher routingDecisionPublisher,
+                                 CacheLoadCoordinator cacheLoadCoordinator,
+                                 SystemLoadMonitor loadMonitor,
+                                 @Qualifier("intentDetectionExecutor") Executor detectionExecutor) {
         this.detectors = detectors.stream()
                 .sorted(Comparator.comparingInt(IntentDetector::getOrder))
                 .toList();
         this.routingDecisionPublisher = routingDecisionPublisher;
+        this.cacheLoadCoordinator = cacheLoadCoordinator;
+        this.loadMonitor = loadMonitor;
+        this.detectionExecutor = detectionExecutor;
         log.info("已注册{}个意图检测器: {}", this.detectors.size(),
                 this.detectors.stream().map(IntentDetector::getName).toList());
     }
@@ -55,10 +83,19 @@ public class IntentDetectionService {
     /**
      * 检测意图（带缓存和追踪）。
      * 注意：缓存条件为不缓存需要澄清的意图，因为澄清需要实时处理。
+     * 同一查询同时未命中时只执行一次检测（含LLM规划），其余请求等待同一结果。
+     * 负载降级跳过LLM规划期间检测到的意图不缓存，避免负载恢复后仍复用缺少 TaskPlan 的结果。
      */
-    @Cacheable(value = "intentCache", key = "#request.queryText.hashCode()", 
-               unless = "#result == null || #result.isRequiresClarification()")
     public QueryIntent detect(IntentRequest request) {
+        if (!enableCache) {
+            return detectUncached(request);
+        }
+        boolean plannerAvailable = loadMonitor.currentLevel().isTaskPlanEnabled();
+        return cacheLoadCoordinator.get("intentCache", request.queryText().hashCode(), () -> detectUncached(request),
+                intent -> plannerAvailable && !intent.isRequiresClarification());
+    }
+
+    private QueryIntent detectUncached(IntentRequest request) {
         Instant start = Instant.now();
         RoutingDecision decision = RoutingDecision.builder()
                 .queryText(request.queryText())
@@ -67,86 +104,222 @@ public class IntentDetectionService {
                 .timestamp(LocalDateTime.now())
                 .detectorResults(new ArrayList<>())
                 .cached(false)
+                .mode(parallel ? "PARALLEL" : "SEQUENTIAL")
                 .build();
-        
+        return parallel && detectors.size() > 1
+                ? detectParallel(request, decision, start)
+                : detectSequential(request, decision, start);
+    }
+
+    /**
+     * 顺序检测：按优先级依次执行，高置信度命中即返回。
+     */
+    private QueryIntent detectSequential(IntentRequest request, RoutingDecision decision, Instant start) {
         DetectionResult bestCandidate = null;
-        boolean cached = false;
+        String bestDetector = null;
         
         for (IntentDetector detector : detectors) {
             Instant detectorStart = Instant.now();
             try {
                 DetectionResult result = detector.detect(request);
                 long detectorLatency = java.time.Duration.between(detectorStart, Instant.now()).toMillis();
-                
-                if (enableTracking) {
-                    decision.getDetectorResults().add(RoutingDecision.DetectorResult.builder()
-                            .detectorName(detector.getName())
-                            .matched(result != null && result.matched())
-                            .confidence(result != null ? result.confidence() : 0.0)
-                            .reason(result != null ? result.reason() : "未匹配")
-                            .latencyMs(detectorLatency)
-                            .build());
-                }
+                track(decision, detector, result, detectorLatency);
                 
                 if (result != null && result.matched() && result.intent() != null) {
                     log.debug("意图检测器 {} 命中，confidence={}, reason={}",
                             detector.getName(), result.confidence(), result.reason());
-                    QueryIntent intent = result.intent();
-                    
-                    // 检查是否来自缓存
-                    if (intent.getAttributes() != null && 
-                        "cached".equals(intent.getAttributes().get("plannerModel"))) {
-                        cached = true;
-                        decision.setCached(true);
-                    }
-                    
-                    if ((result.confidence() >= confidenceThreshold && !intent.isAllowCascade())
-                            || intent.isRequiresClarification()) {
-                        decision.setFinalIntent(intent);
-                        decision.setReason("高置信度匹配或需要澄清: " + detector.getName());
-                        decision.setLatencyMs(java.time.Duration.between(start, Instant.now()).toMillis());
-                        
-                        if (enableTracking) {
-                            routingDecisionPublisher.publish(decision);
-                        }
-                        
-                        return intent;
+                    markCached(decision, result.intent());
+                    if (isDecisive(result)) {
+                        return decide(decision, start, result.intent(), detector.getName(),
+                                "高置信度匹配或需要澄清: " + detector.getName(), 0);
                     }
                     if (bestCandidate == null || result.confidence() > bestCandidate.confidence()) {
                         bestCandidate = result;
+                        bestDetector = detector.getName();
                     }
                 }
             } catch (Exception ex) {
                 log.warn("意图检测器 {} 执行失败: {}", detector.getName(), ex.getMessage());
-                if (enableTracking) {
-                    decision.getDetectorResults().add(RoutingDecision.DetectorResult.builder()
-                            .detectorName(detector.getName())
-                            .matched(false)
-                            .confidence(0.0)
-                            .reason("执行失败: " + ex.getMessage())
-                            .latencyMs(java.time.Duration.between(detectorStart, Instant.now()).toMillis())
-                            .build());
+                trackFailure(decision, detector, "执行失败: " + ex.getMessage(),
+                        java.time.Duration.between(detectorStart, Instant.now()).toMillis(), false);
+            }
+        }
+        return decideFallback(request, decision, start, bestCandidate, bestDetector, 0);
+    }
+
+    /**
+     * 并行检测：最高优先级检测器（规则）在当前线程执行，其余检测器同时在线程池中启动。
+     * 结果仍按优先级顺序判定，保证与顺序检测的决策一致：
+     * - 某个检测器高置信度且不级联命中时立即返回，取消仍在执行的低优先级检测器
+     * - 每个检测器有独立的时间预算（自检测开始计），超时视为未命中并取消
+     * 节省的延迟 = 顺序执行到决策点所需的检测器耗时之和 - 实际总延迟。
+     */
+    private QueryIntent detectParallel(IntentRequest request, RoutingDecision decision, Instant start) {
+        long startNanos = System.nanoTime();
+        List<FutureTask<TimedResult>> tasks = new ArrayList<>(detectors.size());
+        tasks.add(null);
+        for (IntentDetector detector : detectors.subList(1, detectors.size())) {
+            FutureTask<TimedResult> task = new FutureTask<>(() -> runTimed(detector, request));
+            try {
+                detectionExecutor.execute(task);
+                tasks.add(task);
+            } catch (RejectedExecutionException e) {
+                // 线程池饱和：轮到该检测器时在当前线程执行
+                tasks.add(null);
+            }
+        }
+
+        DetectionResult bestCandidate = null;
+        String bestDetector = null;
+        long sequentialCostMs = 0;
+        try {
+            for (int i = 0; i < detectors.size(); i++) {
+                IntentDetector detector = detectors.get(i);
+                TimedResult timed = tasks.get(i) == null
+                        ? runTimed(detector, request)
+                        : await(tasks.get(i), detector, startNanos);
+                if (timed.error() != null) {
+                    sequentialCostMs += timed.latencyMs();
+                    log.warn("意图检测器 {} 执行失败: {}", detector.getName(), timed.error());
+                    trackFailure(decision, detector, "执行失败: " + timed.error(), timed.latencyMs(), false);
+                    continue;
+                }
+                if (timed.timedOut()) {
+                    sequentialCostMs += timed.latencyMs();
+                    log.info("意图检测器 {} 超出时间预算 {}ms，视为未命中", detector.getName(), budgetOf(detector));
+                    trackFailure(decision, detector, "超出时间预算", timed.latencyMs(), true);
+                    continue;
+                }
+                sequentialCostMs += timed.latencyMs();
+                DetectionResult result = timed.result();
+                track(decision, detector, result, timed.latencyMs());
+                if (result != null && result.matched() && result.intent() != null) {
+                    log.debug("意图检测器 {} 命中，confidence={}, reason={}",
+                            detector.getName(), result.confidence(), result.reason());
+                    markCached(decision, result.intent());
+                    if (isDecisive(result)) {
+                        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                        for (int j = i + 1; j < detectors.size(); j++) {
+                            if (tasks.get(j) != null && !tasks.get(j).isDone()) {
+                                tasks.get(j).cancel(true);
+                                trackFailure(decision, detectors.get(j), "已有高置信度结果，提前取消", elapsedMs, true);
+                            }
+                        }
+                        return decide(decision, start, result.intent(), detector.getName(),
+                                "高置信度匹配或需要澄清: " + detector.getName(), sequentialCostMs);
+                    }
+                    if (bestCandidate == null || result.confidence() > bestCandidate.confidence()) {
+                        bestCandidate = result;
+                        bestDetector = detector.getName();
+                    }
                 }
             }
+        } finally {
+            tasks.stream().filter(Objects::nonNull).forEach(task -> task.cancel(true));
         }
-        
-        if (bestCandidate != null) {
-            decision.setFinalIntent(bestCandidate.intent());
-            decision.setReason("选择最佳候选: " + bestCandidate.confidence());
-        } else {
-            QueryIntent fallbackIntent = buildFallbackIntent(request.queryText());
-            decision.setFinalIntent(fallbackIntent);
-            decision.setReason("所有检测器未命中，返回默认意图");
-            log.info("所有检测器未命中，返回默认意图");
+        return decideFallback(request, decision, start, bestCandidate, bestDetector, sequentialCostMs);
+    }
+
+    /**
+     * 在检测器的时间预算内等待结果，超时则取消。
+     */
+    private TimedResult await(FutureTask<TimedResult> task, IntentDetector detector, long startNanos) {
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetOf(detector));
+        try {
+            long remaining = deadline - System.nanoTime();
+            return remaining > 0 ? task.get(remaining, TimeUnit.NANOSECONDS) : task.get(0, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            return TimedResult.timeout(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(true);
+            return TimedResult.timeout(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        } catch (CancellationException | ExecutionException e) {
+            return new TimedResult(null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), e.getMessage(), false);
         }
-        
+    }
+
+    private TimedResult runTimed(IntentDetector detector, IntentRequest request) {
+        long begin = System.nanoTime();
+        try {
+            DetectionResult result = detector.detect(request);
+            return new TimedResult(result, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), null, false);
+        } catch (Exception ex) {
+            return new TimedResult(null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), ex.getMessage(), false);
+        }
+    }
+
+    private long budgetOf(IntentDetector detector) {
+        return detector.getTimeBudgetMs() > 0 ? detector.getTimeBudgetMs() : defaultBudgetMs;
+    }
+
+    private boolean isDecisive(DetectionResult result) {
+        QueryIntent intent = result.intent();
+        return (result.confidence() >= confidenceThreshold && !intent.isAllowCascade())
+                || intent.isRequiresClarification();
+    }
+
+    private void markCached(RoutingDecision decision, QueryIntent intent) {
+        // 检查是否来自缓存
+        if (intent.getAttributes() != null &&
+            "cached".equals(intent.getAttributes().get("plannerModel"))) {
+            decision.setCached(true);
+        }
+    }
+
+    private QueryIntent decide(RoutingDecision decision, Instant start, QueryIntent intent,
+                               String winner, String reason, long sequentialCostMs) {
+        decision.setFinalIntent(intent);
+        decision.setWinner(winner);
+        decision.setReason(reason);
         decision.setLatencyMs(java.time.Duration.between(start, Instant.now()).toMillis());
+        if (sequentialCostMs > 0) {
+            decision.setLatencySavedMs(Math.max(0, sequentialCostMs - decision.getLatencyMs()));
+        }
         
         if (enableTracking) {
             routingDecisionPublisher.publish(decision);
         }
         
-        return decision.getFinalIntent();
+        return intent;
+    }
+
+    private QueryIntent decideFallback(IntentRequest request, RoutingDecision decision, Instant start,
+                                       DetectionResult bestCandidate, String bestDetector, long sequentialCostMs) {
+        if (bestCandidate != null) {
+            return decide(decision, start, bestCandidate.intent(), bestDetector,
+                    "选择最佳候选: " + bestCandidate.confidence(), sequentialCostMs);
+        }
+        log.info("所有检测器未命中，返回默认意图");
+        return decide(decision, start, buildFallbackIntent(request.queryText()), null,
+                "所有检测器未命中，返回默认意图", sequentialCostMs);
+    }
+
+    private void track(RoutingDecision decision, IntentDetector detector, DetectionResult result, long latencyMs) {
+        if (enableTracking) {
+            decision.getDetectorResults().add(RoutingDecision.DetectorResult.builder()
+                    .detectorName(detector.getName())
+                    .matched(result != null && result.matched())
+                    .confidence(result != null ? result.confidence() : 0.0)
+                    .reason(result != null ? result.reason() : "未匹配")
+                    .latencyMs(latencyMs)
+                    .build());
+        }
+    }
+
+    private void trackFailure(RoutingDecision decision, IntentDetector detector, String reason,
+                              long latencyMs, boolean cancelled) {
+        if (enableTracking) {
+            decision.getDetectorResults().add(RoutingDecision.DetectorResult.builder()
+                    .detectorName(detector.getName())
+                    .matched(false)
+                    .confidence(0.0)
+                    .reason(reason)
+                    .latencyMs(latencyMs)
+                    .cancelled(cancelled)
+                    .build());
+        }
     }
 
     private QueryIntent buildFallbackIntent(String queryText) {
@@ -166,5 +339,11 @@ public class IntentDetectionService {
                 .taskPlan(TaskPlan.builder().summary("clarify").build())
                 .build();
     }
-}
 
+    private record TimedResult(DetectionResult result, long latencyMs, String error, boolean timedOut) {
+
+        static TimedResult timeout(long latencyMs) {
+            return new TimedResult(null, latencyMs, null, true);
+        }
+    }
+}
@@ -20,6 +20,13 @@ public interface IntentDetector {
         return getClass().getSimpleName();
     }
 
+    /**
+     * 并行检测模式下的时间预算（毫秒），超时未返回视为未命中；0 表示使用默认预算。
+     */
+    default long getTimeBudgetMs() {
+        return 0;
+    }
+
     record DetectionResult(boolean matched, double confidence, QueryIntent intent, String reason) { }
 
     record IntentRequest(String queryText,
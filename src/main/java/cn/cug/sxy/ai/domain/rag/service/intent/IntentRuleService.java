@@ -1,17 +1,26 @@
 package cn.cug.sxy.ai.domain.rag.service.intent;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChange;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChangedEvent;
 import cn.cug.sxy.ai.domain.rag.repository.IIntentRuleRepository;
+import cn.cug.sxy.ai.domain.rag.service.intent.rule.CompiledIntentRules;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -26,22 +35,32 @@ import java.util.stream.Collectors;
 public class IntentRuleService {
 
     private final IIntentRuleRepository intentRuleRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    // 缓存规则：Type -> List<Rule>
-    private final Map<String, List<IntentRule>> ruleCache = new ConcurrentHashMap<>();
+    // 缓存规则：Type -> List<Rule>，全量刷新或增量变更时写时复制整体替换
+    private volatile Map<String, List<IntentRule>> ruleCache = Map.of();
+
+    // KEYWORD/REGEX 规则编译后的匹配器，与 ruleCache 同时替换
+    private volatile CompiledIntentRules compiledRules = CompiledIntentRules.empty();
+
+    // 本节点缓存已同步到的规则版本（intent_rule_version），之后的变更由 syncChanges 增量拉取
+    private volatile long ruleVersion;
 
     private static final Comparator<IntentRule> RULE_COMPARATOR = Comparator
             .comparing((IntentRule r) -> r.getPriority() == null ? Integer.MAX_VALUE : r.getPriority())
             .thenComparing((IntentRule r) -> r.getConfidence() == null ? 0d : r.getConfidence(), Comparator.reverseOrder());
 
-    //@PostConstruct
+    @PostConstruct
     public void init() {
         refreshRules();
     }
 
-    public void refreshRules() {
+    public synchronized void refreshRules() {
         log.info("开始刷新意图识别规则...");
         try {
+            // 0. 先读取版本再加载规则：加载期间发生的变更版本更大，会在下次同步时重新应用
+            long version = intentRuleRepository.latestVersion();
+
             // 1. 从数据库加载所有启用状态的规则
             List<IntentRule> allRules = intentRuleRepository.findAllActive();
             
@@ -52,11 +71,18 @@ public class IntentRuleService {
                                     .sorted(RULE_COMPARATOR)
                                     .toList())));
 
-            // 3. 原子替换缓存
-            ruleCache.clear();
-            ruleCache.putAll(groupedRules);
+            // 3. 编译关键词与正则规则（Aho-Corasick + 正则字面量预过滤）
+            CompiledIntentRules compiled = CompiledIntentRules.compile(
+                    groupedRules.getOrDefault("KEYWORD", Collections.emptyList()),
+                    groupedRules.getOrDefault("REGEX", Collections.emptyList()));
+
+            // 4. 原子替换缓存
+            ruleCache = Map.copyOf(groupedRules);
+            compiledRules = compiled;
+            ruleVersion = Math.max(ruleVersion, version);
             
-            log.info("意图规则刷新完成，共加载 {} 条规则", allRules.size());
+            log.info("意图规则刷新完成，共加载 {} 条规则，版本: {}，自动机节点数: {}, 无法预过滤的规则: {}",
+                    allRules.size(), version, compiled.automatonSize(), compiled.alwaysCheckedRuleCount());
             ruleCache.forEach((type, rules) -> log.info("类型: {}, 数量: {}", type, rules.size()));
         } catch (Exception e) {
             log.error("刷新意图规则失败", e);
@@ -72,6 +98,69 @@ public class IntentRuleService {
         return ruleCache.getOrDefault(ruleType, Collections.emptyList());
     }
 
+    /**
+     * 获取编译后的关键词与正则规则
+     */
+    public CompiledIntentRules getCompiledRules() {
+        return compiledRules;
+    }
+
+    /**
+     * 本节点已同步到的规则版本
+     */
+    public long getRuleVersion() {
+        return ruleVersion;
+    }
+
+    /**
+     * 数据库中的最新规则版本
+     */
+    public long getLatestVersion() {
+        return intentRuleRepository.latestVersion();
+    }
+
+    /**
+     * 追加规则变更版本，供其他节点增量同步
+     *
+     * @param ruleIds 变更的规则ID，为空时记录一次全量刷新
+     * @return 最新版本号
+     */
+    public long recordChange(List<Long> ruleIds) {
+        return intentRuleRepository.recordChange(ruleIds == null || ruleIds.isEmpty()
+                ? Collections.singletonList(null) : ruleIds);
+    }
+
+    /**
+     * 拉取本节点版本之后的变更并应用：只重新读取变更过的规则行；存在全量刷新记录时重新加载整表。
+     * 增量变更以 remote 事件发布，语义路由据此更新受影响的条目。
+     */
+    public SyncResult syncChanges() {
+        long from = ruleVersion;
+        List<IntentRuleChange> changes = intentRuleRepository.findChangesSince(from);
+        if (changes.isEmpty()) {
+            return new SyncResult(from, 0, false);
+        }
+        if (changes.stream().anyMatch(IntentRuleChange::isFullRefresh)) {
+            refreshRules();
+            return new SyncResult(ruleVersion, 0, true);
+        }
+        long to = changes.get(changes.size() - 1).version();
+        List<Long> ids = changes.stream().map(IntentRuleChange::ruleId).distinct().toList();
+        List<IntentRule> rules = intentRuleRepository.findByIds(ids);
+        applyChanges(ids, rules, to);
+        // 同一批变更可能同时包含删除与修改：库中已不存在的规则按 DELETED 发布，其余（含已停用的）按 UPSERTED 发布
+        List<Long> upsertedIds = rules.stream().map(IntentRule::getId).toList();
+        List<Long> deletedIds = ids.stream().filter(id -> !upsertedIds.contains(id)).toList();
+        if (!deletedIds.isEmpty()) {
+            publishChanged(deletedIds, List.of(), IntentRuleChangedEvent.ChangeType.DELETED, true);
+        }
+        if (!rules.isEmpty()) {
+            publishChanged(upsertedIds, rules, IntentRuleChangedEvent.ChangeType.UPSERTED, true);
+        }
+        log.info("意图规则已同步: v{} -> v{}，变更规则 {} 条", from, to, ids.size());
+        return new SyncResult(to, ids.size(), false);
+    }
+
     /**
      * 获取所有规则（包括禁用）
      */
@@ -80,20 +169,29 @@ public class IntentRuleService {
     }
 
     /**
-     * 创建新规则
+     * 创建新规则：只把该规则并入缓存快照，不重新加载整表
      */
     public IntentRule createRule(IntentRule rule) {
         intentRuleRepository.save(rule);
-        refreshRules(); // 立即刷新缓存
-        return rule;
+        IntentRule saved = intentRuleRepository.findById(rule.getId()).orElse(rule);
+        applyChanges(List.of(), List.of(saved), 0L);
+        publishChanged(List.of(saved.getId()), List.of(saved), IntentRuleChangedEvent.ChangeType.UPSERTED);
+        return saved;
     }
 
     /**
-     * 更新规则
+     * 更新规则：重新读取该行（内容变化时库中向量已被清空），替换缓存快照中的对应条目
      */
     public IntentRule updateRule(IntentRule rule) {
         intentRuleRepository.update(rule);
-        refreshRules(); // 立即刷新缓存
+        Optional<IntentRule> updated = intentRuleRepository.findById(rule.getId());
+        if (updated.isPresent()) {
+            applyChanges(List.of(rule.getId()), List.of(updated.get()), 0L);
+            publishChanged(List.of(rule.getId()), List.of(updated.get()), IntentRuleChangedEvent.ChangeType.UPSERTED);
+        } else {
+            applyChanges(List.of(rule.getId()), List.of(), 0L);
+            publishChanged(List.of(rule.getId()), List.of(), IntentRuleChangedEvent.ChangeType.DELETED);
+        }
         return rule;
     }
 
@@ -102,15 +200,92 @@ public class IntentRuleService {
      */
     public void deleteRule(Long id) {
         intentRuleRepository.deleteById(id);
-        refreshRules(); // 立即刷新缓存
+        applyChanges(List.of(id), List.of(), 0L);
+        publishChanged(List.of(id), List.of(), IntentRuleChangedEvent.ChangeType.DELETED);
     }
 
     /**
      * 批量删除规则
      */
     public void batchDeleteRules(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
         intentRuleRepository.batchDelete(ids);
-        refreshRules(); // 立即刷新缓存
+        applyChanges(ids, List.of(), 0L);
+        publishChanged(List.copyOf(ids), List.of(), IntentRuleChangedEvent.ChangeType.DELETED);
+    }
+
+    /**
+     * 保存语义示例向量，同时回填到缓存中的规则对象，后续全量刷新路由时无需重新生成
+     */
+    public void saveEmbedding(IntentRule rule, float[] embedding, String embeddingModel) {
+        intentRuleRepository.updateEmbedding(rule.getId(), embedding, embeddingModel);
+        rule.setEmbedding(embedding);
+        rule.setEmbeddingModel(embeddingModel);
+    }
+
+    /**
+     * 写时复制更新缓存：只重建受影响类型的列表，未涉及的类型沿用原列表；
+     * 仅当 KEYWORD/REGEX 规则变化时重新编译匹配器。
+     *
+     * @param removedIds 需要移除的规则ID（更新时包含旧版本）
+     * @param upserts    变更后的规则，停用的规则不会加入缓存
+     * @param version    变更对应的规则版本，本节点发起的变更为 0（版本由同步时推进）
+     */
+    private synchronized void applyChanges(Collection<Long> removedIds, List<IntentRule> upserts, long version) {
+        Set<Long> ids = new HashSet<>(removedIds);
+        upserts.forEach(rule -> ids.add(rule.getId()));
+
+        Map<String, List<IntentRule>> next = new HashMap<>(ruleCache);
+        Set<String> touchedTypes = new HashSet<>();
+        ruleCache.forEach((type, rules) -> {
+            if (rules.stream().anyMatch(rule -> ids.contains(rule.getId()))) {
+                next.put(type, rules.stream().filter(rule -> !ids.contains(rule.getId())).toList());
+                touchedTypes.add(type);
+            }
+        });
+        for (IntentRule rule : upserts) {
+            if (!Boolean.TRUE.equals(rule.getIsActive()) || rule.getRuleType() == null) {
+                continue;
+            }
+            List<IntentRule> rules = new ArrayList<>(next.getOrDefault(rule.getRuleType(), Collections.emptyList()));
+            rules.add(rule);
+            next.put(rule.getRuleType(), rules);
+            touchedTypes.add(rule.getRuleType());
+        }
+        for (String type : touchedTypes) {
+            List<IntentRule> sorted = next.get(type).stream().sorted(RULE_COMPARATOR).toList();
+            if (sorted.isEmpty()) {
+                next.remove(type);
+            } else {
+                next.put(type, sorted);
+            }
+        }
+
+        CompiledIntentRules compiled = compiledRules;
+        if (touchedTypes.contains("KEYWORD") || touchedTypes.contains("REGEX")) {
+            compiled = CompiledIntentRules.compile(
+                    next.getOrDefault("KEYWORD", Collections.emptyList()),
+                    next.getOrDefault("REGEX", Collections.emptyList()));
+        }
+        ruleCache = Map.copyOf(next);
+        compiledRules = compiled;
+        ruleVersion = Math.max(ruleVersion, version);
+        log.info("意图规则增量更新: 变更类型={}, 涉及规则={}", touchedTypes, ids);
+    }
+
+    private void publishChanged(List<Long> ruleIds, List<IntentRule> rules, IntentRuleChangedEvent.ChangeType changeType) {
+        publishChanged(ruleIds, rules, changeType, false);
+    }
+
+    private void publishChanged(List<Long> ruleIds, List<IntentRule> rules, IntentRuleChangedEvent.ChangeType changeType,
+                                boolean remote) {
+        try {
+            eventPublisher.publishEvent(new IntentRuleChangedEvent(this, ruleIds, rules, changeType, remote));
+        } catch (Exception e) {
+            log.warn("发布意图规则变更事件失败: ruleIds={}", ruleIds, e);
+        }
     }
 
     /**
@@ -119,4 +294,14 @@ public class IntentRuleService {
     public IntentRule getRuleById(Long id) {
         return intentRuleRepository.findById(id).orElse(null);
     }
+
+    /**
+     * 一次同步的结果
+     *
+     * @param version      同步后的版本
+     * @param changedRules 增量应用的规则数
+     * @param fullRefresh  是否重新加载了整表
+     */
+    public record SyncResult(long version, int changedRules, boolean fullRefresh) {
+    }
 }
@@ -0,0 +1,202 @@
+package cn.cug.sxy.ai.domain.rag.service.intent;
+
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChangedEvent;
+import cn.cug.sxy.ai.domain.rag.service.intent.detector.SemanticIntentDetector;
+import cn.cug.sxy.ai.infrastructure.cache.CacheNamespaces;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 意图规则跨节点同步。
+ * <p>
+ * 1. 本节点发起的规则变更（或全量刷新）追加到 intent_rule_version 表，并通过 Redis 发布/订阅广播新版本号
+ * 2. 各节点收到广播后在后台线程拉取本节点版本之后的变更，只重新读取变更过的规则行并增量更新规则缓存与语义路由；
+ *    广播丢失时由定期轮询最新版本兜底
+ * 3. 规则变更后意图检测缓存（intentCache）通过命名空间换代整体失效，各节点的本地 L1 随换代通知一并清空
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class IntentRuleSyncService implements MessageListener {
+
+    private static final String INTENT_CACHE = "intentCache";
+
+    private final IntentRuleService intentRuleService;
+    private final SemanticIntentDetector semanticIntentDetector;
+    private final CacheNamespaces cacheNamespaces;
+    private final ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final long pollIntervalMs;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rag-intent-rule-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 合并同步请求：已有待执行的同步时不再重复提交
+    private final AtomicBoolean syncPending = new AtomicBoolean();
+
+    private volatile long lastSyncAt;
+    private volatile long lastAnnouncedVersion;
+
+    public IntentRuleSyncService(IntentRuleService intentRuleService,
+                                 SemanticIntentDetector semanticIntentDetector,
+                                 CacheNamespaces cacheNamespaces,
+                                 ObjectProvider<RedisMessageListenerContainer> listenerContainer,
+                                 RedisConnectionFactory redisConnectionFactory,
+                                 @Value("${rag.intent.rule-sync.channel:rag:intent:rule-version}") String channel,
+                                 @Value("${rag.intent.rule-sync.poll-interval-ms:30000}") long pollIntervalMs) {
+        this.intentRuleService = intentRuleService;
+        this.semanticIntentDetector = semanticIntentDetector;
+        this.cacheNamespaces = cacheNamespaces;
+        this.listenerContainer = listenerContainer;
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.channel = channel;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        RedisMessageListenerContainer container = listenerContainer.getIfAvailable();
+        if (container != null) {
+            container.addMessageListener(this, new ChannelTopic(channel));
+        } else {
+            log.warn("未找到Redis消息监听容器，意图规则仅依赖定期轮询同步");
+        }
+        if (pollIntervalMs > 0) {
+            executor.scheduleWithFixedDelay(this::pollLatestVersion, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("意图规则同步已启动: channel={}, 当前版本: v{}, 轮询间隔: {}ms",
+                channel, intentRuleService.getRuleVersion(), pollIntervalMs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 本节点的规则增删改：在语义路由更新（含向量持久化）之后记录版本并广播，
+     * 其他节点拉取时即可直接使用已存储的向量。
+     */
+    @EventListener
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onRuleChanged(IntentRuleChangedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+        announce(event.getRuleIds());
+    }
+
+    /**
+     * 本节点完成全量刷新后调用，通知其他节点重新加载整表。
+     */
+    public void announceFullRefresh() {
+        announce(List.of());
+    }
+
+    private void announce(List<Long> ruleIds) {
+        try {
+            long version = intentRuleService.recordChange(ruleIds);
+            lastAnnouncedVersion = version;
+            cacheNamespaces.invalidate(INTENT_CACHE);
+            redisTemplate.convertAndSend(channel, Long.toString(version));
+            log.info("意图规则变更已广播: v{}, 规则: {}", version, ruleIds.isEmpty() ? "全量" : ruleIds);
+        } catch (Exception e) {
+            // 版本已写入时其他节点会在下次轮询时同步
+            log.warn("意图规则变更广播失败: ruleIds={}", ruleIds, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            if (Long.parseLong(body.trim()) > intentRuleService.getRuleVersion()) {
+                requestSync();
+            }
+        } catch (NumberFormatException e) {
+            log.debug("忽略无法解析的规则版本消息: {}", body);
+        }
+    }
+
+    private void pollLatestVersion() {
+        try {
+            if (intentRuleService.getLatestVersion() > intentRuleService.getRuleVersion()) {
+                requestSync();
+            }
+        } catch (Exception e) {
+            log.debug("轮询意图规则版本失败: {}", e.getMessage());
+        }
+    }
+
+    private void requestSync() {
+        if (!syncPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::sync);
+        } catch (RejectedExecutionException e) {
+            syncPending.set(false);
+        }
+    }
+
+    private void sync() {
+        syncPending.set(false);
+        try {
+            IntentRuleService.SyncResult result = intentRuleService.syncChanges();
+            if (result.fullRefresh()) {
+                // 发起节点已补齐并持久化向量，这里只加载已存储的向量
+                semanticIntentDetector.refreshRoutes(false);
+            }
+            lastSyncAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            log.warn("同步意图规则失败，将在下次通知或轮询时重试", e);
+        }
+    }
+
+    /**
+     * 同步状态，用于健康检查：本节点版本落后于最新版本说明同步滞后。
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        long applied = intentRuleService.getRuleVersion();
+        status.put("appliedVersion", applied);
+        try {
+            long latest = intentRuleService.getLatestVersion();
+            status.put("latestVersion", latest);
+            status.put("lag", Math.max(0, latest - applied));
+        } catch (Exception e) {
+            status.put("latestVersion", null);
+            status.put("error", e.getMessage());
+        }
+        status.put("lastAnnouncedVersion", lastAnnouncedVersion);
+        status.put("lastSyncAt", lastSyncAt);
+        return status;
+    }
+}
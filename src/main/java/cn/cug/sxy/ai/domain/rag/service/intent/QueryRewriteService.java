@@ -4,55 +4,148 @@ import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
 import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
 import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 查询重构服务：Step-Back、多查询、HyDE 等。
+ * <p>
+ * 各策略相互独立，并发调用模型，整体耗时约等于最慢的一个重写；
+ * 检索阶段可在重写进行中先行检索原始查询，再合并陆续到达的重写结果。
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class QueryRewriteService {
 
-    private final ChatClient chatClient;
+    private final ChatGateway chatGateway;
+    private final Executor rewriteExecutor;
+    private final long stageTimeoutMs;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    public QueryRewriteService(ChatGateway chatGateway,
+                               @Qualifier("queryRewriteExecutor") Executor rewriteExecutor,
+                               @Value("${rag.query-rewrite.stage-timeout-ms:8000}") long stageTimeoutMs) {
+        this.chatGateway = chatGateway;
+        this.rewriteExecutor = rewriteExecutor;
+        this.stageTimeoutMs = stageTimeoutMs;
+    }
+
+    /**
+     * 并发启动所有启用的重写策略，立即返回。
+     * 调用方（检索阶段）可在重写进行中开始检索原始查询。
+     */
+    public QueryRewrites rewriteAsync(Query query, QueryIntent intent, QueryStrategy strategy) {
+        String originalText = query.getOriginalText();
+        List<CompletableFuture<QueryRewrites.Rewrite>> futures = new ArrayList<>();
+        if (strategy.getRetrieval().getMultiQueryEnabled() == Boolean.TRUE) {
+            futures.add(submit(query, QueryRewrites.Kind.MULTI_QUERY, () -> generateMultiQueries(originalText)));
+        }
+        if (strategy.getRetrieval().getHydeEnabled() == Boolean.TRUE) {
+            futures.add(submit(query, QueryRewrites.Kind.HYDE, () -> generateHydeAnswer(originalText)));
+        }
+        Boolean stepBack = strategy.getRetrieval().getStepBackEnabled();
+        // 分析类查询默认做 Step-back，策略显式关闭（如自适应路由选择了其他重写方式）时除外
+        if (stepBack == Boolean.TRUE || (stepBack == null && intent.getTaskType() == TaskType.ANALYSIS)) {
+            futures.add(submit(query, QueryRewrites.Kind.STEP_BACK, () -> generateStepBackQuery(originalText)));
+        }
+        if (futures.isEmpty()) {
+            return QueryRewrites.none();
+        }
+        log.info("查询 {} 已并发启动 {} 个重写，阶段截止: {}ms", query.getId(), futures.size(), stageTimeoutMs);
+        return new QueryRewrites(futures, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stageTimeoutMs));
+    }
+
+    /**
+     * 同步重写：并发执行并等待全部重写（受阶段截止时间约束），结果回填到查询。
+     */
     public void rewrite(Query query, QueryIntent intent, QueryStrategy strategy) {
-        try {
-            boolean didRewrite = false;
-            if (strategy.getRetrieval().getMultiQueryEnabled() == Boolean.TRUE) {
-                generateMultiQueries(query);
-                didRewrite = true;
+        QueryRewrites rewrites = rewriteAsync(query, intent, strategy);
+        if (!rewrites.isEmpty()) {
+            applyRewrites(query, rewrites.awaitCompleted());
+        }
+    }
+
+    /**
+     * 将已完成的重写回填到查询（用于持久化记录）：
+     * 多查询与 Step-Back 问题写入 queryVariants，HyDE 假设答案写入 decomposedQueries。
+     * 生成阶段仍使用用户原始问题，重写结果只参与检索。
+     */
+    public void applyRewrites(Query query, List<QueryRewrites.Rewrite> completed) {
+        List<String> variants = new ArrayList<>();
+        for (QueryRewrites.Rewrite rewrite : completed) {
+            switch (rewrite.kind()) {
+                case MULTI_QUERY, STEP_BACK -> variants.addAll(rewrite.texts());
+                case HYDE -> query.setDecomposedQueries(String.join("\n", rewrite.texts()));
             }
-            if (strategy.getRetrieval().getHydeEnabled() == Boolean.TRUE) {
-                generateHydeAnswer(query);
-                didRewrite = true;
+        }
+        if (!variants.isEmpty()) {
+            try {
+                query.setQueryVariants(objectMapper.writeValueAsString(variants));
+            } catch (JsonProcessingException e) {
+                log.warn("查询变体序列化失败: {}", e.getMessage());
             }
-            if (strategy.getRetrieval().getStepBackEnabled() == Boolean.TRUE
-                    || intent.getTaskType() == TaskType.ANALYSIS) {
-                generateStepBackQuery(query);
-                didRewrite = true;
+        }
+        if (!completed.isEmpty()) {
+            log.info("查询 {} 已进行重写/扩展: {}", query.getId(),
+                    completed.stream().map(QueryRewrites.Rewrite::kind).toList());
+        }
+    }
+
+    /**
+     * 提交单个重写。返回的 future 被取消（阶段截止）时：尚未开始的重写不再执行，
+     * 进行中的重写线程被中断，模型网关随之取消请求并归还许可。
+     */
+    private CompletableFuture<QueryRewrites.Rewrite> submit(Query query,
+                                                            QueryRewrites.Kind kind,
+                                                            Supplier<List<String>> generator) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<QueryRewrites.Rewrite> result = new CompletableFuture<>();
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                List<String> usable = generator.get().stream()
+                        .filter(text -> text != null && !text.isBlank())
+                        .map(String::trim)
+                        .toList();
+                log.debug("查询 {} 重写 {} 完成，耗时: {}ms", query.getId(), kind, System.currentTimeMillis() - start);
+                result.complete(usable.isEmpty() ? null : new QueryRewrites.Rewrite(kind, usable));
+            } catch (RuntimeException e) {
+                if (!result.isDone()) {
+                    log.warn("查询 {} 重写 {} 失败，将忽略该策略。原因: {}", query.getId(), kind, e.getMessage());
+                }
+                result.complete(null);
             }
-            if (didRewrite) {
-                log.info("查询 {} 已进行重写/扩展", query.getId());
+            return null;
+        });
+        result.whenComplete((rewrite, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
             }
-        } catch (Exception ex) {
-            log.warn("查询重构失败，将使用原始查询。原因: {}", ex.getMessage());
-        }
+        });
+        rewriteExecutor.execute(task);
+        return result;
     }
 
-    private void generateMultiQueries(Query query) throws JsonProcessingException {
+    @SuppressWarnings("unchecked")
+    private List<String> generateMultiQueries(String originalText) {
         String prompt = """
                 你是查询重写助手。请基于下面的用户问题，生成3个不同角度的改写版本，用于检索知识库。
                 要求：
@@ -61,32 +154,33 @@ public class QueryRewriteService {
                 只返回JSON数组，例如：["问题1","问题2","问题3"]。
 
                 用户问题：%s
-                """.formatted(query.getOriginalText());
+                """.formatted(originalText);
         String content = callModel(prompt);
-        List<String> variants = objectMapper.readValue(content, List.class);
-        query.setQueryVariants(objectMapper.writeValueAsString(variants));
+        try {
+            return objectMapper.readValue(content, List.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("多查询结果不是合法的JSON数组: " + e.getOriginalMessage(), e);
+        }
     }
 
-    private void generateHydeAnswer(Query query) throws JsonProcessingException {
+    private List<String> generateHydeAnswer(String originalText) {
         String prompt = """
                 假设你已经查询到了完美的资料，请为下面的问题生成一个“理想答案”（可以合理推断，但不要显式说明是假设），用于作为检索向量。
                 只返回答案文本。
 
                 问题：%s
-                """.formatted(query.getOriginalText());
-        String answer = callModel(prompt);
-        query.setDecomposedQueries(answer);
+                """.formatted(originalText);
+        return List.of(callModel(prompt));
     }
 
-    private void generateStepBackQuery(Query query) throws JsonProcessingException {
+    private List<String> generateStepBackQuery(String originalText) {
         String prompt = """
                 下面是一个具体问题，请为它生成一个更抽象、更上位的版本，便于先检索高层次背景知识。
                 只返回一个问题句子。
 
                 具体问题：%s
-                """.formatted(query.getOriginalText());
-        String generalized = callModel(prompt);
-        query.setProcessedText(generalized);
+                """.formatted(originalText);
+        return List.of(callModel(prompt));
     }
 
     private String callModel(String userPrompt) {
@@ -94,8 +188,6 @@ public class QueryRewriteService {
                 new SystemMessage("你是一个严格遵守输出格式的助手。"),
                 new UserMessage(userPrompt)
         );
-        return chatClient.prompt(new Prompt(messages)).call().content();
+        return chatGateway.call(LlmPurpose.QUERY_REWRITE, new Prompt(messages));
     }
 }
-
-
@@ -28,6 +28,9 @@ public class StrategyMapper {
     @Value("${rag.generation.default-model:gpt-3.5-turbo}")
     private String defaultModel;
 
+    @Value("${rag.generation.context-token-budget:2048}")
+    private int defaultContextTokenBudget;
+
     public QueryStrategy map(QueryIntent intent, QueryParams params) {
         QueryType processor = decideProcessor(intent);
         RetrievalStrategy retrieval = buildRetrievalStrategy(intent, params);
@@ -108,9 +111,24 @@ public class StrategyMapper {
                 .maxTokens(1024)
                 .promptTemplate(null)
                 .citationsRequired(intent.getTaskType() != TaskType.CHAT)
+                .contextTokenBudget(contextTokenBudget(intent.getTaskType()))
                 .build();
     }
 
+    /**
+     * 上下文预算：事实型问答只需少量精确片段，综合分析类任务需要更广的覆盖。
+     */
+    private int contextTokenBudget(TaskType taskType) {
+        if (taskType == null) {
+            return defaultContextTokenBudget;
+        }
+        return switch (taskType) {
+            case FAQ, FACT_LOOKUP, ORDER_LOOKUP -> defaultContextTokenBudget / 2;
+            case COMPARISON, SUMMARIZATION, ANALYSIS, DECISION_SUPPORT -> defaultContextTokenBudget * 2;
+            default -> defaultContextTokenBudget;
+        };
+    }
+
     private EvaluationStrategy buildEvaluationStrategy(QueryIntent intent) {
         boolean strict = intent.getTaskType() == TaskType.ANALYSIS
                 || intent.getTaskType() == TaskType.DECISION_SUPPORT
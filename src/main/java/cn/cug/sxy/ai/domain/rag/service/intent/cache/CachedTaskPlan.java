@@ -0,0 +1,16 @@
+package cn.cug.sxy.ai.domain.rag.service.intent.cache;
+
+import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
+
+/**
+ * 缓存的任务计划条目（持久化缓存中携带查询向量，用于命中后复核相似度）。
+ *
+ * @author jerryhotton
+ */
+public record CachedTaskPlan(
+        String queryText,
+        float[] vector,
+        TaskPlan plan,
+        long timestamp
+) {
+}
@@ -1,50 +1,87 @@
 package cn.cug.sxy.ai.domain.rag.service.intent.cache;
 
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
+import cn.cug.sxy.ai.infrastructure.cache.LshVectorIndex;
 import cn.cug.sxy.ai.infrastructure.embedding.IEmbeddingService;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 任务规划缓存服务。
  * 通过向量相似度匹配，对语义相似的查询复用已规划的任务计划，避免重复的LLM调用。
- * 
+ * <p>
+ * 1. 内存索引：多表随机超平面LSH（{@link LshVectorIndex}），归一化向量以 float[] 保存，相似查询落入相同或相邻的桶
+ * 2. 淘汰：访问顺序的 LinkedHashMap 实现 O(1) LRU；TTL 在命中时检查，写入时顺带清理最久未用的过期条目
+ * 3. 持久化：同时写入 Spring Cache（taskPlanCache），内存未命中时按查询文本回查
+ *
  * @author jerryhotton
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TaskPlanCacheService {
 
     private final IEmbeddingService embeddingService;
     private final CacheManager cacheManager;
-    
-    // 内存缓存：查询向量 -> CachedTaskPlan
-    private final ConcurrentMap<String, List<CachedTaskPlan>> vectorCache = new ConcurrentHashMap<>();
-    
+
     @Value("${rag.intent.plan-cache.similarity-threshold:0.95}")
     private double similarityThreshold;
-    
+
     @Value("${rag.intent.plan-cache.max-cache-size:1000}")
     private int maxCacheSize;
-    
+
     @Value("${rag.intent.plan-cache.ttl-hours:24}")
     private int ttlHours;
 
+    @Value("${rag.intent.plan-cache.lsh.tables:8}")
+    private int lshTables;
+
+    @Value("${rag.intent.plan-cache.lsh.bits:10}")
+    private int lshBits;
+
+    private LshVectorIndex<CachedTaskPlan> index;
+    // LRU：条目ID -> 过期时间（访问顺序，头部为最久未用）
+    private final LinkedHashMap<Long, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    // 查询文本 -> 条目ID，同一查询重复缓存时替换旧条目
+    private final Map<String, Long> idsByQuery = new HashMap<>();
+    private long nextId;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong persistentHits = new AtomicLong();
+    private final AtomicLong candidatesCompared = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public TaskPlanCacheService(IEmbeddingService embeddingService, CacheManager cacheManager) {
+        this.embeddingService = embeddingService;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        index = new LshVectorIndex<>(lshTables, lshBits, 20250101L);
+    }
+
     /**
      * 查找缓存的任务计划。
-     * 通过计算查询向量与缓存中向量的相似度，找到最相似的已规划任务。
-     * 
+     * 在LSH候选桶中找到相似度不低于阈值的最相似条目；内存未命中时回查持久化缓存。
+     *
      * @param queryText 用户查询文本
      * @return 缓存的TaskPlan（如果找到相似度足够高的）
      */
@@ -52,45 +89,33 @@ public class TaskPlanCacheService {
         if (queryText == null || queryText.isBlank()) {
             return Optional.empty();
         }
-        
+        lookups.incrementAndGet();
         try {
             // 生成查询向量
             float[] queryVector = embeddingService.generateEmbedding(queryText);
-            String vectorKey = getVectorKey(queryVector);
-            
-            // 从缓存中查找相似的计划
-            List<CachedTaskPlan> cachedPlans = vectorCache.get(vectorKey);
-            if (cachedPlans == null || cachedPlans.isEmpty()) {
-                // 尝试从Spring Cache查找（持久化缓存）
-                Cache cache = cacheManager.getCache("taskPlanCache");
-                if (cache != null) {
-                    CachedTaskPlan cached = cache.get(queryText.hashCode(), CachedTaskPlan.class);
-                    if (cached != null && isSimilar(queryVector, cached.vector)) {
-                        log.debug("从Spring Cache找到缓存的TaskPlan: query={}", queryText.substring(0, Math.min(50, queryText.length())));
-                        return Optional.of(cached.plan);
-                    }
-                }
-                return Optional.empty();
+            long start = System.nanoTime();
+            Optional<LshVectorIndex.Match<CachedTaskPlan>> match = index.nearest(queryVector, similarityThreshold);
+            lookupNanos.addAndGet(System.nanoTime() - start);
+            match.ifPresent(m -> candidatesCompared.addAndGet(m.candidates()));
+            if (match.isPresent() && touch(match.get().id())) {
+                memoryHits.incrementAndGet();
+                log.info("从缓存找到TaskPlan: similarity={}, 候选数: {}, query={}",
+                        String.format("%.3f", match.get().similarity()), match.get().candidates(), abbreviate(queryText));
+                return Optional.of(match.get().value().plan());
             }
-            
-            // 在内存缓存中查找最相似的
-            CachedTaskPlan bestMatch = null;
-            double bestSimilarity = -1.0;
-            
-            for (CachedTaskPlan cached : cachedPlans) {
-                double similarity = calculateCosineSimilarity(queryVector, cached.vector);
-                if (similarity >= similarityThreshold && similarity > bestSimilarity) {
-                    bestSimilarity = similarity;
-                    bestMatch = cached;
+
+            // 尝试从Spring Cache查找（持久化缓存）
+            Cache cache = cacheManager.getCache("taskPlanCache");
+            if (cache != null) {
+                CachedTaskPlan cached = cache.get(queryText.hashCode(), CachedTaskPlan.class);
+                if (cached != null && calculateCosineSimilarity(queryVector, cached.vector()) >= similarityThreshold) {
+                    persistentHits.incrementAndGet();
+                    log.debug("从Spring Cache找到缓存的TaskPlan: query={}", abbreviate(queryText));
+                    // 回填内存索引
+                    putMemory(queryText, queryVector, cached.plan());
+                    return Optional.of(cached.plan());
                 }
             }
-            
-            if (bestMatch != null) {
-                log.info("从缓存找到TaskPlan: similarity={:.3f}, query={}", 
-                        bestSimilarity, queryText.substring(0, Math.min(50, queryText.length())));
-                return Optional.of(bestMatch.plan);
-            }
-            
             return Optional.empty();
         } catch (Exception e) {
             log.warn("查找缓存TaskPlan失败: {}", e.getMessage());
@@ -100,7 +125,7 @@ public class TaskPlanCacheService {
 
     /**
      * 缓存任务计划。
-     * 
+     *
      * @param queryText 用户查询文本
      * @param plan 任务计划
      */
@@ -108,78 +133,115 @@ public class TaskPlanCacheService {
         if (queryText == null || queryText.isBlank() || plan == null) {
             return;
         }
-        
+
         try {
             // 生成查询向量
             float[] queryVector = embeddingService.generateEmbedding(queryText);
-            String vectorKey = getVectorKey(queryVector);
-            
-            // 创建缓存条目
-            CachedTaskPlan cached = new CachedTaskPlan(
-                    queryText,
-                    queryVector,
-                    plan,
-                    System.currentTimeMillis()
-            );
-            
-            // 存入内存缓存
-            vectorCache.compute(vectorKey, (k, v) -> {
-                if (v == null) {
-                    v = new ArrayList<>();
-                }
-                // 限制缓存大小，移除最旧的
-                if (v.size() >= 10) {
-                    v.remove(0);
-                }
-                v.add(cached);
-                return v;
-            });
-            
+            putMemory(queryText, queryVector, plan);
+
             // 同时存入Spring Cache（持久化）
             Cache cache = cacheManager.getCache("taskPlanCache");
             if (cache != null) {
-                cache.put(queryText.hashCode(), cached);
+                cache.put(queryText.hashCode(), new CachedTaskPlan(queryText, queryVector, plan, System.currentTimeMillis()));
             }
-            
-            // 清理过期缓存
-            cleanupExpiredCache();
-            
-            log.debug("已缓存TaskPlan: query={}", queryText.substring(0, Math.min(50, queryText.length())));
+            log.debug("已缓存TaskPlan: query={}", abbreviate(queryText));
         } catch (Exception e) {
             log.warn("缓存TaskPlan失败: {}", e.getMessage());
         }
     }
 
     /**
-     * 清理过期缓存。
+     * 获取缓存统计：命中率、平均查找耗时与平均复核候选数。
      */
-    private void cleanupExpiredCache() {
-        long expireTime = System.currentTimeMillis() - (ttlHours * 3600 * 1000L);
-        
-        vectorCache.values().forEach(plans -> {
-            plans.removeIf(cached -> cached.timestamp < expireTime);
-        });
-        
-        // 清理空列表
-        vectorCache.entrySet().removeIf(entry -> entry.getValue().isEmpty());
-        
-        // 限制总缓存大小
-        if (vectorCache.size() > maxCacheSize) {
-            // 移除最旧的条目
-            vectorCache.entrySet().stream()
-                    .sorted((a, b) -> {
-                        long timeA = a.getValue().stream()
-                                .mapToLong(c -> c.timestamp)
-                                .min()
-                                .orElse(0);
-                        long timeB = b.getValue().stream()
-                                .mapToLong(c -> c.timestamp)
-                                .min()
-                                .orElse(0);
-                        return Long.compare(timeA, timeB);
-                    })
-                    .limit(vectorCache.size() - maxCacheSize)
-                    .forEach(entry -> vectorCache.remove(entry.getKey()));
+    public CacheStats getStats() {
+        int size;
+        synchronized (lru) {
+            size = lru.size();
+        }
+        long lookupCount = lookups.get();
+        long hitCount = memoryHits.get() + persistentHits.get();
+        return CacheStats.builder()
+                .entries(size)
+                .lookups(lookupCount)
+                .memoryHits(memoryHits.get())
+                .persistentHits(persistentHits.get())
+                .hitRate(lookupCount == 0 ? 0.0 : (double) hitCount / lookupCount)
+                .avgLookupMicros(lookupCount == 0 ? 0.0 : lookupNanos.get() / 1000.0 / lookupCount)
+                .avgCandidates(memoryHits.get() == 0 ? 0.0 : (double) candidatesCompared.get() / memoryHits.get())
+                .evicted(evicted.get())
+                .expired(expired.get())
+                .build();
+    }
+
+    private void putMemory(String queryText, float[] vector, TaskPlan plan) {
+        // 内存条目不保留原始向量，归一化向量由索引持有
+        CachedTaskPlan entry = new CachedTaskPlan(queryText, null, plan, System.currentTimeMillis());
+        long expireAt = entry.timestamp() + ttlHours * 3600_000L;
+        synchronized (lru) {
+            Long previous = idsByQuery.get(queryText);
+            if (previous != null) {
+                removeEntry(previous);
+            }
+            long id = ++nextId;
+            if (!index.put(id, vector, entry)) {
+                return;
+            }
+            lru.put(id, expireAt);
+            idsByQuery.put(queryText, id);
+            evictIfNeeded(entry.timestamp());
+        }
+    }
+
+    /**
+     * 记录访问并检查TTL，过期条目被移除。
+     *
+     * @return 条目仍有效
+     */
+    private boolean touch(long id) {
+        synchronized (lru) {
+            Long expireAt = lru.get(id);
+            if (expireAt == null) {
+                return false;
+            }
+            if (expireAt < System.currentTimeMillis()) {
+                removeEntry(id);
+                expired.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 超出容量时淘汰最久未用的条目；同时清理LRU头部已过期的条目（均摊 O(1)）。
+     */
+    private void evictIfNeeded(long now) {
+        Iterator<Map.Entry<Long, Long>> iterator = lru.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> eldest = iterator.next();
+            boolean overflow = lru.size() > maxCacheSize;
+            boolean stale = eldest.getValue() < now;
+            if (!overflow && !stale) {
+                return;
+            }
+            iterator.remove();
+            CachedTaskPlan removed = index.remove(eldest.getKey());
+            if (removed != null) {
+                idsByQuery.remove(removed.queryText(), eldest.getKey());
+            }
+            if (stale) {
+                expired.incrementAndGet();
+            } else {
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    private void removeEntry(long id) {
+        lru.remove(id);
+        CachedTaskPlan removed = index.remove(id);
+        if (removed != null) {
+            idsByQuery.remove(removed.queryText(), id);
         }
     }
 
@@ -204,37 +266,26 @@ public class TaskPlanCacheService {
         return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
     }
 
-    /**
-     * 检查两个向量是否相似（快速检查，用于Spring Cache）。
-     */
-    private boolean isSimilar(float[] a, float[] b) {
-        return calculateCosineSimilarity(a, b) >= similarityThreshold;
+    private static String abbreviate(String text) {
+        return text.substring(0, Math.min(50, text.length()));
     }
 
     /**
-     * 获取向量的键（用于分组，减少比较次数）。
+     * 任务规划缓存统计。
      */
-    private String getVectorKey(float[] vector) {
-        // 使用向量的前几个维度作为键，实现粗略分组
-        if (vector == null || vector.length == 0) {
-            return "default";
-        }
-        int keyLength = Math.min(5, vector.length);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < keyLength; i++) {
-            sb.append(String.format("%.2f", vector[i]));
-        }
-        return sb.toString();
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheStats {
+        private int entries;
+        private long lookups;
+        private long memoryHits;
+        private long persistentHits;
+        private double hitRate;
+        private double avgLookupMicros;
+        private double avgCandidates;
+        private long evicted;
+        private long expired;
     }
-
-    /**
-     * 缓存的任务计划条目。
-     */
-    private record CachedTaskPlan(
-            String queryText,
-            float[] vector,
-            TaskPlan plan,
-            long timestamp
-    ) {}
 }
-
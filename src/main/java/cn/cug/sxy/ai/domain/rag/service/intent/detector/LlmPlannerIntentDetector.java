@@ -9,13 +9,15 @@ import cn.cug.sxy.ai.domain.rag.model.plan.TaskNode;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetector;
 import cn.cug.sxy.ai.domain.rag.service.intent.cache.TaskPlanCacheService;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
 import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import cn.cug.sxy.ai.domain.rag.service.routing.SystemLoadMonitor;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
@@ -39,9 +41,10 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class LlmPlannerIntentDetector implements IntentDetector {
 
-    private final ChatClient chatClient;
+    private final ChatGateway chatGateway;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final TaskPlanCacheService taskPlanCacheService;
+    private final SystemLoadMonitor loadMonitor;
 
     @Value("${rag.intent.llm-planner-enabled:true}")
     private boolean enabled;
@@ -49,6 +52,9 @@ public class LlmPlannerIntentDetector implements IntentDetector {
     @Value("${rag.intent.llm-planner-min-length:10}")
     private int shortQueryThreshold;
 
+    @Value("${rag.intent.parallel.budget-ms.llm-planner:10000}")
+    private long timeBudgetMs;
+
     private static final String PROMPT_TEMPLATE = """
             你是企业级AI系统的任务规划师。请对用户请求进行分类并生成高层次的任务计划。
             系统会自动选择合适的工具（包括RAG检索、网络搜索、MCP工具等）来执行每个任务步骤。
@@ -71,6 +77,11 @@ public class LlmPlannerIntentDetector implements IntentDetector {
             - 请勿添加额外文本，严格输出JSON
             """;
 
+    @Override
+    public long getTimeBudgetMs() {
+        return timeBudgetMs;
+    }
+
     @Override
     public DetectionResult detect(IntentRequest request) {
         String queryText = request.queryText();
@@ -106,14 +117,20 @@ public class LlmPlannerIntentDetector implements IntentDetector {
                 return new DetectionResult(true, intent.getConfidence(), intent, "cached-llm-plan");
             }
             
-            // 2. 调用LLM规划
+            // 2. 严重过载时跳过LLM规划，由规则/语义检测结果兜底
+            if (!loadMonitor.currentLevel().isTaskPlanEnabled()) {
+                log.debug("系统负载过高，跳过LLM任务规划");
+                return null;
+            }
+
+            // 3. 调用LLM规划
             List<Message> messages = List.of(
                     new SystemMessage(shortQuery
                             ? "你是任务规划师。用户输入较短，请尽量推测潜在任务；若无法确定，请保持tasks为空并在summary中注明需要澄清。严格输出JSON。"
                             : "你是任务规划师。请严格输出JSON。"),
                     new UserMessage(buildUserPrompt(queryText, shortQuery)));
             Prompt prompt = new Prompt(messages);
-            String content = chatClient.prompt(prompt).call().content();
+            String content = chatGateway.call(LlmPurpose.INTENT_PLANNING, prompt);
             if (StringUtils.isBlank(content)) {
                 return null;
             }
@@ -121,7 +138,7 @@ public class LlmPlannerIntentDetector implements IntentDetector {
             });
             TaskPlan taskPlan = parseTaskPlan(payload);
             
-            // 3. 缓存结果
+            // 4. 缓存结果
             taskPlanCacheService.cachePlan(queryText, taskPlan);
             
             boolean multiStep = taskPlan.hasTasks();
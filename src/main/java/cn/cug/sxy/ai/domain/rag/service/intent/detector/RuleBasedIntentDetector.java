@@ -8,6 +8,7 @@ import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
 import cn.cug.sxy.ai.domain.rag.model.intent.TopicDomain;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetector;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentRuleService;
+import cn.cug.sxy.ai.domain.rag.service.intent.rule.CompiledIntentRules;
 import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,15 +16,14 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
+import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.regex.Pattern;
+import java.util.function.IntPredicate;
 
 /**
  * 规则驱动的快速分诊 (数据库配置化).
+ * 关键词与正则规则在刷新时编译（见 {@link CompiledIntentRules}），每次查询只扫描一遍文本。
  */
 @Slf4j
 @Component
@@ -32,7 +32,6 @@ import java.util.regex.Pattern;
 public class RuleBasedIntentDetector implements IntentDetector {
 
     private final IntentRuleService intentRuleService;
-    private final ConcurrentMap<Long, Pattern> patternCache = new ConcurrentHashMap<>();
 
     @Override
     public DetectionResult detect(IntentRequest request) {
@@ -41,79 +40,43 @@ public class RuleBasedIntentDetector implements IntentDetector {
             return null;
         }
 
+        // 一次扫描得到所有候选规则，再按规则排序顺序评估（保持优先级/置信度/级联语义）
+        CompiledIntentRules rules = intentRuleService.getCompiledRules();
+        CompiledIntentRules.Matches matches = rules.match(text);
         DetectionCandidate best = null;
-        best = evaluateRules(intentRuleService.getRulesByType("KEYWORD"), text, best, false);
+        best = evaluateRules(rules.keywordRules(), matches.keywordCandidates(),
+                index -> rules.confirmKeyword(index, text), best, false);
         if (best != null && !best.intent().isAllowCascade()) {
             return best.result();
         }
-        best = evaluateRules(intentRuleService.getRulesByType("REGEX"), text, best, true);
+        best = evaluateRules(rules.regexRules(), matches.regexCandidates(),
+                index -> rules.confirmRegex(index, text), best, true);
 
         return best != null ? best.result() : null;
     }
 
-    private DetectionCandidate evaluateRules(List<IntentRule> rules, String text,
-                                             DetectionCandidate best, boolean treatAsRegex) {
-        for (IntentRule rule : rules) {
-            if (matches(text, rule, treatAsRegex)) {
-                DetectionCandidate candidate = new DetectionCandidate(
-                        createResult(rule, buildReason(rule, treatAsRegex)),
-                        rule.getPriority() == null ? Integer.MAX_VALUE : rule.getPriority(),
-                        rule.getConfidence() == null ? 0d : rule.getConfidence());
-                if (Boolean.FALSE.equals(rule.getAllowCascade())) {
-                    return candidate;
-                }
-                best = pickBetter(best, candidate);
+    /**
+     * 按排序顺序遍历候选规则，正则类候选在此时才执行。
+     */
+    private DetectionCandidate evaluateRules(List<IntentRule> rules, BitSet candidates, IntPredicate confirm,
+                                             DetectionCandidate best, boolean regex) {
+        for (int index = candidates.nextSetBit(0); index >= 0; index = candidates.nextSetBit(index + 1)) {
+            if (!confirm.test(index)) {
+                continue;
             }
+            IntentRule rule = rules.get(index);
+            DetectionCandidate candidate = new DetectionCandidate(
+                    createResult(rule, buildReason(rule, regex)),
+                    rule.getPriority() == null ? Integer.MAX_VALUE : rule.getPriority(),
+                    rule.getConfidence() == null ? 0d : rule.getConfidence());
+            if (Boolean.FALSE.equals(rule.getAllowCascade())) {
+                return candidate;
+            }
+            best = pickBetter(best, candidate);
         }
         return best;
     }
 
-    private boolean matches(String text, IntentRule rule, boolean treatAsRegex) {
-        String content = rule.getRuleContent();
-        if (StringUtils.isBlank(content)) {
-            return false;
-        }
-        MatchMode mode = resolveMatchMode(rule, treatAsRegex);
-        return switch (mode) {
-            case EXACT -> text.equals(content);
-            case CONTAINS -> text.contains(content);
-            case PREFIX -> text.startsWith(content);
-            case SUFFIX -> text.endsWith(content);
-            case REGEX -> regexMatch(text, rule);
-        };
-    }
-
-    private MatchMode resolveMatchMode(IntentRule rule, boolean treatAsRegex) {
-        if (treatAsRegex) {
-            return MatchMode.REGEX;
-        }
-        String mode = rule.getMatchMode();
-        if (StringUtils.isBlank(mode)) {
-            return MatchMode.CONTAINS;
-        }
-        try {
-            return MatchMode.valueOf(mode.toUpperCase(Locale.ROOT));
-        } catch (Exception e) {
-            return MatchMode.CONTAINS;
-        }
-    }
-
-    private boolean regexMatch(String text, IntentRule rule) {
-        try {
-            Pattern pattern = patternCache.compute(rule.getId(), (id, existing) -> {
-                if (existing != null && existing.pattern().equals(rule.getRuleContent())) {
-                    return existing;
-                }
-                return Pattern.compile(rule.getRuleContent());
-            });
-            return pattern.matcher(text).find();
-        } catch (Exception e) {
-            log.warn("无效的正则规则: id={}, content={}", rule.getId(), rule.getRuleContent());
-            patternCache.remove(rule.getId());
-            return false;
-        }
-    }
-
     private DetectionCandidate pickBetter(DetectionCandidate best, DetectionCandidate candidate) {
         if (best == null) {
             return candidate;
@@ -156,8 +119,5 @@ public class RuleBasedIntentDetector implements IntentDetector {
         }
     }
 
-    private enum MatchMode {
-        EXACT, CONTAINS, PREFIX, SUFFIX, REGEX
-    }
 }
 
@@ -6,28 +6,32 @@ import cn.cug.sxy.ai.domain.rag.model.intent.IntentSource;
 import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
 import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
 import cn.cug.sxy.ai.domain.rag.model.intent.TopicDomain;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChangedEvent;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetector;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentRuleService;
 import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import cn.cug.sxy.ai.domain.rag.service.routing.RouteMatrix;
 import cn.cug.sxy.ai.infrastructure.embedding.IEmbeddingService;
 import jakarta.annotation.PostConstruct;
-import lombok.AllArgsConstructor;
-import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 /**
  * 轻量语义路由 (数据库配置化).
+ * 语义示例的向量随规则持久化在 intent_rule 表中，启动时直接加载；规则变更时只重建受影响的路由。
  */
 @Slf4j
 @Component
@@ -38,61 +42,186 @@ public class SemanticIntentDetector implements IntentDetector {
     private final IEmbeddingService embeddingService;
     private final IntentRuleService intentRuleService;
 
-    // 缓存路由：routeKey -> SemanticRoute
-    private final Map<String, SemanticRoute> routes = new ConcurrentHashMap<>();
+    // 路由快照：写时复制，检测时读取 volatile 引用，无需加锁
+    private volatile RouteSnapshot snapshot = RouteSnapshot.EMPTY;
 
     @Value("${rag.intent.semantic.threshold:0.78}")
     private double similarityThreshold;
 
-    //@PostConstruct
+    @Value("${rag.intent.parallel.budget-ms.semantic:1500}")
+    private long timeBudgetMs;
+
+    @Value("${spring.ai.openai.embedding.options.model:text-embedding-v4}")
+    private String embeddingModel;
+
+    @Value("${spring.ai.openai.embedding.options.dimensions:1536}")
+    private int embeddingDimensions;
+
+    @Value("${rag.intent.semantic.embed-missing-on-startup:false}")
+    private boolean embedMissingOnStartup;
+
+    /**
+     * 启动时只加载库中已持久化的向量；缺失或模型不一致的规则默认不在启动时调用嵌入接口，
+     * 可通过管理接口刷新或开启 embed-missing-on-startup 补齐。
+     */
+    @PostConstruct
     public void init() {
-        refreshRoutes();
+        refreshRoutes(embedMissingOnStartup);
+    }
+
+    public void refreshRoutes() {
+        refreshRoutes(true);
     }
 
     /**
      * <p>
      * 流程：
      * 1. 从 IntentRuleService 获取所有语义示例规则
-     * 2. 批量生成 Embedding 向量 (优化：一次API调用)
-     * 3. 将向量按 TaskType 分组构建新的路由表
-     * 4. 原子性替换旧的路由表
+     * 2. 直接使用已持久化且模型一致的向量
+     * 3. 其余规则批量生成 Embedding 向量 (一次API调用) 并回写数据库
+     * 4. 按 routeKey 分组构建新的路由表，原子性替换旧快照
      * </p>
-     * 注意：这里依赖 IntentRuleService 的缓存，实际应用中可以监听事件或简单轮询
+     *
+     * @param embedMissing 是否为缺失向量的规则调用嵌入接口
      */
-    public void refreshRoutes() {
+    public synchronized void refreshRoutes(boolean embedMissing) {
         log.info("开始刷新语义路由规则...");
-        List<IntentRule> rules = intentRuleService.getRulesByType("SEMANTIC_EXAMPLE");
-        if (rules.isEmpty()) {
-            log.info("没有找到语义示例规则");
-            return;
+        List<IntentRule> rules = intentRuleService.getRulesByType("SEMANTIC_EXAMPLE").stream()
+                .filter(SemanticIntentDetector::isRoutable)
+                .toList();
+
+        Map<Long, float[]> vectors = new HashMap<>();
+        List<IntentRule> missing = new ArrayList<>();
+        for (IntentRule rule : rules) {
+            if (hasCurrentEmbedding(rule)) {
+                vectors.put(rule.getId(), rule.getEmbedding());
+            } else {
+                missing.add(rule);
+            }
+        }
+        if (!missing.isEmpty()) {
+            if (embedMissing) {
+                vectors.putAll(embedAndPersist(missing));
+            } else {
+                log.warn("{} 条语义示例规则缺少当前模型({})的向量，暂不参与语义路由", missing.size(), modelId());
+            }
         }
 
         // 使用局部变量构建新路由，避免影响正在进行的查询
-        Map<String, SemanticRoute> newRoutes = new ConcurrentHashMap<>();
+        Map<String, List<RouteMember>> grouped = new LinkedHashMap<>();
+        for (IntentRule rule : rules) {
+            float[] vector = vectors.get(rule.getId());
+            if (vector == null) {
+                continue;
+            }
+            grouped.computeIfAbsent(routeKeyOf(rule), k -> new ArrayList<>()).add(new RouteMember(rule, vector));
+        }
+        Map<String, SemanticRoute> newRoutes = new HashMap<>();
+        Map<Long, String> ruleRoutes = new HashMap<>();
+        grouped.forEach((routeKey, members) -> {
+            SemanticRoute route = SemanticRoute.of(routeKey, members);
+            if (route != null) {
+                newRoutes.put(routeKey, route);
+                members.forEach(member -> ruleRoutes.put(member.ruleId(), routeKey));
+            }
+        });
 
-        // 批量提取文本内容
-        List<String> texts = rules.stream()
-                .map(IntentRule::getRuleContent)
-                .filter(StringUtils::isNotBlank)
-                .collect(java.util.stream.Collectors.toList());
+        snapshot = RouteSnapshot.of(newRoutes, ruleRoutes);
+        log.info("语义路由刷新完成，加载了 {} 个路由，共 {} 个向量，新生成 {} 个",
+                newRoutes.size(), ruleRoutes.size(), embedMissing ? missing.size() : 0);
+    }
+
+    /**
+     * 规则增删改后只重建受影响的路由条目：先从旧路由移除规则，再把有效的语义示例加入新路由。
+     * 本节点发起的变更在此生成并持久化缺失的向量（先于变更广播执行）；从其他节点同步来的变更只使用已存储的向量。
+     */
+    @EventListener
+    @Order(0)
+    public void onRuleChanged(IntentRuleChangedEvent event) {
+        List<IntentRule> semanticRules = event.getRules().stream()
+                .filter(rule -> "SEMANTIC_EXAMPLE".equals(rule.getRuleType())
+                        && Boolean.TRUE.equals(rule.getIsActive())
+                        && isRoutable(rule))
+                .toList();
+        Map<Long, float[]> vectors = new HashMap<>();
+        List<IntentRule> missing = new ArrayList<>();
+        for (IntentRule rule : semanticRules) {
+            if (hasCurrentEmbedding(rule)) {
+                vectors.put(rule.getId(), rule.getEmbedding());
+            } else {
+                missing.add(rule);
+            }
+        }
+        // 嵌入调用在锁外进行，不阻塞其他变更
+        if (!missing.isEmpty() && !event.isRemote()) {
+            vectors.putAll(embedAndPersist(missing));
+        }
+        applyRouteChanges(event.getRuleIds(), semanticRules, vectors);
+    }
 
-        if (texts.isEmpty()) {
-            log.warn("没有有效的规则内容");
+    private synchronized void applyRouteChanges(List<Long> removedIds, List<IntentRule> upserts, Map<Long, float[]> vectors) {
+        RouteSnapshot current = snapshot;
+        Set<Long> ids = new HashSet<>(removedIds);
+        upserts.forEach(rule -> ids.add(rule.getId()));
+
+        // 受影响的路由：规则原所在路由 + 新路由
+        Map<String, List<RouteMember>> affected = new HashMap<>();
+        for (Long id : ids) {
+            String routeKey = current.ruleRoutes().get(id);
+            if (routeKey != null) {
+                affected.computeIfAbsent(routeKey, k -> new ArrayList<>(current.routes().get(k).members()));
+            }
+        }
+        affected.values().forEach(members -> members.removeIf(member -> ids.contains(member.ruleId())));
+        for (IntentRule rule : upserts) {
+            float[] vector = vectors.get(rule.getId());
+            if (vector == null) {
+                log.warn("语义示例缺少向量，暂不参与路由: ruleId={}", rule.getId());
+                continue;
+            }
+            String routeKey = routeKeyOf(rule);
+            SemanticRoute existing = current.routes().get(routeKey);
+            affected.computeIfAbsent(routeKey, k -> existing == null ? new ArrayList<>() : new ArrayList<>(existing.members()))
+                    .add(new RouteMember(rule, vector));
+        }
+        if (affected.isEmpty()) {
             return;
         }
 
-        // 批量生成向量（一次API调用，大幅提升性能）
-        List<float[]> vectors;
+        Map<String, SemanticRoute> newRoutes = new HashMap<>(current.routes());
+        Map<Long, String> ruleRoutes = new HashMap<>(current.ruleRoutes());
+        ids.forEach(ruleRoutes::remove);
+        affected.forEach((routeKey, members) -> {
+            SemanticRoute route = SemanticRoute.of(routeKey, members);
+            if (route == null) {
+                newRoutes.remove(routeKey);
+            } else {
+                newRoutes.put(routeKey, route);
+                members.forEach(member -> ruleRoutes.put(member.ruleId(), routeKey));
+            }
+        });
+        snapshot = RouteSnapshot.of(newRoutes, ruleRoutes);
+        log.info("语义路由增量更新: 路由={}, 规则={}", affected.keySet(), ids);
+    }
+
+    /**
+     * 为缺失向量的规则生成向量并回写数据库。
+     * 批量生成失败或数量不匹配时降级为逐个生成，下标始终与规则一一对应。
+     */
+    private Map<Long, float[]> embedAndPersist(List<IntentRule> rules) {
+        List<String> texts = rules.stream().map(IntentRule::getRuleContent).toList();
+        List<float[]> vectors = null;
         try {
             log.info("批量生成 {} 个语义路由向量...", texts.size());
             vectors = embeddingService.generateEmbeddings(texts);
-            if (vectors.size() != texts.size()) {
-                log.warn("向量数量与文本数量不匹配: {} != {}", vectors.size(), texts.size());
-                return;
+            if (vectors == null || vectors.size() != texts.size()) {
+                log.warn("向量数量与文本数量不匹配: {} != {}", vectors == null ? 0 : vectors.size(), texts.size());
+                vectors = null;
             }
         } catch (Exception e) {
             log.error("批量生成向量失败，降级为逐个生成", e);
-            // 降级：逐个生成
+        }
+        if (vectors == null) {
             vectors = new ArrayList<>();
             for (String text : texts) {
                 try {
@@ -104,39 +233,62 @@ public class SemanticIntentDetector implements IntentDetector {
             }
         }
 
-        // 构建路由
+        String modelId = modelId();
+        Map<Long, float[]> result = new HashMap<>();
         for (int i = 0; i < rules.size(); i++) {
             IntentRule rule = rules.get(i);
-            float[] vector = i < vectors.size() ? vectors.get(i) : null;
-
-            if (vector == null) {
+            float[] vector = vectors.get(i);
+            if (vector == null || vector.length == 0) {
                 log.warn("跳过无效向量: ruleId={}", rule.getId());
                 continue;
             }
-
+            result.put(rule.getId(), vector);
             try {
-                TaskType taskType = TaskType.valueOf(rule.getTaskType());
-                QueryType processor = QueryType.valueOf(rule.getTargetProcessor());
-                TopicDomain domain = TopicDomain.valueOf(rule.getTopicDomain());
-                String routeKey = StringUtils.isNotBlank(rule.getRouteKey()) ? rule.getRouteKey() : taskType.name();
-
-                SemanticRoute route = newRoutes.computeIfAbsent(routeKey,
-                        k -> new SemanticRoute(routeKey, taskType, processor, domain,
-                                Boolean.TRUE.equals(rule.getLockProcessor()),
-                                rule.getSemanticThreshold(), new ArrayList<>()));
-
-                route.getVectors().add(vector);
+                intentRuleService.saveEmbedding(rule, vector, modelId);
             } catch (Exception e) {
-                log.warn("处理语义规则失败: id={}, content={}", rule.getId(), rule.getRuleContent(), e);
+                log.warn("保存语义示例向量失败: ruleId={}", rule.getId(), e);
             }
         }
+        return result;
+    }
+
+    private boolean hasCurrentEmbedding(IntentRule rule) {
+        float[] embedding = rule.getEmbedding();
+        return embedding != null && embedding.length == embeddingDimensions && modelId().equals(rule.getEmbeddingModel());
+    }
+
+    /**
+     * 嵌入模型标识：模型名/维度，任一变化都需要重新生成向量
+     */
+    private String modelId() {
+        return embeddingModel + "/" + embeddingDimensions;
+    }
+
+    /**
+     * 内容非空且任务类型、处理器、领域均可解析的规则才参与路由
+     */
+    private static boolean isRoutable(IntentRule rule) {
+        if (StringUtils.isBlank(rule.getRuleContent())) {
+            return false;
+        }
+        try {
+            TaskType.valueOf(rule.getTaskType());
+            QueryType.valueOf(rule.getTargetProcessor());
+            TopicDomain.valueOf(rule.getTopicDomain());
+            return true;
+        } catch (Exception e) {
+            log.warn("处理语义规则失败: id={}, content={}", rule.getId(), rule.getRuleContent());
+            return false;
+        }
+    }
 
-        // 原子性替换路由表
-        routes.clear();
-        routes.putAll(newRoutes);
-        log.info("语义路由刷新完成，加载了 {} 个路由，共 {} 个向量",
-                routes.size(),
-                routes.values().stream().mapToInt(r -> r.getVectors().size()).sum());
+    private static String routeKeyOf(IntentRule rule) {
+        return StringUtils.isNotBlank(rule.getRouteKey()) ? rule.getRouteKey() : rule.getTaskType();
+    }
+
+    @Override
+    public long getTimeBudgetMs() {
+        return timeBudgetMs;
     }
 
     @Override
@@ -148,20 +300,17 @@ public class SemanticIntentDetector implements IntentDetector {
 
         try {
             float[] queryEmbedding = embeddingService.generateEmbedding(query);
-            double bestScore = -1;
-            SemanticRoute bestRoute = null;
-
-            // 遍历所有路由，计算查询向量与每个路由中示例向量的最大相似度
-            for (SemanticRoute route : routes.values()) {
-                double score = route.maxSimilarity(queryEmbedding);
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestRoute = route;
-                }
+            RouteSnapshot current = snapshot;
+            // 一次扫描全部示例向量，取相似度最高的路由
+            RouteMatrix.Match<String> match = current.matrix().score(queryEmbedding);
+            if (match.isEmpty()) {
+                return null;
             }
+            SemanticRoute bestRoute = current.routes().get(match.best());
+            double bestScore = match.bestScore();
 
-            double threshold = bestRoute != null && bestRoute.threshold != null ? bestRoute.threshold : similarityThreshold;
-            if (bestRoute == null || bestScore < threshold) {
+            double threshold = bestRoute.threshold != null ? bestRoute.threshold : similarityThreshold;
+            if (bestScore < threshold) {
                 return null;
             }
 
@@ -184,37 +333,44 @@ public class SemanticIntentDetector implements IntentDetector {
         }
     }
 
-    @Data
-    @AllArgsConstructor
-    private static class SemanticRoute {
-        private String routeKey;
-        private TaskType taskType;
-        private QueryType processor;
-        private TopicDomain domain;
-        private boolean lockProcessor;
-        private Double threshold;
-        private List<float[]> vectors;
-
-        double maxSimilarity(float[] candidate) {
-            double max = 0;
-            for (float[] vector : vectors) {
-                max = Math.max(max, cosine(candidate, vector));
-            }
-            return max;
+    /**
+     * 路由快照：路由表、规则所在路由索引，以及由全部示例向量打包成的归一化矩阵（以 routeKey 标识行所属路由）
+     */
+    private record RouteSnapshot(Map<String, SemanticRoute> routes, Map<Long, String> ruleRoutes,
+                                 RouteMatrix<String> matrix) {
+        static final RouteSnapshot EMPTY = new RouteSnapshot(Map.of(), Map.of(), RouteMatrix.empty());
+
+        static RouteSnapshot of(Map<String, SemanticRoute> routes, Map<Long, String> ruleRoutes) {
+            RouteMatrix.Builder<String> builder = RouteMatrix.builder();
+            routes.forEach((routeKey, route) -> route.members().forEach(member -> builder.add(routeKey, member.vector())));
+            return new RouteSnapshot(Map.copyOf(routes), Map.copyOf(ruleRoutes), builder.build());
         }
+    }
 
-        private double cosine(float[] a, float[] b) {
-            double dot = 0, normA = 0, normB = 0;
-            for (int i = 0; i < a.length; i++) {
-                dot += a[i] * b[i];
-                normA += a[i] * a[i];
-                normB += b[i] * b[i];
-            }
-            if (normA == 0 || normB == 0) {
-                return 0;
+    private record RouteMember(Long ruleId, float[] vector, IntentRule rule) {
+        RouteMember(IntentRule rule, float[] vector) {
+            this(rule.getId(), vector, rule);
+        }
+    }
+
+    /**
+     * 不可变路由：元数据取自组内首条规则，成员变化时整体重建。
+     */
+    private record SemanticRoute(String routeKey, TaskType taskType, QueryType processor, TopicDomain domain,
+                                 boolean lockProcessor, Double threshold, List<RouteMember> members) {
+
+        static SemanticRoute of(String routeKey, List<RouteMember> members) {
+            if (members.isEmpty()) {
+                return null;
             }
-            return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+            IntentRule head = members.get(0).rule();
+            return new SemanticRoute(routeKey,
+                    TaskType.valueOf(head.getTaskType()),
+                    QueryType.valueOf(head.getTargetProcessor()),
+                    TopicDomain.valueOf(head.getTopicDomain()),
+                    Boolean.TRUE.equals(head.getLockProcessor()),
+                    head.getSemanticThreshold(),
+                    List.copyOf(members));
         }
     }
 }
-
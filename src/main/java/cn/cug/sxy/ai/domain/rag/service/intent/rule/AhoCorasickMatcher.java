@@ -0,0 +1,144 @@
+package cn.cug.sxy.ai.domain.rag.service.intent.rule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick 多模式匹配自动机。
+ * 构建后不可变、线程安全；一次扫描文本即可找出所有模式的所有出现位置，耗时与模式数量无关。
+ * <p>
+ * 构建时节点的转移表以 TreeMap 收集，完成后压缩为有序 char[] + int[]，匹配时二分查找转移；
+ * 输出通过字典后缀链接（最近的有输出的失败链祖先）串联，避免沿失败链逐级回溯。
+ *
+ * @author jerryhotton
+ */
+public final class AhoCorasickMatcher {
+
+    /**
+     * 匹配回调。
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        /**
+         * @param patternId 模式在构建列表中的下标
+         * @param start     出现位置起点（包含）
+         * @param end       出现位置终点（不包含）
+         */
+        void onMatch(int patternId, int start, int end);
+    }
+
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    private final int[] dictionarySuffix;
+    private final int[][] outputs;
+    private final int[] patternLengths;
+
+    /**
+     * @param patterns 模式列表，空串或 null 被忽略（其下标仍保留）
+     */
+    public AhoCorasickMatcher(List<String> patterns) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+        patternLengths = new int[patterns.size()];
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            patternLengths[id] = pattern.length();
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(node).get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(node).put(pattern.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(id);
+        }
+
+        int size = trie.size();
+        transitionChars = new char[size][];
+        transitionTargets = new int[size][];
+        outputs = new int[size][];
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> edges = trie.get(node);
+            transitionChars[node] = new char[edges.size()];
+            transitionTargets[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                transitionChars[node][i] = edge.getKey();
+                transitionTargets[node][i] = edge.getValue();
+                i++;
+            }
+            outputs[node] = nodeOutputs.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // 广度优先计算失败链接与字典后缀链接
+        failure = new int[size];
+        dictionarySuffix = new int[size];
+        Arrays.fill(dictionarySuffix, -1);
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int target : transitionTargets[0]) {
+            failure[target] = 0;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < transitionChars[node].length; i++) {
+                char c = transitionChars[node][i];
+                int child = transitionTargets[node][i];
+                int fallback = failure[node];
+                while (fallback != 0 && step(fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int target = step(fallback, c);
+                failure[child] = target >= 0 && target != child ? target : 0;
+                int suffix = failure[child];
+                dictionarySuffix[child] = outputs[suffix].length > 0 ? suffix : dictionarySuffix[suffix];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * 扫描文本，按出现位置终点顺序回调每一次匹配。
+     */
+    public void match(CharSequence text, MatchListener listener) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = step(node, c);
+            while (next < 0 && node != 0) {
+                node = failure[node];
+                next = step(node, c);
+            }
+            node = Math.max(next, 0);
+            for (int output = node; output > 0; output = dictionarySuffix[output]) {
+                for (int patternId : outputs[output]) {
+                    listener.onMatch(patternId, i + 1 - patternLengths[patternId], i + 1);
+                }
+            }
+        }
+    }
+
+    public int nodeCount() {
+        return failure.length;
+    }
+
+    private int step(int node, char c) {
+        int index = Arrays.binarySearch(transitionChars[node], c);
+        return index >= 0 ? transitionTargets[node][index] : -1;
+    }
+}
@@ -0,0 +1,336 @@
+package cn.cug.sxy.ai.domain.rag.service.intent.rule;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 编译后的关键词与正则规则集，在规则刷新时构建，构建后不可变。
+ * <p>
+ * 1. KEYWORD 规则的内容与 REGEX 规则中提取出的必需字面量一起编入同一个 {@link AhoCorasickMatcher}，
+ *    一次扫描查询文本得到命中的关键词规则（按 EXACT/CONTAINS/PREFIX/SUFFIX 检查出现位置）和需要复核的正则规则
+ * 2. 正则规则（含匹配方式为 REGEX 的关键词规则）预先编译；无法提取字面量的正则（含顶层分支、(?i) 等）每次都参与复核；
+ *    正则只在按顺序需要时才执行（{@link #confirmKeyword}、{@link #confirmRegex}）
+ * 3. 规则列表保持刷新时的排序（优先级升序、置信度降序），命中结果以该顺序的下标给出
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+public final class CompiledIntentRules {
+
+    private static final CompiledIntentRules EMPTY = new CompiledIntentRules(Collections.emptyList(), Collections.emptyList());
+
+    private static final int MIN_LITERAL_LENGTH = 2;
+
+    private final List<IntentRule> keywordRules;
+    private final List<IntentRule> regexRules;
+    private final Pattern[] keywordPatterns;
+    private final Pattern[] regexPatterns;
+    private final BitSet alwaysCheckedKeywords = new BitSet();
+    private final BitSet alwaysCheckedRegex = new BitSet();
+    private final AhoCorasickMatcher matcher;
+    // 自动机模式下标 -> 关键词规则（含匹配方式）或正则规则
+    private final List<List<PatternTarget>> targets = new ArrayList<>();
+
+    private CompiledIntentRules(List<IntentRule> keywordRules, List<IntentRule> regexRules) {
+        this.keywordRules = keywordRules;
+        this.regexRules = regexRules;
+        this.keywordPatterns = new Pattern[keywordRules.size()];
+        this.regexPatterns = new Pattern[regexRules.size()];
+
+        Map<String, Integer> patternIds = new HashMap<>();
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < keywordRules.size(); i++) {
+            IntentRule rule = keywordRules.get(i);
+            if (StringUtils.isBlank(rule.getRuleContent())) {
+                continue;
+            }
+            MatchMode mode = resolveMatchMode(rule);
+            if (mode == MatchMode.REGEX) {
+                addRegex(rule, i, false, keywordPatterns, alwaysCheckedKeywords, patternIds, patterns);
+            } else {
+                addTarget(patternIds, patterns, rule.getRuleContent(), new PatternTarget(false, i, mode));
+            }
+        }
+        for (int i = 0; i < regexRules.size(); i++) {
+            IntentRule rule = regexRules.get(i);
+            if (StringUtils.isNotBlank(rule.getRuleContent())) {
+                addRegex(rule, i, true, regexPatterns, alwaysCheckedRegex, patternIds, patterns);
+            }
+        }
+        this.matcher = new AhoCorasickMatcher(patterns);
+    }
+
+    private void addRegex(IntentRule rule, int index, boolean regexRule, Pattern[] compiled, BitSet alwaysChecked,
+                          Map<String, Integer> patternIds, List<String> patterns) {
+        try {
+            compiled[index] = Pattern.compile(rule.getRuleContent());
+        } catch (Exception e) {
+            log.warn("无效的正则规则: id={}, content={}", rule.getId(), rule.getRuleContent());
+            return;
+        }
+        String literal = requiredLiteral(rule.getRuleContent());
+        if (literal == null) {
+            alwaysChecked.set(index);
+        } else {
+            addTarget(patternIds, patterns, literal, new PatternTarget(regexRule, index, MatchMode.REGEX));
+        }
+    }
+
+    /**
+     * 编译规则。
+     *
+     * @param keywordRules 已排序的 KEYWORD 规则
+     * @param regexRules   已排序的 REGEX 规则
+     */
+    public static CompiledIntentRules compile(List<IntentRule> keywordRules, List<IntentRule> regexRules) {
+        if (keywordRules.isEmpty() && regexRules.isEmpty()) {
+            return EMPTY;
+        }
+        return new CompiledIntentRules(List.copyOf(keywordRules), List.copyOf(regexRules));
+    }
+
+    public static CompiledIntentRules empty() {
+        return EMPTY;
+    }
+
+    private void addTarget(Map<String, Integer> patternIds, List<String> patterns, String pattern, PatternTarget target) {
+        Integer id = patternIds.get(pattern);
+        if (id == null) {
+            id = patterns.size();
+            patternIds.put(pattern, id);
+            patterns.add(pattern);
+            targets.add(new ArrayList<>(1));
+        }
+        targets.get(id).add(target);
+    }
+
+    /**
+     * 一次扫描文本，得到候选的关键词规则与正则规则。
+     * 普通关键词规则的候选即命中，正则类候选还需 {@link #confirmKeyword}/{@link #confirmRegex} 复核。
+     */
+    public Matches match(String text) {
+        BitSet keywordCandidates = (BitSet) alwaysCheckedKeywords.clone();
+        BitSet regexCandidates = (BitSet) alwaysCheckedRegex.clone();
+        int length = text.length();
+        matcher.match(text, (patternId, start, end) -> {
+            for (PatternTarget target : targets.get(patternId)) {
+                boolean hit = switch (target.mode()) {
+                    case EXACT -> start == 0 && end == length;
+                    case PREFIX -> start == 0;
+                    case SUFFIX -> end == length;
+                    case CONTAINS, REGEX -> true;
+                };
+                if (hit) {
+                    (target.regexRule() ? regexCandidates : keywordCandidates).set(target.ruleIndex());
+                }
+            }
+        });
+        return new Matches(keywordCandidates, regexCandidates);
+    }
+
+    /**
+     * 复核关键词候选：匹配方式为 REGEX 的执行正则，其他已由自动机确认。
+     */
+    public boolean confirmKeyword(int keywordIndex, String text) {
+        Pattern pattern = keywordPatterns[keywordIndex];
+        return pattern == null || pattern.matcher(text).find();
+    }
+
+    /**
+     * 复核正则候选。
+     */
+    public boolean confirmRegex(int regexIndex, String text) {
+        Pattern pattern = regexPatterns[regexIndex];
+        return pattern != null && pattern.matcher(text).find();
+    }
+
+    public List<IntentRule> keywordRules() {
+        return keywordRules;
+    }
+
+    public List<IntentRule> regexRules() {
+        return regexRules;
+    }
+
+    /**
+     * 无法由自动机预过滤、每次都需逐条检查的规则数（关键词规则与正则规则）。
+     */
+    public int alwaysCheckedRuleCount() {
+        return alwaysCheckedKeywords.cardinality() + alwaysCheckedRegex.cardinality();
+    }
+
+    public int automatonSize() {
+        return matcher.nodeCount();
+    }
+
+    /**
+     * 提取正则匹配时文本中必然出现的最长字面量，无法确定时返回 null。
+     * 只做保守分析：顶层分支、内联标志（如大小写不敏感）、\Q...\E 直接放弃；
+     * 分组与字符类整体视为非字面量，后接 ? * {n,m} 的字符不计入字面量。
+     */
+    static String requiredLiteral(String regex) {
+        if (regex.contains("(?") || regex.contains("\\Q") || hasTopLevelAlternation(regex)) {
+            return null;
+        }
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escaped)) {
+                    // \d \w \s \b \1 \p{..} 等不是字面量
+                    best = longer(best, run);
+                    run.setLength(0);
+                    i += 2;
+                    continue;
+                }
+                i += 2;
+                if (isOptionalQuantifier(regex, i)) {
+                    best = longer(best, run);
+                    run.setLength(0);
+                } else {
+                    run.append(escaped);
+                }
+                continue;
+            }
+            if (c == '(' || c == '[') {
+                best = longer(best, run);
+                run.setLength(0);
+                i = skipGroup(regex, i);
+                continue;
+            }
+            if (".^$|)]".indexOf(c) >= 0) {
+                best = longer(best, run);
+                run.setLength(0);
+                i++;
+                continue;
+            }
+            if ("*+?{".indexOf(c) >= 0) {
+                // 量词：前一个字符已在下面的分支中处理
+                best = longer(best, run);
+                run.setLength(0);
+                i = c == '{' ? Math.max(i + 1, regex.indexOf('}', i) + 1) : i + 1;
+                continue;
+            }
+            i++;
+            if (isOptionalQuantifier(regex, i)) {
+                best = longer(best, run);
+                run.setLength(0);
+            } else if (i < regex.length() && regex.charAt(i) == '+') {
+                // x+ 至少出现一次：保留该字符后断开
+                run.append(c);
+                best = longer(best, run);
+                run.setLength(0);
+            } else {
+                run.append(c);
+            }
+        }
+        best = longer(best, run);
+        return best != null && best.length() >= MIN_LITERAL_LENGTH ? best : null;
+    }
+
+    private static boolean isOptionalQuantifier(String regex, int index) {
+        if (index >= regex.length()) {
+            return false;
+        }
+        char next = regex.charAt(index);
+        return next == '?' || next == '*' || (next == '{' && index + 1 < regex.length() && regex.charAt(index + 1) == '0');
+    }
+
+    private static String longer(String best, CharSequence run) {
+        return run.length() > (best == null ? 0 : best.length()) ? run.toString() : best;
+    }
+
+    /**
+     * 跳过从 start 开始的分组或字符类（含嵌套与转义），返回其后的位置。
+     */
+    private static int skipGroup(String regex, int start) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+        }
+        return regex.length();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MatchMode resolveMatchMode(IntentRule rule) {
+        String mode = rule.getMatchMode();
+        if (StringUtils.isBlank(mode)) {
+            return MatchMode.CONTAINS;
+        }
+        try {
+            return MatchMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (Exception e) {
+            return MatchMode.CONTAINS;
+        }
+    }
+
+    /**
+     * 一次扫描的结果：下标对应 {@link #keywordRules()} / {@link #regexRules()}。
+     */
+    public record Matches(BitSet keywordCandidates, BitSet regexCandidates) {
+    }
+
+    /**
+     * @param regexRule 目标为 REGEX 类型规则（否则为 KEYWORD 规则）
+     */
+    private record PatternTarget(boolean regexRule, int ruleIndex, MatchMode mode) {
+    }
+
+    private enum MatchMode {
+        EXACT, CONTAINS, PREFIX, SUFFIX, REGEX
+    }
+}
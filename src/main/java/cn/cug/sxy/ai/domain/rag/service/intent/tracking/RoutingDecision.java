@@ -65,6 +65,21 @@ public class RoutingDecision {
      * 是否命中缓存
      */
     private boolean cached;
+
+    /**
+     * 检测模式：SEQUENTIAL / PARALLEL
+     */
+    private String mode;
+
+    /**
+     * 决定最终意图的检测器名称（无检测器命中时为空）
+     */
+    private String winner;
+
+    /**
+     * 并行检测节省的延迟（毫秒）：按顺序执行所需的检测器耗时之和减去实际总延迟
+     */
+    private long latencySavedMs;
     
     /**
      * 检测器结果。
@@ -98,6 +113,11 @@ public class RoutingDecision {
          * 延迟（毫秒）
          */
         private long latencyMs;
+
+        /**
+         * 是否因提前结束或超出时间预算被取消
+         */
+        private boolean cancelled;
     }
 }
 
@@ -25,13 +25,16 @@ public class RoutingDecisionPublisher {
         // 3. 发送到监控系统（ELK/Grafana）
         
         if (decision.getDetectorResults() != null && !decision.getDetectorResults().isEmpty()) {
-            log.info("路由决策: query={}, intent={}, latency={}ms, cached={}, detectors={}",
+            log.info("路由决策: query={}, intent={}, latency={}ms, cached={}, detectors={}, mode={}, winner={}, saved={}ms",
                     decision.getQueryText() != null ? 
                             decision.getQueryText().substring(0, Math.min(50, decision.getQueryText().length())) : "",
                     decision.getFinalIntent() != null ? decision.getFinalIntent().getTaskType() : "UNKNOWN",
                     decision.getLatencyMs(),
                     decision.isCached(),
-                    decision.getDetectorResults().size());
+                    decision.getDetectorResults().size(),
+                    decision.getMode(),
+                    decision.getWinner(),
+                    decision.getLatencySavedMs());
         } else {
             log.debug("路由决策: query={}, intent={}, latency={}ms",
                     decision.getQueryText() != null ? 
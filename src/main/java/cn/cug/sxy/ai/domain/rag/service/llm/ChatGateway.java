@@ -0,0 +1,525 @@
+package cn.cug.sxy.ai.domain.rag.service.llm;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型调用网关。
+ * <p>
+ * 所有对 ChatClient 的调用都经过网关，按用途（{@link LlmPurpose}）提供：
+ * 1. 截止时间：超时取消调用并快速失败，调用方走各自的降级逻辑
+ * 2. 并发隔离（bulkhead）：每个用途独立的信号量，评估等低优先级调用无法挤占回答生成；
+ *    许可在调用线程真正结束时归还（超时后仍在进行的HTTP调用继续占用许可），调用线程池按许可总数定容
+ * 3. 熔断：模型服务失败率过高时快速失败，冷却后半开试探
+ * 4. 对冲请求：首个请求超过配置的延迟未返回时再发一个相同请求，取先成功者（降低长尾延迟）
+ * 5. 指标：按用途统计调用量、错误、超时、Token 用量、在途数与延迟分位数；
+ *    同步调用延迟、流式首个片段延迟（TTFT）与流式总时长分别统计，流式回答的长短不影响同步延迟分位数
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class ChatGateway {
+
+    private final ChatClient chatClient;
+    private final ChatGatewayProperties properties;
+    private final LlmCircuitBreaker circuitBreaker;
+    private final Map<LlmPurpose, PurposeState> states = new EnumMap<>(LlmPurpose.class);
+    private final Executor callExecutor;
+
+    public ChatGateway(ChatClient chatClient, ChatGatewayProperties properties,
+                       @Qualifier("llmCallExecutor") Executor callExecutor) {
+        this.chatClient = chatClient;
+        this.properties = properties;
+        this.callExecutor = callExecutor;
+        this.circuitBreaker = new LlmCircuitBreaker(properties.getCircuitBreaker());
+        for (LlmPurpose purpose : LlmPurpose.values()) {
+            states.put(purpose, new PurposeState(properties.forPurpose(purpose)));
+        }
+        log.info("模型网关已初始化，启用: {}, 调用线程上限: {}, 用途配置: {}", properties.isEnabled(),
+                properties.totalMaxConcurrent(), properties.getPurposes().keySet());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("模型网关已关闭，统计: {}", getStats());
+    }
+
+    /**
+     * 同步调用模型，返回文本内容。
+     *
+     * @throws ChatGatewayException 熔断、配额已满、超时、中断或模型调用失败
+     */
+    public String call(LlmPurpose purpose, Prompt prompt) {
+        ChatResponse response = callForResponse(purpose, prompt);
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    /**
+     * 同步调用模型，返回完整响应（含Token用量）。
+     */
+    public ChatResponse callForResponse(LlmPurpose purpose, Prompt prompt) {
+        PurposeState state = states.get(purpose);
+        if (!properties.isEnabled()) {
+            return chatClient.prompt(prompt).call().chatResponse();
+        }
+        admit(purpose, state);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(state.config.getDeadlineMs());
+        Attempt primary;
+        try {
+            primary = submit(prompt);
+        } catch (RejectedExecutionException e) {
+            releasePermit(state);
+            circuitBreaker.onIgnored();
+            state.rejected.incrementAndGet();
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.BULKHEAD_FULL,
+                    "模型调用线程已满（" + purpose + "）", e);
+        }
+        // 许可在调用线程真正结束时归还：超时取消后HTTP调用可能仍在进行，期间继续占用许可
+        primary.finished().whenComplete((ignored, error) -> releasePermit(state));
+        List<Attempt> attempts = new ArrayList<>(2);
+        attempts.add(primary);
+        try {
+            ChatResponse response = awaitWithHedge(purpose, state, prompt, attempts, deadline);
+            circuitBreaker.onSuccess();
+            state.succeeded.incrementAndGet();
+            recordUsage(state, response);
+            return response;
+        } catch (TimeoutException e) {
+            circuitBreaker.onFailure();
+            state.timedOut.incrementAndGet();
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.TIMEOUT,
+                    "模型调用超时（" + purpose + "，" + state.config.getDeadlineMs() + "ms）", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.onIgnored();
+            state.cancelled.incrementAndGet();
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.CANCELLED, "模型调用被取消（" + purpose + "）", e);
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            state.failed.incrementAndGet();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.FAILED,
+                    "模型调用失败（" + purpose + "）: " + cause.getMessage(), cause);
+        } finally {
+            attempts.forEach(Attempt::cancel);
+            state.latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * 流式调用模型。截止时间作用于首个片段及相邻片段之间的间隔。
+     * 首个片段到达时记录首片段延迟；首个片段到达前失败的调用按失败时的耗时计入。
+     */
+    public Flux<String> stream(LlmPurpose purpose, Prompt prompt) {
+        PurposeState state = states.get(purpose);
+        if (!properties.isEnabled()) {
+            return chatClient.prompt(prompt).stream().content();
+        }
+        return Flux.defer(() -> {
+            admit(purpose, state);
+            long start = System.nanoTime();
+            AtomicBoolean released = new AtomicBoolean(false);
+            AtomicBoolean firstToken = new AtomicBoolean(false);
+            return chatClient.prompt(prompt).stream().content()
+                    .timeout(Duration.ofMillis(state.config.getDeadlineMs()))
+                    .doOnNext(chunk -> {
+                        if (firstToken.compareAndSet(false, true)) {
+                            state.firstTokenLatencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        circuitBreaker.onSuccess();
+                        state.succeeded.incrementAndGet();
+                    })
+                    .doOnError(e -> {
+                        circuitBreaker.onFailure();
+                        if (e instanceof TimeoutException) {
+                            state.timedOut.incrementAndGet();
+                        } else {
+                            state.failed.incrementAndGet();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        circuitBreaker.onIgnored();
+                        state.cancelled.incrementAndGet();
+                    })
+                    .doFinally(signal -> {
+                        if (released.compareAndSet(false, true)) {
+                            releasePermit(state);
+                            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                            state.streamLatencies.record(elapsedMs);
+                            if (signal == SignalType.ON_ERROR && firstToken.compareAndSet(false, true)) {
+                                state.firstTokenLatencies.record(elapsedMs);
+                            }
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 当前所有用途的在途调用数。
+     */
+    public int inFlight() {
+        return states.values().stream().mapToInt(s -> s.inFlight.get()).sum();
+    }
+
+    /**
+     * 指定用途最近 windowMs 内同步调用的 P95 延迟（毫秒），窗口内无调用时为 0。
+     */
+    public long p95LatencyMs(LlmPurpose purpose, long windowMs) {
+        return states.get(purpose).latencies.percentile(0.95, windowMs);
+    }
+
+    /**
+     * 指定用途最近 windowMs 内流式调用首个片段的 P95 延迟（毫秒），窗口内无调用时为 0。
+     */
+    public long p95FirstTokenMs(LlmPurpose purpose, long windowMs) {
+        return states.get(purpose).firstTokenLatencies.percentile(0.95, windowMs);
+    }
+
+    public LlmCircuitBreaker.State circuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public GatewayStats getStats() {
+        Map<String, PurposeStats> purposes = new LinkedHashMap<>();
+        states.forEach((purpose, state) -> purposes.put(purpose.name(), state.snapshot()));
+        return GatewayStats.builder()
+                .circuitState(circuitBreaker.getState().name())
+                .failureRate(circuitBreaker.getFailureRate())
+                .circuitOpenCount(circuitBreaker.getOpenCount())
+                .inFlight(inFlight())
+                .purposes(purposes)
+                .build();
+    }
+
+    /**
+     * 获取并发配额与熔断许可，任一不满足则快速失败。
+     */
+    private void admit(LlmPurpose purpose, PurposeState state) {
+        state.calls.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = state.bulkhead.tryAcquire(properties.getBulkheadWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state.cancelled.incrementAndGet();
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.CANCELLED, "等待并发配额时被中断（" + purpose + "）", e);
+        }
+        if (!acquired) {
+            state.rejected.incrementAndGet();
+            log.warn("模型调用并发配额已满，快速失败: purpose={}, maxConcurrent={}", purpose, state.config.getMaxConcurrent());
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.BULKHEAD_FULL,
+                    "模型调用并发已满（" + purpose + "）", null);
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            state.bulkhead.release();
+            state.shortCircuited.incrementAndGet();
+            log.warn("模型服务熔断中，快速失败: purpose={}", purpose);
+            throw new ChatGatewayException(purpose, ChatGatewayException.Reason.SHORT_CIRCUITED,
+                    "模型服务熔断中（" + purpose + "）", null);
+        }
+        state.inFlight.incrementAndGet();
+    }
+
+    private static void releasePermit(PurposeState state) {
+        state.inFlight.decrementAndGet();
+        state.bulkhead.release();
+    }
+
+    /**
+     * 等待结果；配置了对冲延迟时，首个请求超过该延迟未返回且仍有配额，则发起对冲请求，取先成功者。
+     */
+    private ChatResponse awaitWithHedge(LlmPurpose purpose, PurposeState state, Prompt prompt,
+                                        List<Attempt> attempts, long deadline)
+            throws TimeoutException, InterruptedException, ExecutionException {
+        Attempt primary = attempts.get(0);
+        long hedgeAfterMs = state.config.getHedgeAfterMs();
+        if (hedgeAfterMs <= 0 || hedgeAfterMs >= state.config.getDeadlineMs()) {
+            return primary.result().get(remaining(deadline), TimeUnit.NANOSECONDS);
+        }
+        try {
+            return primary.result().get(hedgeAfterMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!state.bulkhead.tryAcquire()) {
+                return primary.result().get(remaining(deadline), TimeUnit.NANOSECONDS);
+            }
+        }
+        state.hedged.incrementAndGet();
+        log.debug("模型调用超过 {}ms 未返回，发起对冲请求: purpose={}", hedgeAfterMs, purpose);
+        Attempt hedge;
+        try {
+            hedge = submit(prompt);
+        } catch (RuntimeException e) {
+            state.bulkhead.release();
+            return primary.result().get(remaining(deadline), TimeUnit.NANOSECONDS);
+        }
+        attempts.add(hedge);
+        hedge.finished().whenComplete((r, t) -> state.bulkhead.release());
+        ChatResponse response = firstSuccessful(primary.result(), hedge.result()).get(remaining(deadline), TimeUnit.NANOSECONDS);
+        if (hedge.result().isDone() && !hedge.result().isCompletedExceptionally() && hedge.result().getNow(null) == response) {
+            state.hedgeWins.incrementAndGet();
+        }
+        return response;
+    }
+
+    /**
+     * 提交一次调用；线程池已满时抛出 {@link RejectedExecutionException}。
+     */
+    private Attempt submit(Prompt prompt) {
+        CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        AtomicBoolean claimed = new AtomicBoolean(false);
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            // 与取消竞争认领：取消先认领时不再发起调用
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                result.complete(chatClient.prompt(prompt).call().chatResponse());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                finished.complete(null);
+            }
+            return null;
+        });
+        callExecutor.execute(task);
+        return new Attempt(result, finished, claimed, task);
+    }
+
+    private static CompletableFuture<ChatResponse> firstSuccessful(CompletableFuture<ChatResponse> a,
+                                                                   CompletableFuture<ChatResponse> b) {
+        CompletableFuture<ChatResponse> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<ChatResponse> future : List.of(a, b)) {
+            future.whenComplete((response, error) -> {
+                if (error == null) {
+                    first.complete(response);
+                } else if (failures.incrementAndGet() == 2) {
+                    first.completeExceptionally(error);
+                }
+            });
+        }
+        return first;
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static void recordUsage(PurposeState state, ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage != null) {
+            state.promptTokens.addAndGet(usage.getPromptTokens() != null ? usage.getPromptTokens() : 0);
+            state.completionTokens.addAndGet(usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0);
+        }
+    }
+
+    /**
+     * @param result   调用结果
+     * @param finished 调用线程结束（或调用在开始前被取消）时完成，用于归还许可
+     * @param claimed  由执行线程或取消方之一认领，保证调用要么执行、要么由取消方结束
+     */
+    private record Attempt(CompletableFuture<ChatResponse> result, CompletableFuture<Void> finished,
+                           AtomicBoolean claimed, FutureTask<Void> task) {
+
+        void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                // 尚未开始执行：不会再发起调用，直接结束
+                task.cancel(false);
+                result.cancel(false);
+                finished.complete(null);
+                return;
+            }
+            if (!result.isDone()) {
+                task.cancel(true);
+                result.cancel(false);
+            }
+        }
+    }
+
+    private static final class PurposeState {
+
+        private final ChatGatewayProperties.PurposeConfig config;
+        private final Semaphore bulkhead;
+        private final LatencyWindow latencies = new LatencyWindow(512);
+        private final LatencyWindow firstTokenLatencies = new LatencyWindow(512);
+        private final LatencyWindow streamLatencies = new LatencyWindow(512);
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+        private final AtomicLong cancelled = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong shortCircuited = new AtomicLong();
+        private final AtomicLong hedged = new AtomicLong();
+        private final AtomicLong hedgeWins = new AtomicLong();
+        private final AtomicLong promptTokens = new AtomicLong();
+        private final AtomicLong completionTokens = new AtomicLong();
+
+        private PurposeState(ChatGatewayProperties.PurposeConfig config) {
+            this.config = config;
+            this.bulkhead = new Semaphore(Math.max(1, config.getMaxConcurrent()));
+        }
+
+        private PurposeStats snapshot() {
+            return PurposeStats.builder()
+                    .maxConcurrent(config.getMaxConcurrent())
+                    .deadlineMs(config.getDeadlineMs())
+                    .inFlight(inFlight.get())
+                    .calls(calls.get())
+                    .succeeded(succeeded.get())
+                    .failed(failed.get())
+                    .timedOut(timedOut.get())
+                    .cancelled(cancelled.get())
+                    .rejected(rejected.get())
+                    .shortCircuited(shortCircuited.get())
+                    .hedged(hedged.get())
+                    .hedgeWins(hedgeWins.get())
+                    .promptTokens(promptTokens.get())
+                    .completionTokens(completionTokens.get())
+                    .p50LatencyMs(latencies.percentile(0.50, Long.MAX_VALUE))
+                    .p95LatencyMs(latencies.percentile(0.95, Long.MAX_VALUE))
+                    .p95FirstTokenMs(firstTokenLatencies.percentile(0.95, Long.MAX_VALUE))
+                    .p95StreamMs(streamLatencies.percentile(0.95, Long.MAX_VALUE))
+                    .build();
+        }
+    }
+
+    /**
+     * 最近 N 次调用的延迟环形缓冲（带记录时间），用于计算分位数；可只取最近一段时间内的样本，空闲后分位数归零。
+     */
+    static final class LatencyWindow {
+
+        private final long[] samples;
+        private final long[] recordedAt;
+        private int index;
+        private int count;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+            this.recordedAt = new long[size];
+        }
+
+        void record(long latencyMs) {
+            record(latencyMs, System.currentTimeMillis());
+        }
+
+        synchronized void record(long latencyMs, long nowMs) {
+            samples[index] = latencyMs;
+            recordedAt[index] = nowMs;
+            index = (index + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        long percentile(double p, long windowMs) {
+            return percentile(p, windowMs, System.currentTimeMillis());
+        }
+
+        /**
+         * @param windowMs 只统计 nowMs 之前 windowMs 内记录的样本
+         * @return 分位数，窗口内无样本时为 0
+         */
+        long percentile(double p, long windowMs, long nowMs) {
+            long[] copy;
+            int size = 0;
+            synchronized (this) {
+                copy = new long[count];
+                for (int i = 0; i < count; i++) {
+                    if (nowMs - recordedAt[i] <= windowMs) {
+                        copy[size++] = samples[i];
+                    }
+                }
+            }
+            if (size == 0) {
+                return 0;
+            }
+            Arrays.sort(copy, 0, size);
+            return copy[Math.min(size - 1, (int) Math.ceil(p * size) - 1)];
+        }
+    }
+
+    /**
+     * 网关统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class GatewayStats {
+        private String circuitState;
+        private double failureRate;
+        private long circuitOpenCount;
+        private int inFlight;
+        private Map<String, PurposeStats> purposes;
+    }
+
+    /**
+     * 单个用途的统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PurposeStats {
+        private int maxConcurrent;
+        private long deadlineMs;
+        private int inFlight;
+        private long calls;
+        private long succeeded;
+        private long failed;
+        private long timedOut;
+        private long cancelled;
+        private long rejected;
+        private long shortCircuited;
+        private long hedged;
+        private long hedgeWins;
+        private long promptTokens;
+        private long completionTokens;
+        private long p50LatencyMs;
+        private long p95LatencyMs;
+        private long p95FirstTokenMs;
+        private long p95StreamMs;
+    }
+}
@@ -0,0 +1,49 @@
+package cn.cug.sxy.ai.domain.rag.service.llm;
+
+/**
+ * 模型网关调用异常。
+ *
+ * @author jerryhotton
+ */
+public class ChatGatewayException extends RuntimeException {
+
+    public enum Reason {
+        /**
+         * 熔断器打开，快速失败
+         */
+        SHORT_CIRCUITED,
+        /**
+         * 用途并发配额已满
+         */
+        BULKHEAD_FULL,
+        /**
+         * 超过截止时间
+         */
+        TIMEOUT,
+        /**
+         * 调用方线程被中断（如意图检测提前结束）
+         */
+        CANCELLED,
+        /**
+         * 模型调用失败
+         */
+        FAILED
+    }
+
+    private final LlmPurpose purpose;
+    private final Reason reason;
+
+    public ChatGatewayException(LlmPurpose purpose, Reason reason, String message, Throwable cause) {
+        super(message, cause);
+        this.purpose = purpose;
+        this.reason = reason;
+    }
+
+    public LlmPurpose getPurpose() {
+        return purpose;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
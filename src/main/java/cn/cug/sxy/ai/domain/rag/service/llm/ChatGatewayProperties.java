@@ -0,0 +1,69 @@
+package cn.cug.sxy.ai.domain.rag.service.llm;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模型网关配置（rag.llm-gateway）。
+ *
+ * @author jerryhotton
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rag.llm-gateway")
+public class ChatGatewayProperties {
+
+    /** 关闭时直接调用模型，不做截止时间、隔离与熔断 */
+    private boolean enabled = true;
+    /** 等待用途并发配额的最长时间（毫秒），超时快速失败 */
+    private long bulkheadWaitMs = 200;
+    /** 未单独配置的用途使用的默认值 */
+    private PurposeConfig defaults = new PurposeConfig();
+    /** 按用途的配置，键为 {@link LlmPurpose#getConfigKey()} */
+    private Map<String, PurposeConfig> purposes = new HashMap<>();
+    /** 熔断器配置（所有用途共享同一个模型服务） */
+    private CircuitBreakerConfig circuitBreaker = new CircuitBreakerConfig();
+
+    public PurposeConfig forPurpose(LlmPurpose purpose) {
+        return purposes.getOrDefault(purpose.getConfigKey(), defaults);
+    }
+
+    /**
+     * 所有用途的并发配额之和，即调用线程数上限。
+     */
+    public int totalMaxConcurrent() {
+        int total = 0;
+        for (LlmPurpose purpose : LlmPurpose.values()) {
+            total += Math.max(1, forPurpose(purpose).getMaxConcurrent());
+        }
+        return total;
+    }
+
+    @Data
+    public static class PurposeConfig {
+        /** 截止时间（毫秒）；流式调用中为相邻片段的最大间隔 */
+        private long deadlineMs = 30000;
+        /** 最大并发调用数 */
+        private int maxConcurrent = 16;
+        /** 对冲请求延迟（毫秒）：首个请求超过该时间未返回时再发一个相同请求，取先返回者；0 表示不对冲 */
+        private long hedgeAfterMs = 0;
+    }
+
+    @Data
+    public static class CircuitBreakerConfig {
+        /** 滑动窗口大小（调用次数） */
+        private int windowSize = 20;
+        /** 窗口内至少多少次调用后才计算失败率 */
+        private int minimumCalls = 10;
+        /** 失败率阈值，达到后打开熔断 */
+        private double failureRateThreshold = 0.5;
+        /** 熔断打开持续时间（毫秒），之后进入半开状态试探 */
+        private long openMs = 30000;
+        /** 半开状态允许的试探调用数，全部成功后关闭熔断 */
+        private int halfOpenCalls = 2;
+    }
+}
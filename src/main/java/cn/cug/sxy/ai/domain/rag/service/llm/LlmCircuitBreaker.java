@@ -0,0 +1,143 @@
+package cn.cug.sxy.ai.domain.rag.service.llm;
+
+import java.util.Arrays;
+
+/**
+ * 基于滑动窗口失败率的熔断器。
+ * <p>
+ * CLOSED：正常放行，记录最近 windowSize 次调用结果，失败率达到阈值后打开；
+ * OPEN：直接拒绝，持续 openMs 后进入 HALF_OPEN；
+ * HALF_OPEN：放行有限的试探调用，全部成功则关闭，任一失败则重新打开。
+ *
+ * @author jerryhotton
+ */
+public class LlmCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    private final boolean[] window;
+    private int index;
+    private int count;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsInFlight;
+    private int trialSuccesses;
+    private long openCount;
+
+    public LlmCircuitBreaker(ChatGatewayProperties.CircuitBreakerConfig config) {
+        this.windowSize = Math.max(1, config.getWindowSize());
+        this.minimumCalls = Math.max(1, Math.min(config.getMinimumCalls(), windowSize));
+        this.failureRateThreshold = config.getFailureRateThreshold();
+        this.openMillis = config.getOpenMs();
+        this.halfOpenCalls = Math.max(1, config.getHalfOpenCalls());
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * 请求放行许可；返回 true 时调用方必须以 onSuccess / onFailure / onIgnored 之一结束本次调用。
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsInFlight = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsInFlight >= halfOpenCalls) {
+                return false;
+            }
+            trialsInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            trialsInFlight--;
+            if (++trialSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        record(true);
+        if (count >= minimumCalls && (double) failures / count >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 调用被取消等与模型健康无关的结束，只归还试探许可。
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN && trialsInFlight > 0) {
+            trialsInFlight--;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return count == 0 ? 0.0 : (double) failures / count;
+    }
+
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    private void record(boolean failed) {
+        if (count == windowSize && window[index]) {
+            failures--;
+        }
+        window[index] = failed;
+        if (failed) {
+            failures++;
+        }
+        index = (index + 1) % windowSize;
+        count = Math.min(count + 1, windowSize);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        openCount++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        index = 0;
+        count = 0;
+        failures = 0;
+        Arrays.fill(window, false);
+    }
+}
@@ -0,0 +1,30 @@
+package cn.cug.sxy.ai.domain.rag.service.llm;
+
+/**
+ * 模型调用用途。
+ * 网关按用途隔离并发配额、截止时间与监控指标，避免低优先级调用（如评估）挤占回答生成。
+ *
+ * @author jerryhotton
+ */
+public enum LlmPurpose {
+
+    GENERATION("generation"),
+    EVALUATION("evaluation"),
+    QUERY_REWRITE("query-rewrite"),
+    INTENT_PLANNING("intent-planning"),
+    TASK_EXECUTION("task-execution"),
+    CLARIFICATION("clarification");
+
+    /**
+     * 配置键：rag.llm-gateway.purposes.{configKey}
+     */
+    private final String configKey;
+
+    LlmPurpose(String configKey) {
+        this.configKey = configKey;
+    }
+
+    public String getConfigKey() {
+        return configKey;
+    }
+}
@@ -6,6 +6,7 @@ import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskExecutionContext;
 import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
 import cn.cug.sxy.ai.domain.rag.model.strategy.EvaluationStrategy;
+import cn.cug.sxy.ai.domain.rag.model.strategy.RetrievalStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -41,40 +42,118 @@ public class FallbackManager {
     @Value("${rag.fallback.prefer-rag-on-failure:true}")
     private boolean preferRagOnFailure;
 
+    /**
+     * 响应元数据中的检索质量指标键（由查询处理器写入）
+     */
+    public static final String META_CONTEXT_COUNT = "contextCount";
+    public static final String META_TOP_SCORE = "retrievalTopScore";
+    public static final String META_SCORE_SPREAD = "retrievalScoreSpread";
+
+    @Value("${rag.fallback.heuristic.min-top-score:0.35}")
+    private double heuristicMinTopScore; // 最高检索分低于此值视为检索不足，须明显低于检索最低相似度（rag.retrieval.default-min-score）
+
     /**
      * 根据响应质量调整策略（第一级降级：策略调整）。
+     * 评估已改为异步抽样执行，请求路径上通常没有评估分数：
+     * - 有同步评估分数时按分数阈值判断
+     * - 否则按检索质量做廉价的启发式判断，仅在上下文为空或最高分明显过低时放宽检索条件重试一次；
+     *   正常通过检索阈值的结果不重试，避免普通查询多付一次生成开销
      */
     public QueryStrategy maybeAdjustStrategy(Query query, Response response, QueryStrategy original) {
         EvaluationStrategy eval = original.getEvaluation();
-        if (eval == null || !eval.isEnabled()) {
+        if (eval == null || !eval.isEnabled() || !eval.isAllowRetry() || response == null) {
             return original;
         }
         Integer faith = response.getFaithfulnessScore();
         Integer rel = response.getRelevanceScore();
-        if (faith == null || rel == null) {
+        if (faith != null && rel != null) {
+            double f = faith / 10.0;
+            double r = rel / 10.0;
+            if (f < eval.getMinFaithfulness() || r < eval.getMinRelevance()) {
+                log.warn("查询 {} 评估不达标 (faith={}, rel={})，将降级策略重试一次", query.getId(), f, r);
+                return downgrade(original, original.getRetrieval());
+            }
             return original;
         }
-        double f = faith / 10.0;
-        double r = rel / 10.0;
-        if ((f < eval.getMinFaithfulness() || r < eval.getMinRelevance()) && eval.isAllowRetry()) {
-            log.warn("查询 {} 评估不达标 (faith={}, rel={})，将降级策略重试一次", query.getId(), f, r);
-            QueryStrategy downgraded = QueryStrategy.builder()
-                    .processorType(cn.cug.sxy.ai.domain.rag.service.query.QueryType.BASIC)
-                    .retrieval(original.getRetrieval())
-                    .generation(original.getGeneration())
-                    .evaluation(EvaluationStrategy.builder()
-                            .enabled(false)
-                            .allowRetry(false)
-                            .build())
-                    .clarificationRequired(false)
-                    .taskPlan(original.getTaskPlan())
-                    .build()
-                    .ensureDefaults();
-            return downgraded;
+        String weakReason = weakRetrievalReason(response);
+        if (weakReason != null) {
+            log.warn("查询 {} 检索质量不足（{}），将放宽检索条件重试一次", query.getId(), weakReason);
+            return downgrade(original, widenRetrieval(original.getRetrieval()));
         }
         return original;
     }
 
+    /**
+     * 启发式判断检索质量，返回不达标原因；达标或缺少指标时返回 null。
+     */
+    private String weakRetrievalReason(Response response) {
+        if ("FAILED".equals(response.getStatus())) {
+            return null;
+        }
+        Map<String, Object> metadata = response.getMetadata();
+        if (metadata == null || !metadata.containsKey(META_CONTEXT_COUNT)) {
+            return null;
+        }
+        double contextCount = asDouble(metadata.get(META_CONTEXT_COUNT));
+        double topScore = asDouble(metadata.get(META_TOP_SCORE));
+        if (contextCount <= 0) {
+            return "上下文为空";
+        }
+        if (topScore < heuristicMinTopScore) {
+            return String.format("最高检索分 %.3f < %.3f", topScore, heuristicMinTopScore);
+        }
+        return null;
+    }
+
+    private QueryStrategy downgrade(QueryStrategy original, RetrievalStrategy retrieval) {
+        return QueryStrategy.builder()
+                .processorType(cn.cug.sxy.ai.domain.rag.service.query.QueryType.BASIC)
+                .retrieval(retrieval)
+                .generation(original.getGeneration())
+                .evaluation(EvaluationStrategy.builder()
+                        .enabled(false)
+                        .allowRetry(false)
+                        .build())
+                .clarificationRequired(false)
+                .taskPlan(original.getTaskPlan())
+                .build()
+                .ensureDefaults();
+    }
+
+    /**
+     * 放宽检索条件：TopK 翻倍，相似度阈值减半。
+     */
+    private RetrievalStrategy widenRetrieval(RetrievalStrategy retrieval) {
+        if (retrieval == null) {
+            return null;
+        }
+        return RetrievalStrategy.builder()
+                .topK(retrieval.getTopK() != null ? retrieval.getTopK() * 2 : null)
+                .limit(retrieval.getLimit() != null ? retrieval.getLimit() * 2 : null)
+                .minScore(retrieval.getMinScore() != null ? retrieval.getMinScore() / 2 : null)
+                .similarityThreshold(retrieval.getSimilarityThreshold() != null ? retrieval.getSimilarityThreshold() / 2 : null)
+                .hybridEnabled(retrieval.getHybridEnabled())
+                .rerankerEnabled(retrieval.getRerankerEnabled())
+                .multiQueryEnabled(retrieval.getMultiQueryEnabled())
+                .hydeEnabled(retrieval.getHydeEnabled())
+                .stepBackEnabled(retrieval.getStepBackEnabled())
+                .selfRagEnabled(retrieval.getSelfRagEnabled())
+                .indexName(retrieval.getIndexName())
+                .router(retrieval.getRouter())
+                .build();
+    }
+
+    private static double asDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return value != null ? Double.parseDouble(value.toString()) : 0.0;
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
     /**
      * 处理工具执行失败（第一级降级：工具级重试/切换）。
      */
@@ -3,11 +3,14 @@ package cn.cug.sxy.ai.domain.rag.service.orchestration;
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RagStreamEvent;
 import cn.cug.sxy.ai.domain.rag.service.query.IQueryProcessor;
 import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
@@ -41,6 +44,18 @@ public class InternalRagService {
      * @return 响应对象
      */
     public Response executeRagQuery(Query query, QueryStrategy strategy) {
+        return executeRagQuery(query, strategy, QueryRewrites.none());
+    }
+
+    /**
+     * 执行内部 RAG 检索，检索阶段与本次请求进行中的查询重写并发进行。
+     *
+     * @param query    查询对象
+     * @param strategy 查询策略（如果为 null，使用默认策略）
+     * @param rewrites 进行中的查询重写
+     * @return 响应对象
+     */
+    public Response executeRagQuery(Query query, QueryStrategy strategy, QueryRewrites rewrites) {
         if (query == null) {
             throw new IllegalArgumentException("Query 不能为 null");
         }
@@ -50,21 +65,14 @@ public class InternalRagService {
                 ? strategy.getProcessorType() 
                 : QueryType.valueOf(defaultProcessor);
         
-        IQueryProcessor processor = processorMap.getOrDefault(
-                processorType,
-                processorMap.getOrDefault(
-                        QueryType.valueOf(defaultProcessor),
-                        processorMap.values().stream().findFirst()
-                                .orElseThrow(() -> new IllegalStateException("没有可用的 QueryProcessor"))
-                )
-        );
+        IQueryProcessor processor = resolveProcessor(processorType);
         
         log.info("InternalRagService 执行检索: queryId={}, processorType={}", 
                 query.getId(), processorType);
         
         // 执行查询
         Response response = strategy != null 
-                ? processor.processQuery(query, strategy)
+                ? processor.processQuery(query, strategy, rewrites)
                 : processor.processQuery(query);
         
         log.debug("InternalRagService 检索完成: queryId={}, responseStatus={}", 
@@ -72,5 +80,35 @@ public class InternalRagService {
         
         return response;
     }
+
+    /**
+     * 流式执行内部 RAG 检索：来源事件先行，回答逐段返回。
+     *
+     * @param query    查询对象
+     * @param strategy 查询策略（如果为 null，使用默认处理器）
+     * @param rewrites 进行中的查询重写
+     * @return 流式事件
+     */
+    public Flux<RagStreamEvent> streamRagQuery(Query query, QueryStrategy strategy, QueryRewrites rewrites) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query 不能为 null");
+        }
+        QueryType processorType = strategy != null
+                ? strategy.getProcessorType()
+                : QueryType.valueOf(defaultProcessor);
+        log.info("InternalRagService 执行流式检索: queryId={}, processorType={}", query.getId(), processorType);
+        return resolveProcessor(processorType).processQueryStream(query, strategy, rewrites);
+    }
+
+    private IQueryProcessor resolveProcessor(QueryType processorType) {
+        return processorMap.getOrDefault(
+                processorType,
+                processorMap.getOrDefault(
+                        QueryType.valueOf(defaultProcessor),
+                        processorMap.values().stream().findFirst()
+                                .orElseThrow(() -> new IllegalStateException("没有可用的 QueryProcessor"))
+                )
+        );
+    }
 }
 
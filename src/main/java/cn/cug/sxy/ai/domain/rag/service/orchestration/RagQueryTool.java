@@ -5,6 +5,7 @@ import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskExecutionContext;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskNode;
 import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -20,6 +21,11 @@ public class RagQueryTool implements RagTool {
 
     public static final String TOOL_NAME = "RAG_QUERY";
 
+    /**
+     * 执行上下文中本次请求进行中的查询重写
+     */
+    public static final String REWRITES_KEY = "rewrites";
+
     private final InternalRagService internalRagService;
 
     @Override
@@ -31,12 +37,13 @@ public class RagQueryTool implements RagTool {
     public Object execute(TaskExecutionContext context, TaskNode node) {
         Query query = context.getQuery();
         QueryStrategy strategy = context.get("strategy");
+        QueryRewrites rewrites = context.get(REWRITES_KEY);
         
         log.info("RagQueryTool 执行内部 RAG 检索: queryId={}, step={}", 
                 query.getId(), node.getStep());
         
         // 使用统一的内部 RAG 服务执行检索
-        Response response = internalRagService.executeRagQuery(query, strategy);
+        Response response = internalRagService.executeRagQuery(query, strategy, rewrites);
         
         // 保存结果到上下文，供后续步骤使用
         context.setLastResponse(response);
@@ -2,9 +2,10 @@ package cn.cug.sxy.ai.domain.rag.service.orchestration;
 
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskExecutionContext;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskNode;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
@@ -22,7 +23,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TaskExecutionService {
 
-    private final ChatClient chatClient;
+    private final ChatGateway chatGateway;
 
     /**
      * 执行任务节点，使用 ChatClient 自动选择合适的工具。
@@ -51,9 +52,7 @@ public class TaskExecutionService {
         try {
             // 使用 ChatClient 执行任务，Spring AI 会自动调用已注册的工具（包括 MCP 工具）
             // ChatClient 会根据任务描述自动选择合适的工具并调用
-            String result = chatClient.prompt(new Prompt(messages))
-                    .call()
-                    .content();
+            String result = chatGateway.call(LlmPurpose.TASK_EXECUTION, new Prompt(messages));
             
             log.info("任务节点执行完成: step={}, resultLength={}", node.getStep(), 
                     result != null ? result.length() : 0);
@@ -5,6 +5,7 @@ import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskExecutionContext;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskNode;
 import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
 import cn.cug.sxy.ai.types.exception.TaskAbortException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -48,14 +49,17 @@ public class TaskOrchestrator {
      * 执行任务计划。
      * 支持并行执行无依赖的任务，提升性能。
      *
+     * @param rewrites 本次请求进行中的查询重写，供 RAG_QUERY 工具检索时合并
      * @return 最终的 Response（如有），否则可能是综合后的字符串等。
      */
-    public Object executePlan(TaskPlan plan, Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy) {
+    public Object executePlan(TaskPlan plan, Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy,
+                              QueryRewrites rewrites) {
         if (plan == null || !plan.hasTasks()) {
             throw new IllegalArgumentException("TaskPlan 为空，无法执行");
         }
         TaskExecutionContext context = new TaskExecutionContext(query);
         context.put("strategy", strategy);
+        context.put(RagQueryTool.REWRITES_KEY, rewrites);
         
         // 构建依赖图
         Map<Integer, TaskNode> nodeMap = new HashMap<>();
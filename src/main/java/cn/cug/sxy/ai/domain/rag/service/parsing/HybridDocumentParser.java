@@ -11,8 +11,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -45,6 +49,7 @@ public class HybridDocumentParser {
     private final PdfTableDetector tableDetector;
     private final ParsingResultCache parsingResultCache;
     private final DynamicTimeoutCalculator timeoutCalculator;
+    private final PageOcrCache pageOcrCache;
 
     @Value("${rag.parsing.force-ocr:false}")
     private boolean forceOcr;
@@ -82,6 +87,9 @@ public class HybridDocumentParser {
     @Value("${rag.parsing.timeout-multiplier:3.0}")
     private double timeoutMultiplier; // 超时时间倍数，用于计算总超时
 
+    @Value("${rag.parsing.page-dedup.enabled:true}")
+    private boolean enablePageDedup; // 是否启用基于感知哈希的重复页面去重
+
     // 线程池用于并行处理
     private final ExecutorService executorService;
 
@@ -94,7 +102,8 @@ public class HybridDocumentParser {
                                 OcrEvaluationService evaluationService,
                                 PdfTableDetector tableDetector,
                                 ParsingResultCache parsingResultCache,
-                                DynamicTimeoutCalculator timeoutCalculator) {
+                                DynamicTimeoutCalculator timeoutCalculator,
+                                PageOcrCache pageOcrCache) {
         this.textExtractors = textExtractors;
         this.qualityEvaluator = qualityEvaluator;
         this.ocrService = ocrService;
@@ -105,6 +114,7 @@ public class HybridDocumentParser {
         this.tableDetector = tableDetector;
         this.parsingResultCache = parsingResultCache;
         this.timeoutCalculator = timeoutCalculator;
+        this.pageOcrCache = pageOcrCache;
 
         // 创建固定大小的线程池
         // 确保线程池大小足够支持配置的并行度
@@ -489,9 +499,10 @@ public class HybridDocumentParser {
 
             log.info("开始处理 {} 个页面（共 {} 页）", pagesToProcess.size(), totalPages);
 
-            // 3. 并行OCR识别（只处理需要的页面）
+            // 3. 并行OCR识别（只处理需要的页面，重复页面复用已有识别结果）
+            PageDedupStats dedupStats = new PageDedupStats();
             Map<Integer, StructuredDocument.Page> newPages =
-                    parallelOcrRecognizeWithCache(pageImages, pagesToProcess, documentKey);
+                    parallelOcrRecognizeWithCache(pageImages, pagesToProcess, documentKey, dedupStats);
 
             long ocrTime = System.currentTimeMillis() - startTime;
             log.debug("OCR识别完成，耗时: {}ms，新解析: {} 页", ocrTime, newPages.size());
@@ -541,10 +552,10 @@ public class HybridDocumentParser {
             // 11. 记录统计信息
             StructuredDocument.DocumentStats stats = structuredDocument.getStats();
             log.info("OCR解析完成: 页数={}/{}, 元素数={}, 表格数={}, 平均置信度={}, " +
-                            "压缩比={}x, 处理时间={}ms, 使用缓存={}",
+                            "压缩比={}x, 处理时间={}ms, 使用缓存={}, 节省OCR调用={}",
                     stats.getPageCount(), totalPages, stats.getTotalElements(), stats.getTableCount(),
                     stats.getAverageConfidence(), compressionMetrics.getCompressionRatio(),
-                    totalTime, usingCache);
+                    totalTime, usingCache, dedupStats.getOcrCallsSaved());
 
             // 12. 构建元数据
             Map<String, Object> metadata = new HashMap<>();
@@ -559,6 +570,8 @@ public class HybridDocumentParser {
             metadata.put("processingTimeMs", totalTime);
             metadata.put("usedCache", usingCache);
             metadata.put("failedPages", failedCount);
+            metadata.put("ocrCallsSaved", dedupStats.getOcrCallsSaved());
+            metadata.put("pageDedup", dedupStats.toMap());
 
             if (enableCache && documentKey != null) {
                 metadata.put("documentKey", documentKey);
@@ -759,14 +772,15 @@ public class HybridDocumentParser {
      * 2. 动态调整超时时间
      * 3. 自动重试失败的页面（最多重试 maxPageRetries 次）
      * 4. 记录成功/失败到缓存
+     * 5. 感知哈希去重：与本文档或历史文档中已识别页面近似相同的页面不再调用OCR
      */
     private Map<Integer, StructuredDocument.Page> parallelOcrRecognizeWithCache(
             List<byte[]> pageImages,
             List<Integer> pagesToProcess,
-            String documentKey) {
+            String documentKey,
+            PageDedupStats dedupStats) {
 
         int totalPages = pageImages.size();
-        List<Integer> pendingPages = new ArrayList<>(pagesToProcess);
 
         // 重置动态超时计算器的窗口（新文档开始）
         if (enableDynamicTimeout) {
@@ -776,6 +790,15 @@ public class HybridDocumentParser {
         // 最终结果存储
         ConcurrentHashMap<Integer, StructuredDocument.Page> finalResultMap = new ConcurrentHashMap<>();
 
+        // 感知哈希去重：命中缓存的页面直接写入结果，同文档重复页只保留代表页送OCR
+        Map<Integer, PagePerceptualHasher.Fingerprint> fingerprints = new HashMap<>();
+        Map<Integer, Integer> duplicateOf = new HashMap<>();
+        Set<Integer> reusedPages = new HashSet<>();
+        List<Integer> pendingPages = enablePageDedup
+                ? planPageDedup(pageImages, pagesToProcess, documentKey, finalResultMap,
+                fingerprints, duplicateOf, reusedPages, dedupStats)
+                : new ArrayList<>(pagesToProcess);
+
         // 执行多轮处理（首次 + 重试）
         for (int round = 0; round <= maxPageRetries && !pendingPages.isEmpty(); round++) {
             String roundLabel = round == 0 ? "首次处理" : "第" + round + "次重试";
@@ -819,6 +842,11 @@ public class HybridDocumentParser {
             }
         }
 
+        // 保存新识别的页面指纹，并为同文档重复页复制代表页结果
+        if (enablePageDedup) {
+            applyPageDedup(finalResultMap, fingerprints, duplicateOf, reusedPages, documentKey, dedupStats);
+        }
+
         // 最终统计
         int successCount = finalResultMap.size();
         int failedCount = pagesToProcess.size() - successCount;
@@ -833,6 +861,168 @@ public class HybridDocumentParser {
         return finalResultMap;
     }
 
+    /**
+     * 计算待处理页面的感知指纹并规划去重。
+     * <p>
+     * 1. 命中跨文档页面缓存的页面：直接复用结果，不再调用OCR
+     * 2. 与本文档中更早页面近似相同的页面：等待代表页识别完成后复制结果
+     * 3. 其余页面：作为代表页送OCR
+     *
+     * @return 需要实际调用OCR的页面
+     */
+    private List<Integer> planPageDedup(
+            List<byte[]> pageImages,
+            List<Integer> pagesToProcess,
+            String documentKey,
+            Map<Integer, StructuredDocument.Page> finalResultMap,
+            Map<Integer, PagePerceptualHasher.Fingerprint> fingerprints,
+            Map<Integer, Integer> duplicateOf,
+            Set<Integer> reusedPages,
+            PageDedupStats dedupStats) {
+
+        long startTime = System.currentTimeMillis();
+
+        // 解码图像计算指纹是CPU密集操作，复用解析线程池并行计算
+        Map<Integer, CompletableFuture<PagePerceptualHasher.Fingerprint>> futures = new LinkedHashMap<>();
+        for (Integer pageNo : pagesToProcess) {
+            byte[] imageBytes = pageImages.get(pageNo - 1);
+            futures.put(pageNo, CompletableFuture.supplyAsync(() -> {
+                try {
+                    return PagePerceptualHasher.fingerprint(imageBytes);
+                } catch (Exception e) {
+                    log.debug("第 {} 页感知哈希计算失败: {}", pageNo, e.getMessage());
+                    return null;
+                }
+            }, executorService));
+        }
+
+        String engine = ocrService.getServiceName();
+        List<Integer> representatives = new ArrayList<>();
+        for (Map.Entry<Integer, CompletableFuture<PagePerceptualHasher.Fingerprint>> entry : futures.entrySet()) {
+            int pageNo = entry.getKey();
+            PagePerceptualHasher.Fingerprint fingerprint = entry.getValue().join();
+            if (fingerprint == null) {
+                dedupStats.hashFailures++;
+                representatives.add(pageNo);
+                continue;
+            }
+            fingerprints.put(pageNo, fingerprint);
+
+            // 同文档内的重复页（按页码顺序，总是指向最早出现的代表页）
+            Integer representative = null;
+            for (Integer candidate : representatives) {
+                PagePerceptualHasher.Fingerprint candidatePrint = fingerprints.get(candidate);
+                if (candidatePrint != null && pageOcrCache.isNearDuplicate(fingerprint, candidatePrint)) {
+                    representative = candidate;
+                    break;
+                }
+            }
+            if (representative != null) {
+                duplicateOf.put(pageNo, representative);
+                continue;
+            }
+
+            // 历史文档中识别过的页面
+            Optional<StructuredDocument.Page> cached = pageOcrCache.lookup(fingerprint, engine);
+            if (cached.isPresent()) {
+                StructuredDocument.Page page = rebasePage(cached.get(), pageNo);
+                finalResultMap.put(pageNo, page);
+                if (enableCache && documentKey != null) {
+                    parsingResultCache.recordPageSuccess(documentKey, pageNo, page);
+                }
+                reusedPages.add(pageNo);
+                dedupStats.crossDocumentHits++;
+                // 后续同文档重复页可直接以该页为代表
+                representatives.add(pageNo);
+                continue;
+            }
+            representatives.add(pageNo);
+        }
+
+        List<Integer> ocrPages = new ArrayList<>();
+        for (Integer pageNo : representatives) {
+            if (!finalResultMap.containsKey(pageNo)) {
+                ocrPages.add(pageNo);
+            }
+        }
+
+        log.info("页面去重完成: 待处理 {} 页，跨文档复用 {} 页，同文档重复 {} 页，需OCR {} 页，耗时: {}ms",
+                pagesToProcess.size(), dedupStats.crossDocumentHits, duplicateOf.size(), ocrPages.size(),
+                System.currentTimeMillis() - startTime);
+        return ocrPages;
+    }
+
+    /**
+     * OCR完成后：保存新识别页面的指纹，并为同文档重复页复制代表页结果。
+     * 跨文档复用的页面与同文档重复页不是本次OCR的结果，不写入页面缓存（避免以近似指纹重复登记同一结果）。
+     */
+    private void applyPageDedup(
+            Map<Integer, StructuredDocument.Page> finalResultMap,
+            Map<Integer, PagePerceptualHasher.Fingerprint> fingerprints,
+            Map<Integer, Integer> duplicateOf,
+            Set<Integer> reusedPages,
+            String documentKey,
+            PageDedupStats dedupStats) {
+
+        String engine = ocrService.getServiceName();
+
+        // 只有本次真正调用OCR得到的页面才写入页面缓存（此时重复页尚未复制，结果中只有代表页）
+        for (Map.Entry<Integer, StructuredDocument.Page> entry : finalResultMap.entrySet()) {
+            PagePerceptualHasher.Fingerprint fingerprint = fingerprints.get(entry.getKey());
+            if (fingerprint != null && !reusedPages.contains(entry.getKey())) {
+                pageOcrCache.put(fingerprint, engine, entry.getValue());
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> entry : duplicateOf.entrySet()) {
+            int pageNo = entry.getKey();
+            StructuredDocument.Page representative = finalResultMap.get(entry.getValue());
+            if (representative == null) {
+                // 代表页最终失败，重复页同样视为失败，下次上传时随代表页一起重试
+                if (enableCache && documentKey != null) {
+                    parsingResultCache.recordPageFailure(documentKey, pageNo,
+                            "重复页面的代表页（第" + entry.getValue() + "页）OCR失败");
+                }
+                continue;
+            }
+            StructuredDocument.Page page = rebasePage(pageOcrCache.copyOf(representative), pageNo);
+            finalResultMap.put(pageNo, page);
+            if (enableCache && documentKey != null) {
+                parsingResultCache.recordPageSuccess(documentKey, pageNo, page);
+            }
+            dedupStats.inDocumentHits++;
+        }
+
+        if (dedupStats.getOcrCallsSaved() > 0) {
+            log.info("页面去重节省OCR调用 {} 次（同文档重复 {} 页，跨文档复用 {} 页），页面缓存统计: {}",
+                    dedupStats.getOcrCallsSaved(), dedupStats.inDocumentHits, dedupStats.crossDocumentHits,
+                    pageOcrCache.getStats());
+        }
+    }
+
+    /**
+     * 将页面结果改写为目标页码：修正页码，并把元素ID的页码前缀替换为目标页。
+     */
+    private StructuredDocument.Page rebasePage(StructuredDocument.Page source, int pageNo) {
+        List<StructuredDocument.LayoutElement> layout = source.getLayout();
+        if (layout != null && source.getPageNo() != null) {
+            String sourcePrefix = "p" + source.getPageNo() + "_";
+            for (StructuredDocument.LayoutElement element : layout) {
+                if (element.getElementId() != null && element.getElementId().startsWith(sourcePrefix)) {
+                    element.setElementId(element.getElementId().substring(sourcePrefix.length()));
+                }
+                if (element.getParentId() != null && element.getParentId().startsWith(sourcePrefix)) {
+                    element.setParentId(element.getParentId().substring(sourcePrefix.length()));
+                }
+            }
+        }
+        return StructuredDocument.Page.builder()
+                .pageNo(pageNo)
+                .imageSize(source.getImageSize())
+                .layout(layout != null ? updateElementIdsForPage(layout, pageNo) : new ArrayList<>())
+                .build();
+    }
+
     /**
      * 执行一轮并行OCR处理。
      */
@@ -1232,6 +1422,32 @@ public class HybridDocumentParser {
                 .orElse(null);
     }
 
+    /**
+     * 单个文档的页面去重统计。
+     */
+    static class PageDedupStats {
+
+        private int inDocumentHits; // 与本文档更早页面重复而复用的页数
+        private int crossDocumentHits; // 命中历史文档页面缓存的页数
+        private int hashFailures; // 指纹计算失败（按普通页面送OCR）的页数
+
+        /**
+         * 节省的OCR调用次数（每个复用页面至少省去一次首轮调用）。
+         */
+        int getOcrCallsSaved() {
+            return inDocumentHits + crossDocumentHits;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("ocrCallsSaved", getOcrCallsSaved());
+            map.put("inDocumentHits", inDocumentHits);
+            map.put("crossDocumentHits", crossDocumentHits);
+            map.put("hashFailures", hashFailures);
+            return map;
+        }
+    }
+
     /**
      * 解析结果。
      * <p>
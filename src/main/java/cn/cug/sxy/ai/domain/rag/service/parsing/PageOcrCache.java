@@ -0,0 +1,455 @@
+package cn.cug.sxy.ai.domain.rag.service.parsing;
+
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 页面级OCR结果缓存（按页面感知哈希索引，跨文档持久化）。
+ * <p>
+ * 与 {@link ParsingResultCache} 的区别：
+ * - ParsingResultCache 按"文档"缓存，用于同一文档失败页面的断点续传
+ * - PageOcrCache 按"页面图像指纹"缓存，封面、附录、模板表单等重复页面在任何文档中出现都可直接复用
+ * <p>
+ * 存储结构：
+ * 1. Redis 字符串键 rag:ocr:page:{namespace}:{entryId} -> 页面OCR结果（带TTL）
+ * 2. Redis 有序集合 rag:ocr:page-zindex:{namespace} -> 指纹（分值为写入时间），写入时裁剪超过TTL与超出上限的最旧指纹，
+ *    启动时加载最新的指纹到本地索引
+ * 3. 本地 LRU 保存最近的页面结果，Redis 不可用时仍可在进程内复用
+ * <p>
+ * 本地索引按粗哈希分段建倒排桶：粗哈希切成 (coarseMaxDistance + 1) 段，汉明距离不超过阈值的两个指纹
+ * 至少有一段完全相同（鸽巢原理），查找时只比较同桶候选；距离计算在锁外进行。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class PageOcrCache {
+
+    private static final String PAGE_KEY_PREFIX = "rag:ocr:page:";
+    // 原集合结构 rag:ocr:page-index 改为有序集合后使用新键，旧键随命名空间淘汰
+    private static final String INDEX_KEY_PREFIX = "rag:ocr:page-zindex:";
+    private static final int LOAD_BATCH = 1000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${rag.parsing.page-dedup.namespace:v1}")
+    private String namespace; // 缓存命名空间，OCR模型或提示词升级时修改以失效旧结果
+
+    @Value("${rag.parsing.page-dedup.coarse-max-distance:4}")
+    private int coarseMaxDistance; // 64位粗哈希的最大汉明距离
+
+    @Value("${rag.parsing.page-dedup.fine-max-distance:16}")
+    private int fineMaxDistance; // 1024位细哈希的最大汉明距离
+
+    @Value("${rag.parsing.page-dedup.ttl-days:30}")
+    private int ttlDays;
+
+    @Value("${rag.parsing.page-dedup.max-index-entries:100000}")
+    private int maxIndexEntries; // 本地与Redis指纹索引上限
+
+    @Value("${rag.parsing.page-dedup.local-max-pages:500}")
+    private int localMaxPages; // 本地页面结果LRU上限
+
+    // 指纹索引：entryId -> 指纹（访问顺序，超限淘汰最久未用）
+    private final LinkedHashMap<String, PagePerceptualHasher.Fingerprint> index =
+            new LinkedHashMap<>(256, 0.75f, true);
+
+    // 粗哈希分段倒排桶：第i段的取值 -> (entryId -> 指纹)，与 index 在同一把锁下维护
+    private final List<Map<Long, Map<String, PagePerceptualHasher.Fingerprint>>> bands = new ArrayList<>();
+
+    // 本地页面结果：entryId -> 序列化后的页面JSON
+    private final LinkedHashMap<String, String> localPages = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong staleIndexEntries = new AtomicLong();
+
+    public PageOcrCache(RedisTemplate<String, Object> redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 启动时从Redis加载最新的指纹（先裁剪过期指纹，再按写入时间由旧到新分批读取，最新的指纹位于LRU末尾）。
+     */
+    @PostConstruct
+    public void loadIndex() {
+        int loaded = 0;
+        try {
+            trimRedisIndex();
+            Long size = redisTemplate.opsForZSet().zCard(indexKey());
+            long total = size != null ? size : 0;
+            for (long start = Math.max(0, total - maxIndexEntries); start < total; start += LOAD_BATCH) {
+                Set<Object> members = redisTemplate.opsForZSet()
+                        .range(indexKey(), start, Math.min(start + LOAD_BATCH, total) - 1);
+                if (members == null || members.isEmpty()) {
+                    break;
+                }
+                for (Object member : members) {
+                    PagePerceptualHasher.Fingerprint fingerprint = decodeFingerprint(String.valueOf(member));
+                    if (fingerprint != null) {
+                        synchronized (index) {
+                            addToIndex(entryId(fingerprint), fingerprint);
+                        }
+                        loaded++;
+                    }
+                }
+            }
+            log.info("页面OCR缓存索引加载完成，命名空间: {}, 指纹数: {}", namespace, loaded);
+        } catch (Exception e) {
+            log.warn("页面OCR缓存索引加载失败，仅使用本地缓存: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 查找与指纹近似相同的已识别页面。
+     *
+     * @param fingerprint 页面指纹
+     * @param engine      OCR服务名称，不同引擎的结果不互相复用
+     * @return 缓存的页面（新副本，可直接修改），未命中返回 empty
+     */
+    public Optional<StructuredDocument.Page> lookup(PagePerceptualHasher.Fingerprint fingerprint, String engine) {
+        lookups.incrementAndGet();
+        List<String> candidates = findCandidates(fingerprint);
+        for (String entryId : candidates) {
+            CachedPage cached = load(entryId);
+            if (cached == null) {
+                continue;
+            }
+            if (!Objects.equals(engine, cached.getEngine()) || cached.getPage() == null) {
+                continue;
+            }
+            hits.incrementAndGet();
+            return Optional.of(cached.getPage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 保存页面OCR结果。
+     *
+     * @param fingerprint 页面指纹
+     * @param engine      OCR服务名称
+     * @param page        OCR识别结果（保存的是序列化快照，调用方后续修改不影响缓存）
+     */
+    public void put(PagePerceptualHasher.Fingerprint fingerprint, String engine, StructuredDocument.Page page) {
+        String entryId = entryId(fingerprint);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(CachedPage.builder()
+                    .engine(engine)
+                    .page(page)
+                    .createdAt(System.currentTimeMillis())
+                    .build());
+        } catch (Exception e) {
+            log.warn("页面OCR结果序列化失败，跳过缓存: {}", e.getMessage());
+            return;
+        }
+
+        synchronized (index) {
+            addToIndex(entryId, fingerprint);
+        }
+        synchronized (localPages) {
+            localPages.put(entryId, json);
+            trim(localPages, localMaxPages);
+        }
+        stores.incrementAndGet();
+
+        try {
+            redisTemplate.opsForValue().set(pageKey(entryId), json, Duration.ofDays(ttlDays));
+            redisTemplate.opsForZSet().add(indexKey(), encodeFingerprint(fingerprint), System.currentTimeMillis());
+            trimRedisIndex();
+        } catch (Exception e) {
+            log.debug("页面OCR结果写入Redis失败，仅保留本地缓存: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 深拷贝页面（复用的页面会被改写元素ID、参与跨页表格合并，不能与来源页共享对象）。
+     */
+    public StructuredDocument.Page copyOf(StructuredDocument.Page page) {
+        try {
+            return objectMapper.readValue(objectMapper.writeValueAsBytes(page), StructuredDocument.Page.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("页面复制失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 判断两个指纹是否近似相同（同文档内去重使用同一判定标准）。
+     */
+    public boolean isNearDuplicate(PagePerceptualHasher.Fingerprint a, PagePerceptualHasher.Fingerprint b) {
+        return PagePerceptualHasher.hammingDistance(a.coarse(), b.coarse()) <= coarseMaxDistance
+                && PagePerceptualHasher.hammingDistance(a.fine(), b.fine()) <= fineMaxDistance;
+    }
+
+    /**
+     * 获取缓存统计。
+     */
+    public CacheStats getStats() {
+        int indexSize;
+        synchronized (index) {
+            indexSize = index.size();
+        }
+        int localSize;
+        synchronized (localPages) {
+            localSize = localPages.size();
+        }
+        long lookupCount = lookups.get();
+        long hitCount = hits.get();
+        return CacheStats.builder()
+                .indexSize(indexSize)
+                .localPages(localSize)
+                .lookups(lookupCount)
+                .hits(hitCount)
+                .hitRate(lookupCount > 0 ? (double) hitCount / lookupCount : 0.0)
+                .stores(stores.get())
+                .staleIndexEntries(staleIndexEntries.get())
+                .build();
+    }
+
+    /**
+     * 查找候选：锁内只收集与查询指纹至少一段粗哈希相同的桶内条目，锁外先比较粗哈希、再用细哈希确认，
+     * 按细哈希距离升序返回。
+     */
+    private List<String> findCandidates(PagePerceptualHasher.Fingerprint fingerprint) {
+        Map<String, PagePerceptualHasher.Fingerprint> candidates = new HashMap<>();
+        synchronized (index) {
+            for (int band = 0; band < bands.size(); band++) {
+                Map<String, PagePerceptualHasher.Fingerprint> bucket =
+                        bands.get(band).get(bandValue(fingerprint.coarse(), band));
+                if (bucket != null) {
+                    candidates.putAll(bucket);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> matches = new ArrayList<>();
+        for (Map.Entry<String, PagePerceptualHasher.Fingerprint> entry : candidates.entrySet()) {
+            PagePerceptualHasher.Fingerprint candidate = entry.getValue();
+            if (PagePerceptualHasher.hammingDistance(fingerprint.coarse(), candidate.coarse()) > coarseMaxDistance) {
+                continue;
+            }
+            int fineDistance = PagePerceptualHasher.hammingDistance(fingerprint.fine(), candidate.fine());
+            if (fineDistance <= fineMaxDistance) {
+                matches.add(Map.entry(entry.getKey(), fineDistance));
+            }
+        }
+        matches.sort(Map.Entry.comparingByValue());
+        return matches.stream().map(Map.Entry::getKey).toList();
+    }
+
+    /**
+     * 写入本地索引与分段桶，超限时淘汰最久未用的指纹（调用方持有 index 锁）。
+     */
+    private void addToIndex(String entryId, PagePerceptualHasher.Fingerprint fingerprint) {
+        if (bands.isEmpty()) {
+            int bandCount = Math.min(64, Math.max(1, coarseMaxDistance + 1));
+            for (int i = 0; i < bandCount; i++) {
+                bands.add(new HashMap<>());
+            }
+        }
+        PagePerceptualHasher.Fingerprint previous = index.put(entryId, fingerprint);
+        if (previous != null) {
+            return;
+        }
+        for (int band = 0; band < bands.size(); band++) {
+            bands.get(band).computeIfAbsent(bandValue(fingerprint.coarse(), band), k -> new HashMap<>())
+                    .put(entryId, fingerprint);
+        }
+        Iterator<Map.Entry<String, PagePerceptualHasher.Fingerprint>> iterator = index.entrySet().iterator();
+        while (index.size() > maxIndexEntries && iterator.hasNext()) {
+            Map.Entry<String, PagePerceptualHasher.Fingerprint> eldest = iterator.next();
+            iterator.remove();
+            removeFromBands(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void removeFromBands(String entryId, PagePerceptualHasher.Fingerprint fingerprint) {
+        for (int band = 0; band < bands.size(); band++) {
+            long value = bandValue(fingerprint.coarse(), band);
+            Map<String, PagePerceptualHasher.Fingerprint> bucket = bands.get(band).get(value);
+            if (bucket != null) {
+                bucket.remove(entryId);
+                if (bucket.isEmpty()) {
+                    bands.get(band).remove(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * 粗哈希第 band 段的取值：64位按段数均分，前 64 % 段数 个段多占1位。
+     */
+    private long bandValue(long coarse, int band) {
+        int bandCount = bands.size();
+        int base = 64 / bandCount;
+        int extra = 64 % bandCount;
+        int start = band * base + Math.min(band, extra);
+        int width = base + (band < extra ? 1 : 0);
+        long mask = width == 64 ? -1L : (1L << width) - 1;
+        return (coarse >>> start) & mask;
+    }
+
+    /**
+     * 裁剪Redis指纹索引：移除超过TTL的指纹，再按写入时间只保留最新的 maxIndexEntries 个。
+     */
+    private void trimRedisIndex() {
+        long expireBefore = System.currentTimeMillis() - Duration.ofDays(ttlDays).toMillis();
+        redisTemplate.opsForZSet().removeRangeByScore(indexKey(), Double.NEGATIVE_INFINITY, expireBefore);
+        redisTemplate.opsForZSet().removeRange(indexKey(), 0, -(long) maxIndexEntries - 1);
+    }
+
+    /**
+     * 读取缓存条目：优先本地LRU，其次Redis；Redis中已过期的条目从索引中移除。
+     */
+    private CachedPage load(String entryId) {
+        String json;
+        synchronized (localPages) {
+            json = localPages.get(entryId);
+        }
+        if (json == null) {
+            try {
+                Object value = redisTemplate.opsForValue().get(pageKey(entryId));
+                if (value == null) {
+                    removeStaleEntry(entryId);
+                    return null;
+                }
+                json = value.toString();
+                synchronized (localPages) {
+                    localPages.put(entryId, json);
+                    trim(localPages, localMaxPages);
+                }
+            } catch (Exception e) {
+                log.debug("读取Redis页面OCR缓存失败: {}", e.getMessage());
+                return null;
+            }
+        }
+        try {
+            return objectMapper.readValue(json, CachedPage.class);
+        } catch (Exception e) {
+            log.warn("页面OCR缓存反序列化失败，忽略该条目: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void removeStaleEntry(String entryId) {
+        PagePerceptualHasher.Fingerprint removed;
+        synchronized (index) {
+            removed = index.remove(entryId);
+            if (removed != null) {
+                removeFromBands(entryId, removed);
+            }
+        }
+        if (removed != null) {
+            staleIndexEntries.incrementAndGet();
+            try {
+                redisTemplate.opsForZSet().remove(indexKey(), encodeFingerprint(removed));
+            } catch (Exception e) {
+                log.debug("移除过期页面指纹失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static <K, V> void trim(LinkedHashMap<K, V> map, int maxSize) {
+        Iterator<K> iterator = map.keySet().iterator();
+        while (map.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private String pageKey(String entryId) {
+        return PAGE_KEY_PREFIX + namespace + ":" + entryId;
+    }
+
+    private String indexKey() {
+        return INDEX_KEY_PREFIX + namespace;
+    }
+
+    /**
+     * 条目ID：粗哈希 + 细哈希摘要，同一指纹总是得到同一ID。
+     */
+    private static String entryId(PagePerceptualHasher.Fingerprint fingerprint) {
+        long digest = 1125899906842597L;
+        for (long word : fingerprint.fine()) {
+            digest = 31 * digest + word;
+        }
+        return PagePerceptualHasher.toHex(fingerprint.coarse()) + PagePerceptualHasher.toHex(digest);
+    }
+
+    /**
+     * 索引成员编码：coarseHex:fineHex0fineHex1...
+     */
+    private static String encodeFingerprint(PagePerceptualHasher.Fingerprint fingerprint) {
+        StringBuilder sb = new StringBuilder(17 + fingerprint.fine().length * 16);
+        sb.append(PagePerceptualHasher.toHex(fingerprint.coarse())).append(':');
+        for (long word : fingerprint.fine()) {
+            sb.append(PagePerceptualHasher.toHex(word));
+        }
+        return sb.toString();
+    }
+
+    private static PagePerceptualHasher.Fingerprint decodeFingerprint(String encoded) {
+        int colon = encoded.indexOf(':');
+        int fineWords = PagePerceptualHasher.FINE_BITS / 64;
+        if (colon != 16 || encoded.length() != 17 + fineWords * 16) {
+            return null;
+        }
+        try {
+            long coarse = PagePerceptualHasher.fromHex(encoded.substring(0, 16));
+            long[] fine = new long[fineWords];
+            for (int i = 0; i < fineWords; i++) {
+                int start = 17 + i * 16;
+                fine[i] = PagePerceptualHasher.fromHex(encoded.substring(start, start + 16));
+            }
+            return new PagePerceptualHasher.Fingerprint(coarse, fine);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 缓存条目。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CachedPage {
+        private String engine;
+        private StructuredDocument.Page page;
+        private long createdAt;
+    }
+
+    /**
+     * 缓存统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheStats {
+        private int indexSize;
+        private int localPages;
+        private long lookups;
+        private long hits;
+        private double hitRate;
+        private long stores;
+        private long staleIndexEntries;
+    }
+}
@@ -0,0 +1,167 @@
+package cn.cug.sxy.ai.domain.rag.service.parsing;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * 页面感知哈希（dHash）计算器。
+ * <p>
+ * 对渲染后的页面图像做一次灰度遍历，同时得到两级差分哈希：
+ * 1. 粗哈希：9x8 网格，64 位，用于快速候选查找
+ * 2. 细哈希：33x32 网格，1024 位，用于确认候选页面确实近似相同
+ * <p>
+ * 仅凭 64 位哈希无法区分"同一模板、填写内容不同"的表单页，
+ * 因此复用 OCR 结果前必须同时满足粗、细两级的汉明距离阈值。
+ *
+ * @author jerryhotton
+ */
+public final class PagePerceptualHasher {
+
+    private static final int COARSE_WIDTH = 8;
+    private static final int COARSE_HEIGHT = 8;
+    private static final int FINE_WIDTH = 32;
+    private static final int FINE_HEIGHT = 32;
+
+    /**
+     * 细哈希的位数
+     */
+    public static final int FINE_BITS = FINE_WIDTH * FINE_HEIGHT;
+
+    private PagePerceptualHasher() {
+    }
+
+    /**
+     * 计算页面图像的感知指纹。
+     *
+     * @param imageBytes 渲染后的页面图像（PNG/JPEG等ImageIO可读格式）
+     * @return 页面指纹
+     * @throws IOException 图像无法解码
+     */
+    public static Fingerprint fingerprint(byte[] imageBytes) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
+        if (image == null) {
+            throw new IOException("无法解码页面图像");
+        }
+        return fingerprint(image);
+    }
+
+    /**
+     * 计算图像的感知指纹（一次遍历同时累计粗、细两级网格的平均灰度）。
+     */
+    public static Fingerprint fingerprint(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        int coarseCols = COARSE_WIDTH + 1;
+        int fineCols = FINE_WIDTH + 1;
+        double[] coarseSum = new double[coarseCols * COARSE_HEIGHT];
+        int[] coarseCount = new int[coarseSum.length];
+        double[] fineSum = new double[fineCols * FINE_HEIGHT];
+        int[] fineCount = new int[fineSum.length];
+
+        // 预先计算每一列落入的网格列，避免逐像素除法
+        int[] coarseColOf = new int[width];
+        int[] fineColOf = new int[width];
+        for (int x = 0; x < width; x++) {
+            coarseColOf[x] = (int) ((long) x * coarseCols / width);
+            fineColOf[x] = (int) ((long) x * fineCols / width);
+        }
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int coarseBase = (int) ((long) y * COARSE_HEIGHT / height) * coarseCols;
+            int fineBase = (int) ((long) y * FINE_HEIGHT / height) * fineCols;
+            for (int x = 0; x < width; x++) {
+                double gray = luminance(row[x]);
+                int c = coarseBase + coarseColOf[x];
+                coarseSum[c] += gray;
+                coarseCount[c]++;
+                int f = fineBase + fineColOf[x];
+                fineSum[f] += gray;
+                fineCount[f]++;
+            }
+        }
+
+        long[] coarse = differenceBits(coarseSum, coarseCount, coarseCols, COARSE_HEIGHT);
+        long[] fine = differenceBits(fineSum, fineCount, fineCols, FINE_HEIGHT);
+        return new Fingerprint(coarse[0], fine);
+    }
+
+    /**
+     * 计算两个64位哈希的汉明距离。
+     */
+    public static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * 计算两个多字哈希的汉明距离。
+     */
+    public static int hammingDistance(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    /**
+     * 将哈希编码为十六进制字符串（用作持久化键）。
+     */
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    /**
+     * 从十六进制字符串解码64位哈希。
+     */
+    public static long fromHex(String hex) {
+        return Long.parseUnsignedLong(hex, 16);
+    }
+
+    /**
+     * 相邻网格比较：左侧比右侧亮记为1。
+     */
+    private static long[] differenceBits(double[] sum, int[] count, int cols, int rows) {
+        int bitsPerRow = cols - 1;
+        long[] bits = new long[(bitsPerRow * rows + 63) / 64];
+        int bit = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < bitsPerRow; c++) {
+                int left = r * cols + c;
+                if (mean(sum, count, left) > mean(sum, count, left + 1)) {
+                    bits[bit >>> 6] |= 1L << (bit & 63);
+                }
+                bit++;
+            }
+        }
+        return bits;
+    }
+
+    private static double mean(double[] sum, int[] count, int index) {
+        // 图像尺寸小于网格时可能出现空格子，按白色处理
+        return count[index] == 0 ? 255.0 : sum[index] / count[index];
+    }
+
+    private static double luminance(int argb) {
+        int alpha = (argb >>> 24) & 0xFF;
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        double gray = 0.299 * r + 0.587 * g + 0.114 * b;
+        // 透明像素视为白底
+        return alpha == 0xFF ? gray : (gray * alpha + 255.0 * (0xFF - alpha)) / 0xFF;
+    }
+
+    /**
+     * 页面感知指纹。
+     *
+     * @param coarse 64位粗哈希
+     * @param fine   1024位细哈希
+     */
+    public record Fingerprint(long coarse, long[] fine) {
+    }
+}
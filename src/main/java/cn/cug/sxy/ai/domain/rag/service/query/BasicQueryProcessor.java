@@ -3,27 +3,36 @@ package cn.cug.sxy.ai.domain.rag.service.query;
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.model.valobj.GenerateParams;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RagStreamEvent;
 import cn.cug.sxy.ai.domain.rag.model.valobj.RetrievalParams;
-import cn.cug.sxy.ai.domain.rag.repository.IQueryRepository;
-import cn.cug.sxy.ai.domain.rag.repository.IResponseRepository;
-import cn.cug.sxy.ai.domain.rag.service.evaluate.IEvaluator;
+import cn.cug.sxy.ai.domain.rag.service.evaluate.EvaluationQueue;
+import cn.cug.sxy.ai.domain.rag.service.generation.BasicGenerator;
+import cn.cug.sxy.ai.domain.rag.service.generation.ContextPacker;
+import cn.cug.sxy.ai.domain.rag.service.generation.GenerationCache;
 import cn.cug.sxy.ai.domain.rag.service.generation.IGenerator;
-import cn.cug.sxy.ai.domain.rag.service.retrieval.IRetriever;
+import cn.cug.sxy.ai.domain.rag.service.orchestration.FallbackManager;
+import cn.cug.sxy.ai.domain.rag.service.retrieval.SpeculativeRetrievalService;
 import cn.cug.sxy.ai.infrastructure.embedding.IEmbeddingService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @version 1.0
@@ -65,27 +74,30 @@ public class BasicQueryProcessor implements IQueryProcessor {
 
 
     private final IEmbeddingService embeddingService;
-    private final IRetriever retriever;
+    private final SpeculativeRetrievalService retrievalService;
     private final IGenerator generator;
-    private final IEvaluator evaluator;
-    private final IQueryRepository queryRepository;
-    private final IResponseRepository responseRepository;
+    private final ContextPacker contextPacker;
+    private final GenerationCache generationCache;
+    private final EvaluationQueue evaluationQueue;
+    private final QueryLifecycleWriter lifecycleWriter;
     private final ObjectMapper objectMapper;
 
     public BasicQueryProcessor(
             IEmbeddingService embeddingService,
-            IRetriever retriever,
+            SpeculativeRetrievalService retrievalService,
             IGenerator generator,
-            IEvaluator evaluator,
-            IQueryRepository queryRepository,
-            IResponseRepository responseRepository,
+            ContextPacker contextPacker,
+            GenerationCache generationCache,
+            EvaluationQueue evaluationQueue,
+            QueryLifecycleWriter lifecycleWriter,
             ObjectMapper objectMapper) {
         this.embeddingService = embeddingService;
-        this.retriever = retriever;
+        this.retrievalService = retrievalService;
         this.generator = generator;
-        this.evaluator = evaluator;
-        this.queryRepository = queryRepository;
-        this.responseRepository = responseRepository;
+        this.contextPacker = contextPacker;
+        this.generationCache = generationCache;
+        this.evaluationQueue = evaluationQueue;
+        this.lifecycleWriter = lifecycleWriter;
         this.objectMapper = objectMapper;
     }
 
@@ -96,14 +108,22 @@ public class BasicQueryProcessor implements IQueryProcessor {
      * @return 响应实体对象
      */
     @Override
-    @Transactional
     public Response processQuery(Query query) {
         return processQuery(query, null);
     }
 
+    /**
+     * 处理查询请求。
+     * 状态变更与响应记录交给 {@link QueryLifecycleWriter} 异步批量落库，等待模型期间不持有数据库连接。
+     */
     @Override
-    @Transactional
     public Response processQuery(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy) {
+        return processQuery(query, strategy, QueryRewrites.none());
+    }
+
+    @Override
+    public Response processQuery(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy,
+                                 QueryRewrites rewrites) {
         log.info("开始处理查询 queryId={}", query.getId());
         Instant start = Instant.now();
         cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy effectiveStrategy =
@@ -112,52 +132,30 @@ public class BasicQueryProcessor implements IQueryProcessor {
         try {
             // 更新查询状态为处理中
             query.setStatus("PROCESSING");
-            queryRepository.updateStatus(query.getId(), "PROCESSING", null, null, null);
-            // 创建响应对象
+            lifecycleWriter.updateStatus(query.getId(), "PROCESSING", null, null, null);
+            // 创建响应对象（完成后与查询最终状态一并落库）
             Response response = new Response();
             response.setQueryId(query.getId());
             response.setSessionId(query.getSessionId());
             response.setStatus("PROCESSING");
             response.setCreateTime(LocalDateTime.now());
-            responseRepository.save(response);
-            // 1. 为查询生成向量嵌入
-            log.info("为查询生成向量嵌入 queryId={}", query.getId());
-            float[] queryEmbedding = embeddingService.generateEmbedding(query.getProcessedText());
-            query.setVector(queryEmbedding);
-            // 2.1. 检索相关上下文 设置检索参数
-            log.info("检索相关上下文 queryId={}", query.getId());
-            RetrievalParams retrievalParams = buildRetrievalParams(query, effectiveStrategy);
-            List<Map<String, Object>> retrievedContexts = retriever.retrieve(query, retrievalParams);
-            // 2.2. 提取上下文文本和来源
-            List<String> contextTexts = new ArrayList<>();
-            List<Map<String, Object>> structuredSources = new ArrayList<>();
-            for (Map<String, Object> ctx : retrievedContexts) {
-                String contentPiece = (String) ctx.get("content");
-                if (contentPiece != null) {
-                    contextTexts.add(contentPiece);
-                }
-                Map<String, Object> src = new HashMap<>();
-                Object docId = ctx.get("documentId");
-                if (docId instanceof Number) {
-                    src.put("documentId", ((Number) docId).longValue());
-                } else if (docId != null) {
-                    try {
-                        src.put("documentId", Long.parseLong(String.valueOf(docId)));
-                    } catch (Exception ignore) {
-                    }
+            // 1-2. 生成查询向量、检索相关上下文并按Token预算打包
+            GenerateParams generateParams = buildGenerateParams(effectiveStrategy);
+            RetrievedContexts retrieved = retrieveContexts(query, effectiveStrategy, rewrites, generateParams);
+            List<String> contextTexts = retrieved.texts();
+            List<Map<String, Object>> structuredSources = retrieved.sources();
+            // 3. 生成回答（相同问题、相同块与相同生成参数命中缓存时跳过模型调用）
+            String answer = generationCache.get(retrieved.fingerprint()).orElse(null);
+            boolean cacheHit = answer != null;
+            if (cacheHit) {
+                log.info("命中生成缓存 queryId={}", query.getId());
+            } else {
+                log.info("生成回答 queryId={}", query.getId());
+                answer = generator.generate(query.getProcessedText(), contextTexts, generateParams);
+                if (!answer.startsWith(BasicGenerator.ERROR_ANSWER_PREFIX)) {
+                    generationCache.put(retrieved.fingerprint(), answer);
                 }
-                src.put("title", ctx.get("title"));
-                src.put("source", ctx.get("source"));
-                src.put("content", contentPiece);
-                src.put("startPosition", ctx.get("startPosition"));
-                src.put("endPosition", ctx.get("endPosition"));
-                src.put("score", ctx.get("score"));
-                structuredSources.add(src);
             }
-            // 3. 生成回答
-            log.info("生成回答 queryId={}", query.getId());
-            GenerateParams generateParams = buildGenerateParams(effectiveStrategy);
-            String answer = generator.generate(query.getProcessedText(), contextTexts, generateParams);
             // 4. 更新响应
             response.setAnswerText(answer);
             response.setRetrievedContext(String.join("\n\n", contextTexts));
@@ -177,21 +175,17 @@ public class BasicQueryProcessor implements IQueryProcessor {
             long latencyMs = Duration.between(start, Instant.now()).toMillis();
             response.setLatencyMs(latencyMs);
             query.setLatencyMs(latencyMs);
-            // 5. 评估响应质量
-            Map<String, Object> evaluationResult = evaluator.evaluate(query, response);
-            response.setFaithfulnessScore((Integer) evaluationResult.get("faithfulness"));
-            response.setRelevanceScore((Integer) evaluationResult.get("relevance"));
-            try {
-                response.setEvaluationMetrics(objectMapper.writeValueAsString(evaluationResult));
-            } catch (JsonProcessingException e) {
-                response.setEvaluationMetrics("{}");
-            }
+            // 5. 记录检索质量指标（供 Fallback 在无评估分数时做启发式判断）
+            response.setMetadata(retrieved.qualityMetadata());
+            response.getMetadata().put("generationCacheHit", cacheHit);
             // 6. 更新状态
             response.setStatus("COMPLETED");
             query.setStatus("COMPLETED");
-            // 7. 保存更新
-            responseRepository.save(response);
-            queryRepository.updateStatus(query.getId(), "COMPLETED", response.getCompleteTime(), latencyMs, null);
+            // 7. 评估响应质量：按意图策略与采样率异步执行，响应落库后入队，分数稍后回写
+            String evaluation = evaluationQueue.admit(effectiveStrategy.getEvaluation());
+            response.getMetadata().put(EvaluationQueue.METADATA_KEY, evaluation);
+            // 8. 保存响应与查询最终状态（异步批量落库）
+            lifecycleWriter.complete(query, response, afterPersist(query, response, evaluation));
             log.info("查询处理完成: {}, 延迟: {}ms", query.getId(), latencyMs);
 
             return response;
@@ -200,25 +194,226 @@ public class BasicQueryProcessor implements IQueryProcessor {
             // 更新查询和响应状态为失败
             query.setStatus("FAILED");
             query.setErrorMessage(e.getMessage());
-            queryRepository.updateStatus(query.getId(), "FAILED", LocalDateTime.now(), null, e.getMessage());
-            Response errorResponse = new Response();
-            errorResponse.setQueryId(query.getId());
-            errorResponse.setSessionId(query.getSessionId());
-            errorResponse.setStatus("FAILED");
-            errorResponse.setErrorMessage(e.getMessage());
-            errorResponse.setCreateTime(LocalDateTime.now());
-            errorResponse.setCompleteTime(LocalDateTime.now());
-            responseRepository.save(errorResponse);
+            Response errorResponse = buildErrorResponse(query, e);
+            lifecycleWriter.complete(query, errorResponse, null);
 
             return errorResponse;
         }
     }
 
+    /**
+     * 流式处理查询：检索完成后立即发送来源事件，随后逐段转发模型输出；
+     * 流结束后异步持久化响应并执行评估，不阻塞客户端。
+     * 首Token延迟（TTFT）作为流式接口的主要延迟指标记录在响应元数据与完成事件中。
+     */
+    @Override
+    public Flux<RagStreamEvent> processQueryStream(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy) {
+        return processQueryStream(query, strategy, QueryRewrites.none());
+    }
+
+    @Override
+    public Flux<RagStreamEvent> processQueryStream(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy,
+                                                   QueryRewrites rewrites) {
+        return Flux.defer(() -> {
+            log.info("开始流式处理查询 queryId={}", query.getId());
+            Instant start = Instant.now();
+            cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy effectiveStrategy =
+                    strategy == null ? cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy.builder().build().ensureDefaults()
+                            : strategy.ensureDefaults();
+            query.setStatus("PROCESSING");
+            lifecycleWriter.updateStatus(query.getId(), "PROCESSING", null, null, null);
+
+            GenerateParams generateParams = buildGenerateParams(effectiveStrategy);
+            RetrievedContexts retrieved = retrieveContexts(query, effectiveStrategy, rewrites, generateParams);
+            long retrievalMs = Duration.between(start, Instant.now()).toMillis();
+
+            StringBuilder answer = new StringBuilder();
+            AtomicLong ttftMs = new AtomicLong(-1);
+            AtomicBoolean finished = new AtomicBoolean(false);
+
+            Flux<RagStreamEvent> sources = Flux.just(RagStreamEvent.sources(query.getId(), retrieved.sources()));
+            // 命中生成缓存时整段回答作为一个片段发送
+            String cachedAnswer = generationCache.get(retrieved.fingerprint()).orElse(null);
+            Flux<String> answerSource = cachedAnswer != null
+                    ? Flux.just(cachedAnswer)
+                    : generator.generateStream(query.getProcessedText(), retrieved.texts(), generateParams);
+            Flux<RagStreamEvent> tokens = answerSource
+                    .doOnNext(token -> {
+                        if (ttftMs.get() < 0) {
+                            ttftMs.set(Duration.between(start, Instant.now()).toMillis());
+                            log.info("首Token到达 queryId={}, TTFT: {}ms（检索: {}ms）", query.getId(), ttftMs.get(), retrievalMs);
+                        }
+                        answer.append(token);
+                    })
+                    .map(RagStreamEvent::token);
+            Flux<RagStreamEvent> done = Mono.fromSupplier(() -> {
+                finished.set(true);
+                Response response = buildStreamResponse(query, retrieved, generateParams, answer.toString(),
+                        start, ttftMs.get(), retrievalMs, "COMPLETED");
+                response.getMetadata().put("generationCacheHit", cachedAnswer != null);
+                // 与同步路径一致：生成失败的回答不进入缓存
+                if (cachedAnswer == null && !answer.isEmpty()
+                        && !answer.toString().startsWith(BasicGenerator.ERROR_ANSWER_PREFIX)) {
+                    generationCache.put(retrieved.fingerprint(), answer.toString());
+                }
+                persistStreamResult(query, response, effectiveStrategy);
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("queryId", query.getId());
+                stats.put("ttftMs", ttftMs.get());
+                stats.put("retrievalMs", retrievalMs);
+                stats.put("latencyMs", response.getLatencyMs());
+                stats.put("answerLength", answer.length());
+                return RagStreamEvent.done(stats);
+            }).flux();
+
+            return Flux.concat(sources, tokens, done)
+                    .doOnCancel(() -> {
+                        // 客户端提前断开：保存已生成的部分回答
+                        if (finished.compareAndSet(false, true)) {
+                            log.info("客户端断开流式连接 queryId={}, 已生成 {} 字符", query.getId(), answer.length());
+                            Response response = buildStreamResponse(query, retrieved, generateParams, answer.toString(),
+                                    start, ttftMs.get(), retrievalMs, "CANCELLED");
+                            persistStreamResult(query, response, null);
+                        }
+                    });
+        }).subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error("流式处理查询时出错 queryId: {}", query.getId(), e);
+                    query.setStatus("FAILED");
+                    query.setErrorMessage(e.getMessage());
+                    lifecycleWriter.complete(query, buildErrorResponse(query, e), null);
+                    return Flux.just(RagStreamEvent.error(e.getMessage()));
+                });
+    }
+
     @Override
     public QueryType getType() {
         return QueryType.BASIC;
     }
 
+    /**
+     * 生成查询向量并检索上下文，按Token预算打包上下文文本，提取结构化来源（来源保持逐块）。
+     */
+    private RetrievedContexts retrieveContexts(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy,
+                                               QueryRewrites rewrites, GenerateParams generateParams) {
+        // 1. 为查询生成向量嵌入
+        log.info("为查询生成向量嵌入 queryId={}", query.getId());
+        float[] queryEmbedding = embeddingService.generateEmbedding(query.getProcessedText());
+        query.setVector(queryEmbedding);
+        // 2.1. 检索相关上下文 设置检索参数（有进行中的查询重写时，与重写并发进行推测性检索并合并结果）
+        log.info("检索相关上下文 queryId={}", query.getId());
+        RetrievalParams retrievalParams = buildRetrievalParams(query, strategy);
+        List<Map<String, Object>> retrievedContexts = retrievalService.retrieve(query, rewrites, retrievalParams);
+        // 2.2. 合并相邻块、去除重叠并按Token预算打包上下文文本
+        ContextPacker.PackedContexts packed = contextPacker.pack(query.getProcessedText(), retrievedContexts, generateParams);
+        GenerationCache.Fingerprint fingerprint = generationCache.fingerprint(query.getProcessedText(), retrievedContexts, generateParams);
+        // 2.3. 提取来源
+        List<Map<String, Object>> structuredSources = new ArrayList<>();
+        for (Map<String, Object> ctx : retrievedContexts) {
+            String contentPiece = (String) ctx.get("content");
+            Map<String, Object> src = new HashMap<>();
+            Object docId = ctx.get("documentId");
+            if (docId instanceof Number) {
+                src.put("documentId", ((Number) docId).longValue());
+            } else if (docId != null) {
+                try {
+                    src.put("documentId", Long.parseLong(String.valueOf(docId)));
+                } catch (Exception ignore) {
+                }
+            }
+            if (ctx.get("id") instanceof Number chunkId) {
+                src.put("chunkId", chunkId.longValue());
+            }
+            src.put("title", ctx.get("title"));
+            src.put("source", ctx.get("source"));
+            src.put("content", contentPiece);
+            src.put("startPosition", ctx.get("startPosition"));
+            src.put("endPosition", ctx.get("endPosition"));
+            src.put("score", ctx.get("score"));
+            structuredSources.add(src);
+        }
+        double topScore = 0.0;
+        double scoreSum = 0.0;
+        for (Map<String, Object> ctx : retrievedContexts) {
+            double score = ctx.get("score") instanceof Number number ? number.doubleValue() : 0.0;
+            topScore = Math.max(topScore, score);
+            scoreSum += score;
+        }
+        double meanScore = retrievedContexts.isEmpty() ? 0.0 : scoreSum / retrievedContexts.size();
+        return new RetrievedContexts(packed.texts(), structuredSources, topScore, meanScore, packed.stats(), fingerprint);
+    }
+
+    private Response buildStreamResponse(Query query,
+                                         RetrievedContexts retrieved,
+                                         GenerateParams generateParams,
+                                         String answer,
+                                         Instant start,
+                                         long ttftMs,
+                                         long retrievalMs,
+                                         String status) {
+        Response response = new Response();
+        response.setQueryId(query.getId());
+        response.setSessionId(query.getSessionId());
+        response.setStatus(status);
+        response.setAnswerText(answer);
+        response.setRetrievedContext(String.join("\n\n", retrieved.texts()));
+        try {
+            response.setContextSources(objectMapper.writeValueAsString(retrieved.sources()));
+        } catch (JsonProcessingException e) {
+            response.setContextSources("[]");
+        }
+        response.setModelName(generateParams.getModel());
+        try {
+            response.setGenerationParams(objectMapper.writeValueAsString(generateParams));
+        } catch (JsonProcessingException e) {
+            response.setGenerationParams("{}");
+        }
+        long latencyMs = Duration.between(start, Instant.now()).toMillis();
+        response.setCreateTime(LocalDateTime.ofInstant(start, java.time.ZoneId.systemDefault()));
+        response.setCompleteTime(LocalDateTime.now());
+        response.setLatencyMs(latencyMs);
+        Map<String, Object> metadata = retrieved.qualityMetadata();
+        metadata.put("streaming", true);
+        metadata.put("ttftMs", ttftMs);
+        metadata.put("retrievalMs", retrievalMs);
+        response.setMetadata(metadata);
+        query.setLatencyMs(latencyMs);
+        return response;
+    }
+
+    /**
+     * 持久化流式结果（异步批量落库）；完整回答按意图策略提交异步评估（中断的回答不评估）。
+     */
+    private void persistStreamResult(Query query, Response response,
+                                     cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy) {
+        query.setStatus(response.getStatus());
+        String evaluation = strategy != null ? evaluationQueue.admit(strategy.getEvaluation()) : EvaluationQueue.STATUS_DISABLED;
+        response.getMetadata().put(EvaluationQueue.METADATA_KEY, evaluation);
+        lifecycleWriter.complete(query, response, afterPersist(query, response, evaluation));
+        log.info("流式查询结果已提交保存 queryId={}, 状态: {}, 延迟: {}ms, TTFT: {}ms", query.getId(),
+                response.getStatus(), response.getLatencyMs(), response.getMetadata().get("ttftMs"));
+    }
+
+    /**
+     * 响应落库后的回调：抽中评估的响应此时已有ID，可以入队评估。
+     */
+    private Runnable afterPersist(Query query, Response response, String evaluation) {
+        return EvaluationQueue.STATUS_QUEUED.equals(evaluation)
+                ? () -> evaluationQueue.enqueue(query, response)
+                : null;
+    }
+
+    private Response buildErrorResponse(Query query, Throwable e) {
+        Response errorResponse = new Response();
+        errorResponse.setQueryId(query.getId());
+        errorResponse.setSessionId(query.getSessionId());
+        errorResponse.setStatus("FAILED");
+        errorResponse.setErrorMessage(e.getMessage());
+        errorResponse.setCreateTime(LocalDateTime.now());
+        errorResponse.setCompleteTime(LocalDateTime.now());
+        return errorResponse;
+    }
+
     private RetrievalParams buildRetrievalParams(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy) {
         cn.cug.sxy.ai.domain.rag.model.strategy.RetrievalStrategy plan = strategy.getRetrieval();
         Integer topK = firstNonNull(plan.getTopK(), query.getMetadata() != null ? query.getMetadata().getTopK() : null, defaultTopK);
@@ -243,6 +438,7 @@ public class BasicQueryProcessor implements IQueryProcessor {
         params.setMaxTokens(plan.getMaxTokens() != null ? plan.getMaxTokens() : 1024);
         params.setTemperature(plan.getTemperature() != null ? plan.getTemperature() : 0.7);
         params.setModel(plan.getModel());
+        params.setContextTokenBudget(plan.getContextTokenBudget());
         return params;
     }
 
@@ -265,4 +461,22 @@ public class BasicQueryProcessor implements IQueryProcessor {
         return null;
     }
 
+    private record RetrievedContexts(List<String> texts, List<Map<String, Object>> sources,
+                                     double topScore, double meanScore, Map<String, Object> packingStats,
+                                     GenerationCache.Fingerprint fingerprint) {
+
+        /**
+         * 检索质量指标：上下文数量（检索块数，打包合并前）、最高分、最高分与均值之差（分布越平坦越说明检索缺乏区分度），
+         * 以及上下文打包统计
+         */
+        Map<String, Object> qualityMetadata() {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put(FallbackManager.META_CONTEXT_COUNT, sources.size());
+            metadata.put(FallbackManager.META_TOP_SCORE, topScore);
+            metadata.put(FallbackManager.META_SCORE_SPREAD, topScore - meanScore);
+            metadata.put("contextPacking", packingStats);
+            return metadata;
+        }
+    }
+
 }
@@ -2,6 +2,11 @@ package cn.cug.sxy.ai.domain.rag.service.query;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RagStreamEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
 
 /**
  * @version 1.0
@@ -27,6 +32,39 @@ public interface IQueryProcessor {
         return processQuery(query);
     }
 
+    /**
+     * 带策略与本次请求进行中的查询重写的处理。默认忽略重写。
+     */
+    default Response processQuery(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy,
+                                  QueryRewrites rewrites) {
+        return processQuery(query, strategy);
+    }
+
+    /**
+     * 流式处理：先发送检索来源，再逐段发送回答，最后发送统计信息。
+     * 默认实现执行同步处理后一次性发送完整回答。
+     */
+    default Flux<RagStreamEvent> processQueryStream(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy) {
+        return Flux.defer(() -> {
+            Response response = processQuery(query, strategy);
+            if ("FAILED".equals(response.getStatus())) {
+                return Flux.just(RagStreamEvent.error(response.getErrorMessage()));
+            }
+            return Flux.just(
+                    RagStreamEvent.token(response.getAnswerText()),
+                    RagStreamEvent.done(Map.of("queryId", query.getId(),
+                            "latencyMs", response.getLatencyMs() != null ? response.getLatencyMs() : 0L)));
+        });
+    }
+
+    /**
+     * 携带本次请求进行中的查询重写的流式处理。默认忽略重写。
+     */
+    default Flux<RagStreamEvent> processQueryStream(Query query, cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy strategy,
+                                                    QueryRewrites rewrites) {
+        return processQueryStream(query, strategy);
+    }
+
     /**
      * 获取查询处理器类型
      *
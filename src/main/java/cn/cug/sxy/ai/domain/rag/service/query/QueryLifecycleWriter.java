@@ -0,0 +1,438 @@
+package cn.cug.sxy.ai.domain.rag.service.query;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryOutcomeEvent;
+import cn.cug.sxy.ai.domain.rag.repository.IQueryRepository;
+import cn.cug.sxy.ai.domain.rag.repository.IResponseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 查询/响应生命周期的异步批量写入器（write-behind）。
+ * <p>
+ * 查询处理过程中的状态变更与响应记录先写入有界内存缓冲，由后台线程按批次在一个事务内落库：
+ * 1. 生成路径不再持有数据库连接等待模型，连接只在批量落库的几十毫秒内占用
+ * 2. 同一批次内同一查询的多次状态变更只保留最后一次
+ * 3. 落库失败整批回滚并重试（至少一次语义），重试耗尽后逐条落库，仍失败的记录写入错误日志
+ * 4. 缓冲区已满时阻塞调用线程直到有空位（背压，不丢数据）；不绕过缓冲区直接落库，
+ *    否则同一查询较晚的状态可能先于缓冲中较早的状态提交，最终状态被旧值覆盖
+ * 5. 关闭时停止后台线程并按提交顺序同步排空缓冲区
+ * <p>
+ * 响应ID在提交写入时从ID序列预分配，调用方拿到的响应已带ID（接口返回、语义缓存记录来源均依赖该ID）；
+ * 依赖响应行已提交的后续动作（如异步评估）通过 afterPersist 回调在提交后执行。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class QueryLifecycleWriter {
+
+    private final IQueryRepository queryRepository;
+    private final IResponseRepository responseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${rag.persistence.write-behind.enabled:true}")
+    private boolean enabled; // 关闭时在调用线程同步落库
+
+    @Value("${rag.persistence.write-behind.capacity:2000}")
+    private int capacity;
+
+    @Value("${rag.persistence.write-behind.max-batch:100}")
+    private int maxBatch;
+
+    @Value("${rag.persistence.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs; // 攒批等待时间上限
+
+    @Value("${rag.persistence.write-behind.offer-timeout-ms:50}")
+    private long offerTimeoutMs; // 缓冲区满时每轮等待时间，等待期间持续检查写入器是否已关闭
+
+    @Value("${rag.persistence.write-behind.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${rag.persistence.write-behind.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    private BlockingQueue<PendingWrite> buffer;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // 后台线程与关闭后的同步落库共用，保证缓冲中的记录总是先于之后提交的记录落库
+    private final Object flushLock = new Object();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong flushedBatches = new AtomicLong();
+    private final AtomicLong flushedWrites = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong blockedSubmits = new AtomicLong();
+    private final AtomicLong syncWrites = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public QueryLifecycleWriter(IQueryRepository queryRepository,
+                                IResponseRepository responseRepository,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher) {
+        this.queryRepository = queryRepository;
+        this.responseRepository = responseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        buffer = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        if (!enabled) {
+            log.info("查询生命周期异步写入已关闭，状态与响应将同步落库");
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "rag-lifecycle-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("查询生命周期异步写入已启动，缓冲容量: {}, 批大小: {}, 攒批间隔: {}ms", capacity, maxBatch, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 排空缓冲区：后台线程退出后剩余的记录在关闭线程上同步落库
+        int drained;
+        synchronized (flushLock) {
+            drained = drainBuffer(null);
+        }
+        log.info("查询生命周期异步写入已停止，关闭时排空 {} 条记录，统计: {}", drained, getStats());
+    }
+
+    /**
+     * 记录查询状态变更。
+     */
+    public void updateStatus(Long queryId, String status, LocalDateTime completeTime, Long latencyMs, String errorMessage) {
+        submit(new PendingWrite(queryId, status, completeTime, latencyMs, errorMessage, null, null, null, false, null));
+    }
+
+    /**
+     * 记录响应（新响应在返回前预分配ID）。
+     *
+     * @param afterPersist 落库提交后执行的回调，可为 null
+     */
+    public void saveResponse(Response response, Runnable afterPersist) {
+        boolean insert = assignId(response);
+        submit(new PendingWrite(response.getQueryId(), null, null, null, null, null, null, response, insert, afterPersist));
+    }
+
+    /**
+     * 记录查询结束：响应与查询最终状态（含最终的处理器类型与路由目标）在同一批次、同一事务内落库，并发布查询结束事件。
+     *
+     * @param afterPersist 落库提交后执行的回调，可为 null
+     */
+    public void complete(Query query, Response response, Runnable afterPersist) {
+        boolean insert = assignId(response);
+        submit(new PendingWrite(query.getId(), response.getStatus(), response.getCompleteTime(),
+                response.getLatencyMs(), response.getErrorMessage(), query.getQueryType(), query.getRouteTarget(),
+                response, insert, afterPersist));
+        eventPublisher.publishEvent(new QueryOutcomeEvent(this, query.getId(), response, QueryOutcomeEvent.Stage.COMPLETED));
+    }
+
+    public WriterStats getStats() {
+        return WriterStats.builder()
+                .pending(buffer != null ? buffer.size() : 0)
+                .enqueued(enqueued.get())
+                .flushedBatches(flushedBatches.get())
+                .flushedWrites(flushedWrites.get())
+                .coalesced(coalesced.get())
+                .retries(retries.get())
+                .blockedSubmits(blockedSubmits.get())
+                .syncWrites(syncWrites.get())
+                .failed(failed.get())
+                .build();
+    }
+
+    /**
+     * 新响应（无ID）从ID序列预分配ID；序列不可用时保留空ID，落库时由数据库生成。
+     *
+     * @return 是否为新响应（落库时插入）
+     */
+    private boolean assignId(Response response) {
+        if (response.getId() != null) {
+            return false;
+        }
+        try {
+            response.setId(responseRepository.nextId());
+        } catch (Exception e) {
+            log.warn("预分配响应ID失败，落库时生成 queryId={}: {}", response.getQueryId(), e.getMessage());
+        }
+        return true;
+    }
+
+    private void submit(PendingWrite write) {
+        boolean blocked = false;
+        boolean interrupted = false;
+        try {
+            while (running) {
+                try {
+                    if (buffer.offer(write, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        enqueued.incrementAndGet();
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    // 中断不放弃排队：绕过缓冲区落库会打乱同一查询的状态顺序
+                    interrupted = true;
+                    continue;
+                }
+                if (!blocked) {
+                    blocked = true;
+                    blockedSubmits.incrementAndGet();
+                    log.warn("查询生命周期写入缓冲区已满（{}），等待后台落库腾出空间 queryId={}", buffer.size(), write.queryId());
+                }
+            }
+            syncWrites.incrementAndGet();
+            if (!enabled) {
+                flushWithRetry(new ArrayList<>(List.of(write)));
+                return;
+            }
+            // 写入器正在关闭：等后台线程落库手中的批次，再按顺序落库缓冲中剩余的记录与本条
+            interrupted |= awaitWriterExit();
+            synchronized (flushLock) {
+                drainBuffer(write);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return 等待期间是否被中断
+     */
+    private boolean awaitWriterExit() {
+        Thread writer = writerThread;
+        if (writer == null || writer == Thread.currentThread()) {
+            return false;
+        }
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 按提交顺序分批落库缓冲区中的全部记录，最后落库 tail（可为 null）。调用方需持有 flushLock。
+     *
+     * @return 落库的记录数
+     */
+    private int drainBuffer(PendingWrite tail) {
+        int drained = 0;
+        List<PendingWrite> batch = new ArrayList<>();
+        while (buffer != null && buffer.drainTo(batch, Math.max(1, maxBatch)) > 0) {
+            drained += batch.size();
+            flushWithRetry(batch);
+            batch = new ArrayList<>();
+        }
+        if (tail != null) {
+            drained++;
+            flushWithRetry(new ArrayList<>(List.of(tail)));
+        }
+        return drained;
+    }
+
+    private void runWriter() {
+        List<PendingWrite> batch = new ArrayList<>();
+        while (running) {
+            try {
+                PendingWrite first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒批：首条到达后再等待一个间隔，或直到批满
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < maxBatch) {
+                    buffer.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭信号：已取出的记录交给下方落库，剩余记录由 stop() 排空
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                synchronized (flushLock) {
+                    flushWithRetry(batch);
+                }
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * 整批在一个事务内落库，失败重试；重试耗尽后逐条落库，隔离个别异常记录。
+     */
+    private void flushWithRetry(List<PendingWrite> batch) {
+        List<PendingWrite> writes = coalesce(batch);
+        for (int attempt = 1; attempt <= Math.max(1, maxAttempts); attempt++) {
+            if (flush(writes)) {
+                return;
+            }
+            if (attempt < maxAttempts) {
+                retries.incrementAndGet();
+                sleepQuietly(retryBackoffMs * attempt);
+            }
+        }
+        log.warn("批量落库重试 {} 次仍失败，改为逐条落库，批大小: {}", maxAttempts, writes.size());
+        for (PendingWrite write : writes) {
+            if (!flush(List.of(write))) {
+                failed.incrementAndGet();
+                log.error("查询生命周期记录落库失败 queryId={}, status={}, 响应状态: {}", write.queryId(), write.status(),
+                        write.response() != null ? write.response().getStatus() : null);
+            }
+        }
+    }
+
+    private boolean flush(List<PendingWrite> writes) {
+        List<Response> generated = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (PendingWrite write : writes) {
+                    if (write.response() != null) {
+                        if (!write.insert()) {
+                            responseRepository.save(write.response());
+                            continue;
+                        }
+                        if (write.response().getId() == null) {
+                            generated.add(write.response());
+                        }
+                        responseRepository.insert(write.response());
+                    }
+                    if (write.status() != null && write.queryId() != null) {
+                        queryRepository.updateStatus(write.queryId(), write.status(), write.completeTime(),
+                                write.latencyMs(), write.errorMessage(), write.queryType(), write.routeTarget());
+                    }
+                }
+            });
+        } catch (Exception e) {
+            // 事务已回滚：撤销数据库生成并回填的响应ID，重试时重新生成（预分配的ID保留，重试时沿用）
+            generated.forEach(response -> response.setId(null));
+            log.warn("查询生命周期批量落库失败，批大小: {}: {}", writes.size(), e.getMessage());
+            return false;
+        }
+        flushedBatches.incrementAndGet();
+        flushedWrites.addAndGet(writes.size());
+        for (PendingWrite write : writes) {
+            if (write.afterPersist() != null) {
+                try {
+                    write.afterPersist().run();
+                } catch (Exception e) {
+                    log.warn("落库后回调执行失败 queryId={}: {}", write.queryId(), e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 合并同一查询的状态变更：只保留批次内最后一次，未携带响应的旧状态记录直接丢弃。
+     */
+    private List<PendingWrite> coalesce(List<PendingWrite> batch) {
+        if (batch.size() <= 1) {
+            return batch;
+        }
+        Set<Long> statusSeen = new HashSet<>();
+        List<PendingWrite> result = new ArrayList<>(batch.size());
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            PendingWrite write = batch.get(i);
+            if (write.status() == null || write.queryId() == null || statusSeen.add(write.queryId())) {
+                result.add(write);
+            } else if (write.response() != null) {
+                result.add(write.withoutStatus());
+            } else {
+                coalesced.incrementAndGet();
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record PendingWrite(Long queryId,
+                                String status,
+                                LocalDateTime completeTime,
+                                Long latencyMs,
+                                String errorMessage,
+                                String queryType,
+                                String routeTarget,
+                                Response response,
+                                boolean insert,
+                                Runnable afterPersist) {
+
+        PendingWrite withoutStatus() {
+            return new PendingWrite(queryId, null, null, null, null, null, null, response, insert, afterPersist);
+        }
+    }
+
+    /**
+     * 写入器统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WriterStats {
+        private int pending;
+        private long enqueued;
+        private long flushedBatches;
+        private long flushedWrites;
+        private long coalesced;
+        private long retries;
+        private long blockedSubmits;
+        private long syncWrites;
+        private long failed;
+    }
+}
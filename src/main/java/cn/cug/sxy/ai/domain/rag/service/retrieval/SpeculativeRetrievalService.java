@@ -0,0 +1,203 @@
+package cn.cug.sxy.ai.domain.rag.service.retrieval;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryRewrites;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RetrievalParams;
+import cn.cug.sxy.ai.domain.rag.service.intent.QueryRewriteService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 推测性检索服务。
+ * <p>
+ * 查询重写（多查询、HyDE、Step-Back）仍在进行时：
+ * 1. 当前线程立即检索原始查询（推测性执行，不等待重写）
+ * 2. 每个重写结果到达后立即为其文本发起检索
+ * 3. 在重写阶段截止时间前合并所有已完成分支的结果（按分块去重，保留最高分），截止时仍未完成的重写被取消
+ * <p>
+ * 没有重写时，等价于直接调用 {@link IRetriever}。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class SpeculativeRetrievalService {
+
+    private final IRetriever retriever;
+    private final QueryRewriteService queryRewriteService;
+    private final Executor rewriteExecutor;
+
+    public SpeculativeRetrievalService(IRetriever retriever,
+                                       QueryRewriteService queryRewriteService,
+                                       @Qualifier("queryRewriteExecutor") Executor rewriteExecutor) {
+        this.retriever = retriever;
+        this.queryRewriteService = queryRewriteService;
+        this.rewriteExecutor = rewriteExecutor;
+    }
+
+    /**
+     * 检索查询相关上下文，合并原始查询与重写查询的结果。
+     *
+     * @param query    查询
+     * @param rewrites 本次请求进行中的重写（可为 null）
+     * @param params   检索参数
+     * @return 合并后的上下文，按分数降序
+     */
+    public List<Map<String, Object>> retrieve(Query query, QueryRewrites rewrites, RetrievalParams params) {
+        if (rewrites == null || rewrites.isEmpty()) {
+            return retriever.retrieve(query, params);
+        }
+
+        long start = System.currentTimeMillis();
+        // 重写结果一到达就为其发起检索，不等待其他重写
+        List<CompletableFuture<List<Map<String, Object>>>> branches = new ArrayList<>();
+        for (CompletableFuture<QueryRewrites.Rewrite> pending : rewrites.getPending()) {
+            CompletableFuture<List<Map<String, Object>>> branch = new CompletableFuture<>();
+            pending.whenCompleteAsync((rewrite, error) -> {
+                if (branch.isDone()) {
+                    // 分支已超时取消，重写迟到时不再发起检索
+                    return;
+                }
+                if (error != null) {
+                    branch.completeExceptionally(error);
+                    return;
+                }
+                retrieveRewrite(query, rewrite, params, branch::isCancelled).whenComplete((result, e) -> {
+                    if (e != null) {
+                        branch.completeExceptionally(e);
+                    } else {
+                        branch.complete(result);
+                    }
+                });
+            }, rewriteExecutor);
+            branches.add(branch);
+        }
+
+        // 原始查询检索与重写并行进行
+        List<Map<String, Object>> original = retriever.retrieve(query, params);
+        long originalMs = System.currentTimeMillis() - start;
+
+        List<List<Map<String, Object>>> results = new ArrayList<>();
+        results.add(original);
+        int merged = 0;
+        int dropped = 0;
+        for (CompletableFuture<List<Map<String, Object>>> branch : branches) {
+            List<Map<String, Object>> branchResult = awaitBranch(branch, rewrites);
+            if (branchResult == null) {
+                dropped++;
+            } else if (!branchResult.isEmpty()) {
+                results.add(branchResult);
+                merged++;
+            }
+        }
+        // 已过阶段截止时间：取消仍在进行的重写，迟到的重写不再占用模型调用
+        int cancelled = rewrites.cancelUnfinished();
+
+        // 回填已完成的重写结果（持久化记录用）
+        queryRewriteService.applyRewrites(query, rewrites.completedNow());
+
+        int maxContexts = params.getMaxContexts() != null ? params.getMaxContexts()
+                : (params.getTopK() != null ? params.getTopK() : original.size());
+        List<Map<String, Object>> contexts = mergeByChunk(results, Math.max(maxContexts, original.size()));
+        log.info("推测性检索完成 queryId={}, 原始检索: {}ms, 合并重写分支: {}, 超时/失败分支: {}, 取消重写: {}, 总耗时: {}ms, 上下文数: {}",
+                query.getId(), originalMs, merged, dropped, cancelled, System.currentTimeMillis() - start, contexts.size());
+        return contexts;
+    }
+
+    /**
+     * 为单个重写的所有文本并发检索；分支被取消后，尚未开始的检索直接跳过（不再占用线程与嵌入调用）。
+     */
+    private CompletableFuture<List<Map<String, Object>>> retrieveRewrite(Query query,
+                                                                         QueryRewrites.Rewrite rewrite,
+                                                                         RetrievalParams params,
+                                                                         BooleanSupplier cancelled) {
+        if (rewrite == null) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        List<CompletableFuture<List<Map<String, Object>>>> perText = rewrite.texts().stream()
+                .map(text -> CompletableFuture.supplyAsync(() -> cancelled.getAsBoolean()
+                        ? List.<Map<String, Object>>of()
+                        : retriever.retrieve(probe(query, text), params), rewriteExecutor))
+                .toList();
+        return CompletableFuture.allOf(perText.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    List<Map<String, Object>> combined = new ArrayList<>();
+                    perText.forEach(f -> combined.addAll(f.join()));
+                    return combined;
+                });
+    }
+
+    /**
+     * 在阶段截止时间内等待分支；超时或失败返回 null，超时的分支被取消。
+     */
+    private List<Map<String, Object>> awaitBranch(CompletableFuture<List<Map<String, Object>>> branch,
+                                                  QueryRewrites rewrites) {
+        long remaining = rewrites.remainingNanos();
+        try {
+            if (remaining > 0) {
+                return branch.get(remaining, TimeUnit.NANOSECONDS);
+            }
+            List<Map<String, Object>> done = branch.getNow(null);
+            if (done == null) {
+                branch.cancel(true);
+            }
+            return done;
+        } catch (TimeoutException e) {
+            branch.cancel(true);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            log.warn("重写分支检索失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 以重写文本构造检索用的临时查询（不影响原查询的向量与文本）。
+     */
+    private Query probe(Query query, String text) {
+        return Query.builder()
+                .id(query.getId())
+                .userId(query.getUserId())
+                .sessionId(query.getSessionId())
+                .originalText(text)
+                .processedText(text)
+                .metadata(query.getMetadata())
+                .build();
+    }
+
+    /**
+     * 按分块ID合并多路结果，同一分块保留最高分，按分数降序截断。
+     */
+    private List<Map<String, Object>> mergeByChunk(List<List<Map<String, Object>>> results, int limit) {
+        Map<Object, Map<String, Object>> byChunk = new LinkedHashMap<>();
+        for (List<Map<String, Object>> result : results) {
+            for (Map<String, Object> ctx : result) {
+                Object id = ctx.get("id");
+                Object key = id != null ? id : ctx.get("content");
+                Map<String, Object> existing = byChunk.get(key);
+                if (existing == null || score(ctx) > score(existing)) {
+                    byChunk.put(key, ctx);
+                }
+            }
+        }
+        List<Map<String, Object>> merged = new ArrayList<>(byChunk.values());
+        merged.sort((a, b) -> Double.compare(score(b), score(a)));
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    private double score(Map<String, Object> ctx) {
+        Object s = ctx.get("score");
+        return s instanceof Number ? ((Number) s).doubleValue() : 0.0;
+    }
+}
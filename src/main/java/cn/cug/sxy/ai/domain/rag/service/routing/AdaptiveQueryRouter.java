@@ -0,0 +1,498 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
+import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
+import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
+import cn.cug.sxy.ai.domain.rag.model.strategy.RetrievalStrategy;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryOutcomeEvent;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RoutingOutcome;
+import cn.cug.sxy.ai.domain.rag.repository.IQueryRepository;
+import cn.cug.sxy.ai.domain.rag.service.evaluate.EvaluationQueue;
+import cn.cug.sxy.ai.domain.rag.service.orchestration.FallbackManager;
+import cn.cug.sxy.ai.domain.rag.service.query.IQueryProcessor;
+import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 自适应查询路由：以意图任务类型为上下文的多臂老虎机，学习每类查询在质量可接受前提下延迟与Token开销最低的
+ * 查询重写方式与候选倍数（见 {@link RouteBandit}）。
+ * <p>
+ * 1. 决策：编排流程在策略映射之后调用 {@link #select}，未显式指定重写/候选倍数/处理器的查询由路由器选臂并改写策略；
+ *    数据不足时沿用策略映射的结果，探索比例受 exploration-rate 限制，负载降级期间不参与
+ * 2. 学习：查询结束与异步评估完成时发布 {@link QueryOutcomeEvent}，监听方只提取指标并放入有界队列，
+ *    由单个后台线程更新统计，不阻塞请求；队列满时丢弃样本
+ * 3. 质量信号：只有评估分数（忠实度与相关性取低者 / 10）参与选臂；最高检索分（失败或空上下文记为 0）量纲不同，
+ *    作为代理质量单独统计，仅供观测。未抽中评估的查询只贡献延迟与Token开销
+ * 4. 冷启动：路由目标记为 adaptive:任务类型:臂，启动时从 query / response 表读取最近的路由结果回放
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service("adaptiveQueryRouter")
+public class AdaptiveQueryRouter implements IQueryRouter {
+
+    public static final String ROUTE_TARGET_PREFIX = "adaptive:";
+
+    private static final String UNKNOWN_CONTEXT = TaskType.UNKNOWN.name();
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private final IQueryRepository queryRepository;
+    private final Map<QueryType, IQueryProcessor> processorMap;
+
+    @Value("${rag.routing.adaptive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.routing.adaptive.rewrites:NONE,MULTI_QUERY,STEP_BACK,HYDE}")
+    private List<String> rewrites;
+
+    @Value("${rag.routing.adaptive.candidate-multipliers:2,4}")
+    private List<Integer> candidateMultipliers;
+
+    @Value("${rag.retrieval.default-candidate-multiplier:4}")
+    private int defaultCandidateMultiplier;
+
+    @Value("${rag.routing.adaptive.acceptable-quality:0.6}")
+    private double acceptableQuality;
+
+    @Value("${rag.routing.adaptive.min-quality-samples:5}")
+    private double minQualitySamples;
+
+    @Value("${rag.routing.adaptive.confidence:0.3}")
+    private double confidence;
+
+    @Value("${rag.routing.adaptive.exploration-rate:0.05}")
+    private double explorationRate;
+
+    @Value("${rag.routing.adaptive.latency-target-ms:5000}")
+    private double latencyTargetMs;
+
+    @Value("${rag.routing.adaptive.token-target:3000}")
+    private double tokenTarget;
+
+    @Value("${rag.routing.adaptive.token-weight:0.5}")
+    private double tokenWeight;
+
+    @Value("${rag.routing.adaptive.discount:0.995}")
+    private double discount;
+
+    @Value("${rag.routing.adaptive.rewrite-token-estimate:500}")
+    private int rewriteTokenEstimate; // 网关不按查询统计Token，重写开销按每次重写的估算值计入
+
+    @Value("${rag.routing.adaptive.queue-capacity:5000}")
+    private int queueCapacity;
+
+    @Value("${rag.routing.adaptive.pending-capacity:10000}")
+    private int pendingCapacity;
+
+    @Value("${rag.routing.adaptive.pending-ttl-ms:600000}")
+    private long pendingTtlMs;
+
+    @Value("${rag.routing.adaptive.warm-start-limit:5000}")
+    private int warmStartLimit;
+
+    private RouteBandit bandit;
+    // 已路由、等待结果的查询
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private BlockingQueue<Outcome> outcomes;
+    private Thread learnerThread;
+    private volatile boolean running;
+
+    private final AtomicLong decisions = new AtomicLong();
+    private final AtomicLong explored = new AtomicLong();
+    private final AtomicLong overridden = new AtomicLong();
+    private final AtomicLong learned = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong untracked = new AtomicLong();
+    private final AtomicLong warmStarted = new AtomicLong();
+
+    public AdaptiveQueryRouter(IQueryRepository queryRepository, List<IQueryProcessor> queryProcessors) {
+        this.queryRepository = queryRepository;
+        this.processorMap = queryProcessors.stream()
+                .collect(Collectors.toMap(IQueryProcessor::getType, processor -> processor));
+    }
+
+    @PostConstruct
+    public void start() {
+        List<RouteArm> arms = new ArrayList<>();
+        for (String rewrite : rewrites) {
+            for (Integer multiplier : candidateMultipliers) {
+                arms.add(new RouteArm(RouteArm.Rewrite.valueOf(rewrite.trim().toUpperCase()), multiplier));
+            }
+        }
+        bandit = new RouteBandit(arms, new RouteBandit.Settings(acceptableQuality, minQualitySamples, confidence,
+                explorationRate, latencyTargetMs, tokenTarget, tokenWeight, discount));
+        outcomes = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        if (!enabled) {
+            log.info("自适应路由已关闭");
+            return;
+        }
+        running = true;
+        learnerThread = new Thread(this::runLearner, "rag-adaptive-router");
+        learnerThread.setDaemon(true);
+        learnerThread.start();
+        log.info("自适应路由已启动，臂: {}, 探索率: {}, 可接受质量: {}", arms, explorationRate, acceptableQuality);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (learnerThread != null) {
+            learnerThread.interrupt();
+        }
+    }
+
+    @Override
+    public IQueryProcessor route(Query query) {
+        return route(query, null);
+    }
+
+    /**
+     * 无意图信息时按 params.taskType 选择上下文，并按选中的臂设置查询的候选倍数与路由目标。
+     */
+    @Override
+    public IQueryProcessor route(Query query, Map<String, Object> params) {
+        Object taskType = params != null ? params.get("taskType") : null;
+        String context = taskType != null ? String.valueOf(taskType).toUpperCase() : UNKNOWN_CONTEXT;
+        RouteArm defaultArm = nearestArm(RouteArm.Rewrite.NONE, defaultCandidateMultiplier);
+        if (defaultArm == null) {
+            defaultArm = bandit.arms().get(0);
+        }
+        RouteBandit.Choice choice = bandit.choose(context, defaultArm, enabled, ThreadLocalRandom.current());
+        RouteArm arm = choice.arm();
+        if (query.getMetadata() != null) {
+            query.getMetadata().setCandidateMultiplier(arm.candidateMultiplier());
+        }
+        QueryType processorType = arm.rewrite().getProcessorType();
+        query.setQueryType(processorType.name());
+        query.setRouteTarget(track(query.getId(), context, arm, choice, defaultArm));
+        return processorMap.getOrDefault(processorType, processorMap.get(QueryType.BASIC));
+    }
+
+    /**
+     * 为查询选择重写方式与候选倍数并改写本次请求的策略与参数。
+     * 带 TaskPlan、锁定处理器或显式指定了重写/候选倍数/处理器/路由的查询不参与，返回 null。
+     *
+     * @return 路由决策（路由目标需写入查询，用于结果关联与冷启动）
+     */
+    public Decision select(Query query, QueryIntent intent, QueryStrategy strategy, QueryParams params) {
+        if (!enabled || query.getId() == null || intent.isLockProcessor() || isExplicit(params)
+                || (strategy.getTaskPlan() != null && strategy.getTaskPlan().hasTasks())) {
+            return null;
+        }
+        RouteArm defaultArm = defaultArm(intent, strategy);
+        if (defaultArm == null) {
+            return null;
+        }
+        String context = intent.getTaskType() != null ? intent.getTaskType().name() : UNKNOWN_CONTEXT;
+        RouteBandit.Choice choice = bandit.choose(context, defaultArm, true, ThreadLocalRandom.current());
+        RouteArm arm = choice.arm();
+        apply(arm, strategy, params);
+        String routeTarget = track(query.getId(), context, arm, choice, defaultArm);
+        if (!arm.equals(defaultArm)) {
+            log.debug("查询[{}]自适应路由: {} -> {}{}", query.getId(), defaultArm, arm, choice.explored() ? "（探索）" : "");
+        }
+        return new Decision(context, arm, choice.explored(), routeTarget);
+    }
+
+    private String track(Long queryId, String context, RouteArm arm, RouteBandit.Choice choice, RouteArm defaultArm) {
+        decisions.incrementAndGet();
+        if (choice.explored()) {
+            explored.incrementAndGet();
+        }
+        if (!arm.equals(defaultArm)) {
+            overridden.incrementAndGet();
+        }
+        if (queryId != null) {
+            if (pending.size() < pendingCapacity) {
+                pending.put(queryId, new Pending(context, arm, System.currentTimeMillis()));
+            } else {
+                untracked.incrementAndGet();
+            }
+        }
+        return ROUTE_TARGET_PREFIX + context + ':' + arm.key();
+    }
+
+    private boolean isExplicit(QueryParams params) {
+        if (params == null) {
+            return false;
+        }
+        return params.getMultiQueryEnabled() != null || params.getHydeEnabled() != null
+                || params.getStepBackEnabled() != null || params.getCandidateMultiplier() != null
+                || params.getForceType() != null
+                || (params.getRouter() != null && !RouterType.ADAPTIVE.name().equalsIgnoreCase(params.getRouter()));
+    }
+
+    /**
+     * 策略映射结果对应的臂：无数据时沿用，不在臂集合中时不参与自适应路由。
+     */
+    private RouteArm defaultArm(QueryIntent intent, QueryStrategy strategy) {
+        RetrievalStrategy retrieval = strategy.getRetrieval();
+        RouteArm.Rewrite rewrite = RouteArm.Rewrite.NONE;
+        if (retrieval != null && retrieval.getMultiQueryEnabled() == Boolean.TRUE) {
+            rewrite = RouteArm.Rewrite.MULTI_QUERY;
+        } else if ((retrieval != null && retrieval.getStepBackEnabled() == Boolean.TRUE)
+                || intent.getTaskType() == TaskType.ANALYSIS) {
+            rewrite = RouteArm.Rewrite.STEP_BACK;
+        } else if (retrieval != null && retrieval.getHydeEnabled() == Boolean.TRUE) {
+            rewrite = RouteArm.Rewrite.HYDE;
+        }
+        return nearestArm(rewrite, defaultCandidateMultiplier);
+    }
+
+    private RouteArm nearestArm(RouteArm.Rewrite rewrite, int multiplier) {
+        RouteArm nearest = null;
+        for (RouteArm arm : bandit.arms()) {
+            if (arm.rewrite() == rewrite && (nearest == null
+                    || Math.abs(arm.candidateMultiplier() - multiplier) < Math.abs(nearest.candidateMultiplier() - multiplier))) {
+                nearest = arm;
+            }
+        }
+        return nearest;
+    }
+
+    private void apply(RouteArm arm, QueryStrategy strategy, QueryParams params) {
+        RetrievalStrategy retrieval = strategy.getRetrieval();
+        if (retrieval != null) {
+            retrieval.setMultiQueryEnabled(arm.rewrite() == RouteArm.Rewrite.MULTI_QUERY);
+            retrieval.setStepBackEnabled(arm.rewrite() == RouteArm.Rewrite.STEP_BACK);
+            retrieval.setHydeEnabled(arm.rewrite() == RouteArm.Rewrite.HYDE);
+        }
+        strategy.setProcessorType(arm.rewrite().getProcessorType());
+        if (params != null) {
+            params.setCandidateMultiplier(arm.candidateMultiplier());
+        }
+    }
+
+    /**
+     * 在发布线程上只提取指标并入队，统计更新由学习线程完成。
+     */
+    @EventListener
+    public void onOutcome(QueryOutcomeEvent event) {
+        if (!running || event.getQueryId() == null || !pending.containsKey(event.getQueryId())) {
+            return;
+        }
+        Response response = event.getResponse();
+        Map<String, Object> metadata = response.getMetadata();
+        Outcome outcome;
+        if (event.getStage() == QueryOutcomeEvent.Stage.EVALUATED) {
+            outcome = new Outcome(event.getQueryId(), event.getStage(), 0, null, -1,
+                    evaluationQuality(response.getFaithfulnessScore(), response.getRelevanceScore()), false);
+        } else {
+            outcome = new Outcome(event.getQueryId(), event.getStage(),
+                    response.getLatencyMs() != null ? response.getLatencyMs() : 0,
+                    contextTokens(metadata),
+                    proxyQuality(response.getStatus(), asDouble(metadata, FallbackManager.META_CONTEXT_COUNT),
+                            asDouble(metadata, FallbackManager.META_TOP_SCORE)),
+                    -1,
+                    metadata != null && EvaluationQueue.STATUS_QUEUED.equals(metadata.get(EvaluationQueue.METADATA_KEY)));
+        }
+        if (!outcomes.offer(outcome)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void runLearner() {
+        warmStart();
+        long lastSweep = System.currentTimeMillis();
+        while (running) {
+            try {
+                Outcome outcome = outcomes.poll(1, TimeUnit.SECONDS);
+                if (outcome != null) {
+                    learn(outcome);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("自适应路由更新失败: {}", e.getMessage());
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+                pending.values().removeIf(p -> now - p.routedAt() > pendingTtlMs);
+                lastSweep = now;
+            }
+        }
+    }
+
+    private void learn(Outcome outcome) {
+        Pending routed = pending.get(outcome.queryId());
+        if (routed == null) {
+            return;
+        }
+        if (outcome.stage() == QueryOutcomeEvent.Stage.EVALUATED) {
+            pending.remove(outcome.queryId());
+            if (outcome.evaluationQuality() >= 0) {
+                bandit.recordQuality(routed.context(), routed.arm(), outcome.evaluationQuality());
+            }
+        } else {
+            // 落库后评估分数才会到达，未抽中评估的查询结束后即不再跟踪；Fallback 重试产生的第二次结束计入同一臂
+            if (!outcome.evaluationQueued()) {
+                pending.remove(outcome.queryId());
+            }
+            record(routed.context(), routed.arm(), outcome.latencyMs(), outcome.contextTokens(), outcome.proxyQuality());
+        }
+        learned.incrementAndGet();
+    }
+
+    private void record(String context, RouteArm arm, long latencyMs, Integer contextTokens, double proxyQuality) {
+        long tokens = (contextTokens != null ? contextTokens : 0)
+                + (arm.rewrite() == RouteArm.Rewrite.NONE ? 0 : rewriteTokenEstimate);
+        bandit.recordCost(context, arm, latencyMs, tokens);
+        if (proxyQuality >= 0) {
+            bandit.recordProxyQuality(context, arm, proxyQuality);
+        }
+    }
+
+    /**
+     * 回放最近的路由结果（按时间正序），进程重启后不必从零开始探索。
+     */
+    private void warmStart() {
+        if (warmStartLimit <= 0) {
+            return;
+        }
+        try {
+            List<RoutingOutcome> history = queryRepository.findRoutingOutcomes(ROUTE_TARGET_PREFIX, warmStartLimit);
+            for (int i = history.size() - 1; i >= 0; i--) {
+                RoutingOutcome outcome = history.get(i);
+                String target = outcome.routeTarget().substring(ROUTE_TARGET_PREFIX.length());
+                int split = target.indexOf(':');
+                RouteArm arm = split > 0 ? RouteArm.parse(target.substring(split + 1)) : null;
+                if (arm == null || outcome.latencyMs() == null) {
+                    continue;
+                }
+                String context = target.substring(0, split);
+                record(context, arm, outcome.latencyMs(), outcome.contextTokens(),
+                        proxyQuality(outcome.status(), null, outcome.retrievalTopScore()));
+                double quality = evaluationQuality(outcome.faithfulnessScore(), outcome.relevanceScore());
+                if (quality >= 0) {
+                    bandit.recordQuality(context, arm, quality);
+                }
+                warmStarted.incrementAndGet();
+            }
+            log.info("自适应路由已从历史记录回放 {} 条路由结果", warmStarted.get());
+        } catch (Exception e) {
+            log.warn("自适应路由历史回放失败，将从零开始学习: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 评估质量：忠实度与相关性（1-10）取低者归一化，缺少分数时返回 -1。
+     */
+    private static double evaluationQuality(Integer faithfulness, Integer relevance) {
+        if (faithfulness == null || relevance == null) {
+            return -1;
+        }
+        return Math.min(faithfulness, relevance) / 10.0;
+    }
+
+    /**
+     * 检索代理质量：失败或空上下文为 0，否则为最高检索分；缺少指标时返回 -1。
+     */
+    private static double proxyQuality(String status, Double contextCount, Double topScore) {
+        if ("FAILED".equals(status)) {
+            return 0;
+        }
+        if (contextCount != null && contextCount <= 0) {
+            return 0;
+        }
+        return topScore != null ? topScore : -1;
+    }
+
+    private static Integer contextTokens(Map<String, Object> metadata) {
+        if (metadata != null && metadata.get("contextPacking") instanceof Map<?, ?> packing
+                && packing.get("packedTokens") instanceof Number tokens) {
+            return tokens.intValue();
+        }
+        return null;
+    }
+
+    private static Double asDouble(Map<String, Object> metadata, String key) {
+        if (metadata != null && metadata.get(key) instanceof Number number) {
+            return number.doubleValue();
+        }
+        return null;
+    }
+
+    public AdaptiveStats getStats() {
+        return AdaptiveStats.builder()
+                .enabled(enabled)
+                .explorationRate(explorationRate)
+                .decisions(decisions.get())
+                .explored(explored.get())
+                .overridden(overridden.get())
+                .learned(learned.get())
+                .dropped(dropped.get())
+                .untracked(untracked.get())
+                .pending(pending.size())
+                .warmStarted(warmStarted.get())
+                .arms(bandit.snapshot())
+                .build();
+    }
+
+    @Override
+    public RouterType getType() {
+        return RouterType.ADAPTIVE;
+    }
+
+    /**
+     * 路由决策。
+     *
+     * @param context     上下文（任务类型）
+     * @param arm         选中的臂
+     * @param explored    是否为探索
+     * @param routeTarget 写入查询的路由目标
+     */
+    public record Decision(String context, RouteArm arm, boolean explored, String routeTarget) {
+    }
+
+    private record Pending(String context, RouteArm arm, long routedAt) {
+    }
+
+    private record Outcome(Long queryId, QueryOutcomeEvent.Stage stage, long latencyMs, Integer contextTokens,
+                           double proxyQuality, double evaluationQuality, boolean evaluationQueued) {
+    }
+
+    /**
+     * 自适应路由统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AdaptiveStats {
+        private boolean enabled;
+        private double explorationRate;
+        private long decisions;
+        private long explored;
+        private long overridden;
+        private long learned;
+        private long dropped;
+        private long untracked;
+        private int pending;
+        private long warmStarted;
+        private Map<String, Map<String, RouteBandit.View>> arms;
+    }
+}
@@ -0,0 +1,52 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+/**
+ * 负载降级等级，等级越高关闭的昂贵阶段越多：
+ * <ul>
+ *     <li>NORMAL：完整流程</li>
+ *     <li>LIGHT：关闭回答评估，候选倍数不超过 3</li>
+ *     <li>MODERATE：再关闭查询重写（多查询 / HyDE / Step-Back / Self-RAG），候选倍数不超过 2</li>
+ *     <li>SEVERE：再跳过 LLM 任务规划与 TaskPlan 执行，统一使用 BASIC 处理器，候选倍数为 1</li>
+ * </ul>
+ *
+ * @author jerryhotton
+ */
+public enum DegradationLevel {
+
+    NORMAL(true, true, true, Integer.MAX_VALUE),
+    LIGHT(false, true, true, 3),
+    MODERATE(false, false, true, 2),
+    SEVERE(false, false, false, 1);
+
+    private final boolean evaluationEnabled;
+    private final boolean rewriteEnabled;
+    private final boolean taskPlanEnabled;
+    private final int candidateMultiplierCap;
+
+    DegradationLevel(boolean evaluationEnabled, boolean rewriteEnabled, boolean taskPlanEnabled, int candidateMultiplierCap) {
+        this.evaluationEnabled = evaluationEnabled;
+        this.rewriteEnabled = rewriteEnabled;
+        this.taskPlanEnabled = taskPlanEnabled;
+        this.candidateMultiplierCap = candidateMultiplierCap;
+    }
+
+    public boolean isEvaluationEnabled() {
+        return evaluationEnabled;
+    }
+
+    public boolean isRewriteEnabled() {
+        return rewriteEnabled;
+    }
+
+    public boolean isTaskPlanEnabled() {
+        return taskPlanEnabled;
+    }
+
+    public int getCandidateMultiplierCap() {
+        return candidateMultiplierCap;
+    }
+
+    public DegradationLevel lower() {
+        return this == NORMAL ? NORMAL : values()[ordinal() - 1];
+    }
+}
@@ -0,0 +1,114 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.strategy.EvaluationStrategy;
+import cn.cug.sxy.ai.domain.rag.model.strategy.QueryStrategy;
+import cn.cug.sxy.ai.domain.rag.model.strategy.RetrievalStrategy;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.service.query.IQueryProcessor;
+import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 基于负载的查询路由：根据 {@link SystemLoadMonitor} 给出的降级等级逐级收缩处理深度。
+ * <p>
+ * 处理器选择委托给规则路由，严重过载时统一使用 BASIC 处理器；
+ * 编排流程在策略映射之后调用 {@link #degrade}，按等级关闭回答评估、查询重写与 TaskPlan，并限制候选倍数。
+ * 负载回落后等级逐级恢复，查询随之恢复完整流程。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service("loadBasedQueryRouter")
+public class LoadBasedQueryRouter implements IQueryRouter {
+
+    private final SystemLoadMonitor loadMonitor;
+    private final RuleBasedQueryRouter ruleBasedQueryRouter;
+    private final Map<QueryType, IQueryProcessor> processorMap;
+
+    @Value("${rag.retrieval.default-candidate-multiplier:4}")
+    private int defaultCandidateMultiplier;
+
+    public LoadBasedQueryRouter(SystemLoadMonitor loadMonitor,
+                                RuleBasedQueryRouter ruleBasedQueryRouter,
+                                List<IQueryProcessor> queryProcessors) {
+        this.loadMonitor = loadMonitor;
+        this.ruleBasedQueryRouter = ruleBasedQueryRouter;
+        this.processorMap = queryProcessors.stream()
+                .collect(Collectors.toMap(IQueryProcessor::getType, processor -> processor));
+    }
+
+    @Override
+    public IQueryProcessor route(Query query) {
+        return route(query, null);
+    }
+
+    @Override
+    public IQueryProcessor route(Query query, Map<String, Object> params) {
+        DegradationLevel level = loadMonitor.admit();
+        if (query.getMetadata() != null) {
+            capCandidateMultiplier(query.getMetadata(), level);
+        }
+        if (level.isTaskPlanEnabled()) {
+            return ruleBasedQueryRouter.route(query, params);
+        }
+        query.setQueryType(QueryType.BASIC.name());
+        query.setRouteTarget(QueryType.BASIC.name());
+        log.debug("查询[{}]负载降级({})，路由至[BASIC]", query.getId(), level);
+        return processorMap.get(QueryType.BASIC);
+    }
+
+    /**
+     * 按当前降级等级收缩本次查询的处理深度，直接修改本次请求的策略与参数。
+     * TaskPlan 通过清空 strategy.taskPlan 跳过（意图对象可能来自缓存，不做修改），编排流程以策略中的 TaskPlan 为准。
+     *
+     * @return 本次查询采用的降级等级
+     */
+    public DegradationLevel degrade(QueryStrategy strategy, QueryParams params) {
+        DegradationLevel level = loadMonitor.admit();
+        if (level == DegradationLevel.NORMAL) {
+            return level;
+        }
+        EvaluationStrategy evaluation = strategy.getEvaluation();
+        if (!level.isEvaluationEnabled() && evaluation != null) {
+            evaluation.setEnabled(false);
+        }
+        RetrievalStrategy retrieval = strategy.getRetrieval();
+        if (!level.isRewriteEnabled() && retrieval != null) {
+            retrieval.setMultiQueryEnabled(false);
+            retrieval.setHydeEnabled(false);
+            retrieval.setStepBackEnabled(false);
+            retrieval.setSelfRagEnabled(false);
+        }
+        if (!level.isTaskPlanEnabled()) {
+            strategy.setTaskPlan(null);
+            strategy.setProcessorType(QueryType.BASIC);
+        }
+        if (params != null) {
+            capCandidateMultiplier(params, level);
+        }
+        return level;
+    }
+
+    public SystemLoadMonitor.LoadStats getStats() {
+        return loadMonitor.getStats();
+    }
+
+    private void capCandidateMultiplier(QueryParams params, DegradationLevel level) {
+        int current = params.getCandidateMultiplier() != null ? params.getCandidateMultiplier() : defaultCandidateMultiplier;
+        if (current > level.getCandidateMultiplierCap()) {
+            params.setCandidateMultiplier(level.getCandidateMultiplierCap());
+        }
+    }
+
+    @Override
+    public RouterType getType() {
+        return RouterType.LOAD_BASED;
+    }
+}
@@ -0,0 +1,61 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+
+/**
+ * 自适应路由的一个可选臂：查询重写方式 + 候选倍数。
+ * 当前只有 BASIC 一个查询处理器，处理深度的差异体现在重写与召回宽度上，处理器类型仅作为记录标签。
+ *
+ * @param rewrite             查询重写方式
+ * @param candidateMultiplier 召回候选倍数
+ * @author jerryhotton
+ */
+public record RouteArm(Rewrite rewrite, int candidateMultiplier) {
+
+    public enum Rewrite {
+        NONE(QueryType.BASIC),
+        MULTI_QUERY(QueryType.MULTI_QUERY),
+        STEP_BACK(QueryType.STEP_BACK),
+        HYDE(QueryType.HYDE);
+
+        private final QueryType processorType;
+
+        Rewrite(QueryType processorType) {
+            this.processorType = processorType;
+        }
+
+        public QueryType getProcessorType() {
+            return processorType;
+        }
+    }
+
+    /**
+     * 臂标识，如 MULTI_QUERY:4
+     */
+    public String key() {
+        return rewrite.name() + ':' + candidateMultiplier;
+    }
+
+    /**
+     * 解析 {@link #key()}，格式不合法时返回 null。
+     */
+    public static RouteArm parse(String key) {
+        if (key == null) {
+            return null;
+        }
+        int split = key.lastIndexOf(':');
+        if (split <= 0) {
+            return null;
+        }
+        try {
+            return new RouteArm(Rewrite.valueOf(key.substring(0, split)), Integer.parseInt(key.substring(split + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
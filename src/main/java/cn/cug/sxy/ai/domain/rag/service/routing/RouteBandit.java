@@ -0,0 +1,247 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * 按上下文（意图任务类型）划分的多臂老虎机：在质量可接受的臂中选择延迟与Token开销最低的臂。
+ * <p>
+ * 1. 每个上下文、每个臂维护折扣后的样本量、平均延迟、平均Token与平均质量，旧样本按折扣因子逐步淡出，适应数据与模型变化
+ * 2. 质量分两套统计：评估质量（与可接受质量同一量纲）与检索代理质量（最高检索分，量纲不同），
+ *    利用与探索判断只看评估质量，代理质量单独统计，仅供观测
+ * 3. 利用：评估质量下置信界（均值 - confidence / sqrt(样本量)）不低于可接受质量的臂中取开销最低者；
+ *    没有达标的臂时，默认臂样本不足则沿用默认臂，否则取质量均值最高者
+ * 4. 探索：以 explorationRate 的概率选评估样本最少的臂，质量上置信界已低于可接受质量的臂不再探索，探索比例有上限
+ * <p>
+ * 选择在请求线程执行，只读取统计；更新由单个学习线程执行，单臂统计的读写通过臂对象加锁保持一致。
+ *
+ * @author jerryhotton
+ */
+public final class RouteBandit {
+
+    private final List<RouteArm> arms;
+    private final Settings settings;
+    private final Map<String, ArmStats[]> contexts = new ConcurrentHashMap<>();
+
+    public RouteBandit(List<RouteArm> arms, Settings settings) {
+        if (arms.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个路由臂");
+        }
+        this.arms = List.copyOf(arms);
+        this.settings = settings;
+    }
+
+    public List<RouteArm> arms() {
+        return arms;
+    }
+
+    /**
+     * 为上下文选择一个臂。
+     *
+     * @param context      上下文（任务类型）
+     * @param defaultArm   无足够数据时沿用的臂（通常是策略映射的结果），必须属于臂集合
+     * @param allowExplore 是否允许探索（系统降级时不探索）
+     */
+    public Choice choose(String context, RouteArm defaultArm, boolean allowExplore, RandomGenerator random) {
+        ArmStats[] stats = contexts.get(context);
+        if (stats == null) {
+            return allowExplore && random.nextDouble() < settings.explorationRate()
+                    ? new Choice(leastTried(null, random), true)
+                    : new Choice(defaultArm, false);
+        }
+        View[] views = new View[stats.length];
+        for (int i = 0; i < stats.length; i++) {
+            views[i] = stats[i].view();
+        }
+        if (allowExplore && random.nextDouble() < settings.explorationRate()) {
+            return new Choice(leastTried(views, random), true);
+        }
+        return new Choice(exploit(views, defaultArm), false);
+    }
+
+    private RouteArm exploit(View[] views, RouteArm defaultArm) {
+        int cheapest = -1;
+        double cheapestCost = Double.POSITIVE_INFINITY;
+        int bestQuality = -1;
+        for (int i = 0; i < views.length; i++) {
+            View view = views[i];
+            if (view.qualityWeight() < settings.minQualitySamples() || view.samples() <= 0) {
+                continue;
+            }
+            if (bestQuality < 0 || view.quality() > views[bestQuality].quality()) {
+                bestQuality = i;
+            }
+            if (lowerBound(view) >= settings.acceptableQuality()) {
+                double cost = cost(view);
+                if (cost < cheapestCost) {
+                    cheapestCost = cost;
+                    cheapest = i;
+                }
+            }
+        }
+        if (cheapest >= 0) {
+            return arms.get(cheapest);
+        }
+        int defaultIndex = arms.indexOf(defaultArm);
+        if (bestQuality < 0 || defaultIndex < 0 || views[defaultIndex].qualityWeight() < settings.minQualitySamples()) {
+            return defaultArm;
+        }
+        return arms.get(bestQuality);
+    }
+
+    private RouteArm leastTried(View[] views, RandomGenerator random) {
+        double fewest = Double.POSITIVE_INFINITY;
+        List<RouteArm> candidates = new ArrayList<>();
+        for (int i = 0; i < arms.size(); i++) {
+            double weight = views == null ? 0 : views[i].qualityWeight();
+            if (views != null && weight >= settings.minQualitySamples() && upperBound(views[i]) < settings.acceptableQuality()) {
+                continue;
+            }
+            if (weight < fewest) {
+                fewest = weight;
+                candidates.clear();
+            }
+            if (weight == fewest) {
+                candidates.add(arms.get(i));
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(arms);
+        }
+        return candidates.get(random.nextInt(candidates.size()));
+    }
+
+    /**
+     * 记录一次执行的延迟与Token开销。
+     */
+    public void recordCost(String context, RouteArm arm, long latencyMs, long tokens) {
+        ArmStats stats = statsOf(context, arm);
+        if (stats != null) {
+            stats.recordCost(latencyMs, tokens, settings.discount());
+        }
+    }
+
+    /**
+     * 记录一个评估质量样本（0-1），参与利用与探索判断。
+     */
+    public void recordQuality(String context, RouteArm arm, double quality) {
+        ArmStats stats = statsOf(context, arm);
+        if (stats != null) {
+            stats.recordQuality(Math.max(0, Math.min(1, quality)), settings.discount());
+        }
+    }
+
+    /**
+     * 记录一个检索代理质量样本（0-1）。与评估质量量纲不同，单独统计，不参与选择。
+     */
+    public void recordProxyQuality(String context, RouteArm arm, double quality) {
+        ArmStats stats = statsOf(context, arm);
+        if (stats != null) {
+            stats.recordProxyQuality(Math.max(0, Math.min(1, quality)), settings.discount());
+        }
+    }
+
+    private ArmStats statsOf(String context, RouteArm arm) {
+        int index = arms.indexOf(arm);
+        if (index < 0) {
+            return null;
+        }
+        return contexts.computeIfAbsent(context, k -> {
+            ArmStats[] stats = new ArmStats[arms.size()];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new ArmStats();
+            }
+            return stats;
+        })[index];
+    }
+
+    private double lowerBound(View view) {
+        return view.quality() - settings.confidence() / Math.sqrt(view.qualityWeight());
+    }
+
+    private double upperBound(View view) {
+        return view.quality() + settings.confidence() / Math.sqrt(view.qualityWeight());
+    }
+
+    private double cost(View view) {
+        return view.latencyMs() / settings.latencyTargetMs()
+                + settings.tokenWeight() * view.tokens() / settings.tokenTarget();
+    }
+
+    /**
+     * 各上下文、各臂的统计快照。
+     */
+    public Map<String, Map<String, View>> snapshot() {
+        Map<String, Map<String, View>> result = new LinkedHashMap<>();
+        contexts.forEach((context, stats) -> {
+            Map<String, View> views = new LinkedHashMap<>();
+            for (int i = 0; i < stats.length; i++) {
+                View view = stats[i].view();
+                if (view.samples() > 0 || view.qualityWeight() > 0 || view.proxyWeight() > 0) {
+                    views.put(arms.get(i).key(), view);
+                }
+            }
+            result.put(context, views);
+        });
+        return result;
+    }
+
+    /**
+     * @param acceptableQuality 可接受质量（0-1）
+     * @param minQualitySamples 评估质量样本（折扣后权重）达到此值才参与利用判断
+     * @param confidence        置信界宽度系数
+     * @param explorationRate   探索概率上限
+     * @param latencyTargetMs   延迟归一化基准
+     * @param tokenTarget       Token归一化基准
+     * @param tokenWeight       Token开销相对延迟的权重
+     * @param discount          每次更新时旧样本的折扣因子（0-1]
+     */
+    public record Settings(double acceptableQuality, double minQualitySamples, double confidence, double explorationRate,
+                           double latencyTargetMs, double tokenTarget, double tokenWeight, double discount) {
+    }
+
+    public record Choice(RouteArm arm, boolean explored) {
+    }
+
+    /**
+     * 单臂统计快照：qualityWeight / quality 为评估质量，proxyWeight / proxyQuality 为检索代理质量。
+     */
+    public record View(double samples, double latencyMs, double tokens, double qualityWeight, double quality,
+                       double proxyWeight, double proxyQuality) {
+    }
+
+    private static final class ArmStats {
+
+        private double samples;
+        private double latencyMs;
+        private double tokens;
+        private double qualityWeight;
+        private double quality;
+        private double proxyWeight;
+        private double proxyQuality;
+
+        synchronized void recordCost(long latency, long tokenCount, double discount) {
+            samples = samples * discount + 1;
+            latencyMs += (latency - latencyMs) / samples;
+            tokens += (tokenCount - tokens) / samples;
+        }
+
+        synchronized void recordQuality(double value, double discount) {
+            qualityWeight = qualityWeight * discount + 1;
+            quality += (value - quality) / qualityWeight;
+        }
+
+        synchronized void recordProxyQuality(double value, double discount) {
+            proxyWeight = proxyWeight * discount + 1;
+            proxyQuality += (value - proxyQuality) / proxyWeight;
+        }
+
+        synchronized View view() {
+            return new View(samples, latencyMs, tokens, qualityWeight, quality, proxyWeight, proxyQuality);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 语义路由示例向量矩阵，构建后不可变、线程安全。
+ * <p>
+ * 所有示例向量预先归一化后按行连续存放在一个 float[] 中（行主序），另以 int[] 记录每行所属路由；
+ * 打分时查询向量只归一化一次，一次顺序扫描完成全部点积，同时维护最高分路由与次高分路由（不同路由），
+ * 得分即余弦相似度，次高分用于判断路由区分度（min-difference）。
+ *
+ * @param <R> 路由标识
+ * @author jerryhotton
+ */
+@Slf4j
+public final class RouteMatrix<R> {
+
+    private static final RouteMatrix<?> EMPTY = new RouteMatrix<>(new float[0], new int[0], List.of(), 0);
+
+    private final float[] data;
+    private final int[] rowRoutes;
+    private final List<R> routes;
+    private final int dimensions;
+
+    private RouteMatrix(float[] data, int[] rowRoutes, List<R> routes, int dimensions) {
+        this.data = data;
+        this.rowRoutes = rowRoutes;
+        this.routes = routes;
+        this.dimensions = dimensions;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <R> RouteMatrix<R> empty() {
+        return (RouteMatrix<R>) EMPTY;
+    }
+
+    public static <R> Builder<R> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * 计算查询向量与所有示例的余弦相似度，返回最高分与次高分的路由（各路由取其示例中的最大值）。
+     * 矩阵为空、维度不一致或查询为零向量时返回 {@link Match#NONE}。
+     */
+    @SuppressWarnings("unchecked")
+    public Match<R> score(float[] query) {
+        if (rowRoutes.length == 0 || query == null || query.length != dimensions) {
+            return (Match<R>) Match.NONE;
+        }
+        float norm = norm(query, 0, dimensions);
+        if (norm == 0f) {
+            return (Match<R>) Match.NONE;
+        }
+        float[] q = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            q[i] = query[i] / norm;
+        }
+
+        int bestRoute = -1;
+        int secondRoute = -1;
+        float best = Float.NEGATIVE_INFINITY;
+        float second = Float.NEGATIVE_INFINITY;
+        for (int row = 0, offset = 0; row < rowRoutes.length; row++, offset += dimensions) {
+            float score = dot(q, data, offset, dimensions);
+            int route = rowRoutes[row];
+            if (route == bestRoute) {
+                if (score > best) {
+                    best = score;
+                }
+            } else if (score > best) {
+                second = best;
+                secondRoute = bestRoute;
+                best = score;
+                bestRoute = route;
+            } else if (score > second) {
+                second = score;
+                secondRoute = route;
+            }
+        }
+        return new Match<>(routes.get(bestRoute), best,
+                secondRoute < 0 ? null : routes.get(secondRoute), second);
+    }
+
+    public int rows() {
+        return rowRoutes.length;
+    }
+
+    public int routeCount() {
+        return routes.size();
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 八路累加展开：打破单一累加器的依赖链，便于 JIT 流水化执行
+     */
+    private static float dot(float[] q, float[] data, int offset, int length) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f, s4 = 0f, s5 = 0f, s6 = 0f, s7 = 0f;
+        int i = 0;
+        int bound = length & ~7;
+        for (; i < bound; i += 8) {
+            int j = offset + i;
+            s0 += q[i] * data[j];
+            s1 += q[i + 1] * data[j + 1];
+            s2 += q[i + 2] * data[j + 2];
+            s3 += q[i + 3] * data[j + 3];
+            s4 += q[i + 4] * data[j + 4];
+            s5 += q[i + 5] * data[j + 5];
+            s6 += q[i + 6] * data[j + 6];
+            s7 += q[i + 7] * data[j + 7];
+        }
+        for (; i < length; i++) {
+            s0 += q[i] * data[offset + i];
+        }
+        return ((s0 + s1) + (s2 + s3)) + ((s4 + s5) + (s6 + s7));
+    }
+
+    private static float norm(float[] vector, int offset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            float v = vector[offset + i];
+            sum += v * v;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * 打分结果。
+     *
+     * @param best        最高分路由，无结果时为 null
+     * @param bestScore   最高分（余弦相似度）
+     * @param runnerUp    次高分路由（与 best 不同），只有一个路由时为 null
+     * @param runnerUpScore 次高分，runnerUp 为 null 时为负无穷
+     */
+    public record Match<R>(R best, float bestScore, R runnerUp, float runnerUpScore) {
+
+        static final Match<?> NONE = new Match<>(null, Float.NEGATIVE_INFINITY, null, Float.NEGATIVE_INFINITY);
+
+        public boolean isEmpty() {
+            return best == null;
+        }
+
+        /**
+         * 最高分与次高分的差值；只有一个路由时为正无穷
+         */
+        public double margin() {
+            return runnerUp == null ? Double.POSITIVE_INFINITY : (double) bestScore - runnerUpScore;
+        }
+    }
+
+    /**
+     * 构建器：按加入顺序收集示例向量，零向量与维度不一致的向量被跳过。
+     */
+    public static final class Builder<R> {
+
+        private final Map<R, Integer> routeIndex = new LinkedHashMap<>();
+        private final List<float[]> vectors = new ArrayList<>();
+        private final List<Integer> vectorRoutes = new ArrayList<>();
+        private int dimensions = -1;
+
+        private Builder() {
+        }
+
+        public Builder<R> add(R route, float[] vector) {
+            if (route == null || vector == null || vector.length == 0) {
+                return this;
+            }
+            if (dimensions < 0) {
+                dimensions = vector.length;
+            } else if (vector.length != dimensions) {
+                log.warn("路由示例向量维度不一致，已跳过: route={}, {} != {}", route, vector.length, dimensions);
+                return this;
+            }
+            if (norm(vector, 0, vector.length) == 0f) {
+                return this;
+            }
+            vectors.add(vector);
+            vectorRoutes.add(routeIndex.computeIfAbsent(route, k -> routeIndex.size()));
+            return this;
+        }
+
+        public RouteMatrix<R> build() {
+            if (vectors.isEmpty()) {
+                return empty();
+            }
+            float[] data = new float[vectors.size() * dimensions];
+            int[] rowRoutes = new int[vectors.size()];
+            for (int row = 0; row < vectors.size(); row++) {
+                float[] vector = vectors.get(row);
+                float norm = norm(vector, 0, dimensions);
+                int offset = row * dimensions;
+                for (int i = 0; i < dimensions; i++) {
+                    data[offset + i] = vector[i] / norm;
+                }
+                rowRoutes[row] = vectorRoutes.get(row);
+            }
+            return new RouteMatrix<>(data, rowRoutes, List.copyOf(routeIndex.keySet()), dimensions);
+        }
+    }
+}
@@ -29,8 +29,8 @@ public class SemanticQueryRouter implements IQueryRouter {
     // 查询类型的示例问题，用于计算语义相似度
     private final Map<QueryType, List<String>> queryTypeExamples;
 
-    // 查询类型的嵌入向量缓存
-    private final Map<QueryType, float[][]> queryTypeEmbeddings;
+    // 查询类型示例向量矩阵（归一化、连续存放），预计算完成后整体替换
+    private volatile RouteMatrix<QueryType> routeMatrix = RouteMatrix.empty();
 
     // 相似度阈值
     @Value("${rag.routing.semantic.threshold:0.75}")
@@ -62,8 +62,6 @@ public class SemanticQueryRouter implements IQueryRouter {
                 .collect(Collectors.toMap(IQueryProcessor::getType, processor -> processor));
         // 初始化示例问题
         this.queryTypeExamples = initializeQueryTypeExamples();
-        // 初始化嵌入向量缓存
-        this.queryTypeEmbeddings = new EnumMap<>(QueryType.class);
         log.info("已注册{}个查询处理器, 语义路由预计算: {}", queryProcessors.size(), precomputeOnStartup);
     }
 
@@ -153,49 +151,28 @@ public class SemanticQueryRouter implements IQueryRouter {
                 } catch (Exception ignore) {
                 }
             }
-            // 计算语义相似度（一次嵌入，多次对比）
-            String queryText = query.getOriginalText();
-            float[] queryVector = embeddingService.generateEmbedding(queryText);
-            Map<QueryType, Double> similarities = new EnumMap<>(QueryType.class);
-            for (Map.Entry<QueryType, float[][]> entry : queryTypeEmbeddings.entrySet()) {
-                QueryType qType = entry.getKey();
-                float[][] examples = entry.getValue();
-                double maxSim = 0.0;
-                for (float[] ex : examples) {
-                    double sim = calculateCosineSimilarity(queryVector, ex);
-                    if (sim > maxSim) {
-                        maxSim = sim;
-                    }
-                }
-                similarities.put(qType, maxSim);
-            }
-            // 选择最高相似度并应用阈值/差异规则
-            Map.Entry<QueryType, Double> highest = similarities.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .orElse(new AbstractMap.SimpleEntry<>(QueryType.BASIC, 0.0));
-            if (highest.getValue() < thr) {
+            // 计算语义相似度（一次嵌入，一次扫描全部示例）
+            RouteMatrix.Match<QueryType> match = routeMatrix.score(embeddingService.generateEmbedding(query.getOriginalText()));
+            double highest = match.isEmpty() ? 0.0 : match.bestScore();
+            if (highest < thr) {
                 query.setQueryType(QueryType.BASIC.name());
                 query.setRouteTarget(QueryType.BASIC.name());
-                log.info("查询[{}]相似度({})低于阈值({})，采用BASIC", query.getId(), String.format("%.3f", highest.getValue()), String.format("%.3f", thr));
+                log.info("查询[{}]相似度({})低于阈值({})，采用BASIC", query.getId(), String.format("%.3f", highest), String.format("%.3f", thr));
 
                 return processorMap.getOrDefault(QueryType.BASIC, processorMap.values().stream().findFirst().orElse(null));
             }
-            Optional<Double> second = similarities.entrySet().stream()
-                    .filter(e -> e.getKey() != highest.getKey())
-                    .map(Map.Entry::getValue)
-                    .max(Double::compare);
-            if (second.isPresent() && (highest.getValue() - second.get()) < minDiff) {
+            if (match.margin() < minDiff) {
                 query.setQueryType(QueryType.BASIC.name());
                 query.setRouteTarget(QueryType.BASIC.name());
                 log.info("查询[{}]相似度差异({}) < 最小差异({})，采用BASIC", query.getId(),
-                        String.format("%.3f", (highest.getValue() - second.get())), String.format("%.3f", minDiff));
+                        String.format("%.3f", match.margin()), String.format("%.3f", minDiff));
 
                 return processorMap.getOrDefault(QueryType.BASIC, processorMap.values().stream().findFirst().orElse(null));
             }
-            QueryType targetType = highest.getKey();
+            QueryType targetType = match.best();
             query.setQueryType(targetType.name());
             query.setRouteTarget(targetType.name());
-            log.info("查询[{}]语义路由至[{}] (sim={})", query.getId(), targetType, String.format("%.3f", highest.getValue()));
+            log.info("查询[{}]语义路由至[{}] (sim={})", query.getId(), targetType, String.format("%.3f", highest));
 
             return processorMap.getOrDefault(targetType, processorMap.get(QueryType.BASIC));
         } catch (Exception e) {
@@ -217,75 +194,27 @@ public class SemanticQueryRouter implements IQueryRouter {
         String queryText = query.getOriginalText();
 
         try {
-            // 生成查询文本的嵌入向量
-            float[] queryVector = embeddingService.generateEmbedding(queryText);
-            // 计算查询文本与各个类型示例之间的语义相似度
-            Map<QueryType, Double> similarities = new EnumMap<>(QueryType.class);
-            for (Map.Entry<QueryType, float[][]> entry : queryTypeEmbeddings.entrySet()) {
-                QueryType queryType = entry.getKey();
-                float[][] embeddings = entry.getValue();
-                // 计算与当前类型所有示例的最大相似度
-                double maxSimilarity = 0.0;
-                for (float[] embedding : embeddings) {
-                    double similarity = calculateCosineSimilarity(queryVector, embedding);
-                    maxSimilarity = Math.max(maxSimilarity, similarity);
-                }
-                similarities.put(queryType, maxSimilarity);
-            }
-            // 找出相似度最高的类型
-            Map.Entry<QueryType, Double> highestSimilarity = similarities.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .orElse(new AbstractMap.SimpleEntry<>(QueryType.BASIC, 0.0));
+            // 生成查询文本的嵌入向量，一次扫描得到相似度最高与次高的类型
+            RouteMatrix.Match<QueryType> match = routeMatrix.score(embeddingService.generateEmbedding(queryText));
             // 检查相似度是否超过阈值
-            if (highestSimilarity.getValue() < similarityThreshold) {
+            if (match.isEmpty() || match.bestScore() < similarityThreshold) {
                 log.debug("查询相似度低于阈值({})，使用基础处理器", similarityThreshold);
                 return QueryType.BASIC;
             }
             // 检查与第二高相似度的差异是否足够明显
-            Optional<Double> secondHighest = similarities.entrySet().stream()
-                    .filter(e -> e.getKey() != highestSimilarity.getKey())
-                    .map(Map.Entry::getValue)
-                    .max(Double::compare);
-            if (secondHighest.isPresent() &&
-                    (highestSimilarity.getValue() - secondHighest.get() < minSimilarityDifference)) {
-                log.debug("相似度差异不够明显({})，使用基础处理器",
-                        highestSimilarity.getValue() - secondHighest.get());
+            if (match.margin() < minSimilarityDifference) {
+                log.debug("相似度差异不够明显({})，使用基础处理器", match.margin());
                 return QueryType.BASIC;
             }
-            log.debug("查询被路由到类型: {}, 相似度: {}",
-                    highestSimilarity.getKey(), highestSimilarity.getValue());
+            log.debug("查询被路由到类型: {}, 相似度: {}", match.best(), match.bestScore());
 
-            return highestSimilarity.getKey();
+            return match.best();
         } catch (Exception e) {
             log.error("语义路由过程中发生错误，降级至基础处理器", e);
             return QueryType.BASIC;
         }
     }
 
-    /**
-     * 计算两个向量之间的余弦相似度
-     *
-     * @param vec1 向量1
-     * @param vec2 向量2
-     * @return 余弦相似度值，范围[-1,1]
-     */
-    private double calculateCosineSimilarity(float[] vec1, float[] vec2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        for (int i = 0; i < vec1.length; i++) {
-            dotProduct += vec1[i] * vec2[i];
-            norm1 += vec1[i] * vec1[i];
-            norm2 += vec2[i] * vec2[i];
-        }
-        // 避免除以0
-        if (norm1 <= 0 || norm2 <= 0) {
-            return 0.0;
-        }
-
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
-    }
-
     /**
      * 为每种查询类型初始化示例问题
      *
@@ -365,25 +294,23 @@ public class SemanticQueryRouter implements IQueryRouter {
     }
 
     /**
-     * 预计算所有示例问题的嵌入向量
+     * 预计算所有示例问题的嵌入向量，打包为一个路由矩阵；生成失败的示例直接跳过
      */
     private void precomputeEmbeddings() {
+        RouteMatrix.Builder<QueryType> builder = RouteMatrix.builder();
         for (Map.Entry<QueryType, List<String>> entry : queryTypeExamples.entrySet()) {
             QueryType queryType = entry.getKey();
-            List<String> examples = entry.getValue();
-            float[][] embeddings = new float[examples.size()][];
-            for (int i = 0; i < examples.size(); i++) {
+            for (String example : entry.getValue()) {
                 try {
-                    embeddings[i] = embeddingService.generateEmbedding(examples.get(i));
+                    builder.add(queryType, embeddingService.generateEmbedding(example));
                 } catch (Exception e) {
-                    log.error("为示例问题生成嵌入向量时出错: {}", examples.get(i), e);
-                    // 使用空向量代替
-                    embeddings[i] = new float[embeddingService.getDimensions()];
+                    log.error("为示例问题生成嵌入向量时出错: {}", example, e);
                 }
             }
-
-            queryTypeEmbeddings.put(queryType, embeddings);
         }
+        RouteMatrix<QueryType> matrix = builder.build();
+        routeMatrix = matrix;
+        log.info("语义路由矩阵构建完成: {} 个类型, {} 个示例, 维度 {}", matrix.routeCount(), matrix.rows(), matrix.dimensions());
     }
 
     @Override
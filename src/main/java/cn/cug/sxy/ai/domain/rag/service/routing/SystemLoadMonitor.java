@@ -0,0 +1,263 @@
+package cn.cug.sxy.ai.domain.rag.service.routing;
+
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 系统负载监控：根据实时信号计算负载压力并给出降级等级。
+ * <p>
+ * 1. 压力取以下比值的最大值：查询重写 / 任务执行 / 意图检测线程池的队列占用率，模型网关在途调用数占总并发配额的比例，
+ *    回答生成同步调用 P95 延迟与目标之比，流式回答首个片段 P95 延迟（TTFT）与目标之比；
+ *    延迟只统计最近 latency-window-ms 内的调用（流式回答的总时长随回答长度变化，不作为负载信号），空闲后延迟比值归零
+ * 2. 采样按需进行（距上次采样超过采样间隔时由调用线程顺带完成），不额外占用线程
+ * 3. 压力升高时立即升到对应等级；压力需低于当前等级阈值减去回差并持续恢复窗口后才降一级，逐级恢复完整流程，避免抖动
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class SystemLoadMonitor {
+
+    private static final DegradationLevel[] LEVELS = DegradationLevel.values();
+
+    private final ChatGateway chatGateway;
+    private final Map<String, Executor> executors = new LinkedHashMap<>();
+
+    @Value("${rag.routing.load.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.routing.load.sample-interval-ms:500}")
+    private long sampleIntervalMs;
+
+    @Value("${rag.routing.load.target-p95-ms:8000}")
+    private long targetP95Ms;
+
+    @Value("${rag.routing.load.target-first-token-p95-ms:3000}")
+    private long targetFirstTokenP95Ms;
+
+    @Value("${rag.routing.load.latency-window-ms:60000}")
+    private long latencyWindowMs;
+
+    @Value("${rag.routing.load.thresholds.light:0.6}")
+    private double lightThreshold;
+
+    @Value("${rag.routing.load.thresholds.moderate:0.8}")
+    private double moderateThreshold;
+
+    @Value("${rag.routing.load.thresholds.severe:0.95}")
+    private double severeThreshold;
+
+    @Value("${rag.routing.load.hysteresis:0.1}")
+    private double hysteresis;
+
+    @Value("${rag.routing.load.recovery-ms:10000}")
+    private long recoveryMs;
+
+    private volatile DegradationLevel level = DegradationLevel.NORMAL;
+    private volatile LoadSample lastSample = LoadSample.builder().build();
+    private volatile long lastSampleAt;
+    private final AtomicBoolean sampling = new AtomicBoolean();
+    // 压力持续低于降级阈值的起始时间，0 表示未开始；仅在 sampling 持有期间读写
+    private long belowSince;
+
+    private final AtomicLongArray queriesByLevel = new AtomicLongArray(LEVELS.length);
+    private final AtomicLongArray escalations = new AtomicLongArray(LEVELS.length);
+
+    public SystemLoadMonitor(ChatGateway chatGateway,
+                             @Qualifier("queryRewriteExecutor") Executor queryRewriteExecutor,
+                             @Qualifier("taskExecutionExecutor") Executor taskExecutionExecutor,
+                             @Qualifier("intentDetectionExecutor") Executor intentDetectionExecutor) {
+        this.chatGateway = chatGateway;
+        this.executors.put("queryRewrite", queryRewriteExecutor);
+        this.executors.put("taskExecution", taskExecutionExecutor);
+        this.executors.put("intentDetection", intentDetectionExecutor);
+    }
+
+    /**
+     * 当前降级等级；距上次采样超过采样间隔时先重新采样。
+     */
+    public DegradationLevel currentLevel() {
+        if (!enabled) {
+            return DegradationLevel.NORMAL;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastSampleAt >= sampleIntervalMs && sampling.compareAndSet(false, true)) {
+            try {
+                LoadSample sample = sample();
+                lastSample = sample;
+                lastSampleAt = now;
+                updateLevel(sample.getPressure(), now);
+            } catch (Exception e) {
+                log.debug("负载采样失败: {}", e.getMessage());
+            } finally {
+                sampling.set(false);
+            }
+        }
+        return level;
+    }
+
+    /**
+     * 为一次查询取得降级等级并计入统计。
+     */
+    public DegradationLevel admit() {
+        DegradationLevel current = currentLevel();
+        queriesByLevel.incrementAndGet(current.ordinal());
+        return current;
+    }
+
+    private LoadSample sample() {
+        double queueRatio = 0;
+        Map<String, Double> queues = new LinkedHashMap<>();
+        for (Map.Entry<String, Executor> entry : executors.entrySet()) {
+            if (entry.getValue() instanceof ThreadPoolTaskExecutor pool && pool.getQueueCapacity() > 0
+                    && pool.getQueueCapacity() < Integer.MAX_VALUE) {
+                double ratio = (double) pool.getQueueSize() / pool.getQueueCapacity();
+                queues.put(entry.getKey(), ratio);
+                queueRatio = Math.max(queueRatio, ratio);
+            }
+        }
+
+        ChatGateway.GatewayStats gatewayStats = chatGateway.getStats();
+        int capacity = gatewayStats.getPurposes().values().stream()
+                .mapToInt(ChatGateway.PurposeStats::getMaxConcurrent).sum();
+        double inFlightRatio = capacity > 0 ? (double) gatewayStats.getInFlight() / capacity : 0;
+
+        long p95 = chatGateway.p95LatencyMs(LlmPurpose.GENERATION, latencyWindowMs);
+        double latencyRatio = targetP95Ms > 0 ? (double) p95 / targetP95Ms : 0;
+        long firstTokenP95 = chatGateway.p95FirstTokenMs(LlmPurpose.GENERATION, latencyWindowMs);
+        double firstTokenRatio = targetFirstTokenP95Ms > 0 ? (double) firstTokenP95 / targetFirstTokenP95Ms : 0;
+
+        return LoadSample.builder()
+                .pressure(Math.max(Math.max(queueRatio, inFlightRatio), Math.max(latencyRatio, firstTokenRatio)))
+                .queueRatio(queueRatio)
+                .queueRatios(queues)
+                .inFlight(gatewayStats.getInFlight())
+                .inFlightCapacity(capacity)
+                .inFlightRatio(inFlightRatio)
+                .generationP95Ms(p95)
+                .latencyRatio(latencyRatio)
+                .firstTokenP95Ms(firstTokenP95)
+                .firstTokenRatio(firstTokenRatio)
+                .build();
+    }
+
+    private void updateLevel(double pressure, long now) {
+        DegradationLevel target = levelFor(pressure);
+        DegradationLevel current = level;
+        if (target.ordinal() > current.ordinal()) {
+            level = target;
+            belowSince = 0;
+            escalations.incrementAndGet(target.ordinal());
+            log.warn("系统负载升高，降级等级 {} -> {}，压力: {}，{}", current, target,
+                    String.format("%.2f", pressure), lastSample);
+            return;
+        }
+        if (current == DegradationLevel.NORMAL || pressure >= thresholdOf(current) - hysteresis) {
+            belowSince = 0;
+            return;
+        }
+        if (belowSince == 0) {
+            belowSince = now;
+        } else if (now - belowSince >= recoveryMs) {
+            DegradationLevel lower = current.lower();
+            level = lower;
+            // 下一级恢复需要重新经过一个恢复窗口
+            belowSince = lower == DegradationLevel.NORMAL ? 0 : now;
+            log.info("系统负载回落，降级等级 {} -> {}，压力: {}", current, lower, String.format("%.2f", pressure));
+        }
+    }
+
+    private DegradationLevel levelFor(double pressure) {
+        if (pressure >= severeThreshold) {
+            return DegradationLevel.SEVERE;
+        }
+        if (pressure >= moderateThreshold) {
+            return DegradationLevel.MODERATE;
+        }
+        if (pressure >= lightThreshold) {
+            return DegradationLevel.LIGHT;
+        }
+        return DegradationLevel.NORMAL;
+    }
+
+    private double thresholdOf(DegradationLevel degradationLevel) {
+        return switch (degradationLevel) {
+            case NORMAL -> 0;
+            case LIGHT -> lightThreshold;
+            case MODERATE -> moderateThreshold;
+            case SEVERE -> severeThreshold;
+        };
+    }
+
+    public LoadStats getStats() {
+        Map<String, Long> queries = new LinkedHashMap<>();
+        Map<String, Long> escalationCounts = new LinkedHashMap<>();
+        for (DegradationLevel degradationLevel : LEVELS) {
+            queries.put(degradationLevel.name(), queriesByLevel.get(degradationLevel.ordinal()));
+            if (degradationLevel != DegradationLevel.NORMAL) {
+                escalationCounts.put(degradationLevel.name(), escalations.get(degradationLevel.ordinal()));
+            }
+        }
+        return LoadStats.builder()
+                .enabled(enabled)
+                .level(level.name())
+                .levelValue(level.ordinal())
+                .lastSample(lastSample)
+                .lastSampleAt(lastSampleAt)
+                .queriesByLevel(queries)
+                .escalations(escalationCounts)
+                .build();
+    }
+
+    /**
+     * 一次负载采样。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LoadSample {
+        private double pressure;
+        private double queueRatio;
+        private Map<String, Double> queueRatios;
+        private int inFlight;
+        private int inFlightCapacity;
+        private double inFlightRatio;
+        private long generationP95Ms;
+        private double latencyRatio;
+        private long firstTokenP95Ms;
+        private double firstTokenRatio;
+    }
+
+    /**
+     * 负载降级统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LoadStats {
+        private boolean enabled;
+        private String level;
+        private int levelValue;
+        private LoadSample lastSample;
+        private long lastSampleAt;
+        private Map<String, Long> queriesByLevel;
+        private Map<String, Long> escalations;
+    }
+}
@@ -0,0 +1,36 @@
+package cn.cug.sxy.ai.domain.rag.service.tokenizer;
+
+/**
+ * 分词器接口。
+ * 用于在本地估算文本的Token数量（分块大小控制、生成上下文预算）。
+ * 实现应尽量不低于模型实际Token数（宁多勿少）；近似实现无法保证这一点时，需在文档中说明实测误差。
+ *
+ * @author jerryhotton
+ */
+public interface ITokenizer {
+
+    /**
+     * 分词器名称（通常为词表/模型标识）
+     */
+    String getName();
+
+    /**
+     * 统计 [from, to) 区间的Token数量
+     */
+    int countTokens(CharSequence text, int from, int to);
+
+    /**
+     * 统计整段文本的Token数量
+     */
+    default int countTokens(CharSequence text) {
+        return text == null ? 0 : countTokens(text, 0, text.length());
+    }
+
+    /**
+     * 计算从from开始、Token数不超过maxTokens的最长前缀终点（位于Token边界）
+     *
+     * @return 前缀终点（不含），范围 [from, to]
+     */
+    int fitPrefix(CharSequence text, int from, int to, int maxTokens);
+
+}
@@ -0,0 +1,143 @@
+package cn.cug.sxy.ai.domain.rag.service.tokenizer;
+
+import cn.cug.sxy.ai.domain.rag.service.indexing.TextSplitterService.TextSpan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token计数服务。
+ * 封装可插拔的 {@link ITokenizer}，并以LRU缓存文本的Token数（分块、向量化、生成预算会反复计算同一文本）。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class TokenCounter {
+
+    /**
+     * 超过该长度的文本不进入缓存，避免长文本占用缓存容量
+     */
+    private static final int MAX_CACHEABLE_LENGTH = 32 * 1024;
+
+    private final ITokenizer tokenizer;
+    private final Map<String, Integer> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TokenCounter(ITokenizer tokenizer,
+                        @Value("${rag.tokenizer.cache-size:10000}") int cacheSize) {
+        this.tokenizer = tokenizer;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(Math.min(cacheSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * 统计文本Token数（带缓存）
+     */
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        if (text.length() > MAX_CACHEABLE_LENGTH) {
+            misses.incrementAndGet();
+            return tokenizer.countTokens(text);
+        }
+        Integer cached = cache.get(text);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        int tokens = tokenizer.countTokens(text);
+        cache.put(text, tokens);
+        return tokens;
+    }
+
+    /**
+     * 统计区间Token数（不缓存）
+     */
+    public int count(CharSequence text, int from, int to) {
+        return tokenizer.countTokens(text, from, to);
+    }
+
+    /**
+     * 按Token上限截断文本（在Token边界处截断）
+     */
+    public String truncate(String text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        int end = tokenizer.fitPrefix(text, 0, text.length(), maxTokens);
+        return end >= text.length() ? text : text.substring(0, end);
+    }
+
+    /**
+     * 对超过Token上限的区间按Token窗口再切分，保证每个区间不超过maxTokens
+     *
+     * @param text      原文
+     * @param spans     待校验的区间
+     * @param maxTokens 单个区间Token上限
+     * @return 满足上限的区间列表（未超限的区间原样保留）
+     */
+    public List<TextSpan> enforceLimit(CharSequence text, List<TextSpan> spans, int maxTokens) {
+        if (maxTokens <= 0) {
+            return spans;
+        }
+        List<TextSpan> result = new ArrayList<>(spans.size());
+        int resplit = 0;
+        for (TextSpan span : spans) {
+            if (tokenizer.countTokens(text, span.start(), span.end()) <= maxTokens) {
+                result.add(span);
+                continue;
+            }
+            resplit++;
+            int start = span.start();
+            while (start < span.end()) {
+                int end = tokenizer.fitPrefix(text, start, span.end(), maxTokens);
+                if (end <= start) {
+                    // 单个词元即超过上限（理论上不会发生），强制前进避免死循环
+                    end = start + 1;
+                }
+                result.add(new TextSpan(start, end));
+                start = end;
+            }
+        }
+        if (resplit > 0) {
+            log.info("Token上限校验: {} 个区间超过 {} Token，已按Token边界再切分，切分后区间数={}", resplit, maxTokens, result.size());
+        }
+        return result;
+    }
+
+    public ITokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * 缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tokenizer", tokenizer.getName());
+        stats.put("cacheSize", cache.size());
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+}
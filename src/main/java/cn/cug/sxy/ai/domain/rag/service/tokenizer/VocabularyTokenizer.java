@@ -0,0 +1,260 @@
+package cn.cug.sxy.ai.domain.rag.service.tokenizer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于本地词表的分词器。
+ * <p>
+ * 词表为随应用打包的纯文本文件（每行一个词元），加载为字典树后做贪心最长匹配：
+ * 1. 汉字串：按词表最长匹配，未收录的常用汉字计1个Token；
+ * 2. 字母串：按词表（大小写不敏感）最长匹配切子词，未匹配片段每2个字符计1个Token；
+ * 3. 数字逐位计Token，单个空格并入后续词元，其余空白串计1个Token；
+ * 4. 其他字符按词表匹配，未收录时按UTF-8字节数计。
+ * <p>
+ * 内置词表是手工整理的近似词表，并非模型真实的BPE词表：词表外的生僻汉字在字节级BPE中可能占2-3个Token，
+ * 词表中的多字词也可能被模型拆成多个Token，因此计数对任何模型词表（包括 Qwen）都不是有保证的上界。
+ * 计数结果统一乘以 (1 + safetyMargin) 向上取整，截断时按同一比例收紧预算，两者保持一致；
+ * 默认余量是经验值，未针对具体模型词表校准。已实测的误差仅限 cl100k_base 的公开切分样例（见单元测试）：
+ * 不含余量的原始计数为实际值的 1.0-2.3 倍（英文长词与日文偏高）。需要严格上界时应替换为模型官方词表。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class VocabularyTokenizer implements ITokenizer {
+
+    /**
+     * 默认安全余量
+     */
+    public static final double DEFAULT_SAFETY_MARGIN = 0.2;
+
+    private final TrieNode root = new TrieNode();
+    private final String name;
+    private final double scale;
+    private int vocabSize;
+
+    public VocabularyTokenizer(Resource vocabResource) {
+        this(vocabResource, DEFAULT_SAFETY_MARGIN);
+    }
+
+    @Autowired
+    public VocabularyTokenizer(@Value("${rag.tokenizer.vocab-path:classpath:tokenizer/vocab.txt}") Resource vocabResource,
+                               @Value("${rag.tokenizer.safety-margin:0.2}") double safetyMargin) {
+        if (safetyMargin < 0) {
+            throw new IllegalArgumentException("rag.tokenizer.safety-margin 不能为负数: " + safetyMargin);
+        }
+        this.scale = 1 + safetyMargin;
+        this.name = vocabResource != null && vocabResource.getFilename() != null ? vocabResource.getFilename() : "char-fallback";
+        if (vocabResource == null || !vocabResource.exists()) {
+            log.warn("分词词表不存在，退化为字符级估算: {}", vocabResource);
+            return;
+        }
+        try (InputStream in = vocabResource.getInputStream()) {
+            load(in);
+            log.info("分词词表加载完成: name={}, 词元数={}, 安全余量={}", name, vocabSize, safetyMargin);
+        } catch (IOException e) {
+            log.warn("分词词表加载失败，退化为字符级估算: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public int getVocabSize() {
+        return vocabSize;
+    }
+
+    @Override
+    public int countTokens(CharSequence text, int from, int to) {
+        if (text == null || from >= to) {
+            return 0;
+        }
+        return withMargin((int) walk(text, from, to, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int fitPrefix(CharSequence text, int from, int to, int maxTokens) {
+        if (text == null || from >= to || maxTokens <= 0) {
+            return from;
+        }
+        // 原始计数不超过 floor(maxTokens / scale) 时，加余量后的计数不超过 maxTokens
+        int rawLimit = (int) Math.floor(maxTokens / scale);
+        return (int) (walk(text, from, to, rawLimit) >>> 32);
+    }
+
+    private int withMargin(int rawTokens) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(rawTokens * scale));
+    }
+
+    /**
+     * 扫描 [from, to)，在Token数即将超过maxTokens时停止。
+     *
+     * @return 高32位为停止位置，低32位为已计Token数
+     */
+    private long walk(CharSequence text, int from, int to, int maxTokens) {
+        int tokens = 0;
+        int i = from;
+        while (i < to) {
+            int pieceStart = i;
+            char c = text.charAt(i);
+            if (c == ' ' && i + 1 < to && !Character.isWhitespace(text.charAt(i + 1))) {
+                // 单个空格并入后续词元（与BPE的前导空格合并一致）
+                c = text.charAt(++i);
+            }
+            int pieceEnd;
+            int pieceTokens;
+            if (Character.isWhitespace(c)) {
+                int j = i;
+                while (j < to && Character.isWhitespace(text.charAt(j))) {
+                    j++;
+                }
+                pieceEnd = j;
+                pieceTokens = 1;
+            } else if (isHan(c)) {
+                int matched = longestMatch(text, i, to);
+                pieceEnd = i + Math.max(1, matched);
+                pieceTokens = matched > 0 || isCommonHan(c) ? 1 : utf8Length(c);
+            } else if (isAsciiLetter(c)) {
+                int j = i;
+                while (j < to && isAsciiLetter(text.charAt(j))) {
+                    j++;
+                }
+                pieceEnd = j;
+                pieceTokens = countWordPieces(text, i, j);
+            } else if (Character.isDigit(c)) {
+                pieceEnd = i + 1;
+                pieceTokens = 1;
+            } else {
+                int matched = longestMatch(text, i, to);
+                if (matched > 0) {
+                    pieceEnd = i + matched;
+                    pieceTokens = 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < to) {
+                    pieceEnd = i + 2;
+                    pieceTokens = 4;
+                } else {
+                    pieceEnd = i + 1;
+                    pieceTokens = utf8Length(c);
+                }
+            }
+            if ((long) tokens + pieceTokens > maxTokens) {
+                i = pieceStart;
+                break;
+            }
+            tokens += pieceTokens;
+            i = pieceEnd;
+        }
+        return ((long) i << 32) | (tokens & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 字母串按词表切子词，未匹配片段按每2个字符1个Token计
+     */
+    private int countWordPieces(CharSequence text, int from, int to) {
+        int tokens = 0;
+        int unmatched = 0;
+        int i = from;
+        while (i < to) {
+            int matched = longestMatch(text, i, to);
+            if (matched > 0) {
+                tokens += (unmatched + 1) / 2;
+                unmatched = 0;
+                tokens++;
+                i += matched;
+            } else {
+                unmatched++;
+                i++;
+            }
+        }
+        return tokens + (unmatched + 1) / 2;
+    }
+
+    /**
+     * 在字典树上做最长匹配，返回匹配长度（0表示未命中）
+     */
+    private int longestMatch(CharSequence text, int from, int to) {
+        TrieNode node = root;
+        int best = 0;
+        for (int i = from; i < to; i++) {
+            node = node.children.get(Character.toLowerCase(text.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                best = i - from + 1;
+            }
+        }
+        return best;
+    }
+
+    private void load(InputStream in) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                insert(line.strip());
+            }
+        }
+    }
+
+    private void insert(String token) {
+        if (token.isEmpty()) {
+            return;
+        }
+        TrieNode node = root;
+        for (int i = 0; i < token.length(); i++) {
+            node = node.children.computeIfAbsent(Character.toLowerCase(token.charAt(i)), k -> new TrieNode());
+        }
+        if (!node.terminal) {
+            node.terminal = true;
+            vocabSize++;
+        }
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    /**
+     * CJK统一表意文字基本区的汉字按1个Token计：Qwen 等中文词表中常用汉字为单Token，
+     * 基本区内的生僻字可能占2-3个Token，由安全余量覆盖；其余区段的汉字按UTF-8字节数计
+     */
+    private static boolean isCommonHan(char c) {
+        return c >= 0x4E00 && c <= 0x9FFF;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        }
+        return c < 0x800 ? 2 : 3;
+    }
+
+    private static class TrieNode {
+
+        private final Map<Character, TrieNode> children = new HashMap<>(4);
+        private boolean terminal;
+
+    }
+
+}
@@ -4,17 +4,19 @@ import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * 缓存清理服务。
  * 用于清理旧格式的缓存数据，解决序列化兼容性问题。
- * 
+ * <p>
+ * 清理通过命名空间换代完成（{@link CacheNamespaces#invalidate}）：O(1) 且不阻塞Redis，
+ * 旧代数的键由 {@link CacheNamespaceReaper} 在后台限速删除。
+ *
  * @author jerryhotton
  */
 @Slf4j
@@ -23,7 +25,10 @@ import java.util.Set;
 public class CacheCleanupService {
 
     private final CacheManager cacheManager;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final CacheNamespaces cacheNamespaces;
+
+    @Value("${spring.cache.type:redis}")
+    private String cacheType;
 
     @Value("${rag.cache.cleanup-on-startup:false}")
     private boolean cleanupOnStartup;
@@ -35,26 +40,8 @@ public class CacheCleanupService {
     public void cleanupEmbeddingsCache() {
         log.info("开始清理embeddings缓存的旧格式数据...");
         try {
-            Cache cache = cacheManager.getCache("embeddings");
-            if (cache == null) {
-                log.warn("embeddings缓存不存在");
-                return;
-            }
-
-            // 如果使用Redis，直接清理所有embeddings相关的键
-            if (redisTemplate != null) {
-                String pattern = "rag:cache:embeddings::*";
-                Set<String> keys = redisTemplate.keys(pattern);
-                if (keys != null && !keys.isEmpty()) {
-                    log.info("找到 {} 个embeddings缓存键，开始清理...", keys.size());
-                    redisTemplate.delete(keys);
-                    log.info("已清理 {} 个embeddings缓存键", keys.size());
-                } else {
-                    log.info("未找到需要清理的embeddings缓存键");
-                }
-            } else {
-                log.info("未使用Redis，跳过清理");
-            }
+            long generation = cacheNamespaces.invalidate("embeddings");
+            log.info("embeddings缓存已切换到新命名空间 v{}", generation);
         } catch (Exception e) {
             log.error("清理embeddings缓存失败", e);
         }
@@ -65,26 +52,30 @@ public class CacheCleanupService {
      */
     public void cleanupAllCaches() {
         log.info("开始清理所有缓存...");
-        try {
-            if (redisTemplate != null) {
-                String pattern = "rag:cache:*";
-                Set<String> keys = redisTemplate.keys(pattern);
-                if (keys != null && !keys.isEmpty()) {
-                    log.info("找到 {} 个缓存键，开始清理...", keys.size());
-                    redisTemplate.delete(keys);
-                    log.info("已清理 {} 个缓存键", keys.size());
-                }
+        Set<String> cacheNames = new LinkedHashSet<>(cacheManager.getCacheNames());
+        cacheNames.addAll(cacheNamespaces.knownCaches());
+        for (String cacheName : cacheNames) {
+            try {
+                cacheNamespaces.invalidate(cacheName);
+            } catch (Exception e) {
+                log.error("清理缓存失败: {}", cacheName, e);
             }
-        } catch (Exception e) {
-            log.error("清理所有缓存失败", e);
         }
+        log.info("已清理 {} 个缓存: {}", cacheNames.size(), cacheNames);
     }
 
     /**
-     * 启动时自动清理旧格式的embeddings缓存（如果配置启用）。
+     * 启动时检查序列化格式：格式标记变化的缓存自动换代；配置启用时额外清理embeddings缓存。
      */
-    //@PostConstruct
+    @PostConstruct
     public void init() {
+        if (!"redis".equalsIgnoreCase(cacheType)) {
+            return;
+        }
+        cacheNamespaces.ensureFormat("embeddings", FloatArrayRedisSerializer.FORMAT_TAG);
+        String compactFormat = "compact-v" + CacheValueCodec.FORMAT_VERSION;
+        cacheNamespaces.ensureFormat("intentCache", compactFormat);
+        cacheNamespaces.ensureFormat("taskPlanCache", compactFormat);
         if (cleanupOnStartup) {
             log.info("启动时自动清理旧格式缓存（cleanup-on-startup=true）");
             cleanupEmbeddingsCache();
@@ -93,4 +84,3 @@ public class CacheCleanupService {
         }
     }
 }
-
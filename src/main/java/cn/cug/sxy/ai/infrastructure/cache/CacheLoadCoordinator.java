@@ -0,0 +1,347 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 缓存加载协调器：防止缓存击穿（stampede）并提前刷新热点条目。
+ * <p>
+ * 1. 节点内合并：同一缓存键同时未命中时只有一个线程执行加载，其余线程等待同一结果
+ * 2. 集群内合并（按缓存配置）：加载前以 SET NX PX 获取短期Redis锁，未获得锁的节点轮询缓存等待结果，
+ *    超过等待上限或锁过期后自行加载，不会因持锁节点故障而一直阻塞
+ * 3. 提前刷新：记录本节点加载的条目的耗时与过期时间，命中时按概率（XFetch：now - delta * beta * ln(rand) >= expireAt）
+ *    在后台重新加载，越接近过期、加载越慢的条目越早刷新，避免热点条目集中过期
+ * <p>
+ * 提前刷新只针对本节点加载过的条目（其他节点回填的条目没有加载耗时记录），刷新同样经过合并与集群锁。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class CacheLoadCoordinator {
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    /**
+     * 提前刷新未获得集群锁而放弃时的结果标记，与加载函数返回的 null 区分
+     */
+    private static final Object REFRESH_SKIPPED = new Object();
+
+    private final CacheManager cacheManager;
+    private final TwoTierCacheProperties cacheProperties;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, LocalCacheTier> loadStamps = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    @Value("${spring.cache.type:redis}")
+    private String cacheType;
+
+    @Value("${spring.cache.redis.key-prefix:rag:cache:}")
+    private String keyPrefix;
+
+    @Value("${rag.cache.load.distributed-lock-caches:intentCache}")
+    private Set<String> distributedLockCaches; // 需要集群内合并加载的缓存
+
+    @Value("${rag.cache.load.lock-ttl-ms:30000}")
+    private long lockTtlMs;
+
+    @Value("${rag.cache.load.lock-wait-ms:15000}")
+    private long lockWaitMs; // 未获得锁时等待其他节点加载结果的上限
+
+    @Value("${rag.cache.load.poll-interval-ms:50}")
+    private long pollIntervalMs;
+
+    @Value("${rag.cache.load.wait-timeout-ms:60000}")
+    private long waitTimeoutMs; // 节点内等待同键加载的上限，超时后自行加载
+
+    @Value("${rag.cache.load.refresh-ahead.enabled:true}")
+    private boolean refreshAheadEnabled;
+
+    @Value("${rag.cache.load.refresh-ahead.beta:1.0}")
+    private double beta; // 大于1更早刷新
+
+    @Value("${rag.cache.load.refresh-ahead.max-entries:20000}")
+    private int refreshMaxEntries; // 每个缓存最多记录的加载条目数
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong lockWaits = new AtomicLong();
+    private final AtomicLong lockWaitHits = new AtomicLong();
+    private final AtomicLong earlyRefreshes = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+
+    public CacheLoadCoordinator(CacheManager cacheManager,
+                                TwoTierCacheProperties cacheProperties,
+                                RedisConnectionFactory redisConnectionFactory,
+                                @Value("${rag.cache.load.refresh-ahead.threads:2}") int refreshThreads) {
+        this.cacheManager = cacheManager;
+        this.cacheProperties = cacheProperties;
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 队列满时拒绝，刷新放弃（条目仍在有效期内）
+        this.refreshExecutor = new ThreadPoolExecutor(Math.max(1, refreshThreads), Math.max(1, refreshThreads),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), runnable -> {
+            Thread thread = new Thread(runnable, "rag-cache-refresh-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 读取缓存，未命中时合并加载。
+     *
+     * @param cacheName 缓存名
+     * @param key       缓存键
+     * @param loader    加载函数
+     * @param cacheable 加载结果是否写入缓存（不写入的结果仍会返回给同时等待的线程）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String cacheName, Object key, Supplier<T> loader, Predicate<T> cacheable) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return loader.get();
+        }
+        Cache.ValueWrapper cached = cache.get(key);
+        if (cached != null && cached.get() != null) {
+            maybeRefreshAhead(cache, key, loader, cacheable);
+            return (T) cached.get();
+        }
+
+        String flightKey = cacheName + ':' + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                Object value = existing.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+                // 提前刷新放弃时没有结果，自行加载；加载函数返回的 null 直接复用，不再重复加载
+                return value == REFRESH_SKIPPED ? loader.get() : (T) value;
+            } catch (TimeoutException e) {
+                log.warn("等待缓存加载超时，自行加载: cache={}, key={}", cacheName, key);
+                return loader.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待缓存加载被中断", e);
+            }
+        }
+        try {
+            T value = loadAndPut(cache, key, loader, cacheable, false);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * 加载并写入缓存。启用集群锁的缓存先获取锁，未获得时轮询等待其他节点的结果。
+     *
+     * @param refresh 是否为提前刷新（刷新时获取不到锁直接放弃，返回 {@link #REFRESH_SKIPPED}）
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T loadAndPut(Cache cache, Object key, Supplier<T> loader, Predicate<T> cacheable, boolean refresh) {
+        String lockKey = null;
+        String token = null;
+        if (useDistributedLock(cache.getName())) {
+            lockKey = keyPrefix + "lock:" + cache.getName() + ":" + key;
+            token = UUID.randomUUID().toString();
+            if (!tryLock(lockKey, token)) {
+                if (refresh) {
+                    return (T) REFRESH_SKIPPED;
+                }
+                T remote = (T) awaitRemoteLoad(cache, key);
+                if (remote != null) {
+                    return remote;
+                }
+                // 等待超时：持锁节点可能故障或加载过慢，自行加载
+                token = null;
+            }
+        }
+        try {
+            long start = System.nanoTime();
+            T value = loader.get();
+            long elapsedNanos = System.nanoTime() - start;
+            loads.incrementAndGet();
+            if (value != null && (cacheable == null || cacheable.test(value))) {
+                cache.put(key, value);
+                recordLoad(cache.getName(), key, elapsedNanos);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            loadFailures.incrementAndGet();
+            throw e;
+        } finally {
+            if (token != null) {
+                releaseLock(lockKey, token);
+            }
+        }
+    }
+
+    private Object awaitRemoteLoad(Cache cache, Object key) {
+        lockWaits.incrementAndGet();
+        long deadline = System.currentTimeMillis() + lockWaitMs;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Cache.ValueWrapper wrapper = cache.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                lockWaitHits.incrementAndGet();
+                return wrapper.get();
+            }
+        }
+        return null;
+    }
+
+    private <T> void maybeRefreshAhead(Cache cache, Object key, Supplier<T> loader, Predicate<T> cacheable) {
+        if (!refreshAheadEnabled) {
+            return;
+        }
+        LocalCacheTier stamps = loadStamps.get(cache.getName());
+        LoadStamp stamp = stamps != null ? (LoadStamp) stamps.get(String.valueOf(key)) : null;
+        if (stamp == null) {
+            return;
+        }
+        double deltaMillis = stamp.loadNanos() / 1_000_000.0;
+        double now = System.currentTimeMillis() - deltaMillis * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        if (now < stamp.expireAt()) {
+            return;
+        }
+        String flightKey = cache.getName() + ':' + key;
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(flightKey, flight) != null) {
+            return;
+        }
+        // 同一条目只刷新一次，刷新后的加载会写入新的记录
+        stamps.remove(String.valueOf(key));
+        earlyRefreshes.incrementAndGet();
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    flight.complete(loadAndPut(cache, key, loader, cacheable, true));
+                } catch (Exception e) {
+                    flight.completeExceptionally(e);
+                    log.debug("缓存提前刷新失败 cache={}, key={}: {}", cache.getName(), key, e.getMessage());
+                } finally {
+                    inFlight.remove(flightKey, flight);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(flightKey, flight);
+            flight.complete(REFRESH_SKIPPED);
+        }
+    }
+
+    private void recordLoad(String cacheName, Object key, long loadNanos) {
+        Duration ttl = cacheProperties.specOf(cacheName).getTtl();
+        if (!refreshAheadEnabled || ttl == null) {
+            return;
+        }
+        LocalCacheTier stamps = loadStamps.computeIfAbsent(cacheName,
+                name -> new LocalCacheTier(refreshMaxEntries, Long.MAX_VALUE, ttl.toMillis()));
+        stamps.put(String.valueOf(key), new LoadStamp(System.currentTimeMillis() + ttl.toMillis(), loadNanos));
+    }
+
+    private boolean useDistributedLock(String cacheName) {
+        return distributedLockCaches.contains(cacheName) && "redis".equalsIgnoreCase(cacheType);
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                    .setIfAbsent(lockKey, token, lockTtlMs, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            // Redis 不可用时退化为节点内合并
+            log.debug("获取缓存加载锁失败 {}: {}", lockKey, e.getMessage());
+            return true;
+        }
+    }
+
+    private void releaseLock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), token);
+        } catch (Exception e) {
+            log.debug("释放缓存加载锁失败 {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    public LoadStats getStats() {
+        return LoadStats.builder()
+                .loads(loads.get())
+                .coalesced(coalesced.get())
+                .lockWaits(lockWaits.get())
+                .lockWaitHits(lockWaitHits.get())
+                .earlyRefreshes(earlyRefreshes.get())
+                .loadFailures(loadFailures.get())
+                .inFlight(inFlight.size())
+                .build();
+    }
+
+    /**
+     * 加载记录：逻辑过期时间与加载耗时。
+     */
+    private record LoadStamp(long expireAt, long loadNanos) {
+    }
+
+    /**
+     * 加载统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LoadStats {
+        private long loads;
+        private long coalesced;
+        private long lockWaits;
+        private long lockWaitHits;
+        private long earlyRefreshes;
+        private long loadFailures;
+        private int inFlight;
+    }
+}
@@ -0,0 +1,236 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 旧代数缓存键的后台清理器。
+ * <p>
+ * 后台线程定期刷新各缓存的代数，并对有待清理标记的缓存用 SCAN（不阻塞Redis）匹配 {prefix}{cacheName}:v*，
+ * 代数低于当前值的键以 UNLINK 分批删除：
+ * 1. 限速：每秒删除数不超过 max-deletes-per-second，每轮删除数不超过 max-keys-per-run，未清理完的下一轮继续
+ * 2. 升级前的无代数键（{cacheName}::*、{prefix}{cacheName}::*）在集群内只清理一次，完成后在代数哈希中记录
+ * 3. 所有缓存键都有TTL，清理中断时旧键最迟在TTL后过期
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Service
+public class CacheNamespaceReaper {
+
+    private static final String LEGACY_REAPED_MARKER = "legacy-reaped";
+
+    private final CacheNamespaces namespaces;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${spring.cache.type:redis}")
+    private String cacheType;
+
+    @Value("${rag.cache.namespace.reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.cache.namespace.refresh-interval-ms:30000}")
+    private long refreshIntervalMs; // 代数刷新与清理检查间隔
+
+    @Value("${rag.cache.namespace.reaper.scan-count:500}")
+    private int scanCount;
+
+    @Value("${rag.cache.namespace.reaper.max-deletes-per-second:2000}")
+    private int maxDeletesPerSecond;
+
+    @Value("${rag.cache.namespace.reaper.max-keys-per-run:200000}")
+    private int maxKeysPerRun;
+
+    @Value("${rag.cache.namespace.managed-caches:embeddings,intentCache,taskPlanCache}")
+    private List<String> managedCaches; // 需要清理升级前无代数键的缓存
+
+    private Thread reaperThread;
+    private volatile boolean running;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong reaped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public CacheNamespaceReaper(CacheNamespaces namespaces, RedisConnectionFactory redisConnectionFactory) {
+        this.namespaces = namespaces;
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || !"redis".equalsIgnoreCase(cacheType)) {
+            log.info("缓存旧代数清理未启用");
+            return;
+        }
+        running = true;
+        reaperThread = new Thread(this::runReaper, "rag-cache-reaper");
+        reaperThread.setDaemon(true);
+        reaperThread.start();
+        log.info("缓存旧代数清理已启动，检查间隔: {}ms, 限速: {}/s", refreshIntervalMs, maxDeletesPerSecond);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (reaperThread != null) {
+            reaperThread.interrupt();
+        }
+    }
+
+    private void runReaper() {
+        boolean legacyPending = true;
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(refreshIntervalMs);
+                namespaces.refresh();
+                if (legacyPending) {
+                    legacyPending = !reapLegacy();
+                }
+                for (String cacheName : namespaces.drainDirty()) {
+                    if (!reapOldGenerations(cacheName)) {
+                        // 本轮达到上限，下一轮继续
+                        namespaces.markDirty(cacheName);
+                    }
+                }
+                runs.incrementAndGet();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (Exception e) {
+                failures.incrementAndGet();
+                log.warn("缓存旧代数清理失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 清理代数低于当前值的键。
+     *
+     * @return 是否已清理完（未达到本轮上限）
+     */
+    private boolean reapOldGenerations(String cacheName) throws InterruptedException {
+        long current = namespaces.generationOf(cacheName);
+        String versionedPrefix = namespaces.getKeyPrefix() + cacheName + ":v";
+        long deleted = reap(versionedPrefix + "*", key -> {
+            int end = key.indexOf("::", versionedPrefix.length());
+            if (end < 0) {
+                return false;
+            }
+            try {
+                return Long.parseLong(key.substring(versionedPrefix.length(), end)) < current;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        });
+        if (deleted > 0) {
+            log.info("已清理缓存 {} 的旧代数键 {} 个（当前 v{}）", cacheName, deleted, current);
+        }
+        return deleted < maxKeysPerRun;
+    }
+
+    /**
+     * 清理升级前写入的无代数键，集群内只执行一次。
+     *
+     * @return 是否已完成
+     */
+    private boolean reapLegacy() throws InterruptedException {
+        String registryKey = namespaces.getKeyPrefix() + "namespaces";
+        if (redisTemplate.opsForHash().hasKey(registryKey, LEGACY_REAPED_MARKER)) {
+            return true;
+        }
+        long deleted = 0;
+        for (String cacheName : managedCaches) {
+            deleted += reap(cacheName + "::*", key -> true);
+            deleted += reap(namespaces.getKeyPrefix() + cacheName + "::*", key -> true);
+            if (deleted >= maxKeysPerRun) {
+                return false;
+            }
+        }
+        redisTemplate.opsForHash().put(registryKey, LEGACY_REAPED_MARKER, String.valueOf(System.currentTimeMillis()));
+        log.info("升级前的无代数缓存键清理完成，共删除 {} 个", deleted);
+        return true;
+    }
+
+    private long reap(String pattern, Predicate<String> stale) throws InterruptedException {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(scanCount).build();
+        List<String> batch = new ArrayList<>(scanCount);
+        long deleted = 0;
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext() && running && deleted < maxKeysPerRun) {
+                String key = cursor.next();
+                scanned.incrementAndGet();
+                if (!stale.test(key)) {
+                    continue;
+                }
+                batch.add(key);
+                if (batch.size() >= scanCount) {
+                    deleted += unlink(batch);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += unlink(batch);
+        }
+        return deleted;
+    }
+
+    /**
+     * UNLINK 一批键并按限速等待。
+     */
+    private int unlink(List<String> batch) throws InterruptedException {
+        int size = batch.size();
+        redisTemplate.unlink(Set.copyOf(batch));
+        batch.clear();
+        reaped.addAndGet(size);
+        if (maxDeletesPerSecond > 0) {
+            TimeUnit.MILLISECONDS.sleep(size * 1000L / maxDeletesPerSecond);
+        }
+        return size;
+    }
+
+    public ReaperStats getStats() {
+        return ReaperStats.builder()
+                .running(running)
+                .runs(runs.get())
+                .scanned(scanned.get())
+                .reaped(reaped.get())
+                .failures(failures.get())
+                .generations(namespaces.getGenerations())
+                .build();
+    }
+
+    /**
+     * 清理统计。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ReaperStats {
+        private boolean running;
+        private long runs;
+        private long scanned;
+        private long reaped;
+        private long failures;
+        private Map<String, Long> generations;
+    }
+}
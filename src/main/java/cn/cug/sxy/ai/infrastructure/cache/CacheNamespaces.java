@@ -0,0 +1,235 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.cache.CacheKeyPrefix;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 缓存命名空间（代数）管理。
+ * <p>
+ * 每个缓存的Redis键带有代数：{key-prefix}{cacheName}:v{generation}::{key}。
+ * 1. 失效整个缓存只需把代数加一（O(1)），新读写立即落到新命名空间，旧代数的键由 {@link CacheNamespaceReaper} 在后台按限速用 SCAN 删除
+ * 2. 代数保存在 Redis 哈希 {key-prefix}namespaces 中，变更通过发布/订阅通知其他节点，消息丢失时由后台定期刷新兜底
+ * 3. 序列化格式变更时调用 {@link #ensureFormat}，格式标记与记录的不一致则自动换代
+ * <p>
+ * 代数变化时回调失效监听器（如清空两级缓存的本地 L1）。旧键只由发起换代的节点清理，其他节点只更新代数。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+@Component
+public class CacheNamespaces implements MessageListener {
+
+    private static final char SEPARATOR = '\u0001';
+    private static final String FORMAT_FIELD_SUFFIX = ":format";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+    private final String channel;
+    private final String registryKey;
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final CopyOnWriteArrayList<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    public CacheNamespaces(RedisConnectionFactory redisConnectionFactory,
+                           @Value("${spring.cache.redis.key-prefix:rag:cache:}") String keyPrefix,
+                           @Value("${rag.cache.namespace.channel:rag:cache:namespace}") String channel) {
+        this.redisTemplate = new StringRedisTemplate(redisConnectionFactory);
+        this.keyPrefix = keyPrefix;
+        this.channel = channel;
+        this.registryKey = keyPrefix + "namespaces";
+    }
+
+    /**
+     * RedisCache 的键前缀：每次读写时按当前代数计算。
+     */
+    public CacheKeyPrefix cacheKeyPrefix() {
+        return cacheName -> prefixOf(cacheName, generationOf(cacheName));
+    }
+
+    public String prefixOf(String cacheName, long generation) {
+        return keyPrefix + cacheName + ":v" + generation + "::";
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * 当前代数。首次访问时从Redis读取（不存在时为1）；Redis不可用时返回1且不缓存，下次访问重试。
+     */
+    public long generationOf(String cacheName) {
+        Long generation = generations.get(cacheName);
+        if (generation != null) {
+            return generation;
+        }
+        try {
+            Object stored = redisTemplate.opsForHash().get(registryKey, cacheName);
+            long loaded = stored == null ? 1L : Long.parseLong(stored.toString());
+            Long previous = generations.putIfAbsent(cacheName, loaded);
+            return previous != null ? previous : loaded;
+        } catch (Exception e) {
+            log.debug("读取缓存代数失败 cache={}: {}", cacheName, e.getMessage());
+            return 1L;
+        }
+    }
+
+    /**
+     * 失效整个缓存：代数加一并通知其他节点。
+     *
+     * @return 新代数
+     */
+    public long invalidate(String cacheName) {
+        // 首次换代时哈希中没有记录，先补齐默认代数1，保证结果为2
+        redisTemplate.opsForHash().putIfAbsent(registryKey, cacheName, "1");
+        long generation = redisTemplate.opsForHash().increment(registryKey, cacheName, 1L);
+        applyGeneration(cacheName, generation);
+        dirty.add(cacheName);
+        try {
+            redisTemplate.convertAndSend(channel, cacheName + SEPARATOR + generation);
+        } catch (Exception e) {
+            // 其他节点在下一次定期刷新时读取新代数
+            log.warn("缓存换代广播失败 cache={}: {}", cacheName, e.getMessage());
+        }
+        log.info("缓存已换代: {} -> v{}，旧键将由后台清理", cacheName, generation);
+        return generation;
+    }
+
+    /**
+     * 序列化格式检查：记录的格式标记与当前不同时换代；尚无记录时只写入标记（升级前的无代数键由清理器按旧格式删除）。
+     *
+     * @param formatTag 当前序列化格式标记，如 "float-le-v1"
+     * @return 是否发生了换代
+     */
+    public boolean ensureFormat(String cacheName, String formatTag) {
+        String field = cacheName + FORMAT_FIELD_SUFFIX;
+        try {
+            Object stored = redisTemplate.opsForHash().get(registryKey, field);
+            if (formatTag.equals(stored)) {
+                return false;
+            }
+            // 多个节点同时启动时只有一个节点换代
+            boolean changed = stored == null
+                    ? redisTemplate.opsForHash().putIfAbsent(registryKey, field, formatTag)
+                    : replaceFormat(field, stored.toString(), formatTag);
+            if (changed && stored != null) {
+                log.info("缓存序列化格式变更: {} {} -> {}", cacheName, stored, formatTag);
+                invalidate(cacheName);
+                return true;
+            }
+            return false;
+        } catch (Exception e) {
+            log.warn("检查缓存序列化格式失败 cache={}: {}", cacheName, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean replaceFormat(String field, String expected, String formatTag) {
+        Long replaced = redisTemplate.execute(new DefaultRedisScript<>(
+                "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then "
+                        + "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3]) return 1 end return 0", Long.class),
+                List.of(registryKey), field, expected, formatTag);
+        return replaced != null && replaced == 1L;
+    }
+
+    /**
+     * 从Redis重新读取所有已知缓存的代数（广播丢失时的兜底）。
+     */
+    public void refresh() {
+        Map<Object, Object> stored = redisTemplate.opsForHash().entries(registryKey);
+        for (Map.Entry<Object, Object> entry : stored.entrySet()) {
+            String field = entry.getKey().toString();
+            if (field.endsWith(FORMAT_FIELD_SUFFIX)) {
+                continue;
+            }
+            applyGeneration(field, Long.parseLong(entry.getValue().toString()));
+        }
+    }
+
+    /**
+     * 注册失效监听器：缓存换代后以缓存名回调。
+     */
+    public void addInvalidationListener(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * 已知的缓存名（访问过或换代过的）。
+     */
+    public Set<String> knownCaches() {
+        return Set.copyOf(generations.keySet());
+    }
+
+    /**
+     * 标记缓存可能存在旧代数的键，由清理器处理。
+     */
+    public void markDirty(String cacheName) {
+        dirty.add(cacheName);
+    }
+
+    /**
+     * 取出并清空待清理的缓存名。
+     */
+    public Set<String> drainDirty() {
+        Set<String> drained = Set.copyOf(dirty);
+        dirty.removeAll(drained);
+        return drained;
+    }
+
+    public Map<String, Long> getGenerations() {
+        return Map.copyOf(generations);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            return;
+        }
+        try {
+            applyGeneration(body.substring(0, separator), Long.parseLong(body.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.debug("忽略无法解析的缓存换代消息: {}", body);
+        }
+    }
+
+    /**
+     * 代数只增不减；变大时回调监听器。
+     */
+    private void applyGeneration(String cacheName, long generation) {
+        Long previous = generations.get(cacheName);
+        if (previous != null && previous >= generation) {
+            return;
+        }
+        generations.merge(cacheName, generation, Math::max);
+        if (previous == null) {
+            return;
+        }
+        for (Consumer<String> listener : invalidationListeners) {
+            try {
+                listener.accept(cacheName);
+            } catch (Exception e) {
+                log.warn("缓存失效监听器执行失败 cache={}: {}", cacheName, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import cn.cug.sxy.ai.domain.rag.model.intent.ComplexityLevel;
+import cn.cug.sxy.ai.domain.rag.model.intent.IntentSource;
+import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
+import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
+import cn.cug.sxy.ai.domain.rag.model.intent.TopicDomain;
+import cn.cug.sxy.ai.domain.rag.model.plan.TaskNode;
+import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
+import cn.cug.sxy.ai.domain.rag.service.intent.cache.CachedTaskPlan;
+import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 意图与任务规划缓存值的紧凑二进制编解码。
+ * <p>
+ * 格式：魔数(1) + 格式版本(1) + 类型标记(1) + 负载。
+ * 1. 字符串为长度前缀的 UTF-8，null 以长度 -1 表示
+ * 2. 枚举按名称写入，枚举顺序调整不影响已有缓存；无法识别的枚举名解码为 null
+ * 3. float[] 按小端原始字节写入（1536维向量 6KB，JSON 文本约 15KB）
+ * 4. 附加属性只支持标量、列表与嵌套Map，其他类型按字符串写入
+ * <p>
+ * 负载结构变化时递增 {@link #FORMAT_VERSION}，并在解码时按版本分支兼容旧数据。
+ *
+ * @author jerryhotton
+ */
+public final class CacheValueCodec {
+
+    public static final byte MAGIC = (byte) 0xB7;
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final byte TYPE_QUERY_INTENT = 1;
+    private static final byte TYPE_TASK_PLAN = 2;
+    private static final byte TYPE_CACHED_TASK_PLAN = 3;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_BOOLEAN = 2;
+    private static final byte VALUE_INT = 3;
+    private static final byte VALUE_LONG = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_LIST = 6;
+    private static final byte VALUE_MAP = 7;
+
+    private CacheValueCodec() {
+    }
+
+    /**
+     * 是否支持该类型的值。
+     */
+    public static boolean supports(Object value) {
+        return value instanceof QueryIntent || value instanceof TaskPlan || value instanceof CachedTaskPlan;
+    }
+
+    /**
+     * 是否为本编解码器写入的数据。
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= 3 && bytes[0] == MAGIC;
+    }
+
+    public static byte[] encode(Object value) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(value instanceof CachedTaskPlan ? 8192 : 512);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeByte(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            if (value instanceof QueryIntent intent) {
+                out.writeByte(TYPE_QUERY_INTENT);
+                writeIntent(out, intent);
+            } else if (value instanceof TaskPlan plan) {
+                out.writeByte(TYPE_TASK_PLAN);
+                writePlan(out, plan);
+            } else if (value instanceof CachedTaskPlan cached) {
+                out.writeByte(TYPE_CACHED_TASK_PLAN);
+                writeString(out, cached.queryText());
+                writeFloats(out, cached.vector());
+                writePlan(out, cached.plan());
+                out.writeLong(cached.timestamp());
+            } else {
+                throw new IllegalArgumentException("不支持的缓存值类型: " + (value == null ? null : value.getClass().getName()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存值编码失败", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 解码。
+     *
+     * @throws IllegalArgumentException 数据不是本编解码器写入的，或格式版本高于当前版本（新版本节点写入的数据）
+     */
+    public static Object decode(byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            throw new IllegalArgumentException("不是二进制缓存值");
+        }
+        int version = bytes[1];
+        if (version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的缓存值格式版本: " + version);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 3, bytes.length - 3))) {
+            return switch (bytes[2]) {
+                case TYPE_QUERY_INTENT -> readIntent(in);
+                case TYPE_TASK_PLAN -> readPlan(in);
+                case TYPE_CACHED_TASK_PLAN -> new CachedTaskPlan(readString(in), readFloats(in), readPlan(in), in.readLong());
+                default -> throw new IllegalArgumentException("未知的缓存值类型标记: " + bytes[2]);
+            };
+        } catch (IOException e) {
+            throw new IllegalArgumentException("缓存值解码失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeIntent(DataOutputStream out, QueryIntent intent) throws IOException {
+        writeEnum(out, intent.getSource());
+        writeEnum(out, intent.getTaskType());
+        writeEnum(out, intent.getDomain());
+        writeEnum(out, intent.getComplexity());
+        int flags = (intent.isMultiStep() ? 1 : 0)
+                | (intent.isRequiresClarification() ? 2 : 0)
+                | (intent.isLockProcessor() ? 4 : 0)
+                | (intent.isAllowCascade() ? 8 : 0);
+        out.writeByte(flags);
+        writeEnum(out, intent.getRecommendedProcessor());
+        Set<QueryType> secondary = intent.getSecondaryProcessors();
+        out.writeInt(secondary == null ? -1 : secondary.size());
+        if (secondary != null) {
+            for (QueryType type : secondary) {
+                writeEnum(out, type);
+            }
+        }
+        out.writeDouble(intent.getConfidence());
+        writeString(out, intent.getSummary());
+        out.writeBoolean(intent.getTaskPlan() != null);
+        if (intent.getTaskPlan() != null) {
+            writePlan(out, intent.getTaskPlan());
+        }
+        writeValue(out, intent.getAttributes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryIntent readIntent(DataInputStream in) throws IOException {
+        QueryIntent intent = new QueryIntent();
+        intent.setSource(readEnum(in, IntentSource.class));
+        intent.setTaskType(readEnum(in, TaskType.class));
+        intent.setDomain(readEnum(in, TopicDomain.class));
+        intent.setComplexity(readEnum(in, ComplexityLevel.class));
+        int flags = in.readByte();
+        intent.setMultiStep((flags & 1) != 0);
+        intent.setRequiresClarification((flags & 2) != 0);
+        intent.setLockProcessor((flags & 4) != 0);
+        intent.setAllowCascade((flags & 8) != 0);
+        intent.setRecommendedProcessor(readEnum(in, QueryType.class));
+        int secondaryCount = in.readInt();
+        if (secondaryCount >= 0) {
+            EnumSet<QueryType> secondary = EnumSet.noneOf(QueryType.class);
+            for (int i = 0; i < secondaryCount; i++) {
+                QueryType type = readEnum(in, QueryType.class);
+                if (type != null) {
+                    secondary.add(type);
+                }
+            }
+            intent.setSecondaryProcessors(secondary);
+        } else {
+            intent.setSecondaryProcessors(null);
+        }
+        intent.setConfidence(in.readDouble());
+        intent.setSummary(readString(in));
+        if (in.readBoolean()) {
+            intent.setTaskPlan(readPlan(in));
+        }
+        intent.setAttributes((Map<String, Object>) readValue(in));
+        return intent;
+    }
+
+    private static void writePlan(DataOutputStream out, TaskPlan plan) throws IOException {
+        writeString(out, plan.getSummary());
+        out.writeBoolean(plan.isRequiresTools());
+        List<TaskNode> tasks = plan.getTasks();
+        out.writeInt(tasks == null ? -1 : tasks.size());
+        if (tasks == null) {
+            return;
+        }
+        for (TaskNode task : tasks) {
+            out.writeInt(task.getStep());
+            writeString(out, task.getToolName());
+            writeString(out, task.getDescription());
+            List<Integer> dependencies = task.getDependencies();
+            out.writeInt(dependencies == null ? -1 : dependencies.size());
+            if (dependencies != null) {
+                for (Integer dependency : dependencies) {
+                    out.writeInt(dependency);
+                }
+            }
+        }
+    }
+
+    private static TaskPlan readPlan(DataInputStream in) throws IOException {
+        TaskPlan plan = new TaskPlan();
+        plan.setSummary(readString(in));
+        plan.setRequiresTools(in.readBoolean());
+        int taskCount = in.readInt();
+        if (taskCount < 0) {
+            plan.setTasks(null);
+            return plan;
+        }
+        List<TaskNode> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            TaskNode task = new TaskNode();
+            task.setStep(in.readInt());
+            task.setToolName(readString(in));
+            task.setDescription(readString(in));
+            int dependencyCount = in.readInt();
+            if (dependencyCount >= 0) {
+                List<Integer> dependencies = new ArrayList<>(dependencyCount);
+                for (int j = 0; j < dependencyCount; j++) {
+                    dependencies.add(in.readInt());
+                }
+                task.setDependencies(dependencies);
+            } else {
+                task.setDependencies(null);
+            }
+            tasks.add(task);
+        }
+        plan.setTasks(tasks);
+        return plan;
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean(bool);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(VALUE_INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong(number);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof List<?> list) {
+            out.writeByte(VALUE_LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(VALUE_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return readString(in);
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_INT:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case VALUE_MAP: {
+                int size = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 2));
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("未知的值类型标记: " + tag);
+        }
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        writeString(out, value == null ? null : value.name());
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, Class<E> type) throws IOException {
+        String name = readString(in);
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(values);
+        out.write(buffer.array());
+    }
+
+    private static float[] readFloats(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length * Float.BYTES];
+        in.readFully(bytes);
+        float[] values = new float[length];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+}
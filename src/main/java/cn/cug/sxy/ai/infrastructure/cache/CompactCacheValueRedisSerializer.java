@@ -0,0 +1,50 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 意图与任务规划缓存的Redis序列化器。
+ * QueryIntent、TaskPlan、CachedTaskPlan 使用 {@link CacheValueCodec} 二进制编码，其他类型交给 JSON 序列化器；
+ * 读取时按魔数区分，升级前写入的 JSON 数据仍可读取。
+ * 无法解码的数据（如更高格式版本写入的）返回 null 使缓存未命中，而不是抛出异常。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+public class CompactCacheValueRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> fallback;
+
+    public CompactCacheValueRedisSerializer(RedisSerializer<Object> fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (CacheValueCodec.supports(value)) {
+            return CacheValueCodec.encode(value);
+        }
+        return fallback.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!CacheValueCodec.isEncoded(bytes)) {
+            return fallback.deserialize(bytes);
+        }
+        try {
+            return CacheValueCodec.decode(bytes);
+        } catch (Exception e) {
+            log.warn("二进制缓存值解码失败，返回null使缓存失效: {}", e.getMessage());
+            return null;
+        }
+    }
+}
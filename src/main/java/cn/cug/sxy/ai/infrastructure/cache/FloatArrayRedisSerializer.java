@@ -19,6 +19,11 @@ import java.nio.ByteOrder;
 @Slf4j
 public class FloatArrayRedisSerializer implements RedisSerializer<Object> {
 
+    /**
+     * 序列化格式标记。格式变更时修改，启动时 embeddings 缓存据此自动换代（见 {@link CacheNamespaces#ensureFormat}）。
+     */
+    public static final String FORMAT_TAG = "float-le-v1";
+
     @Override
     public byte[] serialize(Object obj) throws SerializationException {
         if (obj == null) {
@@ -0,0 +1,234 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内一级缓存：按条目数与估算字节数双重限制的 LRU，淘汰前经 TinyLFU 准入过滤。
+ * <p>
+ * 1. 访问频率记录在4位计数的 Count-Min Sketch 中（每个键4个计数器取最小值），累计记录数达到采样上限时全部计数减半，
+ *    让历史热点随时间衰减
+ * 2. 容量已满时，候选键的频率低于LRU队首（最久未用）键的频率则拒绝写入，避免一次性访问的键冲掉热点
+ * 3. 条目带写入时的过期时间，读取时惰性检查
+ * <p>
+ * 缓存保存的是对象引用，调用方不得修改取出的对象。线程安全（对象锁）。
+ *
+ * @author jerryhotton
+ */
+public class LocalCacheTier {
+
+    private final int maxEntries;
+    private final long maxWeightBytes;
+    private final long ttlMillis;
+    private final FrequencySketch sketch;
+
+    private final LinkedHashMap<String, Node> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long weightBytes;
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    public LocalCacheTier(int maxEntries, long maxWeightBytes, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxWeightBytes = Math.max(1, maxWeightBytes);
+        this.ttlMillis = ttlMillis;
+        this.sketch = new FrequencySketch(this.maxEntries);
+    }
+
+    /**
+     * 读取条目（同时记录访问频率，未命中也计入）。
+     */
+    public synchronized Object get(String key) {
+        sketch.increment(key);
+        Node node = entries.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.expireAt() < System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return node.value();
+    }
+
+    /**
+     * 写入条目。
+     *
+     * @return 是否写入（超重或未通过准入过滤时返回 false）
+     */
+    public synchronized boolean put(String key, Object value) {
+        long weight = weigh(value);
+        if (weight > maxWeightBytes) {
+            rejections.incrementAndGet();
+            return false;
+        }
+        boolean replacing = remove(key);
+        Iterator<Map.Entry<String, Node>> iterator = entries.entrySet().iterator();
+        boolean admissionChecked = replacing;
+        while ((entries.size() >= maxEntries || weightBytes + weight > maxWeightBytes) && iterator.hasNext()) {
+            Map.Entry<String, Node> victim = iterator.next();
+            if (!admissionChecked) {
+                admissionChecked = true;
+                if (sketch.frequency(key) < sketch.frequency(victim.getKey())) {
+                    rejections.incrementAndGet();
+                    return false;
+                }
+            }
+            iterator.remove();
+            weightBytes -= victim.getValue().weight();
+            evictions.incrementAndGet();
+        }
+        entries.put(key, new Node(value, weight, System.currentTimeMillis() + ttlMillis));
+        weightBytes += weight;
+        return true;
+    }
+
+    public synchronized boolean remove(String key) {
+        Node node = entries.remove(key);
+        if (node == null) {
+            return false;
+        }
+        weightBytes -= node.weight();
+        return true;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weightBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weightBytes() {
+        return weightBytes;
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public long rejections() {
+        return rejections.get();
+    }
+
+    /**
+     * 估算对象占用的字节数：数组与字符串按长度估算；意图与任务计划按紧凑编码长度估算；
+     * 其他可序列化对象按Java序列化长度估算（只计数不缓冲），无法序列化时按固定值。
+     */
+    static long weigh(Object value) {
+        if (value instanceof float[] floats) {
+            return 16L + 4L * floats.length;
+        }
+        if (value instanceof byte[] bytes) {
+            return 16L + bytes.length;
+        }
+        if (value instanceof String text) {
+            return 40L + 2L * text.length();
+        }
+        try {
+            if (CacheValueCodec.supports(value)) {
+                return 16L + CacheValueCodec.encode(value).length;
+            }
+            if (value instanceof Serializable) {
+                CountingOutputStream counter = new CountingOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+                    out.writeObject(value);
+                }
+                return 16L + counter.count;
+            }
+        } catch (Exception e) {
+            // 估算失败按固定值处理，不影响写入
+        }
+        return 1024L;
+    }
+
+    /**
+     * 只统计写入字节数的输出流。
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private record Node(Object value, long weight, long expireAt) {
+    }
+
+    /**
+     * 4位计数的 Count-Min Sketch，带周期性减半衰减。
+     */
+    static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxEntries) {
+            int width = Integer.highestOneBit(Math.max(16, maxEntries) * 2 - 1) << 1;
+            this.counters = new byte[width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * Math.max(16, maxEntries);
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int seed : SEEDS) {
+                int index = index(hash, seed);
+                if (counters[index] < 15) {
+                    counters[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int min = 15;
+            for (int seed : SEEDS) {
+                min = Math.min(min, counters[index(hash, seed)]);
+            }
+            return min;
+        }
+
+        private void reset() {
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = (byte) (counters[i] >>> 1);
+            }
+            additions /= 2;
+        }
+
+        private int index(int hash, int seed) {
+            int h = (hash ^ seed) * 0x45D9F3B;
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private static int spread(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 15);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于随机超平面LSH（SimHash）的近似最近邻索引（余弦相似度）。
+ * <p>
+ * 1. 每个哈希表使用 bits 个随机超平面，向量落在超平面哪一侧决定签名的一位；夹角越小的向量签名越可能相同
+ * 2. 查询时探测每个表的同签名桶以及翻转任意一位的相邻桶（多探测），提高高阈值下的召回
+ * 3. 候选集用归一化向量的点积精确复核，只返回不低于阈值的最相似条目
+ * <p>
+ * 向量在写入时归一化并以 float[] 保存；维度在首次写入时确定，维度不一致的向量被拒绝。线程安全。
+ *
+ * @param <T> 条目值类型
+ * @author jerryhotton
+ */
+public class LshVectorIndex<T> {
+
+    private final int tables;
+    private final int bits;
+    private final long seed;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry<T>> entries = new HashMap<>();
+    private final List<Map<Integer, Set<Long>>> buckets;
+
+    // 超平面：hyperplanes[table][bit * dimension + d]，首次写入时按维度生成
+    private float[][] hyperplanes;
+    private int dimension = -1;
+
+    public LshVectorIndex(int tables, int bits, long seed) {
+        if (tables < 1 || bits < 1 || bits > 30) {
+            throw new IllegalArgumentException("LSH参数无效: tables=" + tables + ", bits=" + bits);
+        }
+        this.tables = tables;
+        this.bits = bits;
+        this.seed = seed;
+        this.buckets = new ArrayList<>(tables);
+        for (int t = 0; t < tables; t++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * 写入或替换条目。
+     *
+     * @return 向量无效（为空、零向量或维度不一致）时返回 false
+     */
+    public boolean put(long id, float[] vector, T value) {
+        float[] normalized = normalize(vector);
+        if (normalized == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (dimension < 0) {
+                initHyperplanes(normalized.length);
+            } else if (normalized.length != dimension) {
+                return false;
+            }
+            removeInternal(id);
+            int[] signatures = signatures(normalized);
+            entries.put(id, new Entry<>(normalized, signatures, value));
+            for (int t = 0; t < tables; t++) {
+                buckets.get(t).computeIfAbsent(signatures[t], k -> new HashSet<>()).add(id);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public T remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public T get(long id) {
+        lock.readLock().lock();
+        try {
+            Entry<T> entry = entries.get(id);
+            return entry != null ? entry.value() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查找与向量最相似且相似度不低于阈值的条目。
+     */
+    public Optional<Match<T>> nearest(float[] vector, double minSimilarity) {
+        float[] normalized = normalize(vector);
+        if (normalized == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            if (entries.isEmpty() || normalized.length != dimension) {
+                return Optional.empty();
+            }
+            int[] signatures = signatures(normalized);
+            Set<Long> candidates = new HashSet<>();
+            for (int t = 0; t < tables; t++) {
+                Map<Integer, Set<Long>> table = buckets.get(t);
+                collect(table.get(signatures[t]), candidates);
+                for (int b = 0; b < bits; b++) {
+                    collect(table.get(signatures[t] ^ (1 << b)), candidates);
+                }
+            }
+            long bestId = -1;
+            double best = minSimilarity;
+            boolean found = false;
+            for (Long id : candidates) {
+                double similarity = dot(normalized, entries.get(id).vector());
+                if (similarity >= best) {
+                    best = similarity;
+                    bestId = id;
+                    found = true;
+                }
+            }
+            return found
+                    ? Optional.of(new Match<>(bestId, entries.get(bestId).value(), best, candidates.size()))
+                    : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            buckets.forEach(Map::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private T removeInternal(long id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        for (int t = 0; t < tables; t++) {
+            Set<Long> bucket = buckets.get(t).get(entry.signatures()[t]);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    buckets.get(t).remove(entry.signatures()[t]);
+                }
+            }
+        }
+        return entry.value();
+    }
+
+    private void initHyperplanes(int dim) {
+        Random random = new Random(seed);
+        hyperplanes = new float[tables][bits * dim];
+        for (int t = 0; t < tables; t++) {
+            for (int i = 0; i < bits * dim; i++) {
+                hyperplanes[t][i] = (float) random.nextGaussian();
+            }
+        }
+        dimension = dim;
+    }
+
+    private int[] signatures(float[] vector) {
+        int[] signatures = new int[tables];
+        for (int t = 0; t < tables; t++) {
+            float[] planes = hyperplanes[t];
+            int signature = 0;
+            for (int b = 0; b < bits; b++) {
+                int offset = b * dimension;
+                double projection = 0.0;
+                for (int d = 0; d < dimension; d++) {
+                    projection += planes[offset + d] * vector[d];
+                }
+                if (projection >= 0) {
+                    signature |= 1 << b;
+                }
+            }
+            signatures[t] = signature;
+        }
+        return signatures;
+    }
+
+    private static void collect(Set<Long> bucket, Set<Long> candidates) {
+        if (bucket != null) {
+            candidates.addAll(bucket);
+        }
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 归一化为单位向量（副本），无效向量返回 null。
+     */
+    static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * inv;
+        }
+        return normalized;
+    }
+
+    private record Entry<T>(float[] vector, int[] signatures, T value) {
+    }
+
+    /**
+     * 查询结果：条目ID、值、余弦相似度与复核的候选数。
+     */
+    public record Match<T>(long id, T value, double similarity, int candidates) {
+    }
+}
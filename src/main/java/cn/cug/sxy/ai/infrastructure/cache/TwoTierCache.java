@@ -0,0 +1,234 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 两级缓存：进程内 L1（{@link LocalCacheTier}）在前，Redis L2 在后。
+ * <p>
+ * 读取依次查 L1、L2，L2 命中后回填 L1；写入与删除先写 L2 再更新本地 L1，并广播失效消息让其他节点删除各自的 L1 条目。
+ * L2 为空时退化为有界的进程内缓存。
+ * <p>
+ * {@link #get(Object, Callable)} 对同一键单飞加载：并发未命中时只有一个线程调用加载器，其他线程等待并共享其结果（或异常）。
+ *
+ * @author jerryhotton
+ */
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final LocalCacheTier l1;
+    private final Cache l2;
+    private final BiConsumer<String, String> invalidationPublisher; // (cacheName, key)，key 为 null 表示清空
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong l1Hits = new AtomicLong();
+    private final AtomicLong l2Hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong puts = new AtomicLong();
+    private final AtomicLong remoteInvalidations = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong sharedLoads = new AtomicLong();
+
+    public TwoTierCache(String name, LocalCacheTier l1, Cache l2, BiConsumer<String, String> invalidationPublisher) {
+        this.name = name;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2 != null ? l2.getNativeCache() : l1;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object local = l1.get(localKey);
+        if (local != null) {
+            l1Hits.incrementAndGet();
+            return new SimpleValueWrapper(local);
+        }
+        if (l2 != null) {
+            ValueWrapper remote = l2.get(key);
+            if (remote != null && remote.get() != null) {
+                l2Hits.incrementAndGet();
+                l1.put(localKey, remote.get());
+                return remote;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值类型不匹配: cache=" + name + ", 期望 " + type.getName()
+                    + ", 实际 " + value.getClass().getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        String localKey = localKey(key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> inFlight = loading.putIfAbsent(localKey, flight);
+        if (inFlight != null) {
+            sharedLoads.incrementAndGet();
+            try {
+                return (T) inFlight.join();
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+        try {
+            // 未命中后、登记加载前，其他线程可能刚完成加载并写入 L1
+            Object local = l1.get(localKey);
+            if (local != null) {
+                flight.complete(local);
+                return (T) local;
+            }
+            loads.incrementAndGet();
+            T value = valueLoader.call();
+            if (value != null) {
+                put(key, value);
+            }
+            flight.complete(value);
+            return value;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(localKey, flight);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        if (l2 != null) {
+            l2.put(key, value);
+        }
+        String localKey = localKey(key);
+        l1.put(localKey, value);
+        puts.incrementAndGet();
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (l2 != null) {
+            l2.evict(key);
+        }
+        String localKey = localKey(key);
+        l1.remove(localKey);
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        if (l2 != null) {
+            l2.clear();
+        }
+        l1.clear();
+        invalidationPublisher.accept(name, null);
+    }
+
+    /**
+     * 处理其他节点广播的失效消息：只删除本地 L1。
+     *
+     * @param localKey 键，null 表示清空
+     */
+    void invalidateLocal(String localKey) {
+        remoteInvalidations.incrementAndGet();
+        if (localKey == null) {
+            l1.clear();
+        } else {
+            l1.remove(localKey);
+        }
+    }
+
+    public TierStats getStats() {
+        long l1HitCount = l1Hits.get();
+        long l2HitCount = l2Hits.get();
+        long requests = l1HitCount + l2HitCount + misses.get();
+        long l1Misses = requests - l1HitCount;
+        return TierStats.builder()
+                .name(name)
+                .requests(requests)
+                .l1Hits(l1HitCount)
+                .l2Hits(l2HitCount)
+                .misses(misses.get())
+                .l1HitRatio(requests == 0 ? 0.0 : (double) l1HitCount / requests)
+                .l2HitRatio(l1Misses == 0 ? 0.0 : (double) l2HitCount / l1Misses)
+                .l1Size(l1.size())
+                .l1WeightBytes(l1.weightBytes())
+                .l1Evictions(l1.evictions())
+                .l1Rejections(l1.rejections())
+                .puts(puts.get())
+                .remoteInvalidations(remoteInvalidations.get())
+                .loads(loads.get())
+                .sharedLoads(sharedLoads.get())
+                .build();
+    }
+
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    /**
+     * 单个缓存的分级命中统计。l2HitRatio 以 L1 未命中的请求为分母；sharedLoads 为等待其他线程加载结果的次数。
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TierStats {
+        private String name;
+        private long requests;
+        private long l1Hits;
+        private long l2Hits;
+        private long misses;
+        private double l1HitRatio;
+        private double l2HitRatio;
+        private int l1Size;
+        private long l1WeightBytes;
+        private long l1Evictions;
+        private long l1Rejections;
+        private long puts;
+        private long remoteInvalidations;
+        private long loads;
+        private long sharedLoads;
+    }
+}
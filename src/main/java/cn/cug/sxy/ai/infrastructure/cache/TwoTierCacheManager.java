@@ -0,0 +1,128 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 两级缓存管理器：每个缓存由进程内 L1 与 Redis L2（委托的 CacheManager）组成。
+ * <p>
+ * 写入与删除通过 Redis 发布/订阅广播失效消息（节点ID|缓存名|键），其他节点收到后删除本地 L1 条目；
+ * 自己发出的消息被忽略。广播丢失时本地条目最迟在 L1 TTL 后过期。
+ *
+ * @author jerryhotton
+ */
+@Slf4j
+public class TwoTierCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+
+    private static final char SEPARATOR = '\u0001';
+    private static final String CLEAR_MARKER = "\u0002";
+
+    private final CacheManager l2Manager;
+    private final TwoTierCacheProperties properties;
+    private final StringRedisTemplate publisher;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoTierCache> twoTierCaches = new ConcurrentHashMap<>();
+
+    /**
+     * @param l2Manager Redis 缓存管理器，为 null 时只有 L1
+     * @param publisher 失效广播发布者，为 null 时不广播（单节点）
+     */
+    public TwoTierCacheManager(CacheManager l2Manager, TwoTierCacheProperties properties, StringRedisTemplate publisher) {
+        this.l2Manager = l2Manager;
+        this.properties = properties;
+        this.publisher = publisher;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        if (l2Manager == null) {
+            return properties.getCaches().keySet().stream().map(this::createCache).toList();
+        }
+        List<Cache> caches = new ArrayList<>();
+        for (String name : l2Manager.getCacheNames()) {
+            caches.add(createCache(name));
+        }
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    private Cache createCache(String name) {
+        return twoTierCaches.computeIfAbsent(name, cacheName -> {
+            TwoTierCacheProperties.CacheSpec spec = properties.specOf(cacheName);
+            LocalCacheTier l1 = new LocalCacheTier(spec.getL1MaxEntries(), spec.getL1MaxWeightBytes(),
+                    spec.getL1Ttl().toMillis());
+            Cache l2 = l2Manager != null ? l2Manager.getCache(cacheName) : null;
+            log.info("创建两级缓存: {}, L1 上限: {} 条 / {} 字节, L1 TTL: {}, L2: {}", cacheName, spec.getL1MaxEntries(),
+                    spec.getL1MaxWeightBytes(), spec.getL1Ttl(), l2 != null ? "Redis" : "无");
+            return new TwoTierCache(cacheName, l1, l2, this::publishInvalidation);
+        });
+    }
+
+    /**
+     * 各缓存的分级命中统计。
+     */
+    public List<TwoTierCache.TierStats> getStats() {
+        List<TwoTierCache.TierStats> stats = new ArrayList<>();
+        twoTierCaches.values().forEach(cache -> stats.add(cache.getStats()));
+        return Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * 清空指定缓存的本地 L1（不广播，不影响 L2），用于缓存换代后丢弃旧值。
+     */
+    public void invalidateLocal(String cacheName) {
+        TwoTierCache cache = twoTierCaches.get(cacheName);
+        if (cache != null) {
+            cache.invalidateLocal(null);
+        }
+    }
+
+    private void publishInvalidation(String cacheName, String key) {
+        if (publisher == null) {
+            return;
+        }
+        try {
+            publisher.convertAndSend(properties.getChannel(),
+                    nodeId + SEPARATOR + cacheName + SEPARATOR + (key != null ? key : CLEAR_MARKER));
+        } catch (Exception e) {
+            // 广播失败不影响本地写入，其他节点的 L1 条目在 L1 TTL 后过期
+            log.debug("缓存失效广播失败 cache={}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int first = body.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : body.indexOf(SEPARATOR, first + 1);
+        if (second < 0) {
+            return;
+        }
+        if (nodeId.equals(body.substring(0, first))) {
+            return;
+        }
+        TwoTierCache cache = twoTierCaches.get(body.substring(first + 1, second));
+        if (cache != null) {
+            String key = body.substring(second + 1);
+            cache.invalidateLocal(CLEAR_MARKER.equals(key) ? null : key);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.cug.sxy.ai.infrastructure.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 两级缓存配置（rag.cache.two-tier）。
+ *
+ * @author jerryhotton
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rag.cache.two-tier")
+public class TwoTierCacheProperties {
+
+    /**
+     * 是否启用进程内 L1（关闭时直接使用 Redis 缓存）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 跨节点失效广播频道
+     */
+    private String channel = "rag:cache:invalidate";
+
+    /**
+     * 未单独配置的缓存使用的默认值
+     */
+    private CacheSpec defaults = new CacheSpec();
+
+    /**
+     * 按缓存名称覆盖的配置
+     */
+    private Map<String, CacheSpec> caches = new HashMap<>();
+
+    public CacheSpec specOf(String cacheName) {
+        CacheSpec spec = caches.get(cacheName);
+        if (spec == null) {
+            return defaults;
+        }
+        CacheSpec merged = new CacheSpec();
+        merged.setTtl(spec.getTtl() != null ? spec.getTtl() : defaults.getTtl());
+        merged.setL1Ttl(spec.getL1Ttl() != null ? spec.getL1Ttl() : defaults.getL1Ttl());
+        merged.setL1MaxEntries(spec.getL1MaxEntries() != null ? spec.getL1MaxEntries() : defaults.getL1MaxEntries());
+        merged.setL1MaxWeightBytes(spec.getL1MaxWeightBytes() != null ? spec.getL1MaxWeightBytes() : defaults.getL1MaxWeightBytes());
+        return merged;
+    }
+
+    @Data
+    public static class CacheSpec {
+        /**
+         * L2（Redis）TTL，为空时使用 spring.cache.redis.time-to-live
+         */
+        private Duration ttl;
+        /**
+         * L1 TTL：其他节点写入后，本地条目最迟在该时间后失效（失效广播丢失时的兜底）
+         */
+        private Duration l1Ttl = Duration.ofMinutes(10);
+        private Integer l1MaxEntries = 10_000;
+        private Long l1MaxWeightBytes = 64L * 1024 * 1024;
+    }
+}
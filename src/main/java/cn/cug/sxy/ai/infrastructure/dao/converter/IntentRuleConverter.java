@@ -28,6 +28,8 @@ public class IntentRuleConverter {
                 .confidence(entity.getConfidence())
                 .priority(entity.getPriority())
                 .isActive(entity.getIsActive())
+                .embedding(entity.getEmbedding())
+                .embeddingModel(entity.getEmbeddingModel())
                 .createdAt(entity.getCreatedAt())
                 .updatedAt(entity.getUpdatedAt())
                 .build();
@@ -47,6 +49,8 @@ public class IntentRuleConverter {
                 .confidence(po.getConfidence())
                 .priority(po.getPriority())
                 .isActive(po.getIsActive())
+                .embedding(po.getEmbedding())
+                .embeddingModel(po.getEmbeddingModel())
                 .createdAt(po.getCreatedAt())
                 .updatedAt(po.getUpdatedAt())
                 .build();
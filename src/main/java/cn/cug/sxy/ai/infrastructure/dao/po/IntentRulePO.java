@@ -87,6 +87,16 @@ public class IntentRulePO {
      */
     private Double semanticThreshold;
 
+    /**
+     * 语义示例向量（pgvector）
+     */
+    private float[] embedding;
+
+    /**
+     * 嵌入模型标识
+     */
+    private String embeddingModel;
+
     /**
      * 创建时间
      */
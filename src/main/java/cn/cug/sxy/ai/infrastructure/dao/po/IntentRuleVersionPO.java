@@ -0,0 +1,34 @@
+package cn.cug.sxy.ai.infrastructure.dao.po;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * @version 1.0
+ * @Description 意图规则变更版本持久化对象
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IntentRuleVersionPO {
+
+    /**
+     * 版本号（自增）
+     */
+    private Long version;
+
+    /**
+     * 变更的规则ID，null 表示全量刷新
+     */
+    private Long ruleId;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,57 @@
+package cn.cug.sxy.ai.infrastructure.dao.po;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @version 1.0
+ * @Description 查询路由结果（查询与响应关联）持久化对象
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RoutingOutcomePO {
+
+    /**
+     * 查询ID
+     */
+    private Long queryId;
+
+    /**
+     * 路由目标
+     */
+    private String routeTarget;
+
+    /**
+     * 查询最终状态
+     */
+    private String status;
+
+    /**
+     * 处理延迟（毫秒）
+     */
+    private Long latencyMs;
+
+    /**
+     * 打包进提示词的上下文Token数
+     */
+    private Integer contextTokens;
+
+    /**
+     * 最高检索分
+     */
+    private Double retrievalTopScore;
+
+    /**
+     * 忠实度评分
+     */
+    private Integer faithfulnessScore;
+
+    /**
+     * 相关性评分
+     */
+    private Integer relevanceScore;
+}
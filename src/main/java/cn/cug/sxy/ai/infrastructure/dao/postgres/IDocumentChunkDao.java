@@ -73,6 +73,22 @@ public interface IDocumentChunkDao {
      */
     List<DocumentChunkPO> selectByDocumentId(Long documentId);
 
+    /**
+     * 根据文档ID查询所有文档块ID
+     *
+     * @param documentId 文档ID
+     * @return 文档块ID列表
+     */
+    List<Long> selectIdsByDocumentId(Long documentId);
+
+    /**
+     * 查询文档块当前的向量化状态
+     *
+     * @param id 文档块ID
+     * @return 是否已向量化，文档块不存在时返回null
+     */
+    Boolean selectVectorizedById(Long id);
+
     /**
      * 根据条件查询文档块列表
      *
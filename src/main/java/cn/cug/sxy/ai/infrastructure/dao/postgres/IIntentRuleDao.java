@@ -28,6 +28,11 @@ public interface IIntentRuleDao {
      */
     IntentRulePO selectById(Long id);
 
+    /**
+     * 根据ID批量查询规则（含禁用）
+     */
+    List<IntentRulePO> selectByIds(@Param("ids") List<Long> ids);
+
     /**
      * 根据类型查询规则
      */
@@ -43,6 +48,13 @@ public interface IIntentRuleDao {
      */
     int updateById(IntentRulePO rulePO);
 
+    /**
+     * 更新语义示例向量及其嵌入模型标识
+     */
+    int updateEmbedding(@Param("id") Long id,
+                        @Param("embedding") float[] embedding,
+                        @Param("embeddingModel") String embeddingModel);
+
     /**
      * 删除规则
      */
@@ -0,0 +1,36 @@
+package cn.cug.sxy.ai.infrastructure.dao.postgres;
+
+import cn.cug.sxy.ai.infrastructure.dao.po.IntentRuleVersionPO;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * @version 1.0
+ * @Description 意图规则变更版本数据访问接口
+ */
+@Mapper
+public interface IIntentRuleVersionDao {
+
+    /**
+     * 获取版本追加锁（事务级咨询锁，提交或回滚时释放），需与追加在同一事务中调用
+     */
+    Integer lockForAppend();
+
+    /**
+     * 批量追加变更记录，ruleId 为 null 表示全量刷新
+     */
+    int batchInsert(@Param("ruleIds") List<Long> ruleIds);
+
+    /**
+     * 当前最大版本号，无记录时为 0
+     */
+    long selectLatestVersion();
+
+    /**
+     * 查询指定版本之后的变更记录（按版本升序）
+     */
+    List<IntentRuleVersionPO> selectSince(@Param("version") long version);
+
+}
@@ -1,6 +1,7 @@
 package cn.cug.sxy.ai.infrastructure.dao.postgres;
 
 import cn.cug.sxy.ai.infrastructure.dao.po.QueryPO;
+import cn.cug.sxy.ai.infrastructure.dao.po.RoutingOutcomePO;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -84,13 +85,17 @@ public interface IQueryDao {
      * @param completeTime 完成时间
      * @param latencyMs 处理延迟（毫秒）
      * @param errorMessage 错误信息（可选）
+     * @param queryType 处理器类型（可选，为空时不更新）
+     * @param routeTarget 路由目标（可选，为空时不更新）
      * @return 受影响的行数
      */
     int updateStatus(@Param("id") Long id,
                      @Param("status") String status,
                      @Param("completeTime") LocalDateTime completeTime,
                      @Param("latencyMs") Long latencyMs,
-                     @Param("errorMessage") String errorMessage);
+                     @Param("errorMessage") String errorMessage,
+                     @Param("queryType") String queryType,
+                     @Param("routeTarget") String routeTarget);
 
     /**
      * 根据时间范围查询列表
@@ -159,4 +164,14 @@ public interface IQueryDao {
      */
     int updateResponseIds(@Param("id") Long id, @Param("responseIds") String responseIds);
 
+    /**
+     * 查询指定路由目标前缀的最近路由结果（关联最新响应的评估分数与元数据指标）
+     *
+     * @param routeTargetPrefix 路由目标前缀
+     * @param limit 限制数量
+     * @return 路由结果列表，按查询ID倒序
+     */
+    List<RoutingOutcomePO> selectRoutingOutcomes(@Param("routeTargetPrefix") String routeTargetPrefix,
+                                                 @Param("limit") int limit);
+
 }
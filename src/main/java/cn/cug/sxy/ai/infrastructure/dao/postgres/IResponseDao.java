@@ -25,6 +25,13 @@ public interface IResponseDao {
      */
     int insert(ResponsePO response);
 
+    /**
+     * 从响应表的ID序列取下一个值
+     *
+     * @return 新的响应ID
+     */
+    Long nextId();
+
     /**
      * 通过ID查询响应
      *
@@ -1,13 +1,11 @@
 package cn.cug.sxy.ai.infrastructure.embedding;
 
-import jakarta.annotation.Resource;
+import cn.cug.sxy.ai.infrastructure.cache.CacheLoadCoordinator;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -25,38 +23,40 @@ public class SpringAIEmbeddingService implements IEmbeddingService {
 
     private final EmbeddingModel embeddingModel;
     private final CacheManager cacheManager;
+    private final CacheLoadCoordinator cacheLoadCoordinator;
 
     // 向量维度缓存，避免重复计算
     private Integer cachedDimensions;
 
-    // 自我注入，解决@Cacheable自调用问题
-    @Resource
-    @Lazy
-    private SpringAIEmbeddingService self;
-    
     // API批量大小限制（根据API文档，通义千问限制为10）
     @org.springframework.beans.factory.annotation.Value("${rag.embedding.batch-size:10}")
     private int apiBatchSize;
 
     public SpringAIEmbeddingService(
             EmbeddingModel embeddingModel,
-            CacheManager cacheManager) {
+            CacheManager cacheManager,
+            CacheLoadCoordinator cacheLoadCoordinator) {
         this.embeddingModel = embeddingModel;
         this.cacheManager = cacheManager;
+        this.cacheLoadCoordinator = cacheLoadCoordinator;
     }
 
     /**
-     * 为单个文本生成向量嵌入
+     * 为单个文本生成向量嵌入。
+     * 读取embeddings缓存，同一文本同时未命中时只调用一次嵌入API（见 {@link CacheLoadCoordinator}）。
      *
      * @param text 输入文本
      * @return 向量嵌入数组
      */
     @Override
-    @Cacheable(value = "embeddings", key = "#text.hashCode()", unless = "#result == null")
     public float[] generateEmbedding(String text) {
         if (StringUtils.isBlank(text)) {
             throw new IllegalArgumentException("嵌入文本不能为空");
         }
+        return cacheLoadCoordinator.get("embeddings", text.hashCode(), () -> embed(text), Objects::nonNull);
+    }
+
+    private float[] embed(String text) {
         try {
             log.info("生成文本嵌入向量，文本长度: {}", text.length());
             return embeddingModel.embed(text);
@@ -235,8 +235,7 @@ public class SpringAIEmbeddingService implements IEmbeddingService {
             return cachedDimensions;
         }
         try {
-            // 使用self引用调用缓存方法，确保缓存生效
-            float[] sampleEmbedding = self.generateEmbedding("测试嵌入维度");
+            float[] sampleEmbedding = generateEmbedding("测试嵌入维度");
             cachedDimensions = sampleEmbedding.length;
             return cachedDimensions;
         } catch (Exception e) {
@@ -1,10 +1,12 @@
 package cn.cug.sxy.ai.infrastructure.repository;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.DocumentChunk;
+import cn.cug.sxy.ai.domain.rag.model.valobj.DocumentChunkChangedEvent;
 import cn.cug.sxy.ai.domain.rag.repository.IDocumentChunkRepository;
 import cn.cug.sxy.ai.infrastructure.dao.postgres.IDocumentChunkDao;
 import cn.cug.sxy.ai.infrastructure.dao.converter.DocumentChunkConverter;
 import cn.cug.sxy.ai.infrastructure.dao.po.DocumentChunkPO;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -23,12 +25,15 @@ public class DocumentChunkRepository implements IDocumentChunkRepository {
 
     private final IDocumentChunkDao documentChunkDao;
     private final DocumentChunkConverter documentChunkConverter;
+    private final ApplicationEventPublisher eventPublisher;
 
     public DocumentChunkRepository(
             IDocumentChunkDao documentChunkDao,
-            DocumentChunkConverter documentChunkConverter) {
+            DocumentChunkConverter documentChunkConverter,
+            ApplicationEventPublisher eventPublisher) {
         this.documentChunkDao = documentChunkDao;
         this.documentChunkConverter = documentChunkConverter;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -40,6 +45,7 @@ public class DocumentChunkRepository implements IDocumentChunkRepository {
             chunk.setId(po.getId());
         } else {
             documentChunkDao.updateById(po);
+            publishChanged(List.of(chunk.getId()), DocumentChunkChangedEvent.ChangeType.REINDEXED);
         }
 
         return chunk;
@@ -84,17 +90,29 @@ public class DocumentChunkRepository implements IDocumentChunkRepository {
     @Override
     public boolean deleteById(Long id) {
         int result = documentChunkDao.deleteById(id);
+        if (result > 0) {
+            publishChanged(List.of(id), DocumentChunkChangedEvent.ChangeType.DELETED);
+        }
         return result > 0;
     }
 
     @Override
     public int deleteByDocumentId(Long documentId) {
-        return documentChunkDao.deleteByDocumentId(documentId);
+        // 删除前读取块ID（只查ID，不加载内容与向量），供依赖块内容的缓存失效
+        List<Long> chunkIds = documentChunkDao.selectIdsByDocumentId(documentId);
+        int result = documentChunkDao.deleteByDocumentId(documentId);
+        publishChanged(chunkIds, DocumentChunkChangedEvent.ChangeType.DELETED);
+        return result;
     }
 
     @Override
     public boolean updateVectorized(Long id, boolean vectorized, Long vectorId) {
+        // 首次向量化不影响已缓存的回答，只有已向量化的块重新索引时才通知缓存失效
+        boolean wasVectorized = Boolean.TRUE.equals(documentChunkDao.selectVectorizedById(id));
         int result = documentChunkDao.updateVectorized(id, vectorized, vectorId);
+        if (result > 0 && wasVectorized) {
+            publishChanged(List.of(id), DocumentChunkChangedEvent.ChangeType.REINDEXED);
+        }
         return result > 0;
     }
 
@@ -121,4 +139,10 @@ public class DocumentChunkRepository implements IDocumentChunkRepository {
         return documentChunkDao.countNonVectorizedByDocumentId(documentId);
     }
 
+    private void publishChanged(List<Long> chunkIds, DocumentChunkChangedEvent.ChangeType changeType) {
+        if (!chunkIds.isEmpty()) {
+            eventPublisher.publishEvent(new DocumentChunkChangedEvent(this, chunkIds, changeType));
+        }
+    }
+
 }
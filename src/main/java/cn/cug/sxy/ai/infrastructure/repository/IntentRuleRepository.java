@@ -1,12 +1,16 @@
 package cn.cug.sxy.ai.infrastructure.repository;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChange;
 import cn.cug.sxy.ai.domain.rag.repository.IIntentRuleRepository;
 import cn.cug.sxy.ai.infrastructure.dao.postgres.IIntentRuleDao;
+import cn.cug.sxy.ai.infrastructure.dao.postgres.IIntentRuleVersionDao;
 import cn.cug.sxy.ai.infrastructure.dao.converter.IntentRuleConverter;
 import cn.cug.sxy.ai.infrastructure.dao.po.IntentRulePO;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,12 +22,15 @@ import java.util.Optional;
 public class IntentRuleRepository implements IIntentRuleRepository {
 
     private final IIntentRuleDao intentRuleDao;
+    private final IIntentRuleVersionDao intentRuleVersionDao;
     private final IntentRuleConverter intentRuleConverter;
 
     public IntentRuleRepository(
             IIntentRuleDao intentRuleDao,
+            IIntentRuleVersionDao intentRuleVersionDao,
             IntentRuleConverter intentRuleConverter) {
         this.intentRuleDao = intentRuleDao;
+        this.intentRuleVersionDao = intentRuleVersionDao;
         this.intentRuleConverter = intentRuleConverter;
     }
 
@@ -45,6 +52,15 @@ public class IntentRuleRepository implements IIntentRuleRepository {
         return Optional.ofNullable(intentRuleConverter.toEntity(po));
     }
 
+    @Override
+    public List<IntentRule> findByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<IntentRulePO> pos = intentRuleDao.selectByIds(ids);
+        return intentRuleConverter.toEntityList(pos);
+    }
+
     @Override
     public List<IntentRule> findByType(String ruleType) {
         List<IntentRulePO> pos = intentRuleDao.selectByType(ruleType);
@@ -65,6 +81,11 @@ public class IntentRuleRepository implements IIntentRuleRepository {
         return intentRuleDao.updateById(po);
     }
 
+    @Override
+    public int updateEmbedding(Long id, float[] embedding, String embeddingModel) {
+        return intentRuleDao.updateEmbedding(id, embedding, embeddingModel);
+    }
+
     @Override
     public int deleteById(Long id) {
         return intentRuleDao.deleteById(id);
@@ -74,4 +95,29 @@ public class IntentRuleRepository implements IIntentRuleRepository {
     public int batchDelete(List<Long> ids) {
         return intentRuleDao.batchDelete(ids);
     }
+
+    /**
+     * 版本号取自 BIGSERIAL，并发事务取号顺序与提交顺序可能不同：后取号的事务先提交时，
+     * 按 version > 已同步版本 拉取的节点会永久跳过先取号、后提交的变更。
+     * 追加前在同一事务中获取咨询锁，上一个追加事务提交后下一个才取号，版本号即按提交顺序递增。
+     */
+    @Override
+    @Transactional
+    public long recordChange(List<Long> ruleIds) {
+        intentRuleVersionDao.lockForAppend();
+        intentRuleVersionDao.batchInsert(ruleIds);
+        return intentRuleVersionDao.selectLatestVersion();
+    }
+
+    @Override
+    public long latestVersion() {
+        return intentRuleVersionDao.selectLatestVersion();
+    }
+
+    @Override
+    public List<IntentRuleChange> findChangesSince(long version) {
+        return intentRuleVersionDao.selectSince(version).stream()
+                .map(po -> new IntentRuleChange(po.getVersion(), po.getRuleId()))
+                .toList();
+    }
 }
@@ -1,6 +1,7 @@
 package cn.cug.sxy.ai.infrastructure.repository;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RoutingOutcome;
 import cn.cug.sxy.ai.domain.rag.repository.IQueryRepository;
 import cn.cug.sxy.ai.infrastructure.dao.postgres.IQueryDao;
 import cn.cug.sxy.ai.infrastructure.dao.converter.QueryConverter;
@@ -94,7 +95,13 @@ public class QueryRepository implements IQueryRepository {
 
     @Override
     public boolean updateStatus(Long id, String status, LocalDateTime completeTime, Long latencyMs, String errorMessage) {
-        int result = queryDao.updateStatus(id, status, completeTime, latencyMs, errorMessage);
+        return updateStatus(id, status, completeTime, latencyMs, errorMessage, null, null);
+    }
+
+    @Override
+    public boolean updateStatus(Long id, String status, LocalDateTime completeTime, Long latencyMs, String errorMessage,
+                                String queryType, String routeTarget) {
+        int result = queryDao.updateStatus(id, status, completeTime, latencyMs, errorMessage, queryType, routeTarget);
         return result > 0;
     }
 
@@ -124,4 +131,12 @@ public class QueryRepository implements IQueryRepository {
         return countMap;
     }
 
+    @Override
+    public List<RoutingOutcome> findRoutingOutcomes(String routeTargetPrefix, int limit) {
+        return queryDao.selectRoutingOutcomes(routeTargetPrefix, limit).stream()
+                .map(po -> new RoutingOutcome(po.getQueryId(), po.getRouteTarget(), po.getStatus(), po.getLatencyMs(),
+                        po.getContextTokens(), po.getRetrievalTopScore(), po.getFaithfulnessScore(), po.getRelevanceScore()))
+                .toList();
+    }
+
 }
@@ -47,6 +47,19 @@ public class ResponseRepository implements IResponseRepository {
         return response;
     }
 
+    @Override
+    public Long nextId() {
+        return responseDao.nextId();
+    }
+
+    @Override
+    public Response insert(Response response) {
+        ResponsePO po = responseConverter.toPO(response);
+        responseDao.insert(po);
+        response.setId(po.getId());
+        return response;
+    }
+
     @Override
     public Optional<Response> findById(Long id) {
         ResponsePO po = responseDao.selectById(id);
@@ -6,6 +6,7 @@ import cn.cug.sxy.ai.api.response.ApiResponse;
 import cn.cug.sxy.ai.api.vo.IntentRuleVO;
 import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentRuleService;
+import cn.cug.sxy.ai.domain.rag.service.intent.IntentRuleSyncService;
 import cn.cug.sxy.ai.domain.rag.service.intent.detector.SemanticIntentDetector;
 import cn.cug.sxy.ai.trigger.http.converter.ToVOConverter;
 import jakarta.validation.Valid;
@@ -32,6 +33,7 @@ public class IntentRuleAdminController implements IIntentRuleAdminService {
 
     private final IntentRuleService intentRuleService;
     private final SemanticIntentDetector semanticIntentDetector;
+    private final IntentRuleSyncService intentRuleSyncService;
 
     @Override
     @PostMapping("/refresh")
@@ -45,6 +47,12 @@ public class IntentRuleAdminController implements IIntentRuleAdminService {
         }
     }
 
+    @Override
+    @GetMapping("/version")
+    public ApiResponse<Map<String, Object>> getRuleVersion() {
+        return ApiResponse.success(intentRuleSyncService.getStatus());
+    }
+
     @Override
     @GetMapping
     public ApiResponse<List<IntentRuleVO>> listRules() {
@@ -66,7 +74,6 @@ public class IntentRuleAdminController implements IIntentRuleAdminService {
         }
         
         IntentRule savedRule = intentRuleService.createRule(rule);
-        refreshCaches();
         return ApiResponse.success("规则创建成功", ToVOConverter.toIntentRuleVO(savedRule));
     }
 
@@ -85,7 +92,6 @@ public class IntentRuleAdminController implements IIntentRuleAdminService {
         rule.setUpdatedAt(LocalDateTime.now());
         
         IntentRule updatedRule = intentRuleService.updateRule(rule);
-        refreshCaches();
         return ApiResponse.success("规则更新成功", ToVOConverter.toIntentRuleVO(updatedRule));
     }
 
@@ -93,13 +99,17 @@ public class IntentRuleAdminController implements IIntentRuleAdminService {
     @DeleteMapping("/{id}")
     public ApiResponse<Void> deleteRule(@PathVariable Long id) {
         intentRuleService.deleteRule(id);
-        refreshCaches();
         return ApiResponse.success("规则删除成功", null);
     }
 
+    /**
+     * 全量刷新：重新加载规则表并补齐缺失的语义示例向量，再通知其他节点重新加载。
+     * 单条增删改由 IntentRuleService 增量更新并经 IntentRuleSyncService 广播，无需调用。
+     */
     private void refreshCaches() {
         intentRuleService.refreshRules();
         semanticIntentDetector.refreshRoutes();
+        intentRuleSyncService.announceFullRefresh();
     }
 
 }
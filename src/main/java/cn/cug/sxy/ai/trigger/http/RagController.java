@@ -6,17 +6,32 @@ import cn.cug.sxy.ai.api.response.ApiResponse;
 import cn.cug.sxy.ai.api.vo.DocumentDetailVO;
 import cn.cug.sxy.ai.api.vo.ResponseVO;
 import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.model.valobj.RagStreamEvent;
 import cn.cug.sxy.ai.domain.rag.service.IRagOrchestrationService;
 import cn.cug.sxy.ai.domain.rag.model.entity.Document;
 import cn.cug.sxy.ai.domain.rag.model.entity.Response;
 import cn.cug.sxy.ai.domain.rag.service.IDocumentService;
+import cn.cug.sxy.ai.domain.rag.service.generation.GenerationCache;
+import cn.cug.sxy.ai.domain.rag.service.generation.SemanticAnswerCache;
+import cn.cug.sxy.ai.domain.rag.service.intent.cache.TaskPlanCacheService;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.routing.AdaptiveQueryRouter;
+import cn.cug.sxy.ai.domain.rag.service.routing.LoadBasedQueryRouter;
+import cn.cug.sxy.ai.domain.rag.service.routing.SystemLoadMonitor;
+import cn.cug.sxy.ai.infrastructure.cache.CacheLoadCoordinator;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCacheManager;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -33,12 +48,36 @@ public class RagController implements IRagService {
 
     private final IDocumentService documentService;
     private final IRagOrchestrationService ragService;
+    private final LoadBasedQueryRouter loadBasedQueryRouter;
+    private final AdaptiveQueryRouter adaptiveQueryRouter;
+    private final ChatGateway chatGateway;
+    private final GenerationCache generationCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final TaskPlanCacheService taskPlanCacheService;
+    private final CacheManager cacheManager;
+    private final CacheLoadCoordinator cacheLoadCoordinator;
 
     public RagController(
             IDocumentService documentService,
-            IRagOrchestrationService ragService) {
+            IRagOrchestrationService ragService,
+            LoadBasedQueryRouter loadBasedQueryRouter,
+            AdaptiveQueryRouter adaptiveQueryRouter,
+            ChatGateway chatGateway,
+            GenerationCache generationCache,
+            SemanticAnswerCache semanticAnswerCache,
+            TaskPlanCacheService taskPlanCacheService,
+            CacheManager cacheManager,
+            CacheLoadCoordinator cacheLoadCoordinator) {
         this.documentService = documentService;
         this.ragService = ragService;
+        this.loadBasedQueryRouter = loadBasedQueryRouter;
+        this.adaptiveQueryRouter = adaptiveQueryRouter;
+        this.chatGateway = chatGateway;
+        this.generationCache = generationCache;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.taskPlanCacheService = taskPlanCacheService;
+        this.cacheManager = cacheManager;
+        this.cacheLoadCoordinator = cacheLoadCoordinator;
     }
 
     @RequestMapping(value = "/documents/upload", method = RequestMethod.POST, consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -91,6 +130,128 @@ public class RagController implements IRagService {
         }
     }
 
+    /**
+     * 流式查询（Server-Sent Events）。
+     * 事件依次为 sources（检索来源）、token（回答片段，可多次）、done（含TTFT等统计）；出错时发送 error。
+     */
+    @RequestMapping(value = "/query/stream", method = RequestMethod.POST, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Override
+    public Flux<ServerSentEvent<Object>> queryDocumentStream(@RequestBody QueryRequestDTO requestDTO) {
+        log.info("收到流式查询请求: {}", requestDTO.getQuery());
+        String sessionId = requestDTO.getSessionId();
+        if (sessionId == null || sessionId.isEmpty()) {
+            sessionId = UUID.randomUUID().toString();
+        }
+        return ragService.streamQuery(
+                        requestDTO.getQuery(),
+                        requestDTO.getUserId(),
+                        sessionId,
+                        buildQueryParams(requestDTO.getParams()))
+                .onErrorResume(e -> {
+                    log.error("流式查询处理失败: {}", e.getMessage(), e);
+                    return Flux.just(RagStreamEvent.error("查询处理失败: " + e.getMessage()));
+                })
+                .map(event -> ServerSentEvent.builder(event.getData())
+                        .event(event.getType().name().toLowerCase())
+                        .build());
+    }
+
+    @Override
+    @GetMapping("/load")
+    public ApiResponse<Map<String, Object>> getLoadStatus() {
+        SystemLoadMonitor.LoadStats stats = loadBasedQueryRouter.getStats();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", stats.isEnabled());
+        status.put("level", stats.getLevel());
+        status.put("levelValue", stats.getLevelValue());
+        status.put("sample", stats.getLastSample());
+        status.put("sampledAt", stats.getLastSampleAt());
+        status.put("queriesByLevel", stats.getQueriesByLevel());
+        status.put("escalations", stats.getEscalations());
+        return ApiResponse.success(status);
+    }
+
+    @Override
+    @GetMapping("/routing/adaptive")
+    public ApiResponse<Map<String, Object>> getAdaptiveRoutingStatus() {
+        AdaptiveQueryRouter.AdaptiveStats stats = adaptiveQueryRouter.getStats();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", stats.isEnabled());
+        status.put("explorationRate", stats.getExplorationRate());
+        status.put("decisions", stats.getDecisions());
+        status.put("explored", stats.getExplored());
+        status.put("overridden", stats.getOverridden());
+        status.put("learned", stats.getLearned());
+        status.put("dropped", stats.getDropped());
+        status.put("untracked", stats.getUntracked());
+        status.put("pending", stats.getPending());
+        status.put("warmStarted", stats.getWarmStarted());
+        status.put("arms", stats.getArms());
+        return ApiResponse.success(status);
+    }
+
+    @Override
+    @GetMapping("/llm-gateway")
+    public ApiResponse<Map<String, Object>> getLlmGatewayStatus() {
+        ChatGateway.GatewayStats stats = chatGateway.getStats();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("circuitState", stats.getCircuitState());
+        status.put("failureRate", stats.getFailureRate());
+        status.put("circuitOpenCount", stats.getCircuitOpenCount());
+        status.put("inFlight", stats.getInFlight());
+        status.put("purposes", stats.getPurposes());
+        return ApiResponse.success(status);
+    }
+
+    @Override
+    @GetMapping("/cache")
+    public ApiResponse<Map<String, Object>> getCacheStatus() {
+        GenerationCache.CacheStats generation = generationCache.getStats();
+        Map<String, Object> generationStatus = new LinkedHashMap<>();
+        generationStatus.put("enabled", generation.isEnabled());
+        generationStatus.put("lookups", generation.getLookups());
+        generationStatus.put("hits", generation.getHits());
+        generationStatus.put("hitRate", generation.getHitRate());
+        generationStatus.put("stores", generation.getStores());
+        generationStatus.put("invalidated", generation.getInvalidated());
+        generationStatus.put("errors", generation.getErrors());
+        SemanticAnswerCache.CacheStats semantic = semanticAnswerCache.getStats();
+        Map<String, Object> semanticStatus = new LinkedHashMap<>();
+        semanticStatus.put("enabled", semantic.isEnabled());
+        semanticStatus.put("entries", semantic.getEntries());
+        semanticStatus.put("lookups", semantic.getLookups());
+        semanticStatus.put("hits", semantic.getHits());
+        semanticStatus.put("hitRate", semantic.getHitRate());
+        semanticStatus.put("hitRateByTaskType", semantic.getHitRateByTaskType());
+        semanticStatus.put("staleRejected", semantic.getStaleRejected());
+        semanticStatus.put("staleRate", semantic.getStaleRate());
+        semanticStatus.put("expired", semantic.getExpired());
+        semanticStatus.put("invalidated", semantic.getInvalidated());
+        semanticStatus.put("evicted", semantic.getEvicted());
+        semanticStatus.put("stores", semantic.getStores());
+        TaskPlanCacheService.CacheStats taskPlan = taskPlanCacheService.getStats();
+        Map<String, Object> taskPlanStatus = new LinkedHashMap<>();
+        taskPlanStatus.put("entries", taskPlan.getEntries());
+        taskPlanStatus.put("lookups", taskPlan.getLookups());
+        taskPlanStatus.put("memoryHits", taskPlan.getMemoryHits());
+        taskPlanStatus.put("persistentHits", taskPlan.getPersistentHits());
+        taskPlanStatus.put("hitRate", taskPlan.getHitRate());
+        taskPlanStatus.put("avgLookupMicros", taskPlan.getAvgLookupMicros());
+        taskPlanStatus.put("avgCandidates", taskPlan.getAvgCandidates());
+        taskPlanStatus.put("evicted", taskPlan.getEvicted());
+        taskPlanStatus.put("expired", taskPlan.getExpired());
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("generation", generationStatus);
+        status.put("semantic", semanticStatus);
+        status.put("taskPlan", taskPlanStatus);
+        status.put("load", cacheLoadCoordinator.getStats());
+        // 两级缓存各缓存的 L1 / L2 命中率（未启用两级缓存时不输出）
+        if (cacheManager instanceof TwoTierCacheManager twoTierCacheManager) {
+            status.put("tiers", twoTierCacheManager.getStats());
+        }
+        return ApiResponse.success(status);
+    }
+
     private QueryParams buildQueryParams(QueryRequestDTO.ExtraParams params) {
         if (params == null) {
             return QueryParams.builder().build();
@@ -23,6 +23,23 @@ COMMENT ON COLUMN intent_rule.confidence IS '规则置信度';
 COMMENT ON COLUMN intent_rule.priority IS '优先级(数值越大越优先)';
 COMMENT ON COLUMN intent_rule.is_active IS '是否启用';
 
+-- 语义示例向量：启动时直接加载，无需重新调用嵌入接口
+ALTER TABLE intent_rule ADD COLUMN IF NOT EXISTS embedding vector;
+ALTER TABLE intent_rule ADD COLUMN IF NOT EXISTS embedding_model VARCHAR(100);
+COMMENT ON COLUMN intent_rule.embedding IS '语义示例向量(仅SEMANTIC_EXAMPLE)';
+COMMENT ON COLUMN intent_rule.embedding_model IS '生成向量的嵌入模型标识(模型名/维度)';
+
 -- 创建索引
 CREATE INDEX idx_intent_rule_type ON intent_rule(rule_type);
 CREATE INDEX idx_intent_rule_active ON intent_rule(is_active);
+
+-- 意图规则版本表：每次规则变更追加一行，版本号即自增主键，各节点据此增量同步
+-- 追加须持有 pg_advisory_xact_lock(hashtext('intent_rule_version'))，保证版本号按提交顺序递增
+CREATE TABLE IF NOT EXISTS intent_rule_version (
+    version BIGSERIAL PRIMARY KEY,
+    rule_id BIGINT, -- 变更的规则ID，NULL 表示全量刷新
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE intent_rule_version IS '意图规则变更版本表';
+COMMENT ON COLUMN intent_rule_version.rule_id IS '变更的规则ID，NULL表示全量刷新';
@@ -0,0 +1,76 @@
+package cn.cug.sxy.ai.test.domain.cache;
+
+import cn.cug.sxy.ai.infrastructure.cache.CacheLoadCoordinator;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class CacheLoadCoordinatorTest {
+
+    @Test
+    void testWaiterReusesLeaderNullResult() throws Exception {
+        CacheLoadCoordinator coordinator = new CacheLoadCoordinator(new ConcurrentMapCacheManager("intentCache"),
+                new TwoTierCacheProperties(), mock(RedisConnectionFactory.class), 1);
+        ReflectionTestUtils.setField(coordinator, "cacheType", "simple");
+        ReflectionTestUtils.setField(coordinator, "distributedLockCaches", Set.of());
+        ReflectionTestUtils.setField(coordinator, "waitTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(coordinator, "refreshAheadEnabled", false);
+
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> coordinator.get("intentCache", "k", () -> {
+                calls.incrementAndGet();
+                await(release);
+                return null;
+            }, null));
+            // 等待首个线程开始加载后再发起第二个请求
+            while (calls.get() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> waiter = pool.submit(() -> coordinator.get("intentCache", "k", () -> {
+                calls.incrementAndGet();
+                return "reloaded";
+            }, null));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (coordinator.getStats().getCoalesced() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertNull(leader.get(5, TimeUnit.SECONDS));
+            assertNull(waiter.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+            coordinator.shutdown();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, coordinator.getStats().getCoalesced());
+        assertEquals(0, coordinator.getStats().getInFlight());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package cn.cug.sxy.ai.test.domain.cache;
+
+import cn.cug.sxy.ai.infrastructure.cache.LocalCacheTier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalCacheTierTest {
+
+    @Test
+    void testRejectsOneOffKeyWhenFull() {
+        LocalCacheTier tier = new LocalCacheTier(2, 1024 * 1024, 60_000);
+        warm(tier, "hot-a", 5);
+        warm(tier, "hot-b", 5);
+
+        tier.get("one-off");
+        assertFalse(tier.put("one-off", "v"));
+
+        assertEquals(1, tier.rejections());
+        assertEquals(0, tier.evictions());
+        assertEquals("v-hot-a", tier.get("hot-a"));
+        assertEquals("v-hot-b", tier.get("hot-b"));
+        assertNull(tier.get("one-off"));
+    }
+
+    @Test
+    void testAdmitsFrequentKeyAndEvictsLeastRecentlyUsed() {
+        LocalCacheTier tier = new LocalCacheTier(2, 1024 * 1024, 60_000);
+        warm(tier, "hot-a", 3);
+        warm(tier, "hot-b", 3);
+        // hot-b 最近访问，hot-a 位于LRU队首
+        tier.get("hot-b");
+
+        for (int i = 0; i < 8; i++) {
+            tier.get("rising");
+        }
+        assertTrue(tier.put("rising", "v"));
+
+        assertEquals(1, tier.evictions());
+        assertEquals(2, tier.size());
+        assertNull(tier.get("hot-a"));
+        assertEquals("v-hot-b", tier.get("hot-b"));
+        assertEquals("v", tier.get("rising"));
+    }
+
+    @Test
+    void testReplacingExistingKeyKeepsLatestValue() {
+        LocalCacheTier tier = new LocalCacheTier(2, 1024 * 1024, 60_000);
+        warm(tier, "hot-a", 5);
+        tier.put("cold", "v1");
+
+        assertTrue(tier.put("cold", "v2"));
+        assertEquals("v2", tier.get("cold"));
+        assertEquals(0, tier.rejections());
+    }
+
+    @Test
+    void testRejectsValueHeavierThanLimit() {
+        LocalCacheTier tier = new LocalCacheTier(10, 100, 60_000);
+
+        assertFalse(tier.put("big", new float[64]));
+        assertTrue(tier.put("small", new float[4]));
+
+        assertEquals(1, tier.rejections());
+        assertEquals(1, tier.size());
+    }
+
+    @Test
+    void testSerializableValueIsWeighedBySerializedSize() {
+        LocalCacheTier tier = new LocalCacheTier(10, 10 * 1024, 60_000);
+        ArrayList<String> large = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            large.add("value-" + i);
+        }
+
+        assertFalse(tier.put("large", large));
+        assertTrue(tier.put("small", new ArrayList<>(List.of("a", "b"))));
+        assertTrue(tier.weightBytes() < 1024, "weight " + tier.weightBytes());
+    }
+
+    @Test
+    void testExpiredEntryIsDroppedOnRead() throws InterruptedException {
+        LocalCacheTier tier = new LocalCacheTier(10, 1024 * 1024, 1);
+        tier.put("k", "v");
+        Thread.sleep(5);
+
+        assertNull(tier.get("k"));
+        assertEquals(0, tier.size());
+    }
+
+    private static void warm(LocalCacheTier tier, String key, int reads) {
+        for (int i = 0; i < reads; i++) {
+            tier.get(key);
+        }
+        assertTrue(tier.put(key, "v-" + key));
+    }
+
+}
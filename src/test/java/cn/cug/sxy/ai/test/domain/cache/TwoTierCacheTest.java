@@ -0,0 +1,123 @@
+package cn.cug.sxy.ai.test.domain.cache;
+
+import cn.cug.sxy.ai.infrastructure.cache.LocalCacheTier;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCache;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCacheManager;
+import cn.cug.sxy.ai.infrastructure.cache.TwoTierCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwoTierCacheTest {
+
+    @Test
+    void testConcurrentMissesLoadOnce() throws Exception {
+        TwoTierCache cache = new TwoTierCache("embedding", new LocalCacheTier(100, 1024 * 1024, 60_000), null,
+                (name, key) -> {
+                });
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("k", () -> {
+                        calls.incrementAndGet();
+                        Thread.sleep(200);
+                        return "value";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getStats().getLoads());
+    }
+
+    @Test
+    void testFailedLoadIsNotCachedAndIsRetried() {
+        TwoTierCache cache = new TwoTierCache("embedding", new LocalCacheTier(100, 1024 * 1024, 60_000), null,
+                (name, key) -> {
+                });
+
+        assertThrows(Cache.ValueRetrievalException.class, () -> cache.get("k", () -> {
+            throw new IllegalStateException("模型不可用");
+        }));
+        assertNull(cache.get("k"));
+
+        assertEquals("value", cache.get("k", () -> "value"));
+        assertEquals("value", cache.get("k", () -> "other"));
+        assertEquals(2, cache.getStats().getLoads());
+    }
+
+    @Test
+    void testSelfPublishedInvalidationIsIgnored() {
+        StringRedisTemplate publisher = mock(StringRedisTemplate.class);
+        TwoTierCacheProperties properties = new TwoTierCacheProperties();
+        TwoTierCacheManager manager = new TwoTierCacheManager(null, properties, publisher);
+        Cache cache = manager.getCache("embedding");
+        cache.put("k", "value");
+
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(publisher).convertAndSend(eq(properties.getChannel()), payload.capture());
+        manager.onMessage(message(payload.getValue()), null);
+
+        assertEquals("value", cache.get("k", String.class));
+        assertEquals(0, ((TwoTierCache) cache).getStats().getRemoteInvalidations());
+    }
+
+    @Test
+    void testInvalidationFromOtherNodeEvictsLocalEntry() {
+        StringRedisTemplate publisher = mock(StringRedisTemplate.class);
+        TwoTierCacheProperties properties = new TwoTierCacheProperties();
+        TwoTierCacheManager manager = new TwoTierCacheManager(null, properties, publisher);
+        Cache cache = manager.getCache("embedding");
+        cache.put("k", "value");
+
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(publisher).convertAndSend(anyString(), payload.capture());
+        String own = payload.getValue();
+        String otherNode = "other-node" + own.substring(own.indexOf('\u0001'));
+        manager.onMessage(message(otherNode), null);
+
+        assertNull(cache.get("k"));
+        assertEquals(1, ((TwoTierCache) cache).getStats().getRemoteInvalidations());
+    }
+
+    private static Message message(String body) {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return message;
+    }
+
+}
@@ -0,0 +1,204 @@
+package cn.cug.sxy.ai.test.domain.generation;
+
+import cn.cug.sxy.ai.domain.rag.model.valobj.GenerateParams;
+import cn.cug.sxy.ai.domain.rag.service.generation.ContextPacker;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.ITokenizer;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.TokenCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextPackerTest {
+
+    private static final String SOURCE = "检索增强生成系统在回答问题之前先从知识库中检索相关文档，再把文档片段与问题一起交给模型生成回答。";
+
+    private ContextPacker packer;
+
+    @BeforeEach
+    void setUp() {
+        packer = new ContextPacker(new TokenCounter(new CharTokenizer(), 100));
+        ReflectionTestUtils.setField(packer, "contextWindowTokens", 32768);
+        ReflectionTestUtils.setField(packer, "modelContextWindows", Collections.emptyMap());
+        ReflectionTestUtils.setField(packer, "promptReserveTokens", 256);
+        ReflectionTestUtils.setField(packer, "defaultMaxTokens", 1024);
+        ReflectionTestUtils.setField(packer, "minOverlapChars", 16);
+        ReflectionTestUtils.setField(packer, "maxOverlapChars", 1000);
+        ReflectionTestUtils.setField(packer, "minPartialTokens", 64);
+    }
+
+    @Test
+    void testSuffixPrefixOverlap() {
+        assertEquals(4, ContextPacker.suffixPrefixOverlap("abcdefgh", "efghij", 100));
+        assertEquals(3, ContextPacker.suffixPrefixOverlap("aabaab", "aabaac", 100));
+        assertEquals(5, ContextPacker.suffixPrefixOverlap("hello world", "world", 100));
+        assertEquals(0, ContextPacker.suffixPrefixOverlap("abc", "xyz", 100));
+        assertEquals(0, ContextPacker.suffixPrefixOverlap("", "abc", 100));
+        // 重叠长度超过 maxLength 时不计入
+        assertEquals(0, ContextPacker.suffixPrefixOverlap("xxabcd", "abcdyy", 3));
+        assertEquals(4, ContextPacker.suffixPrefixOverlap("xxabcd", "abcdyy", 4));
+    }
+
+    @Test
+    void testSuffixPrefixOverlapMatchesBruteForce() {
+        String[] samples = {"abab", "aaaa", "abaaba", "baab", "ab", "a", "abcab", "aabaaab"};
+        for (String a : samples) {
+            for (String b : samples) {
+                int expected = 0;
+                for (int len = Math.min(a.length(), b.length()); len > 0; len--) {
+                    if (a.endsWith(b.substring(0, len))) {
+                        expected = len;
+                        break;
+                    }
+                }
+                assertEquals(expected, ContextPacker.suffixPrefixOverlap(a, b, 100), a + " / " + b);
+            }
+        }
+    }
+
+    @Test
+    void testMergeAdjacentChunksByPosition() {
+        List<Map<String, Object>> contexts = List.of(
+                chunk(1L, 10L, 0, 0, 30, 0.8),
+                chunk(2L, 10L, 1, 20, SOURCE.length(), 0.6));
+
+        ContextPacker.PackedContexts packed = packer.pack("问题", contexts, GenerateParams.builder().build());
+
+        assertEquals(List.of(SOURCE), packed.texts());
+        assertEquals(1, packed.stats().get("mergedChunks"));
+        assertEquals(10L, packed.stats().get("overlapCharsRemoved"));
+    }
+
+    @Test
+    void testMergeAdjacentChunksByTextWhenPositionsMissing() {
+        Map<String, Object> first = chunk(1L, 10L, 0, null, null, 0.8);
+        first.put("content", SOURCE.substring(0, 30));
+        Map<String, Object> second = chunk(2L, 10L, 1, null, null, 0.6);
+        second.put("content", SOURCE.substring(10));
+        // 重复块只计一次
+        Map<String, Object> duplicate = new HashMap<>(first);
+
+        ContextPacker.PackedContexts packed = packer.pack("问题", List.of(first, second, duplicate),
+                GenerateParams.builder().build());
+
+        assertEquals(List.of(SOURCE), packed.texts());
+        assertEquals(1, packed.stats().get("duplicateChunks"));
+        assertEquals(20L, packed.stats().get("overlapCharsRemoved"));
+    }
+
+    @Test
+    void testNonAdjacentChunksStaySeparate() {
+        List<Map<String, Object>> contexts = List.of(
+                chunk(1L, 10L, 0, 0, 20, 0.8),
+                chunk(2L, 10L, 5, 30, 45, 0.6));
+
+        ContextPacker.PackedContexts packed = packer.pack("问题", contexts, GenerateParams.builder().build());
+
+        assertEquals(2, packed.texts().size());
+        assertEquals(0, packed.stats().get("mergedChunks"));
+    }
+
+    @Test
+    void testPackDropsLowestScoredSpanOverBudget() {
+        List<Map<String, Object>> contexts = List.of(
+                text(1L, 1L, "低".repeat(100), 0.1),
+                text(2L, 2L, "高".repeat(100), 0.9),
+                text(3L, 3L, "中".repeat(100), 0.5));
+
+        ContextPacker.PackedContexts packed = packer.pack("问题", contexts,
+                GenerateParams.builder().contextTokenBudget(250).build());
+
+        assertEquals(List.of("高".repeat(100), "中".repeat(100)), packed.texts());
+        assertEquals(202, packed.stats().get("packedTokens"));
+        assertEquals(1, packed.stats().get("droppedSpans"));
+    }
+
+    @Test
+    void testPackTruncatesSpanWhenRemainingBudgetIsLargeEnough() {
+        List<Map<String, Object>> contexts = List.of(
+                text(1L, 1L, "高".repeat(100), 0.9),
+                text(2L, 2L, "中".repeat(100), 0.5),
+                text(3L, 3L, "低".repeat(100), 0.1));
+
+        ContextPacker.PackedContexts packed = packer.pack("问题", contexts,
+                GenerateParams.builder().contextTokenBudget(300).build());
+
+        assertEquals(3, packed.texts().size());
+        assertEquals("低".repeat(97), packed.texts().get(2));
+        assertEquals(1, packed.stats().get("truncatedSpans"));
+        int total = 0;
+        for (String text : packed.texts()) {
+            total += text.length() + 1;
+        }
+        assertTrue(total <= 300, "packed " + total);
+    }
+
+    @Test
+    void testBudgetIsBoundedByModelWindow() {
+        ReflectionTestUtils.setField(packer, "contextWindowTokens", 4000);
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        contexts.add(text(1L, 1L, "文".repeat(4000), 0.9));
+
+        ContextPacker.PackedContexts packed = packer.pack("问题", contexts,
+                GenerateParams.builder().maxTokens(1024).contextTokenBudget(100000).build());
+
+        int budget = (int) packed.stats().get("budget");
+        assertTrue(budget > 0 && budget < 4000 - 1024 - 256, "budget " + budget);
+        assertEquals(budget, packed.stats().get("packedTokens"));
+        assertEquals(1, packed.stats().get("truncatedSpans"));
+    }
+
+    private static Map<String, Object> chunk(Long id, Long documentId, Integer chunkIndex,
+                                             Integer start, Integer end, double score) {
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("id", id);
+        ctx.put("documentId", documentId);
+        ctx.put("chunkIndex", chunkIndex);
+        ctx.put("score", score);
+        if (start != null && end != null) {
+            ctx.put("startPosition", start);
+            ctx.put("endPosition", end);
+            ctx.put("content", SOURCE.substring(start, end));
+        }
+        return ctx;
+    }
+
+    private static Map<String, Object> text(Long id, Long documentId, String content, double score) {
+        Map<String, Object> ctx = new HashMap<>();
+        ctx.put("id", id);
+        ctx.put("documentId", documentId);
+        ctx.put("content", content);
+        ctx.put("score", score);
+        return ctx;
+    }
+
+    /**
+     * 每个字符计 1 个Token，便于精确断言预算
+     */
+    private static final class CharTokenizer implements ITokenizer {
+
+        @Override
+        public String getName() {
+            return "char";
+        }
+
+        @Override
+        public int countTokens(CharSequence text, int from, int to) {
+            return to - from;
+        }
+
+        @Override
+        public int fitPrefix(CharSequence text, int from, int to, int maxTokens) {
+            return Math.min(to, from + Math.max(0, maxTokens));
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package cn.cug.sxy.ai.test.domain.generation;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.DocumentChunk;
+import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
+import cn.cug.sxy.ai.domain.rag.model.valobj.QueryParams;
+import cn.cug.sxy.ai.domain.rag.repository.IDocumentChunkRepository;
+import cn.cug.sxy.ai.domain.rag.service.generation.BasicGenerator;
+import cn.cug.sxy.ai.domain.rag.service.generation.SemanticAnswerCache;
+import cn.cug.sxy.ai.infrastructure.embedding.IEmbeddingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SemanticAnswerCacheTest {
+
+    private static final String QUESTION = "如何重置密码";
+    private static final String CONTENT = "在设置页面点击重置密码。";
+
+    private SemanticAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        IEmbeddingService embeddingService = mock(IEmbeddingService.class);
+        when(embeddingService.generateEmbedding(anyString())).thenReturn(new float[]{1f, 0.5f, 0.25f, 0.125f});
+        IDocumentChunkRepository chunkRepository = mock(IDocumentChunkRepository.class);
+        when(chunkRepository.findById(1L)).thenReturn(Optional.of(DocumentChunk.builder().id(1L).content(CONTENT).build()));
+        cache = new SemanticAnswerCache(embeddingService, chunkRepository, new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "defaultThreshold", 0.95);
+        ReflectionTestUtils.setField(cache, "thresholds", Collections.emptyMap());
+        ReflectionTestUtils.setField(cache, "excludeTaskTypes", Set.of("CHAT"));
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "lshTables", 4);
+        ReflectionTestUtils.setField(cache, "lshBits", 4);
+    }
+
+    @Test
+    void testStreamedAnswerIsReusedOnlyWithinSameIndexAndModel() {
+        QueryParams params = QueryParams.builder().indexName("kb-a").model("qwen-plus").build();
+        cache.storeStreamed(QUESTION, TaskType.FAQ, params, "点击重置密码即可。", sources());
+
+        Optional<SemanticAnswerCache.Hit> hit = cache.lookup(QUESTION, TaskType.FAQ, params);
+        assertTrue(hit.isPresent());
+        assertEquals("点击重置密码即可。", hit.get().answer());
+
+        assertTrue(cache.lookup(QUESTION, TaskType.FAQ,
+                QueryParams.builder().indexName("kb-b").model("qwen-plus").build()).isEmpty());
+        assertTrue(cache.lookup(QUESTION, TaskType.FAQ,
+                QueryParams.builder().indexName("kb-a").model("qwen-max").build()).isEmpty());
+        assertTrue(cache.lookup(QUESTION, TaskType.FACT_LOOKUP, params).isEmpty());
+    }
+
+    @Test
+    void testFailedStreamedAnswerIsNotStored() {
+        cache.storeStreamed(QUESTION, TaskType.FAQ, null, BasicGenerator.ERROR_ANSWER_PREFIX + "超时", sources());
+
+        assertTrue(cache.lookup(QUESTION, TaskType.FAQ, null).isEmpty());
+        assertEquals(0, cache.getStats().getStores());
+    }
+
+    private static List<Map<String, Object>> sources() {
+        return List.of(Map.of("chunkId", 1L, "content", CONTENT));
+    }
+
+}
@@ -0,0 +1,161 @@
+package cn.cug.sxy.ai.test.domain.indexing;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Document;
+import cn.cug.sxy.ai.domain.rag.model.entity.DocumentChunk;
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument;
+import cn.cug.sxy.ai.domain.rag.service.indexing.StructureAwareChunker;
+import cn.cug.sxy.ai.domain.rag.service.indexing.TextSplitterService;
+import cn.cug.sxy.ai.domain.rag.service.parsing.ChunkingReadyOutput;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.TokenCounter;
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.VocabularyTokenizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructureAwareChunkerTest {
+
+    private StructureAwareChunker chunker;
+
+    @BeforeEach
+    void setUp() {
+        TokenCounter tokenCounter = new TokenCounter(new VocabularyTokenizer(new ClassPathResource("tokenizer/vocab.txt")), 100);
+        chunker = new StructureAwareChunker(new ChunkingReadyOutput(), new TextSplitterService(tokenCounter), tokenCounter);
+        ReflectionTestUtils.setField(chunker, "maxTokens", 512);
+        ReflectionTestUtils.setField(chunker, "minTokens", 1);
+        ReflectionTestUtils.setField(chunker, "breakHeadingLevel", 2);
+        ReflectionTestUtils.setField(chunker, "defaultChunkOverlap", 50);
+    }
+
+    @Test
+    void testSplitsOnHeadingsAndKeepsTableRows() {
+        StructuredDocument.TableInfo tableInfo = StructuredDocument.TableInfo.builder()
+                .title("价格表")
+                .headers(Arrays.asList("型号", "价格"))
+                .rows(Arrays.asList(Arrays.asList("A", "10"), Arrays.asList("B", "20")))
+                .build();
+        StructuredDocument doc = StructuredDocument.builder()
+                .pages(List.of(StructuredDocument.Page.builder()
+                        .pageNo(1)
+                        .layout(Arrays.asList(
+                                element("e1", "title", 1, "第一章"),
+                                element("e2", "text", null, "第一章正文"),
+                                element("e3", "title", 1, "第二章"),
+                                element("e4", "text", null, "第二章正文"),
+                                StructuredDocument.LayoutElement.builder()
+                                        .elementId("e5").type("table").text("表格原文").tableInfo(tableInfo).build()))
+                        .build()))
+                .build();
+        Document document = new Document();
+        document.setId(1L);
+        document.setContent("第一章\n第一章正文\n第二章\n第二章正文\n表格原文");
+        document.setMetadata(new HashMap<>());
+
+        List<DocumentChunk> chunks = chunker.chunk(document, doc);
+
+        assertEquals(3, chunks.size());
+        assertEquals(List.of("第一章"), chunks.get(0).getMetadata().get("sectionPath"));
+        assertEquals(List.of("第二章"), chunks.get(1).getMetadata().get("sectionPath"));
+        assertEquals(StructureAwareChunker.CHUNK_TYPE_TABLE_ROWS, chunks.get(2).getMetadata().get("chunkType"));
+        assertTrue(chunks.get(2).getContent().contains("| B | 20 |"));
+        assertEquals(document.getContent().indexOf("第二章"), chunks.get(1).getStartPosition());
+    }
+
+    @Test
+    void testMultiParagraphChunkEndsAtLastUnit() {
+        StructuredDocument doc = singlePage(Arrays.asList(
+                element("e1", "title", 1, "第一章"),
+                element("e2", "text", null, "第一段内容。"),
+                element("e3", "text", null, "第二段内容。")));
+        Document document = document("第一章\n第一段内容。\n第二段内容。\n附录");
+
+        List<DocumentChunk> chunks = chunker.chunk(document, doc);
+
+        assertEquals(1, chunks.size());
+        DocumentChunk chunk = chunks.get(0);
+        // 块文本以空行拼接单元，长度与原文区间不同，终点应落在最后一个单元的末尾
+        assertEquals(0, chunk.getStartPosition());
+        assertEquals(document.getContent().indexOf("附录") - 1, chunk.getEndPosition());
+        assertEquals("第一章\n第一段内容。\n第二段内容。",
+                document.getContent().substring(chunk.getStartPosition(), chunk.getEndPosition()));
+    }
+
+    @Test
+    void testTableChunkOffsetsCoverTableSource() {
+        StructuredDocument.TableInfo tableInfo = StructuredDocument.TableInfo.builder()
+                .title("价格表")
+                .headers(Arrays.asList("型号", "价格"))
+                .rows(Arrays.asList(Arrays.asList("A", "10"), Arrays.asList("B", "20")))
+                .build();
+        StructuredDocument doc = singlePage(Arrays.asList(
+                element("e1", "text", null, "前言"),
+                StructuredDocument.LayoutElement.builder()
+                        .elementId("e2").type("table").text("型号 价格 A 10 B 20").tableInfo(tableInfo).build(),
+                element("e3", "text", null, "结尾")));
+        Document document = document("前言\n型号 价格 A 10 B 20\n结尾");
+
+        List<DocumentChunk> chunks = chunker.chunk(document, doc);
+
+        assertEquals(3, chunks.size());
+        DocumentChunk table = chunks.get(1);
+        assertEquals(StructureAwareChunker.CHUNK_TYPE_TABLE_ROWS, table.getMetadata().get("chunkType"));
+        int tableStart = document.getContent().indexOf("型号 价格");
+        assertEquals(tableStart, table.getStartPosition());
+        assertEquals(tableStart + "型号 价格 A 10 B 20".length(), table.getEndPosition());
+        assertEquals(document.getContent().indexOf("结尾"), chunks.get(2).getStartPosition());
+        assertEquals(document.getContent().length(), chunks.get(2).getEndPosition());
+    }
+
+    @Test
+    void testOversizedUnitSplitsByTokenBudgetWithRealOverlap() {
+        ReflectionTestUtils.setField(chunker, "maxTokens", 64);
+        String paragraph = "Retrieval augmented generation pipelines fetch relevant passages before answering. ".repeat(40).trim();
+        StructuredDocument doc = singlePage(List.of(element("e1", "text", null, paragraph)));
+        Document document = document(paragraph);
+
+        List<DocumentChunk> chunks = chunker.chunk(document, doc);
+
+        assertTrue(chunks.size() > 1);
+        int maxTokens = 0;
+        boolean overlapped = false;
+        for (int i = 0; i < chunks.size(); i++) {
+            DocumentChunk chunk = chunks.get(i);
+            int tokens = (int) chunk.getMetadata().get("estimatedTokens");
+            assertTrue(tokens <= 64, "chunk " + i + " tokens " + tokens);
+            maxTokens = Math.max(maxTokens, tokens);
+            int expectedOverlap = i == 0 ? 0 : Math.max(0, chunks.get(i - 1).getEndPosition() - chunk.getStartPosition());
+            assertEquals(expectedOverlap, chunk.getOverlapLength(), "chunk " + i);
+            overlapped |= chunk.getOverlapLength() > 0;
+        }
+        // 预算按Token换算为字符数，片段应接近预算而不是按64个字符切分
+        assertTrue(maxTokens > 32, "max tokens " + maxTokens);
+        assertTrue(overlapped);
+    }
+
+    private StructuredDocument singlePage(List<StructuredDocument.LayoutElement> layout) {
+        return StructuredDocument.builder()
+                .pages(List.of(StructuredDocument.Page.builder().pageNo(1).layout(layout).build()))
+                .build();
+    }
+
+    private Document document(String content) {
+        Document document = new Document();
+        document.setId(1L);
+        document.setContent(content);
+        document.setMetadata(new HashMap<>());
+        return document;
+    }
+
+    private StructuredDocument.LayoutElement element(String id, String type, Integer level, String text) {
+        return StructuredDocument.LayoutElement.builder()
+                .elementId(id).type(type).headingLevel(level).text(text).build();
+    }
+
+}
@@ -0,0 +1,134 @@
+package cn.cug.sxy.ai.test.domain.indexing;
+
+import cn.cug.sxy.ai.domain.rag.service.indexing.TextSplitterService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextSplitterServiceTest {
+
+    private final TextSplitterService textSplitterService = new TextSplitterService();
+
+    @Test
+    void testSpansAreExactOffsetsForEveryStrategy() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("第").append(i).append("段内容，包含中文句子。Some English words here. ");
+            if (i % 7 == 0) {
+                sb.append("\n\n");
+            }
+        }
+        String text = sb.toString();
+        for (TextSplitterService.SplitStrategy strategy : TextSplitterService.SplitStrategy.values()) {
+            if (strategy == TextSplitterService.SplitStrategy.CHINESE_WORD) {
+                continue;
+            }
+            List<TextSplitterService.TextSpan> spans = textSplitterService.splitSpans(text, 300, 50, strategy);
+            List<String> chunks = textSplitterService.splitText(text, 300, 50, strategy);
+            assertFalse(spans.isEmpty(), strategy.name());
+            assertEquals(spans.size(), chunks.size(), strategy.name());
+            int previousStart = -1;
+            for (int i = 0; i < spans.size(); i++) {
+                TextSplitterService.TextSpan span = spans.get(i);
+                assertTrue(span.length() <= 300, strategy.name());
+                assertTrue(span.start() > previousStart, strategy.name());
+                assertEquals(text.substring(span.start(), span.end()), chunks.get(i), strategy.name());
+                previousStart = span.start();
+            }
+        }
+    }
+
+    @Test
+    void testParallelSegmentationMatchesSequential() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append("检索增强生成系统先从知识库中召回相关文档，再由大模型生成回答。第").append(i).append("节介绍分块策略。");
+            sb.append(i % 5 == 4 ? "\n\n" : "\n");
+        }
+        String text = sb.toString();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            TextSplitterService parallel = new TextSplitterService(null, executor);
+            ReflectionTestUtils.setField(parallel, "segmentationPieceSize", 1024);
+
+            List<TextSplitterService.TextSpan> expected = textSplitterService.splitSpans(text, 300, 50,
+                    TextSplitterService.SplitStrategy.CHINESE_WORD);
+            List<TextSplitterService.TextSpan> actual = parallel.splitSpans(text, 300, 50,
+                    TextSplitterService.SplitStrategy.CHINESE_WORD);
+
+            assertTrue(text.length() > 1024 * 4);
+            assertEquals(expected, actual);
+            assertEquals(textSplitterService.materialize(text, expected), parallel.materialize(text, actual));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSplitCostGrowsLinearlyWithInputSize() {
+        String small = buildMixedInput(256 * 1024);
+        String large = buildMixedInput(4 * 256 * 1024);
+        for (TextSplitterService.SplitStrategy strategy : TextSplitterService.SplitStrategy.values()) {
+            SplitTiming smallRun = fastestSplit(small, strategy);
+            SplitTiming largeRun = fastestSplit(large, strategy);
+
+            assertTrue(largeRun.chunks() >= smallRun.chunks() * 3,
+                    strategy + " chunks " + smallRun.chunks() + " -> " + largeRun.chunks());
+            // 输入扩大4倍：线性实现约4倍耗时，平方级实现约16倍
+            assertTrue(largeRun.nanos() < 12 * Math.max(smallRun.nanos(), 2_000_000L),
+                    strategy + " " + smallRun.nanos() / 1_000_000 + "ms -> " + largeRun.nanos() / 1_000_000 + "ms");
+        }
+    }
+
+    @Test
+    void testRecursiveSplitKeepsOverlapWithinPreviousChunk() {
+        String text = "para1 text\n\npara2 text here\n\npara3 more text";
+        List<TextSplitterService.TextSpan> spans = textSplitterService.splitSpans(text, 20, 5);
+        for (int i = 1; i < spans.size(); i++) {
+            int overlap = spans.get(i - 1).end() - spans.get(i).start();
+            assertTrue(overlap >= 0 && overlap <= 5);
+        }
+    }
+
+    /**
+     * 预热后取多轮中的最短耗时（含物化），减少JIT与GC抖动的影响
+     */
+    private SplitTiming fastestSplit(String text, TextSplitterService.SplitStrategy strategy) {
+        textSplitterService.splitSpans(text, 500, 100, strategy);
+        long fastest = Long.MAX_VALUE;
+        int chunkCount = 0;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            List<TextSplitterService.TextSpan> spans = textSplitterService.splitSpans(text, 500, 100, strategy);
+            List<String> chunks = textSplitterService.materialize(text, spans);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+            chunkCount = chunks.size();
+        }
+        return new SplitTiming(fastest, chunkCount);
+    }
+
+    private record SplitTiming(long nanos, int chunks) {
+    }
+
+    private static String buildMixedInput(int targetChars) {
+        String[] parts = {
+                "这是一个用于基准测试的中文句子。", "Hello world, this is a benchmark sentence. ",
+                "第二段落开始\n\n", "为什么要分块？", "列表项：甲，乙，丙；", "\n"
+        };
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(targetChars + 64);
+        while (sb.length() < targetChars) {
+            sb.append(parts[random.nextInt(parts.length)]);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,67 @@
+package cn.cug.sxy.ai.test.domain.intent;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import cn.cug.sxy.ai.domain.rag.service.intent.rule.CompiledIntentRules;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledIntentRulesTest {
+
+    private static final String[] REGEX = {
+            "订单\\d+号", "^退款.*申请$", "(?i)hello", "abc|def", "a?bcd", "\\d+元", "价格[0-9]+", "天气(怎么样)?", "查询\\.结果"
+    };
+
+    @Test
+    void testSinglePassMatchesNaiveEvaluation() {
+        List<IntentRule> keywordRules = List.of(
+                keyword("天气", "CONTAINS"), keyword("你好", "EXACT"), keyword("查询", "PREFIX"), keyword("吗", "SUFFIX"),
+                keyword("he", null), keyword("she", "CONTAINS"), keyword("hers", "CONTAINS"), keyword("订单\\d+", "REGEX"));
+        List<IntentRule> regexRules = new ArrayList<>();
+        for (String regex : REGEX) {
+            regexRules.add(IntentRule.builder().ruleType("REGEX").ruleContent(regex).build());
+        }
+        CompiledIntentRules compiled = CompiledIntentRules.compile(keywordRules, regexRules);
+
+        Random random = new Random(7);
+        String alphabet = "天气你好查询吗hersx订单12退款申请元价格0.结果abcdefHELO";
+        for (int round = 0; round < 5000; round++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(14);
+            for (int i = 0; i < length; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String text = sb.toString();
+            CompiledIntentRules.Matches matches = compiled.match(text);
+            for (int i = 0; i < keywordRules.size(); i++) {
+                boolean actual = matches.keywordCandidates().get(i) && compiled.confirmKeyword(i, text);
+                assertEquals(naiveKeyword(text, keywordRules.get(i)), actual, text + " / " + keywordRules.get(i).getRuleContent());
+            }
+            for (int i = 0; i < REGEX.length; i++) {
+                boolean actual = matches.regexCandidates().get(i) && compiled.confirmRegex(i, text);
+                assertEquals(Pattern.compile(REGEX[i]).matcher(text).find(), actual, text + " / " + REGEX[i]);
+            }
+        }
+    }
+
+    private static IntentRule keyword(String content, String matchMode) {
+        return IntentRule.builder().ruleType("KEYWORD").ruleContent(content).matchMode(matchMode).build();
+    }
+
+    private static boolean naiveKeyword(String text, IntentRule rule) {
+        String content = rule.getRuleContent();
+        String mode = rule.getMatchMode() == null ? "CONTAINS" : rule.getMatchMode();
+        return switch (mode) {
+            case "EXACT" -> text.equals(content);
+            case "PREFIX" -> text.startsWith(content);
+            case "SUFFIX" -> text.endsWith(content);
+            case "REGEX" -> Pattern.compile(content).matcher(text).find();
+            default -> text.contains(content);
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package cn.cug.sxy.ai.test.domain.intent;
+
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChange;
+import cn.cug.sxy.ai.infrastructure.dao.converter.IntentRuleConverter;
+import cn.cug.sxy.ai.infrastructure.dao.po.IntentRuleVersionPO;
+import cn.cug.sxy.ai.infrastructure.dao.postgres.IIntentRuleDao;
+import cn.cug.sxy.ai.infrastructure.dao.postgres.IIntentRuleVersionDao;
+import cn.cug.sxy.ai.infrastructure.repository.IntentRuleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IntentRuleRepositoryTest {
+
+    @Mock
+    private IIntentRuleDao intentRuleDao;
+
+    @Mock
+    private IIntentRuleVersionDao intentRuleVersionDao;
+
+    @Mock
+    private IntentRuleConverter intentRuleConverter;
+
+    private IntentRuleRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new IntentRuleRepository(intentRuleDao, intentRuleVersionDao, intentRuleConverter);
+    }
+
+    @Test
+    void testRecordChangeTakesAppendLockBeforeInsert() {
+        when(intentRuleVersionDao.selectLatestVersion()).thenReturn(12L);
+
+        long version = repository.recordChange(List.of(3L, 4L));
+
+        assertEquals(12L, version);
+        InOrder order = inOrder(intentRuleVersionDao);
+        order.verify(intentRuleVersionDao).lockForAppend();
+        order.verify(intentRuleVersionDao).batchInsert(List.of(3L, 4L));
+        order.verify(intentRuleVersionDao).selectLatestVersion();
+    }
+
+    @Test
+    void testFindChangesSinceMapsVersionsInOrder() {
+        when(intentRuleVersionDao.selectSince(5L)).thenReturn(List.of(
+                IntentRuleVersionPO.builder().version(6L).ruleId(3L).build(),
+                IntentRuleVersionPO.builder().version(7L).ruleId(null).build()));
+
+        List<IntentRuleChange> changes = repository.findChangesSince(5L);
+
+        assertEquals(Arrays.asList(new IntentRuleChange(6L, 3L), new IntentRuleChange(7L, null)), changes);
+        assertTrue(changes.get(1).isFullRefresh());
+    }
+
+}
@@ -1,19 +1,40 @@
 package cn.cug.sxy.ai.test.domain.intent;
 
 import cn.cug.sxy.ai.domain.rag.model.entity.IntentRule;
+import cn.cug.sxy.ai.domain.rag.model.intent.IntentSource;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChange;
+import cn.cug.sxy.ai.domain.rag.model.valobj.IntentRuleChangedEvent;
 import cn.cug.sxy.ai.domain.rag.repository.IIntentRuleRepository;
+import cn.cug.sxy.ai.domain.rag.service.intent.IntentDetector;
 import cn.cug.sxy.ai.domain.rag.service.intent.IntentRuleService;
+import cn.cug.sxy.ai.domain.rag.service.intent.detector.SemanticIntentDetector;
+import cn.cug.sxy.ai.infrastructure.embedding.IEmbeddingService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,11 +43,17 @@ class IntentRuleServiceTest {
     @Mock
     private IIntentRuleRepository intentRuleRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private IEmbeddingService embeddingService;
+
     private IntentRuleService intentRuleService;
 
     @BeforeEach
     void setUp() {
-        intentRuleService = new IntentRuleService(intentRuleRepository);
+        intentRuleService = new IntentRuleService(intentRuleRepository, eventPublisher);
     }
 
     @Test
@@ -60,4 +87,129 @@ class IntentRuleServiceTest {
         List<IntentRule> semanticRules = intentRuleService.getRulesByType("SEMANTIC_EXAMPLE");
         assertTrue(semanticRules.isEmpty());
     }
+
+    @Test
+    void testSyncChangesPublishesDeletedAndUpsertedForMixedBatch() {
+        IntentRule kept = keywordRule(1L, "退货");
+        IntentRule deleted = keywordRule(2L, "发票");
+        IntentRule edited = keywordRule(3L, "物流");
+        when(intentRuleRepository.findAllActive()).thenReturn(List.of(kept, deleted, edited));
+        intentRuleService.refreshRules();
+
+        IntentRule editedNow = keywordRule(3L, "快递");
+        when(intentRuleRepository.findChangesSince(0L)).thenReturn(List.of(
+                new IntentRuleChange(7L, 2L), new IntentRuleChange(8L, 3L)));
+        when(intentRuleRepository.findByIds(List.of(2L, 3L))).thenReturn(List.of(editedNow));
+
+        IntentRuleService.SyncResult result = intentRuleService.syncChanges();
+
+        assertEquals(8L, result.version());
+        assertEquals(2, result.changedRules());
+        assertEquals(8L, intentRuleService.getRuleVersion());
+        Set<String> contents = intentRuleService.getRulesByType("KEYWORD").stream()
+                .map(IntentRule::getRuleContent)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("退货", "快递"), contents);
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(2)).publishEvent(events.capture());
+        IntentRuleChangedEvent deletion = (IntentRuleChangedEvent) events.getAllValues().get(0);
+        assertEquals(IntentRuleChangedEvent.ChangeType.DELETED, deletion.getChangeType());
+        assertEquals(List.of(2L), deletion.getRuleIds());
+        assertTrue(deletion.getRules().isEmpty());
+        assertTrue(deletion.isRemote());
+        IntentRuleChangedEvent upsert = (IntentRuleChangedEvent) events.getAllValues().get(1);
+        assertEquals(IntentRuleChangedEvent.ChangeType.UPSERTED, upsert.getChangeType());
+        assertEquals(List.of(3L), upsert.getRuleIds());
+        assertEquals(List.of(editedNow), upsert.getRules());
+        assertTrue(upsert.isRemote());
+    }
+
+    @Test
+    void testSyncChangesAppliesOnlyChangesSinceSyncedVersion() {
+        when(intentRuleRepository.findChangesSince(0L)).thenReturn(List.of(new IntentRuleChange(5L, 1L)));
+        when(intentRuleRepository.findByIds(List.of(1L))).thenReturn(List.of(keywordRule(1L, "退货")));
+        intentRuleService.syncChanges();
+
+        when(intentRuleRepository.findChangesSince(5L)).thenReturn(List.of(
+                new IntentRuleChange(6L, 2L), new IntentRuleChange(9L, 2L)));
+        when(intentRuleRepository.findByIds(List.of(2L))).thenReturn(List.of(keywordRule(2L, "发票")));
+        IntentRuleService.SyncResult second = intentRuleService.syncChanges();
+
+        assertEquals(9L, second.version());
+        assertEquals(1, second.changedRules());
+        assertEquals(2, intentRuleService.getRulesByType("KEYWORD").size());
+
+        when(intentRuleRepository.findChangesSince(9L)).thenReturn(List.of());
+        IntentRuleService.SyncResult idle = intentRuleService.syncChanges();
+
+        assertEquals(9L, idle.version());
+        assertEquals(0, idle.changedRules());
+        verify(eventPublisher, times(2)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void testSyncedSemanticRuleReusesPersistedEmbedding() {
+        float[] stored = {1f, 0f, 0f, 0f};
+        IntentRule semantic = IntentRule.builder()
+                .id(10L)
+                .ruleType("SEMANTIC_EXAMPLE")
+                .ruleContent("怎么申请退货")
+                .taskType("FAQ")
+                .targetProcessor("BASIC")
+                .topicDomain("GENERAL")
+                .isActive(true)
+                .embedding(stored)
+                .embeddingModel("text-embedding-v4/4")
+                .build();
+        when(intentRuleRepository.findChangesSince(0L)).thenReturn(List.of(new IntentRuleChange(3L, 10L)));
+        when(intentRuleRepository.findByIds(List.of(10L))).thenReturn(List.of(semantic));
+        when(embeddingService.generateEmbedding("退货流程是什么")).thenReturn(new float[]{1f, 0f, 0f, 0f});
+
+        intentRuleService.syncChanges();
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(events.capture());
+        IntentRuleChangedEvent event = (IntentRuleChangedEvent) events.getValue();
+        assertSame(stored, event.getRules().get(0).getEmbedding());
+
+        SemanticIntentDetector detector = new SemanticIntentDetector(embeddingService, intentRuleService);
+        ReflectionTestUtils.setField(detector, "similarityThreshold", 0.78);
+        ReflectionTestUtils.setField(detector, "embeddingModel", "text-embedding-v4");
+        ReflectionTestUtils.setField(detector, "embeddingDimensions", 4);
+        detector.onRuleChanged(event);
+        IntentDetector.DetectionResult detected = detector.detect(
+                new IntentDetector.IntentRequest("退货流程是什么", null, null, null));
+
+        verify(embeddingService, never()).generateEmbeddings(anyList());
+        verify(intentRuleRepository, never()).updateEmbedding(anyLong(), any(), anyString());
+        assertNotNull(detected);
+        assertTrue(detected.matched());
+        assertEquals(IntentSource.SEMANTIC_ROUTER, detected.intent().getSource());
+    }
+
+    @Test
+    void testCreateRuleReturnsPersistedRow() {
+        IntentRule rule = IntentRule.builder()
+                .id(7L)
+                .ruleType("KEYWORD")
+                .ruleContent("发票")
+                .build();
+        IntentRule persisted = keywordRule(7L, "发票");
+        when(intentRuleRepository.findById(7L)).thenReturn(Optional.of(persisted));
+
+        IntentRule created = intentRuleService.createRule(rule);
+
+        assertSame(persisted, created);
+        assertEquals(Boolean.TRUE, created.getIsActive());
+        verify(intentRuleRepository).save(rule);
+    }
+
+    private static IntentRule keywordRule(Long id, String content) {
+        return IntentRule.builder()
+                .id(id)
+                .ruleType("KEYWORD")
+                .ruleContent(content)
+                .isActive(true)
+                .build();
+    }
 }
@@ -0,0 +1,160 @@
+package cn.cug.sxy.ai.test.domain.llm;
+
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGatewayException;
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGatewayProperties;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChatGatewayTest {
+
+    private static final Prompt PROMPT = new Prompt("问题");
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private ExecutorService callExecutor;
+    private IntFunction<String> model;
+
+    @BeforeEach
+    void setUp() {
+        callExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        callExecutor.shutdownNow();
+    }
+
+    @Test
+    void testTimeoutInterruptsCallAndReleasesPermit() throws InterruptedException {
+        ChatGateway gateway = gateway(1, 100, 0, 2000);
+        // 首次调用一直阻塞，之后的调用立即返回
+        model = index -> index == 0 ? blockUntilInterrupted() : "ok";
+
+        ChatGatewayException timeout = assertThrows(ChatGatewayException.class,
+                () -> gateway.call(LlmPurpose.GENERATION, PROMPT));
+        assertEquals(ChatGatewayException.Reason.TIMEOUT, timeout.getReason());
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+
+        // 配额只有1个：超时的调用线程结束后许可归还，下一次调用可以拿到配额
+        assertEquals("ok", gateway.call(LlmPurpose.GENERATION, PROMPT));
+        ChatGateway.PurposeStats stats = awaitIdle(gateway);
+        assertEquals(1, stats.getTimedOut());
+        assertEquals(1, stats.getSucceeded());
+    }
+
+    @Test
+    void testHedgeWinsAndSlowPrimaryIsCancelled() throws InterruptedException {
+        ChatGateway gateway = gateway(2, 5000, 50, 200);
+        model = index -> index == 0 ? blockUntilInterrupted() : "hedge";
+
+        assertEquals("hedge", gateway.call(LlmPurpose.GENERATION, PROMPT));
+        // 对冲请求先返回后，仍在进行的首个请求被中断
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS));
+
+        ChatGateway.PurposeStats stats = awaitIdle(gateway);
+        assertEquals(1, stats.getHedged());
+        assertEquals(1, stats.getHedgeWins());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testBulkheadFullFailsFastAndRecovers() throws Exception {
+        ChatGateway gateway = gateway(1, 5000, 0, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        model = index -> {
+            if (index == 0) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "ok-" + index;
+        };
+
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = caller.submit(() -> gateway.call(LlmPurpose.GENERATION, PROMPT));
+            while (calls.get() == 0) {
+                Thread.sleep(5);
+            }
+            ChatGatewayException rejected = assertThrows(ChatGatewayException.class,
+                    () -> gateway.call(LlmPurpose.GENERATION, PROMPT));
+            assertEquals(ChatGatewayException.Reason.BULKHEAD_FULL, rejected.getReason());
+
+            release.countDown();
+            assertEquals("ok-0", first.get(5, TimeUnit.SECONDS));
+        } finally {
+            caller.shutdownNow();
+        }
+        awaitIdle(gateway);
+        assertEquals("ok-1", gateway.call(LlmPurpose.GENERATION, PROMPT));
+        assertEquals(1, gateway.getStats().getPurposes().get(LlmPurpose.GENERATION.name()).getRejected());
+    }
+
+    private ChatGateway gateway(int maxConcurrent, long deadlineMs, long hedgeAfterMs, long bulkheadWaitMs) {
+        ChatGatewayProperties properties = new ChatGatewayProperties();
+        properties.setBulkheadWaitMs(bulkheadWaitMs);
+        ChatGatewayProperties.PurposeConfig config = new ChatGatewayProperties.PurposeConfig();
+        config.setMaxConcurrent(maxConcurrent);
+        config.setDeadlineMs(deadlineMs);
+        config.setHedgeAfterMs(hedgeAfterMs);
+        properties.getPurposes().put(LlmPurpose.GENERATION.getConfigKey(), config);
+
+        ChatClient chatClient = mock(ChatClient.class);
+        ChatClient.ChatClientRequestSpec request = mock(ChatClient.ChatClientRequestSpec.class);
+        ChatClient.CallResponseSpec response = mock(ChatClient.CallResponseSpec.class);
+        when(chatClient.prompt(any(Prompt.class))).thenReturn(request);
+        when(request.call()).thenReturn(response);
+        when(response.chatResponse()).thenAnswer(invocation ->
+                new ChatResponse(List.of(new Generation(new AssistantMessage(model.apply(calls.getAndIncrement()))))));
+        return new ChatGateway(chatClient, properties, callExecutor);
+    }
+
+    private String blockUntilInterrupted() {
+        try {
+            Thread.sleep(10_000);
+            return "late";
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+            throw new IllegalStateException("调用被中断", e);
+        }
+    }
+
+    /**
+     * 许可在调用线程结束时异步归还，等待在途数归零后返回统计。
+     */
+    private static ChatGateway.PurposeStats awaitIdle(ChatGateway gateway) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (gateway.inFlight() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, gateway.inFlight());
+        return gateway.getStats().getPurposes().get(LlmPurpose.GENERATION.name());
+    }
+
+}
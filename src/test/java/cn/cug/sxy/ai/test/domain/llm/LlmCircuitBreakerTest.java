@@ -0,0 +1,106 @@
+package cn.cug.sxy.ai.test.domain.llm;
+
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGatewayProperties;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmCircuitBreaker;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LlmCircuitBreakerTest {
+
+    @Test
+    void testOpensWhenFailureRateReachesThreshold() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(config(60_000));
+
+        // 未达到最少调用数时不计算失败率
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenCount());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void testStaysClosedBelowThreshold() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(config(60_000));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(breaker.tryAcquire());
+            if (i % 3 == 1) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+        assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.3, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    void testHalfOpenClosesAfterSuccessfulTrials() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(config(0));
+        open(breaker);
+
+        // 冷却结束进入半开，只放行配置数量的试探调用
+        assertEquals(LlmCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(LlmCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onSuccess();
+        assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.0, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    void testHalfOpenReopensOnTrialFailure() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(config(60_000));
+        open(breaker);
+        assertFalse(breaker.tryAcquire());
+
+        LlmCircuitBreaker cooled = new LlmCircuitBreaker(config(0));
+        open(cooled);
+        assertTrue(cooled.tryAcquire());
+        cooled.onFailure();
+        assertEquals(2, cooled.getOpenCount());
+    }
+
+    @Test
+    void testIgnoredTrialReturnsPermit() {
+        LlmCircuitBreaker breaker = new LlmCircuitBreaker(config(0));
+        open(breaker);
+
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onIgnored();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void open(LlmCircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    private ChatGatewayProperties.CircuitBreakerConfig config(long openMs) {
+        ChatGatewayProperties.CircuitBreakerConfig config = new ChatGatewayProperties.CircuitBreakerConfig();
+        config.setWindowSize(10);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setOpenMs(openMs);
+        config.setHalfOpenCalls(2);
+        return config;
+    }
+
+}
@@ -0,0 +1,114 @@
+package cn.cug.sxy.ai.test.domain.parsing;
+
+import cn.cug.sxy.ai.domain.rag.model.parsing.StructuredDocument;
+import cn.cug.sxy.ai.domain.rag.service.parsing.PageOcrCache;
+import cn.cug.sxy.ai.domain.rag.service.parsing.PagePerceptualHasher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PageOcrCacheTest {
+
+    private static final String ENGINE = "qwen-vl-ocr";
+
+    private ZSetOperations<String, Object> zSetOps;
+    private PageOcrCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        zSetOps = mock(ZSetOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(mock(ValueOperations.class));
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        cache = new PageOcrCache(redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "namespace", "test");
+        ReflectionTestUtils.setField(cache, "coarseMaxDistance", 4);
+        ReflectionTestUtils.setField(cache, "fineMaxDistance", 16);
+        ReflectionTestUtils.setField(cache, "ttlDays", 30);
+        ReflectionTestUtils.setField(cache, "maxIndexEntries", 2);
+        ReflectionTestUtils.setField(cache, "localMaxPages", 10);
+    }
+
+    @Test
+    void testNearDuplicateFingerprintHits() {
+        PagePerceptualHasher.Fingerprint original = fingerprint(0x0F0F_1234_5678_9ABCL, 7);
+        cache.put(original, ENGINE, page(3));
+
+        // 粗哈希差3位、细哈希差10位，仍在阈值内
+        PagePerceptualHasher.Fingerprint similar = flip(original, 3, 10);
+        Optional<StructuredDocument.Page> hit = cache.lookup(similar, ENGINE);
+
+        assertTrue(hit.isPresent());
+        assertEquals(3, hit.get().getPageNo());
+        assertEquals(1, cache.getStats().getHits());
+    }
+
+    @Test
+    void testDistantFingerprintOrOtherEngineMisses() {
+        PagePerceptualHasher.Fingerprint original = fingerprint(0x0F0F_1234_5678_9ABCL, 7);
+        cache.put(original, ENGINE, page(3));
+
+        assertTrue(cache.lookup(flip(original, 5, 0), ENGINE).isEmpty());
+        assertTrue(cache.lookup(flip(original, 0, 17), ENGINE).isEmpty());
+        assertTrue(cache.lookup(original, "other-engine").isEmpty());
+        assertEquals(0, cache.getStats().getHits());
+    }
+
+    @Test
+    void testIndexIsBoundedLocallyAndInRedis() {
+        PagePerceptualHasher.Fingerprint first = fingerprint(0x1111_1111_1111_1111L, 1);
+        cache.put(first, ENGINE, page(1));
+        cache.put(fingerprint(0x2222_2222_2222_2222L, 2), ENGINE, page(2));
+        cache.put(fingerprint(0x4444_4444_4444_4444L, 3), ENGINE, page(3));
+
+        assertEquals(2, cache.getStats().getIndexSize());
+        // 最早写入的指纹已从本地索引淘汰
+        assertTrue(cache.lookup(first, ENGINE).isEmpty());
+        verify(zSetOps, atLeastOnce()).removeRangeByScore(anyString(), eq(Double.NEGATIVE_INFINITY), anyDouble());
+        verify(zSetOps, atLeastOnce()).removeRange("rag:ocr:page-zindex:test", 0, -3);
+    }
+
+    private static PagePerceptualHasher.Fingerprint fingerprint(long coarse, long seed) {
+        long[] fine = new long[PagePerceptualHasher.FINE_BITS / 64];
+        long value = seed;
+        for (int i = 0; i < fine.length; i++) {
+            value = value * 6364136223846793005L + 1442695040888963407L;
+            fine[i] = value;
+        }
+        return new PagePerceptualHasher.Fingerprint(coarse, fine);
+    }
+
+    /**
+     * 翻转粗哈希的低 coarseBits 位与细哈希的前 fineBits 位
+     */
+    private static PagePerceptualHasher.Fingerprint flip(PagePerceptualHasher.Fingerprint source, int coarseBits, int fineBits) {
+        long coarse = source.coarse() ^ ((1L << coarseBits) - 1);
+        long[] fine = source.fine().clone();
+        for (int i = 0; i < fineBits; i++) {
+            fine[i / 64] ^= 1L << (i % 64);
+        }
+        return new PagePerceptualHasher.Fingerprint(coarse, fine);
+    }
+
+    private static StructuredDocument.Page page(int pageNo) {
+        return StructuredDocument.Page.builder().pageNo(pageNo).build();
+    }
+
+}
@@ -0,0 +1,117 @@
+package cn.cug.sxy.ai.test.domain.query;
+
+import cn.cug.sxy.ai.domain.rag.model.entity.Query;
+import cn.cug.sxy.ai.domain.rag.model.entity.Response;
+import cn.cug.sxy.ai.domain.rag.repository.IQueryRepository;
+import cn.cug.sxy.ai.domain.rag.repository.IResponseRepository;
+import cn.cug.sxy.ai.domain.rag.service.query.QueryLifecycleWriter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class QueryLifecycleWriterTest {
+
+    private IQueryRepository queryRepository;
+    private IResponseRepository responseRepository;
+    private QueryLifecycleWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        queryRepository = mock(IQueryRepository.class);
+        responseRepository = mock(IResponseRepository.class);
+        AtomicLong ids = new AtomicLong(100);
+        when(responseRepository.nextId()).thenAnswer(inv -> ids.incrementAndGet());
+        writer = new QueryLifecycleWriter(queryRepository, responseRepository,
+                mock(PlatformTransactionManager.class), mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "maxBatch", 100);
+        ReflectionTestUtils.setField(writer, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(writer, "maxAttempts", 1);
+        ReflectionTestUtils.setField(writer, "retryBackoffMs", 0L);
+    }
+
+    @Test
+    void testCoalescesStatusesOfSameQueryAndAssignsResponseIdUpfront() {
+        ReflectionTestUtils.setField(writer, "capacity", 100);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 5000L);
+        writer.start();
+
+        Response response = completedResponse(1L);
+        writer.updateStatus(1L, "PROCESSING", null, null, null);
+        writer.complete(Query.builder().id(1L).build(), response, null);
+        // 响应ID在提交时即已分配，无需等待落库
+        assertEquals(101L, response.getId());
+        writer.stop();
+
+        verify(queryRepository, never()).updateStatus(eq(1L), eq("PROCESSING"), any(), any(), any(), any(), any());
+        verify(queryRepository, times(1)).updateStatus(eq(1L), eq("COMPLETED"), any(), any(), any(), any(), any());
+        verify(responseRepository, times(1)).insert(response);
+        verify(responseRepository, never()).save(any());
+        assertEquals(1, writer.getStats().getCoalesced());
+    }
+
+    @Test
+    void testFullBufferKeepsStatusOrderOfSameQuery() throws Exception {
+        ReflectionTestUtils.setField(writer, "capacity", 1);
+        ReflectionTestUtils.setField(writer, "maxBatch", 1);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 10L);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Map<Long, String> lastStatus = new ConcurrentHashMap<>();
+        doAnswer(inv -> {
+            Long id = inv.getArgument(0);
+            if (id == 1L) {
+                writerBusy.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            lastStatus.put(id, inv.getArgument(1));
+            return true;
+        }).when(queryRepository).updateStatus(any(), any(), any(), any(), any(), any(), any());
+        writer.start();
+
+        // 后台线程卡在查询1的落库上，查询2的 PROCESSING 占满缓冲区
+        writer.updateStatus(1L, "PROCESSING", null, null, null);
+        assertTrue(writerBusy.await(5, TimeUnit.SECONDS));
+        writer.updateStatus(2L, "PROCESSING", null, null, null);
+        Thread completer = new Thread(() -> writer.complete(Query.builder().id(2L).build(), completedResponse(2L), null));
+        completer.start();
+        Thread.sleep(100);
+        release.countDown();
+        completer.join(TimeUnit.SECONDS.toMillis(5));
+        writer.stop();
+
+        assertEquals("COMPLETED", lastStatus.get(2L));
+        assertTrue(writer.getStats().getBlockedSubmits() >= 1);
+        assertEquals(0, writer.getStats().getSyncWrites());
+    }
+
+    private Response completedResponse(Long queryId) {
+        Response response = new Response();
+        response.setQueryId(queryId);
+        response.setStatus("COMPLETED");
+        response.setCompleteTime(LocalDateTime.now());
+        response.setLatencyMs(10L);
+        return response;
+    }
+
+}
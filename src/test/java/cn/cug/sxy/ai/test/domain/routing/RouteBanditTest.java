@@ -0,0 +1,101 @@
+package cn.cug.sxy.ai.test.domain.routing;
+
+import cn.cug.sxy.ai.domain.rag.service.routing.RouteArm;
+import cn.cug.sxy.ai.domain.rag.service.routing.RouteBandit;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteBanditTest {
+
+    private static final RouteArm CHEAP_POOR = new RouteArm(RouteArm.Rewrite.NONE, 2);
+    private static final RouteArm CHEAP_GOOD = new RouteArm(RouteArm.Rewrite.NONE, 4);
+    private static final RouteArm EXPENSIVE = new RouteArm(RouteArm.Rewrite.MULTI_QUERY, 4);
+
+    private static final RouteBandit.Settings SETTINGS =
+            new RouteBandit.Settings(0.6, 5, 0.3, 0.05, 5000, 3000, 0.5, 0.995);
+
+    @Test
+    void testConvergesToCheapestAcceptableArm() {
+        RouteBandit bandit = new RouteBandit(List.of(CHEAP_POOR, CHEAP_GOOD, EXPENSIVE), SETTINGS);
+        Random random = new Random(3);
+        Map<RouteArm, Integer> exploited = new HashMap<>();
+        int explored = 0;
+        int rounds = 4000;
+        for (int round = 0; round < rounds; round++) {
+            RouteBandit.Choice choice = bandit.choose("FAQ", EXPENSIVE, true, random);
+            if (choice.explored()) {
+                explored++;
+            } else if (round >= rounds / 2) {
+                exploited.merge(choice.arm(), 1, Integer::sum);
+            }
+            simulate(bandit, choice.arm(), random);
+        }
+        assertTrue(explored <= rounds * 0.08, "explored " + explored);
+        assertEquals(CHEAP_GOOD, exploited.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow().getKey());
+        assertEquals(0, exploited.getOrDefault(CHEAP_POOR, 0));
+    }
+
+    @Test
+    void testKeepsDefaultArmWithoutData() {
+        RouteBandit bandit = new RouteBandit(List.of(CHEAP_POOR, CHEAP_GOOD, EXPENSIVE), SETTINGS);
+        RouteBandit.Choice choice = bandit.choose("ANALYSIS", EXPENSIVE, false, new Random(1));
+        assertEquals(EXPENSIVE, choice.arm());
+        // 其他上下文的数据不影响本上下文
+        for (int i = 0; i < 50; i++) {
+            bandit.recordCost("FAQ", CHEAP_GOOD, 1000, 500);
+            bandit.recordQuality("FAQ", CHEAP_GOOD, 0.9);
+        }
+        assertEquals(EXPENSIVE, bandit.choose("ANALYSIS", EXPENSIVE, false, new Random(1)).arm());
+        assertEquals(CHEAP_GOOD, bandit.choose("FAQ", EXPENSIVE, false, new Random(1)).arm());
+    }
+
+    @Test
+    void testProxyQualityDoesNotGateExploitation() {
+        RouteBandit bandit = new RouteBandit(List.of(CHEAP_POOR, CHEAP_GOOD, EXPENSIVE), SETTINGS);
+        // 最便宜的臂检索分很高，但评估质量不达标；次便宜的臂只有代理质量、没有评估样本
+        for (int i = 0; i < 50; i++) {
+            bandit.recordCost("FAQ", CHEAP_POOR, 1000, 500);
+            bandit.recordProxyQuality("FAQ", CHEAP_POOR, 0.95);
+            bandit.recordQuality("FAQ", CHEAP_POOR, 0.3);
+            bandit.recordCost("FAQ", CHEAP_GOOD, 1500, 800);
+            bandit.recordProxyQuality("FAQ", CHEAP_GOOD, 0.9);
+        }
+        assertEquals(EXPENSIVE, bandit.choose("FAQ", EXPENSIVE, false, new Random(1)).arm());
+
+        for (int i = 0; i < 20; i++) {
+            bandit.recordQuality("FAQ", CHEAP_GOOD, 0.8);
+        }
+        assertEquals(CHEAP_GOOD, bandit.choose("FAQ", EXPENSIVE, false, new Random(1)).arm());
+        RouteBandit.View view = bandit.snapshot().get("FAQ").get(CHEAP_POOR.key());
+        assertEquals(0.95, view.proxyQuality(), 1e-9);
+        assertEquals(0.3, view.quality(), 1e-9);
+    }
+
+    private static void simulate(RouteBandit bandit, RouteArm arm, Random random) {
+        double quality;
+        long latency;
+        long tokens;
+        if (arm.equals(CHEAP_POOR)) {
+            quality = 0.45;
+            latency = 1500;
+            tokens = 800;
+        } else if (arm.equals(CHEAP_GOOD)) {
+            quality = 0.75;
+            latency = 2000;
+            tokens = 1200;
+        } else {
+            quality = 0.85;
+            latency = 5000;
+            tokens = 2500;
+        }
+        bandit.recordCost("FAQ", arm, latency + random.nextInt(500), tokens);
+        bandit.recordQuality("FAQ", arm, quality + (random.nextDouble() - 0.5) * 0.2);
+    }
+}
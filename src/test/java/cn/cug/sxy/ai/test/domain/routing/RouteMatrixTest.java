@@ -0,0 +1,89 @@
+package cn.cug.sxy.ai.test.domain.routing;
+
+import cn.cug.sxy.ai.domain.rag.service.routing.RouteMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteMatrixTest {
+
+    private static final int DIMENSIONS = 67;
+
+    @Test
+    void testTopTwoMatchesNaiveCosine() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            int routeCount = 1 + random.nextInt(6);
+            RouteMatrix.Builder<String> builder = RouteMatrix.builder();
+            List<String> routes = new ArrayList<>();
+            List<float[]> vectors = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(40); i++) {
+                String route = "r" + random.nextInt(routeCount);
+                float[] vector = randomVector(random);
+                builder.add(route, vector);
+                routes.add(route);
+                vectors.add(vector);
+            }
+            RouteMatrix<String> matrix = builder.build();
+            float[] query = randomVector(random);
+
+            Map<String, Double> best = new HashMap<>();
+            for (int i = 0; i < vectors.size(); i++) {
+                best.merge(routes.get(i), cosine(query, vectors.get(i)), Math::max);
+            }
+            List<Map.Entry<String, Double>> sorted = best.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed()).toList();
+
+            RouteMatrix.Match<String> match = matrix.score(query);
+            assertEquals(sorted.get(0).getValue(), match.bestScore(), 1e-4);
+            assertEquals(best.get(match.best()), match.bestScore(), 1e-4);
+            if (sorted.size() == 1) {
+                assertNull(match.runnerUp());
+            } else {
+                assertEquals(sorted.get(1).getValue(), match.runnerUpScore(), 1e-4);
+                assertEquals(best.get(match.runnerUp()), match.runnerUpScore(), 1e-4);
+                assertTrue(!match.best().equals(match.runnerUp()));
+            }
+        }
+    }
+
+    @Test
+    void testSkipsZeroAndMismatchedVectors() {
+        RouteMatrix<String> matrix = RouteMatrix.<String>builder()
+                .add("a", new float[]{1, 0})
+                .add("b", new float[]{0, 0})
+                .add("c", new float[]{1, 0, 0})
+                .build();
+        assertEquals(1, matrix.rows());
+        assertTrue(matrix.score(new float[]{0, 0}).isEmpty());
+        assertTrue(matrix.score(new float[]{1, 0, 0}).isEmpty());
+        assertEquals("a", matrix.score(new float[]{2, 1}).best());
+        assertTrue(RouteMatrix.<String>empty().score(new float[]{1, 0}).isEmpty());
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
@@ -0,0 +1,70 @@
+package cn.cug.sxy.ai.test.domain.routing;
+
+import cn.cug.sxy.ai.domain.rag.service.llm.ChatGateway;
+import cn.cug.sxy.ai.domain.rag.service.llm.LlmPurpose;
+import cn.cug.sxy.ai.domain.rag.service.routing.DegradationLevel;
+import cn.cug.sxy.ai.domain.rag.service.routing.SystemLoadMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SystemLoadMonitorTest {
+
+    private ChatGateway chatGateway;
+    private SystemLoadMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        chatGateway = mock(ChatGateway.class);
+        when(chatGateway.getStats()).thenReturn(ChatGateway.GatewayStats.builder()
+                .inFlight(0)
+                .purposes(Map.of("GENERATION", ChatGateway.PurposeStats.builder().maxConcurrent(32).build()))
+                .build());
+        Executor direct = Runnable::run;
+        monitor = new SystemLoadMonitor(chatGateway, direct, direct, direct);
+        ReflectionTestUtils.setField(monitor, "enabled", true);
+        ReflectionTestUtils.setField(monitor, "sampleIntervalMs", 0L);
+        ReflectionTestUtils.setField(monitor, "targetP95Ms", 8000L);
+        ReflectionTestUtils.setField(monitor, "targetFirstTokenP95Ms", 3000L);
+        ReflectionTestUtils.setField(monitor, "latencyWindowMs", 60000L);
+        ReflectionTestUtils.setField(monitor, "lightThreshold", 0.6);
+        ReflectionTestUtils.setField(monitor, "moderateThreshold", 0.8);
+        ReflectionTestUtils.setField(monitor, "severeThreshold", 0.95);
+        ReflectionTestUtils.setField(monitor, "hysteresis", 0.1);
+        ReflectionTestUtils.setField(monitor, "recoveryMs", 0L);
+    }
+
+    @Test
+    void testFastFirstTokenKeepsNormalLevel() {
+        when(chatGateway.p95LatencyMs(LlmPurpose.GENERATION, 60000L)).thenReturn(2000L);
+        when(chatGateway.p95FirstTokenMs(LlmPurpose.GENERATION, 60000L)).thenReturn(800L);
+
+        assertEquals(DegradationLevel.NORMAL, monitor.currentLevel());
+        verify(chatGateway).p95LatencyMs(LlmPurpose.GENERATION, 60000L);
+        verify(chatGateway).p95FirstTokenMs(LlmPurpose.GENERATION, 60000L);
+    }
+
+    @Test
+    void testSlowFirstTokenEscalatesAndIdleRecovers() {
+        when(chatGateway.p95LatencyMs(LlmPurpose.GENERATION, 60000L)).thenReturn(0L);
+        when(chatGateway.p95FirstTokenMs(LlmPurpose.GENERATION, 60000L)).thenReturn(3000L);
+        assertEquals(DegradationLevel.SEVERE, monitor.currentLevel());
+
+        // 窗口内已无调用：延迟分位数归零，逐级恢复
+        when(chatGateway.p95FirstTokenMs(LlmPurpose.GENERATION, 60000L)).thenReturn(0L);
+        DegradationLevel level = monitor.currentLevel();
+        for (int i = 0; i < 10 && level != DegradationLevel.NORMAL; i++) {
+            level = monitor.currentLevel();
+        }
+        assertEquals(DegradationLevel.NORMAL, level);
+    }
+
+}
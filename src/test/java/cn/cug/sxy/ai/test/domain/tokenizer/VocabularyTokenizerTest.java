@@ -0,0 +1,60 @@
+package cn.cug.sxy.ai.test.domain.tokenizer;
+
+import cn.cug.sxy.ai.domain.rag.service.tokenizer.VocabularyTokenizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VocabularyTokenizerTest {
+
+    /**
+     * cl100k_base 的已知切分结果（tiktoken README 与 OpenAI cookbook 中的示例）。
+     * 内置词表不是 cl100k_base，也不是 Qwen 词表；这里只记录在公开样例上的实测误差，不代表对任何模型词表的上界保证。
+     */
+    private static final Map<String, Integer> KNOWN_CL100K = new LinkedHashMap<>();
+
+    static {
+        KNOWN_CL100K.put("hello world", 2);
+        KNOWN_CL100K.put("tiktoken is great!", 6);
+        KNOWN_CL100K.put("antidisestablishmentarianism", 6);
+        KNOWN_CL100K.put("2 + 2 = 4", 5);
+        KNOWN_CL100K.put("The quick brown fox jumps over the lazy dog.", 10);
+        KNOWN_CL100K.put("お誕生日おめでとう", 9);
+    }
+
+    private final VocabularyTokenizer tokenizer = new VocabularyTokenizer(new ClassPathResource("tokenizer/vocab.txt"));
+
+    @Test
+    void testRawCountErrorOnKnownCl100kSamples() {
+        // 不含安全余量的原始计数：实测为实际值的 1.0-2.3 倍
+        VocabularyTokenizer raw = new VocabularyTokenizer(new ClassPathResource("tokenizer/vocab.txt"), 0);
+        KNOWN_CL100K.forEach((text, expected) -> {
+            int counted = raw.countTokens(text);
+            assertTrue(counted >= expected, text + ": 计数 " + counted + " 低于实际 " + expected);
+            assertTrue(counted <= expected * 2.5, text + ": 计数 " + counted + " 超出实际 " + expected + " 的2.5倍");
+        });
+    }
+
+    @Test
+    void testSafetyMarginScalesCount() {
+        VocabularyTokenizer raw = new VocabularyTokenizer(new ClassPathResource("tokenizer/vocab.txt"), 0);
+        String text = "检索增强生成系统在回答问题之前，先从知识库中检索相关文档。";
+        int rawCount = raw.countTokens(text);
+        assertEquals((int) Math.ceil(rawCount * (1 + VocabularyTokenizer.DEFAULT_SAFETY_MARGIN)), tokenizer.countTokens(text));
+    }
+
+    @Test
+    void testFitPrefixStaysWithinBudgetAfterMargin() {
+        String text = "检索增强生成（RAG）系统在回答问题之前，先从知识库中检索相关文档 and ranks them by relevance.";
+        for (int maxTokens = 1; maxTokens <= 40; maxTokens++) {
+            int end = tokenizer.fitPrefix(text, 0, text.length(), maxTokens);
+            assertTrue(tokenizer.countTokens(text, 0, end) <= maxTokens, "maxTokens=" + maxTokens);
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package cn.cug.sxy.ai.test.infrastructure.cache;
+
+import cn.cug.sxy.ai.domain.rag.model.intent.ComplexityLevel;
+import cn.cug.sxy.ai.domain.rag.model.intent.IntentSource;
+import cn.cug.sxy.ai.domain.rag.model.intent.QueryIntent;
+import cn.cug.sxy.ai.domain.rag.model.intent.TaskType;
+import cn.cug.sxy.ai.domain.rag.model.intent.TopicDomain;
+import cn.cug.sxy.ai.domain.rag.model.plan.TaskNode;
+import cn.cug.sxy.ai.domain.rag.model.plan.TaskPlan;
+import cn.cug.sxy.ai.domain.rag.service.intent.cache.CachedTaskPlan;
+import cn.cug.sxy.ai.domain.rag.service.query.QueryType;
+import cn.cug.sxy.ai.infrastructure.cache.CacheValueCodec;
+import cn.cug.sxy.ai.infrastructure.cache.CompactCacheValueRedisSerializer;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CacheValueCodecTest {
+
+    private final RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+    private final RedisSerializer<Object> serializer = new CompactCacheValueRedisSerializer(json);
+
+    @Test
+    void testIntentRoundTrip() {
+        QueryIntent intent = new QueryIntent();
+        intent.setSource(IntentSource.RULE_BASED);
+        intent.setTaskType(TaskType.FAQ);
+        intent.setLockProcessor(true);
+        intent.setRecommendedProcessor(QueryType.HYDE);
+        intent.setSecondaryProcessors(EnumSet.of(QueryType.BASIC));
+        intent.setConfidence(0.75);
+        intent.setTaskPlan(samplePlan());
+        intent.setAttributes(Map.of("ruleId", 12L, "tags", List.of("a", 1, true), "nested", Map.of("k", 0.5)));
+
+        Object decoded = serializer.deserialize(serializer.serialize(intent));
+        assertEquals(intent, decoded);
+    }
+
+    @Test
+    void testCachedPlanKeepsVectorBitExact() {
+        float[] vector = {0.1f, -0.25f, Float.MIN_VALUE, 3.4e38f};
+        CachedTaskPlan cached = new CachedTaskPlan("查询", vector, samplePlan(), 123L);
+
+        CachedTaskPlan decoded = (CachedTaskPlan) serializer.deserialize(serializer.serialize(cached));
+        assertEquals("查询", decoded.queryText());
+        assertArrayEquals(vector, decoded.vector());
+        assertEquals(samplePlan(), decoded.plan());
+        assertEquals(123L, decoded.timestamp());
+    }
+
+    @Test
+    void testLegacyJsonStillReadable() {
+        byte[] legacy = json.serialize(samplePlan());
+        assertEquals(samplePlan(), serializer.deserialize(legacy));
+    }
+
+    @Test
+    void testNewerFormatVersionIsTreatedAsMiss() {
+        byte[] bytes = CacheValueCodec.encode(samplePlan());
+        assertTrue(CacheValueCodec.isEncoded(bytes));
+        bytes[1] = (byte) (CacheValueCodec.FORMAT_VERSION + 1);
+        assertNull(serializer.deserialize(bytes));
+    }
+
+    @Test
+    void testCompactPayloadIsSmallerThanCacheConfigJson() {
+        // 与 CacheConfig 相同的 ObjectMapper 配置（带类型信息）作为对照
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        RedisSerializer<Object> typedJson = new GenericJackson2JsonRedisSerializer(objectMapper);
+        RedisSerializer<Object> compact = new CompactCacheValueRedisSerializer(typedJson);
+
+        QueryIntent intent = richIntent();
+        byte[] intentBytes = compact.serialize(intent);
+        assertTrue(intentBytes.length < typedJson.serialize(intent).length, "intent " + intentBytes.length);
+        assertEquals(intent, compact.deserialize(intentBytes));
+
+        TaskPlan plan = samplePlan();
+        byte[] planBytes = compact.serialize(plan);
+        assertTrue(planBytes.length * 2 < typedJson.serialize(plan).length, "plan " + planBytes.length);
+        assertEquals(plan, compact.deserialize(planBytes));
+
+        // 向量按4字节定长写入：1536维约6KB，JSON 文本表示约为其3倍
+        float[] vector = gaussianVector(1536);
+        CachedTaskPlan cached = new CachedTaskPlan("北京明天的天气适合户外跑步吗", vector, plan, 123L);
+        byte[] cachedBytes = compact.serialize(cached);
+        assertTrue(cachedBytes.length < vector.length * 4 + 1024, "cached plan " + cachedBytes.length);
+        assertTrue(cachedBytes.length * 2 < typedJson.serialize(cached).length, "cached plan " + cachedBytes.length);
+        assertArrayEquals(vector, ((CachedTaskPlan) compact.deserialize(cachedBytes)).vector());
+    }
+
+    private static QueryIntent richIntent() {
+        QueryIntent intent = new QueryIntent();
+        intent.setSource(IntentSource.SEMANTIC_ROUTER);
+        intent.setTaskType(TaskType.FACT_LOOKUP);
+        intent.setDomain(TopicDomain.WEATHER);
+        intent.setComplexity(ComplexityLevel.MEDIUM);
+        intent.setAllowCascade(true);
+        intent.setRecommendedProcessor(QueryType.HYDE);
+        intent.setSecondaryProcessors(new LinkedHashSet<>(List.of(QueryType.BASIC, QueryType.MULTI_QUERY)));
+        intent.setConfidence(0.87);
+        intent.setSummary("查询天气并给出出行建议");
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("routeName", "weather");
+        attributes.put("similarity", 0.91);
+        attributes.put("keywords", new ArrayList<>(List.of("天气", "跑步")));
+        intent.setAttributes(attributes);
+        return intent;
+    }
+
+    private static float[] gaussianVector(int dimension) {
+        Random random = new Random(42);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return vector;
+    }
+
+    private static TaskPlan samplePlan() {
+        TaskNode first = TaskNode.builder().step(1).toolName("search").description("检索").build();
+        TaskNode second = TaskNode.builder().step(2).toolName("rag").description("生成").dependencies(new ArrayList<>(List.of(1))).build();
+        // 旧 JSON 数据带类型信息，使用可反序列化的 ArrayList
+        return TaskPlan.builder().summary("两步计划").tasks(new ArrayList<>(List.of(first, second))).requiresTools(true).build();
+    }
+}